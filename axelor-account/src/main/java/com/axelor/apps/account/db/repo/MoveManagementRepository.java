@@ -23,6 +23,7 @@ import com.axelor.apps.account.db.InvoiceTerm;
 import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.account.service.AccountPeriodBalanceService;
 import com.axelor.apps.account.service.invoice.InvoiceTermService;
 import com.axelor.apps.account.service.move.MoveLineControlService;
 import com.axelor.apps.account.service.move.MoveLineInvoiceTermService;
@@ -160,6 +161,11 @@ public class MoveManagementRepository extends MoveRepository {
   @Override
   public Move save(Move move) {
     try {
+      if (move.getId() != null && move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK) {
+        // the lines of a daybook move can be changed, read their totals before anything is flushed
+        Beans.get(AccountPeriodBalanceService.class).registerMove(move);
+      }
+
       MoveValidateService moveValidateService = Beans.get(MoveValidateService.class);
 
       moveValidateService.checkMoveLinesPartner(move);
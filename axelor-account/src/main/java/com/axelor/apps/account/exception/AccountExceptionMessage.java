@@ -596,6 +596,19 @@ public final class AccountExceptionMessage {
   public static final String BATCH_AUTO_MOVE_LETTERING_PENDING_PROPOSAL_EXISTS = /*$$(*/
       "Warning, there are still reconcile group proposals pending that correspond to the filters you have entered." /*)*/;
 
+  /** Period balances rebuild batch */
+  public static final String BATCH_REBUILD_PERIOD_BALANCES_1 = /*$$(*/
+      "Period balances rebuild report :" /*)*/;
+
+  public static final String BATCH_REBUILD_PERIOD_BALANCES_2 = /*$$(*/ "Period(s) rebuilt" /*)*/;
+
+  /** Partner balances check batch */
+  public static final String BATCH_CHECK_PARTNER_BALANCES_1 = /*$$(*/
+      "Partner balances check report :" /*)*/;
+
+  public static final String BATCH_CHECK_PARTNER_BALANCES_2 = /*$$(*/
+      "Partner balance(s) repaired" /*)*/;
+
   /** Cfonb export service */
   public static final String CFONB_EXPORT_1 = /*$$(*/
       "You must configure a RIB for the reimbursement" /*)*/;
@@ -1385,6 +1398,15 @@ public final class AccountExceptionMessage {
   public static final String PAYMENT_SESSION_NEGATIVE_LINES_REMOVED = /*$$(*/
       "All negative balance partners have been removed successfully." /*)*/;
 
+  public static final String PAYMENT_SESSION_VALIDATION_MESSAGE = /*$$(*/
+      "Payment session %s validated" /*)*/;
+
+  public static final String PAYMENT_SESSION_VALIDATION_EXCEPTION_MESSAGE = /*$$(*/
+      "Error when validating payment session %s" /*)*/;
+
+  public static final String PAYMENT_SESSION_VALIDATION_IN_PROGRESS = /*$$(*/
+      "The payment session %s is already being validated." /*)*/;
+
   public static final String SPECIFIC_ANALYTIC_DISTRIBUTION_TEMPLATE = /*$$(*/
       "Specific Analytic Distribution Template" /*)*/;
 
@@ -682,5 +682,9 @@ public class AccountModule extends AxelorModule {
 
     bind(AccountingReportAnalyticConfigLineService.class)
         .to(AccountingReportAnalyticConfigLineServiceImpl.class);
+
+    bind(AccountPeriodBalanceService.class).to(AccountPeriodBalanceServiceImpl.class);
+
+    bind(AccountPartnerBalanceService.class).to(AccountPartnerBalanceServiceImpl.class);
   }
 }
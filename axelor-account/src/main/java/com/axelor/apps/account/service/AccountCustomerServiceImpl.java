@@ -55,18 +55,21 @@ public class AccountCustomerServiceImpl implements AccountCustomerService {
   protected AccountingSituationRepository accSituationRepo;
   protected AccountingSituationInitService accountingSituationInitService;
   protected AppBaseService appBaseService;
+  protected AccountPartnerBalanceService accountPartnerBalanceService;
 
   @Inject
   public AccountCustomerServiceImpl(
       AccountingSituationService accountingSituationService,
       AccountingSituationInitService accountingSituationInitService,
       AccountingSituationRepository accSituationRepo,
-      AppBaseService appBaseService) {
+      AppBaseService appBaseService,
+      AccountPartnerBalanceService accountPartnerBalanceService) {
 
     this.accountingSituationService = accountingSituationService;
     this.accountingSituationInitService = accountingSituationInitService;
     this.accSituationRepo = accSituationRepo;
     this.appBaseService = appBaseService;
+    this.accountPartnerBalanceService = accountPartnerBalanceService;
   }
 
   @Override
@@ -85,6 +88,12 @@ public class AccountCustomerServiceImpl implements AccountCustomerService {
   public BigDecimal getBalance(Partner partner, Company company) {
     log.debug("Compute balance (Partner : {}, Company : {})", partner.getName(), company.getName());
 
+    if (accountPartnerBalanceService.isBuilt(company)) {
+      BigDecimal balance = accountPartnerBalanceService.getBalance(partner, company);
+      log.debug("Balance : {}", balance);
+      return balance;
+    }
+
     Query query =
         JPA.em()
             .createNativeQuery(
@@ -298,6 +307,8 @@ public class AccountCustomerServiceImpl implements AccountCustomerService {
       boolean updateDueCustAccount,
       boolean updateDueDebtRecoveryCustAccount)
       throws AxelorException {
+    accountPartnerBalanceService.registerPartners(company, partnerList);
+
     for (Partner partner : partnerList) {
       AccountingSituation accountingSituation =
           accountingSituationService.getAccountingSituation(partner, company);
@@ -318,6 +329,8 @@ public class AccountCustomerServiceImpl implements AccountCustomerService {
   @Override
   @Transactional(rollbackOn = {Exception.class})
   public void flagPartners(List<Partner> partnerList, Company company) throws AxelorException {
+    accountPartnerBalanceService.registerPartners(company, partnerList);
+
     for (Partner partner : partnerList) {
       AccountingSituation accountingSituation =
           accountingSituationService.getAccountingSituation(partner, company);
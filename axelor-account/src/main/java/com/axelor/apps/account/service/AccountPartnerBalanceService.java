@@ -0,0 +1,81 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maintain the remaining amounts of the daybook and accounted move lines per company, partner and
+ * account, so the balance of a partner can be read without scanning its move lines. Every account
+ * is stored, the accounts used for partner balance are only selected when reading, so changing this
+ * option of an account does not require a rebuild.
+ */
+public interface AccountPartnerBalanceService {
+
+  /**
+   * Register partners whose move lines or reconciliations changed. Their balances are recomputed
+   * just before the transaction is committed.
+   */
+  void registerPartners(Company company, Collection<Partner> partnerList);
+
+  /**
+   * Register the partners of the lines of a move whose status or lines are about to change, as they
+   * are in database and as they will be. Their balances are recomputed just before the transaction
+   * is committed.
+   *
+   * @param move the move, before its change is flushed.
+   */
+  void registerMove(Move move);
+
+  /**
+   * Register the partners of the move lines of an account, after a bulk update of these move lines.
+   * Their balances are recomputed just before the transaction is committed.
+   *
+   * @param accountId the id of the account frozen on the move lines
+   * @param fromDate the date of the first updated move, null if every move was updated
+   */
+  void registerAccountMoveLines(Long accountId, LocalDate fromDate);
+
+  /** Recompute now the balances of the partners registered in the current transaction. */
+  void applyPendingChanges();
+
+  /** Recompute every balance of a partner for a company from its move lines. */
+  void rebuild(Company company, Partner partner);
+
+  /** The ids of the partners whose stored balances differ from their move lines. */
+  List<Long> getInconsistentPartnerIds(Company company);
+
+  /** Whether the partner balances of the company are built and can be used to compute balances. */
+  boolean isBuilt(Company company);
+
+  void setBuilt(Company company, boolean built) throws AxelorException;
+
+  /**
+   * Get the total balance of a partner, the remaining amount of its debit move lines minus the
+   * remaining amount of its credit move lines.
+   */
+  BigDecimal getBalance(Partner partner, Company company);
+}
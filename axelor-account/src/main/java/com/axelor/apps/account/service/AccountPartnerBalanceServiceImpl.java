@@ -0,0 +1,365 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.AccountConfig;
+import com.axelor.apps.account.db.AccountPartnerBalance;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.AccountConfigRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.service.config.AccountConfigService;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.persist.Transactional;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import javax.persistence.FlushModeType;
+import javax.persistence.Query;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.query.NativeQuery;
+
+@Singleton
+public class AccountPartnerBalanceServiceImpl implements AccountPartnerBalanceService {
+
+  /** Move statuses of the move lines counted in the partner balances. */
+  protected static final List<Integer> STATUS_LIST =
+      Arrays.asList(MoveRepository.STATUS_DAYBOOK, MoveRepository.STATUS_ACCOUNTED);
+
+  /** Namespace of the advisory locks taken on the partner balances. */
+  protected static final long LOCK_NAMESPACE = "account_account_partner_balance".hashCode();
+
+  /** Partner balances registered in the current transaction. */
+  protected final ThreadLocal<PendingChanges> pendingChanges =
+      ThreadLocal.withInitial(PendingChanges::new);
+
+  protected AccountConfigService accountConfigService;
+  protected AccountConfigRepository accountConfigRepository;
+
+  @Inject
+  public AccountPartnerBalanceServiceImpl(
+      AccountConfigService accountConfigService, AccountConfigRepository accountConfigRepository) {
+    this.accountConfigService = accountConfigService;
+    this.accountConfigRepository = accountConfigRepository;
+  }
+
+  @Override
+  public void registerPartners(Company company, Collection<Partner> partnerList) {
+    if (company == null || company.getId() == null || partnerList == null) {
+      return;
+    }
+
+    PendingChanges pending = pendingChanges.get();
+    if (!pending.processRegistered) {
+      registerProcesses();
+      pending.processRegistered = true;
+    }
+
+    for (Partner partner : partnerList) {
+      if (partner != null && partner.getId() != null) {
+        pending.keySet.add(new PartnerBalanceKey(company.getId(), partner.getId()));
+      }
+    }
+  }
+
+  @Override
+  public void registerMove(Move move) {
+    if (move.getCompany() == null) {
+      return;
+    }
+
+    Set<Partner> partnerSet = new HashSet<>();
+    if (move.getMoveLineList() != null) {
+      for (MoveLine moveLine : move.getMoveLineList()) {
+        partnerSet.add(moveLine.getPartner());
+      }
+    }
+    if (move.getId() != null) {
+      partnerSet.addAll(
+          JPA.em()
+              .createQuery(
+                  "SELECT DISTINCT self.partner FROM MoveLine self "
+                      + "WHERE self.move.id = :moveId AND self.partner IS NOT NULL",
+                  Partner.class)
+              .setParameter("moveId", move.getId())
+              .setFlushMode(FlushModeType.COMMIT)
+              .getResultList());
+    }
+    registerPartners(move.getCompany(), partnerSet);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void registerAccountMoveLines(Long accountId, LocalDate fromDate) {
+    Query query =
+        JPA.em()
+            .createQuery(
+                "SELECT DISTINCT move.company.id, self.partner.id FROM MoveLine self "
+                    + "JOIN self.move move "
+                    + "WHERE self.accountId = :accountId AND self.partner IS NOT NULL"
+                    + (fromDate != null ? " AND move.date >= :fromDate" : ""))
+            .setParameter("accountId", accountId);
+    if (fromDate != null) {
+      query.setParameter("fromDate", fromDate);
+    }
+    List<Object[]> resultList = query.getResultList();
+    if (resultList.isEmpty()) {
+      return;
+    }
+
+    PendingChanges pending = pendingChanges.get();
+    if (!pending.processRegistered) {
+      registerProcesses();
+      pending.processRegistered = true;
+    }
+
+    for (Object[] result : resultList) {
+      pending.keySet.add(new PartnerBalanceKey((Long) result[0], (Long) result[1]));
+    }
+  }
+
+  /**
+   * Recompute the registered partner balances once the session is flushed, just before the commit,
+   * and forget them when the transaction is over.
+   */
+  protected void registerProcesses() {
+    SessionImplementor session = JPA.em().unwrap(SessionImplementor.class);
+    session
+        .getActionQueue()
+        .registerProcess(
+            (BeforeTransactionCompletionProcess) sessionImplementor -> applyPendingChanges());
+    session
+        .getActionQueue()
+        .registerProcess(
+            (AfterTransactionCompletionProcess)
+                (success, sessionImplementor) -> pendingChanges.remove());
+  }
+
+  @Override
+  public void applyPendingChanges() {
+    PendingChanges pending = pendingChanges.get();
+    if (pending.keySet.isEmpty()) {
+      return;
+    }
+    // sorted, so partner balances are always locked in the same order
+    Set<PartnerBalanceKey> keySet = new TreeSet<>(pending.keySet);
+    pending.keySet.clear();
+
+    for (PartnerBalanceKey key : keySet) {
+      recompute(key);
+    }
+  }
+
+  /**
+   * Replace the balances of the partner with the remaining amounts of its move lines. The key is
+   * locked until the end of the transaction, so concurrent transactions recompute it one after the
+   * other, each one seeing the move lines committed by the previous one.
+   */
+  protected void recompute(PartnerBalanceKey key) {
+    JPA.em()
+        .createNativeQuery(
+            "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock(:lockKey)) AS partner_balance_lock")
+        .setParameter("lockKey", key.getLockKey())
+        .getSingleResult();
+
+    createNativeUpdate(
+            "DELETE FROM account_account_partner_balance "
+                + "WHERE company = :company AND partner = :partner")
+        .setParameter("company", key.companyId)
+        .setParameter("partner", key.partnerId)
+        .executeUpdate();
+
+    createNativeUpdate(
+            "INSERT INTO account_account_partner_balance "
+                + "(id, version, company, partner, account, balance) "
+                + "SELECT nextval('account_account_partner_balance_seq'), 0, "
+                + "computed.company, computed.partner, computed.account, computed.balance FROM "
+                + getComputedBalanceQuery("move.company = :company AND line.partner = :partner")
+                + " AS computed")
+        .setParameter("statusList", STATUS_LIST)
+        .setParameter("company", key.companyId)
+        .setParameter("partner", key.partnerId)
+        .executeUpdate();
+  }
+
+  /**
+   * The balances per company, partner and account computed from the move lines, with the same
+   * filters as {@link AccountCustomerServiceImpl#getBalance} except the use for partner balance of
+   * the account, which is only checked when reading them.
+   */
+  protected String getComputedBalanceQuery(String filter) {
+    return "(SELECT move.company AS company, line.partner AS partner, line.account AS account, "
+        + "SUM(CASE WHEN line.debit > 0 THEN line.amount_remaining "
+        + "ELSE line.amount_remaining * -1 END) AS balance "
+        + "FROM account_move_line line "
+        + "JOIN account_move move ON move.id = line.move "
+        + "WHERE move.status_select IN (:statusList) "
+        + "AND move.ignore_in_accounting_ok IS FALSE "
+        + "AND line.amount_remaining > 0 AND line.partner IS NOT NULL AND "
+        + filter
+        + " GROUP BY move.company, line.partner, line.account)";
+  }
+
+  /**
+   * Create a native update of the partner balances, which only invalidates their cache instead of
+   * the whole second level cache.
+   */
+  protected Query createNativeUpdate(String sql) {
+    return JPA.em()
+        .createNativeQuery(sql)
+        .unwrap(NativeQuery.class)
+        .addSynchronizedEntityClass(AccountPartnerBalance.class);
+  }
+
+  @Override
+  @Transactional
+  public void rebuild(Company company, Partner partner) {
+    recompute(new PartnerBalanceKey(company.getId(), partner.getId()));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<Long> getInconsistentPartnerIds(Company company) {
+    List<Number> resultList =
+        JPA.em()
+            .createNativeQuery(
+                "SELECT DISTINCT COALESCE(computed.partner, stored.partner) AS partner FROM "
+                    + getComputedBalanceQuery("move.company = :company")
+                    + " AS computed FULL OUTER JOIN "
+                    + "(SELECT partner, account, balance FROM account_account_partner_balance "
+                    + "WHERE company = :company) AS stored "
+                    + "ON stored.partner = computed.partner AND stored.account = computed.account "
+                    + "WHERE computed.balance IS DISTINCT FROM stored.balance "
+                    + "ORDER BY partner")
+            .setParameter("statusList", STATUS_LIST)
+            .setParameter("company", company.getId())
+            .getResultList();
+
+    return resultList.stream().map(Number::longValue).collect(Collectors.toList());
+  }
+
+  @Override
+  public boolean isBuilt(Company company) {
+    if (company == null) {
+      return false;
+    }
+
+    List<Boolean> resultList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.partnerBalanceBuilt FROM AccountConfig self "
+                    + "WHERE self.company.id = :companyId",
+                Boolean.class)
+            .setParameter("companyId", company.getId())
+            .getResultList();
+    return !resultList.isEmpty() && Boolean.TRUE.equals(resultList.get(0));
+  }
+
+  @Override
+  @Transactional(rollbackOn = {Exception.class})
+  public void setBuilt(Company company, boolean built) throws AxelorException {
+    AccountConfig accountConfig = accountConfigService.getAccountConfig(company);
+    accountConfig.setPartnerBalanceBuilt(built);
+    accountConfigRepository.save(accountConfig);
+  }
+
+  @Override
+  public BigDecimal getBalance(Partner partner, Company company) {
+    PartnerBalanceKey key = new PartnerBalanceKey(company.getId(), partner.getId());
+    if (JPA.em().getTransaction().isActive() && pendingChanges.get().keySet.contains(key)) {
+      // the key stays registered, so later changes of the transaction are recomputed at commit
+      JPA.flush();
+      recompute(key);
+    }
+
+    BigDecimal balance =
+        JPA.em()
+            .createQuery(
+                "SELECT SUM(self.balance) FROM AccountPartnerBalance self "
+                    + "WHERE self.partner = :partner AND self.company = :company "
+                    + "AND self.account.useForPartnerBalance IS TRUE",
+                BigDecimal.class)
+            .setParameter("partner", partner)
+            .setParameter("company", company)
+            .getSingleResult();
+    return balance != null ? balance : BigDecimal.ZERO;
+  }
+
+  protected static class PendingChanges {
+    protected final Set<PartnerBalanceKey> keySet = new HashSet<>();
+    protected boolean processRegistered;
+  }
+
+  protected static class PartnerBalanceKey implements Comparable<PartnerBalanceKey> {
+
+    protected static final Comparator<PartnerBalanceKey> COMPARATOR =
+        Comparator.comparing((PartnerBalanceKey key) -> key.companyId)
+            .thenComparing(key -> key.partnerId);
+
+    protected final Long companyId;
+    protected final Long partnerId;
+
+    protected PartnerBalanceKey(Long companyId, Long partnerId) {
+      this.companyId = companyId;
+      this.partnerId = partnerId;
+    }
+
+    protected long getLockKey() {
+      return (LOCK_NAMESPACE << 32) | (Objects.hash(companyId, partnerId) & 0xffffffffL);
+    }
+
+    @Override
+    public int compareTo(PartnerBalanceKey other) {
+      return COMPARATOR.compare(this, other);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof PartnerBalanceKey)) {
+        return false;
+      }
+      PartnerBalanceKey other = (PartnerBalanceKey) o;
+      return Objects.equals(companyId, other.companyId)
+          && Objects.equals(partnerId, other.partnerId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(companyId, partnerId);
+    }
+  }
+}
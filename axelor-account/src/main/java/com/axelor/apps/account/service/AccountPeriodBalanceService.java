@@ -0,0 +1,85 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.db.Period;
+import com.axelor.apps.base.db.Year;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Maintain the debit, credit and currency amount totals of the daybook and accounted move lines per
+ * company, account, partner, period and move status, so balances can be computed without scanning
+ * the move lines.
+ */
+public interface AccountPeriodBalanceService {
+
+  /**
+   * Register a move whose status or lines are about to change. The totals of its lines before the
+   * change are read now, and the difference with the totals after the change is added to the period
+   * balances just before the transaction is committed. The partners of the move are registered for
+   * their balances too.
+   *
+   * @param move the move, before its change is flushed.
+   */
+  void registerMove(Move move);
+
+  /** Apply now the changes of the moves registered in the current transaction. */
+  void applyPendingChanges();
+
+  /**
+   * Recompute every period balance of a company for a period from its move lines, to build them or
+   * to repair them.
+   */
+  void rebuild(Company company, Period period);
+
+  /** Whether the period balances of the company are built and can be used to compute balances. */
+  boolean isBuilt(Company company);
+
+  void setBuilt(Company company, boolean built) throws AxelorException;
+
+  /**
+   * Compute the balance (debit - credit) of an account.
+   *
+   * @param account the account.
+   * @param year the year of the periods to include, null to include every period.
+   * @param statusList the move statuses to include, among daybook and accounted.
+   * @param includeYearClosureMoves whether to include the moves generated by the year closure.
+   */
+  BigDecimal computeBalance(
+      Account account, Year year, List<Integer> statusList, boolean includeYearClosureMoves);
+
+  /**
+   * Compute the balance (debit - credit) of an account for a partner.
+   *
+   * @param partner the partner, null to only include the move lines without partner.
+   * @see #computeBalance(Account, Year, List, boolean)
+   */
+  BigDecimal computePartnerBalance(
+      Account account,
+      Partner partner,
+      Year year,
+      List<Integer> statusList,
+      boolean includeYearClosureMoves);
+}
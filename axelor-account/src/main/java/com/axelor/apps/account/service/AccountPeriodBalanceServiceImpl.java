@@ -0,0 +1,509 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.AccountConfig;
+import com.axelor.apps.account.db.AccountPeriodBalance;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.repo.AccountConfigRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.service.config.AccountConfigService;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.db.Period;
+import com.axelor.apps.base.db.Year;
+import com.axelor.db.JPA;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.persist.Transactional;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import javax.persistence.FlushModeType;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.query.NativeQuery;
+
+@Singleton
+public class AccountPeriodBalanceServiceImpl implements AccountPeriodBalanceService {
+
+  protected static final int FETCH_LIMIT = 1000;
+
+  /** Move statuses of the move lines counted in the period balances. */
+  protected static final List<Integer> STATUS_LIST =
+      Arrays.asList(MoveRepository.STATUS_DAYBOOK, MoveRepository.STATUS_ACCOUNTED);
+
+  /** Namespace of the advisory locks taken on the period balances. */
+  protected static final long LOCK_NAMESPACE = "account_account_period_balance".hashCode();
+
+  /** Moves and period balances registered in the current transaction. */
+  protected final ThreadLocal<PendingChanges> pendingChanges =
+      ThreadLocal.withInitial(PendingChanges::new);
+
+  protected AccountConfigService accountConfigService;
+  protected AccountConfigRepository accountConfigRepository;
+  protected AccountPartnerBalanceService accountPartnerBalanceService;
+
+  @Inject
+  public AccountPeriodBalanceServiceImpl(
+      AccountConfigService accountConfigService,
+      AccountConfigRepository accountConfigRepository,
+      AccountPartnerBalanceService accountPartnerBalanceService) {
+    this.accountConfigService = accountConfigService;
+    this.accountConfigRepository = accountConfigRepository;
+    this.accountPartnerBalanceService = accountPartnerBalanceService;
+  }
+
+  @Override
+  public void registerMove(Move move) {
+    // every change of status goes through here, so the partner balances follow it too
+    accountPartnerBalanceService.registerMove(move);
+
+    PendingChanges pending = pendingChanges.get();
+    if (!pending.processRegistered) {
+      registerProcesses();
+      pending.processRegistered = true;
+    }
+    if (isRegistered(pending, move)) {
+      return;
+    }
+
+    if (move.getId() != null) {
+      pending.moveIdSet.add(move.getId());
+      addTotals(pending.totalMap, Collections.singletonList(move.getId()), BigDecimal.ONE.negate());
+    } else {
+      pending.newMoveList.add(move);
+    }
+    pending.moveList.add(move);
+  }
+
+  /**
+   * Whether the move is already registered in the transaction, in which case the totals of its
+   * lines before the change have already been subtracted.
+   */
+  protected boolean isRegistered(PendingChanges pending, Move move) {
+    for (Iterator<Move> it = pending.newMoveList.iterator(); it.hasNext(); ) {
+      Move newMove = it.next();
+      if (newMove == move) {
+        return true;
+      }
+      if (newMove.getId() != null) {
+        pending.moveIdSet.add(newMove.getId());
+        it.remove();
+      }
+    }
+    return move.getId() != null && pending.moveIdSet.contains(move.getId());
+  }
+
+  /**
+   * Apply the registered changes once the session is flushed, just before the commit, and forget
+   * them when the transaction is over.
+   */
+  protected void registerProcesses() {
+    SessionImplementor session = JPA.em().unwrap(SessionImplementor.class);
+    session
+        .getActionQueue()
+        .registerProcess(
+            (BeforeTransactionCompletionProcess) sessionImplementor -> applyPendingChanges());
+    session
+        .getActionQueue()
+        .registerProcess(
+            (AfterTransactionCompletionProcess)
+                (success, sessionImplementor) -> pendingChanges.remove());
+  }
+
+  @Override
+  public void applyPendingChanges() {
+    PendingChanges pending = pendingChanges.get();
+    if (pending.moveList.isEmpty()) {
+      return;
+    }
+    // sorted, so period balances are always locked in the same order
+    Map<PeriodBalanceKey, BigDecimal[]> totalMap = new TreeMap<>(pending.totalMap);
+    List<Long> moveIdList =
+        pending.moveList.stream()
+            .map(Move::getId)
+            .filter(Objects::nonNull)
+            .distinct()
+            .collect(Collectors.toList());
+    pending.totalMap.clear();
+    pending.moveList.clear();
+    pending.moveIdSet.clear();
+    pending.newMoveList.clear();
+
+    for (List<Long> moveIdSubList : Lists.partition(moveIdList, FETCH_LIMIT)) {
+      addTotals(totalMap, moveIdSubList, BigDecimal.ONE);
+    }
+
+    for (Map.Entry<PeriodBalanceKey, BigDecimal[]> entry : totalMap.entrySet()) {
+      if (Arrays.stream(entry.getValue()).anyMatch(amount -> amount.signum() != 0)) {
+        applyDelta(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Add the debit, credit and currency amount totals of the counted lines of the moves, as they are
+   * in database, multiplied by the sign. Nothing is flushed, so the totals of a move read before
+   * its change is flushed are the ones already counted in the period balances.
+   */
+  @SuppressWarnings("unchecked")
+  protected void addTotals(
+      Map<PeriodBalanceKey, BigDecimal[]> totalMap, List<Long> moveIdList, BigDecimal sign) {
+    Query query =
+        JPA.em()
+            .createQuery(
+                "SELECT move.company.id, self.account.id, partner.id, move.period.id, "
+                    + "move.statusSelect, move.autoYearClosureMove, "
+                    + "SUM(self.debit), SUM(self.credit), SUM(self.currencyAmount) "
+                    + "FROM MoveLine self "
+                    + "JOIN self.move move "
+                    + "LEFT JOIN self.partner partner "
+                    + "WHERE move.id IN (:moveIds) "
+                    + "AND move.statusSelect IN (:statusList) "
+                    + "AND move.ignoreInAccountingOk IS NOT TRUE "
+                    + "GROUP BY move.company.id, self.account.id, partner.id, move.period.id, "
+                    + "move.statusSelect, move.autoYearClosureMove")
+            .setParameter("moveIds", moveIdList)
+            .setParameter("statusList", STATUS_LIST)
+            .setFlushMode(FlushModeType.COMMIT);
+
+    for (Object[] result : (List<Object[]>) query.getResultList()) {
+      if (result[0] == null || result[1] == null || result[3] == null) {
+        continue;
+      }
+      PeriodBalanceKey key =
+          new PeriodBalanceKey(
+              (Long) result[0],
+              (Long) result[1],
+              (Long) result[2],
+              (Long) result[3],
+              (Integer) result[4],
+              Boolean.TRUE.equals(result[5]));
+      BigDecimal[] totals =
+          totalMap.computeIfAbsent(
+              key, k -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO});
+      for (int i = 0; i < totals.length; i++) {
+        if (result[6 + i] != null) {
+          totals[i] = totals[i].add(((BigDecimal) result[6 + i]).multiply(sign));
+        }
+      }
+    }
+  }
+
+  /**
+   * Add the debit, credit and currency amount to the period balance of the key. Only the row of the
+   * key is locked, until the end of the transaction, so the move lines of the period are never read
+   * again. A missing row is inserted under an advisory lock on the key, so concurrent transactions
+   * do not insert it twice.
+   */
+  protected void applyDelta(PeriodBalanceKey key, BigDecimal[] amounts) {
+    if (updateBalance(key, amounts) > 0) {
+      return;
+    }
+
+    JPA.em()
+        .createNativeQuery(
+            "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock(:lockKey)) AS period_balance_lock")
+        .setParameter("lockKey", key.getLockKey())
+        .getSingleResult();
+
+    // the row may have been inserted by a transaction committed while waiting for the lock
+    if (updateBalance(key, amounts) > 0) {
+      return;
+    }
+
+    Query insertQuery =
+        createNativeUpdate(
+                "INSERT INTO account_account_period_balance "
+                    + "(id, version, company, account, partner, period, status_select, "
+                    + "auto_year_closure_move, debit, credit, currency_amount) "
+                    + "VALUES (nextval('account_account_period_balance_seq'), 0, "
+                    + ":company, :account, "
+                    + (key.partnerId == null ? "NULL" : ":partner")
+                    + ", :period, :statusSelect, "
+                    + ":autoYearClosureMove, :debit, :credit, :currencyAmount)")
+            .setParameter("company", key.companyId)
+            .setParameter("account", key.accountId)
+            .setParameter("period", key.periodId)
+            .setParameter("statusSelect", key.statusSelect)
+            .setParameter("autoYearClosureMove", key.autoYearClosureMove)
+            .setParameter("debit", amounts[0])
+            .setParameter("credit", amounts[1])
+            .setParameter("currencyAmount", amounts[2]);
+    if (key.partnerId != null) {
+      insertQuery.setParameter("partner", key.partnerId);
+    }
+    insertQuery.executeUpdate();
+  }
+
+  protected int updateBalance(PeriodBalanceKey key, BigDecimal[] amounts) {
+    Query updateQuery =
+        createNativeUpdate(
+                "UPDATE account_account_period_balance "
+                    + "SET debit = debit + :debit, credit = credit + :credit, "
+                    + "currency_amount = currency_amount + :currencyAmount, "
+                    + "version = version + 1 "
+                    + "WHERE company = :company AND account = :account AND period = :period "
+                    + "AND status_select = :statusSelect "
+                    + "AND auto_year_closure_move = :autoYearClosureMove AND "
+                    + (key.partnerId == null ? "partner IS NULL" : "partner = :partner"))
+            .setParameter("company", key.companyId)
+            .setParameter("account", key.accountId)
+            .setParameter("period", key.periodId)
+            .setParameter("statusSelect", key.statusSelect)
+            .setParameter("autoYearClosureMove", key.autoYearClosureMove)
+            .setParameter("debit", amounts[0])
+            .setParameter("credit", amounts[1])
+            .setParameter("currencyAmount", amounts[2]);
+    if (key.partnerId != null) {
+      updateQuery.setParameter("partner", key.partnerId);
+    }
+    return updateQuery.executeUpdate();
+  }
+
+  /**
+   * Create a native update of the period balances, which only invalidates their cache instead of
+   * the whole second level cache.
+   */
+  protected Query createNativeUpdate(String sql) {
+    return JPA.em()
+        .createNativeQuery(sql)
+        .unwrap(NativeQuery.class)
+        .addSynchronizedEntityClass(AccountPeriodBalance.class);
+  }
+
+  protected String getInsertQuery(String filter) {
+    return "INSERT INTO account_account_period_balance "
+        + "(id, version, company, account, partner, period, status_select, "
+        + "auto_year_closure_move, debit, credit, currency_amount) "
+        + "SELECT nextval('account_account_period_balance_seq'), 0, "
+        + "move.company, line.account, line.partner, move.period, move.status_select, "
+        + "COALESCE(move.auto_year_closure_move, FALSE), "
+        + "COALESCE(SUM(line.debit), 0), COALESCE(SUM(line.credit), 0), "
+        + "COALESCE(SUM(line.currency_amount), 0) "
+        + "FROM account_move_line line "
+        + "JOIN account_move move ON move.id = line.move "
+        + "WHERE move.status_select IN (:statusList) "
+        + "AND COALESCE(move.ignore_in_accounting_ok, FALSE) = FALSE AND "
+        + filter
+        + " GROUP BY move.company, line.account, line.partner, move.period, move.status_select, "
+        + "COALESCE(move.auto_year_closure_move, FALSE)";
+  }
+
+  @Override
+  @Transactional
+  public void rebuild(Company company, Period period) {
+    // waits for the transactions updating period balances and blocks them until the commit
+    createNativeUpdate("LOCK TABLE account_account_period_balance IN SHARE ROW EXCLUSIVE MODE")
+        .executeUpdate();
+
+    createNativeUpdate(
+            "DELETE FROM account_account_period_balance "
+                + "WHERE company = :company AND period = :period")
+        .setParameter("company", company.getId())
+        .setParameter("period", period.getId())
+        .executeUpdate();
+
+    createNativeUpdate(getInsertQuery("move.company = :company AND move.period = :period"))
+        .setParameter("statusList", STATUS_LIST)
+        .setParameter("company", company.getId())
+        .setParameter("period", period.getId())
+        .executeUpdate();
+  }
+
+  @Override
+  public boolean isBuilt(Company company) {
+    if (company == null) {
+      return false;
+    }
+
+    List<Boolean> resultList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.periodBalanceBuilt FROM AccountConfig self "
+                    + "WHERE self.company.id = :companyId",
+                Boolean.class)
+            .setParameter("companyId", company.getId())
+            .getResultList();
+    return !resultList.isEmpty() && Boolean.TRUE.equals(resultList.get(0));
+  }
+
+  @Override
+  @Transactional(rollbackOn = {Exception.class})
+  public void setBuilt(Company company, boolean built) throws AxelorException {
+    AccountConfig accountConfig = accountConfigService.getAccountConfig(company);
+    accountConfig.setPeriodBalanceBuilt(built);
+    accountConfigRepository.save(accountConfig);
+  }
+
+  @Override
+  public BigDecimal computeBalance(
+      Account account, Year year, List<Integer> statusList, boolean includeYearClosureMoves) {
+    return computeBalance(account, false, null, year, statusList, includeYearClosureMoves);
+  }
+
+  @Override
+  public BigDecimal computePartnerBalance(
+      Account account,
+      Partner partner,
+      Year year,
+      List<Integer> statusList,
+      boolean includeYearClosureMoves) {
+    return computeBalance(account, true, partner, year, statusList, includeYearClosureMoves);
+  }
+
+  protected BigDecimal computeBalance(
+      Account account,
+      boolean filterOnPartner,
+      Partner partner,
+      Year year,
+      List<Integer> statusList,
+      boolean includeYearClosureMoves) {
+    if (JPA.em().getTransaction().isActive()) {
+      JPA.flush();
+      applyPendingChanges();
+    }
+
+    List<String> filterList = new ArrayList<>();
+    filterList.add("self.account = :account");
+    filterList.add("self.statusSelect IN (:statusList)");
+    if (year != null) {
+      filterList.add("self.period.year = :year");
+    }
+    if (!includeYearClosureMoves) {
+      filterList.add("self.autoYearClosureMove IS NOT TRUE");
+    }
+    if (filterOnPartner) {
+      filterList.add(partner != null ? "self.partner = :partner" : "self.partner IS NULL");
+    }
+
+    TypedQuery<BigDecimal> query =
+        JPA.em()
+            .createQuery(
+                "SELECT SUM(self.debit - self.credit) FROM AccountPeriodBalance self WHERE "
+                    + String.join(" AND ", filterList),
+                BigDecimal.class)
+            .setParameter("account", account)
+            .setParameter("statusList", statusList);
+    if (year != null) {
+      query.setParameter("year", year);
+    }
+    if (filterOnPartner && partner != null) {
+      query.setParameter("partner", partner);
+    }
+
+    BigDecimal balance = query.getSingleResult();
+    return balance != null ? balance : BigDecimal.ZERO;
+  }
+
+  protected static class PendingChanges {
+    /** Amounts to add to the period balances, starting with the registered moves before change. */
+    protected final Map<PeriodBalanceKey, BigDecimal[]> totalMap = new HashMap<>();
+
+    protected final List<Move> moveList = new ArrayList<>();
+    protected final Set<Long> moveIdSet = new HashSet<>();
+    /** Registered moves that were not persisted yet when registered. */
+    protected final List<Move> newMoveList = new ArrayList<>();
+
+    protected boolean processRegistered;
+  }
+
+  protected static class PeriodBalanceKey implements Comparable<PeriodBalanceKey> {
+
+    protected static final Comparator<PeriodBalanceKey> COMPARATOR =
+        Comparator.comparing((PeriodBalanceKey key) -> key.companyId)
+            .thenComparing(key -> key.accountId)
+            .thenComparing(key -> key.periodId)
+            .thenComparing(key -> key.partnerId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(key -> key.statusSelect)
+            .thenComparing(key -> key.autoYearClosureMove);
+
+    protected final Long companyId;
+    protected final Long accountId;
+    protected final Long partnerId;
+    protected final Long periodId;
+    protected final Integer statusSelect;
+    protected final Boolean autoYearClosureMove;
+
+    protected PeriodBalanceKey(
+        Long companyId,
+        Long accountId,
+        Long partnerId,
+        Long periodId,
+        Integer statusSelect,
+        Boolean autoYearClosureMove) {
+      this.companyId = companyId;
+      this.accountId = accountId;
+      this.partnerId = partnerId;
+      this.periodId = periodId;
+      this.statusSelect = statusSelect;
+      this.autoYearClosureMove = autoYearClosureMove;
+    }
+
+    protected long getLockKey() {
+      return (LOCK_NAMESPACE << 32) | (hashCode() & 0xffffffffL);
+    }
+
+    @Override
+    public int compareTo(PeriodBalanceKey other) {
+      return COMPARATOR.compare(this, other);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof PeriodBalanceKey)) {
+        return false;
+      }
+      PeriodBalanceKey other = (PeriodBalanceKey) o;
+      return Objects.equals(companyId, other.companyId)
+          && Objects.equals(accountId, other.accountId)
+          && Objects.equals(partnerId, other.partnerId)
+          && Objects.equals(periodId, other.periodId)
+          && Objects.equals(statusSelect, other.statusSelect)
+          && Objects.equals(autoYearClosureMove, other.autoYearClosureMove);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(
+          companyId, accountId, partnerId, periodId, statusSelect, autoYearClosureMove);
+    }
+  }
+}
@@ -66,15 +66,18 @@ public class AccountService {
   protected AccountRepository accountRepository;
   protected AccountConfigService accountConfigService;
   protected AnalyticRulesRepository analyticRulesRepository;
+  protected AccountPeriodBalanceService accountPeriodBalanceService;
 
   @Inject
   public AccountService(
       AccountRepository accountRepository,
       AccountConfigService accountConfigService,
-      AnalyticRulesRepository analyticRulesRepository) {
+      AnalyticRulesRepository analyticRulesRepository,
+      AccountPeriodBalanceService accountPeriodBalanceService) {
     this.accountRepository = accountRepository;
     this.accountConfigService = accountConfigService;
     this.analyticRulesRepository = analyticRulesRepository;
+    this.accountPeriodBalanceService = accountPeriodBalanceService;
   }
 
   /**
@@ -96,6 +99,17 @@ public class AccountService {
 
   protected BigDecimal computeBalance(
       Account account, AccountType accountType, Year year, int balanceType) {
+    if (account != null && accountPeriodBalanceService.isBuilt(account.getCompany())) {
+      BigDecimal balance =
+          accountPeriodBalanceService.computeBalance(
+              account,
+              year,
+              Lists.newArrayList(MoveRepository.STATUS_ACCOUNTED, MoveRepository.STATUS_DAYBOOK),
+              true);
+
+      return balanceType == BALANCE_TYPE_CREDIT_BALANCE ? balance.negate() : balance;
+    }
+
     Query balanceQuery =
         JPA.em()
             .createQuery(
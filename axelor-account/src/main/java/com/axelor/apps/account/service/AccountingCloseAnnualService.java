@@ -23,8 +23,10 @@ import com.axelor.apps.account.db.Move;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Year;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -70,8 +72,37 @@ public interface AccountingCloseAnnualService {
       boolean isSimulatedMove)
       throws AxelorException;
 
+  /**
+   * Generate the closing and/or opening moves of an account, or of an account and a partner, for a
+   * balance already computed.
+   *
+   * @return the generated moves, null if the balance is zero.
+   */
+  public List<Move> generateAnnualAccountMoves(
+      Year year,
+      Account account,
+      Partner partner,
+      BigDecimal balance,
+      LocalDate endOfYearDate,
+      LocalDate reportedBalanceDate,
+      String origin,
+      String moveDescription,
+      boolean closeYear,
+      boolean openYear,
+      boolean isSimulatedMove)
+      throws AxelorException;
+
   public List<Long> getAllAccountOfYear(Set<Account> accountSet, Year year);
 
   public List<Pair<Long, Long>> assignPartner(
       List<Long> accountIdList, Year year, boolean allocatePerPartner);
+
+  /**
+   * Compute with one grouped query the balances to report of the accounts, by partner for the
+   * accounts used for partner balance when allocating per partner.
+   *
+   * @return the non zero balances by pair of account id and partner id.
+   */
+  public Map<Pair<Long, Long>, BigDecimal> getClosingBalances(
+      List<Long> accountIdList, Year year, boolean allocatePerPartner);
 }
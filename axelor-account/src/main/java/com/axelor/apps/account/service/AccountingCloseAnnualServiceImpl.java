@@ -36,6 +36,7 @@ import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Year;
 import com.axelor.apps.base.service.BankDetailsService;
 import com.axelor.db.JPA;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.lang.invoke.MethodHandles;
@@ -44,13 +45,17 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import javax.persistence.Query;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,8 +73,11 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
   protected AccountRepository accountRepository;
   protected BankDetailsService bankDetailsService;
   protected MoveSimulateService moveSimulateService;
+  protected AccountPeriodBalanceService accountPeriodBalanceService;
   protected int counter = 0;
 
+  protected static final int FETCH_LIMIT = 1000;
+
   @Inject
   public AccountingCloseAnnualServiceImpl(
       MoveCreateService moveCreateService,
@@ -81,7 +89,8 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
       AccountRepository accountRepository,
       MoveLineCreateService moveLineCreateService,
       BankDetailsService bankDetailsService,
-      MoveSimulateService moveSimulateService) {
+      MoveSimulateService moveSimulateService,
+      AccountPeriodBalanceService accountPeriodBalanceService) {
 
     this.moveCreateService = moveCreateService;
     this.accountConfigService = accountConfigService;
@@ -93,6 +102,7 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
     this.moveLineCreateService = moveLineCreateService;
     this.bankDetailsService = bankDetailsService;
     this.moveSimulateService = moveSimulateService;
+    this.accountPeriodBalanceService = accountPeriodBalanceService;
   }
 
   @Transactional(rollbackOn = {Exception.class})
@@ -110,88 +120,112 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
       boolean isSimulatedMove)
       throws AxelorException {
 
-    List<Move> moveList = new ArrayList<>();
-
-    Move closeYearMove = null;
-    Move openYearMove = null;
-
-    if (closeYear) {
-      closeYearMove =
-          generateCloseOrOpenAnnualAccountMove(
-              year,
-              account,
-              endOfYearDate,
-              endOfYearDate,
-              origin,
-              moveDescription,
-              partner,
-              false,
-              allocatePerPartner,
-              isSimulatedMove);
-
-      if (closeYearMove == null) {
-        return null;
-      }
-      moveList.add(closeYearMove);
-    }
+    return generateAnnualAccountMoves(
+        year,
+        account,
+        partner,
+        computeBalance(year, account, partner, allocatePerPartner),
+        endOfYearDate,
+        reportedBalanceDate,
+        origin,
+        moveDescription,
+        closeYear,
+        openYear,
+        isSimulatedMove);
+  }
 
-    if (openYear) {
-      openYearMove =
-          generateCloseOrOpenAnnualAccountMove(
-              year,
-              account,
-              reportedBalanceDate,
-              endOfYearDate,
-              origin,
-              moveDescription,
-              partner,
-              true,
-              allocatePerPartner,
-              isSimulatedMove);
+  @Transactional(rollbackOn = {Exception.class})
+  public List<Move> generateCloseAnnualAccount(
+      Year year,
+      Account account,
+      Partner partner,
+      LocalDate endOfYearDate,
+      LocalDate reportedBalanceDate,
+      String origin,
+      String moveDescription,
+      boolean closeYear,
+      boolean allocatePerPartner,
+      boolean isSimulatedMove)
+      throws AxelorException {
 
-      if (openYearMove == null) {
-        return null;
-      }
-      moveList.add(openYearMove);
-    }
+    return generateAnnualAccountMoves(
+        year,
+        account,
+        partner,
+        computeBalance(year, account, partner, allocatePerPartner),
+        endOfYearDate,
+        reportedBalanceDate,
+        origin,
+        moveDescription,
+        closeYear,
+        false,
+        isSimulatedMove);
+  }
 
-    if (closeYearMove != null && openYearMove != null) {
-      reconcile(closeYearMove, openYearMove);
-    }
+  @Transactional(rollbackOn = {Exception.class})
+  public List<Move> generateOpenAnnualAccount(
+      Year year,
+      Account account,
+      Partner partner,
+      LocalDate endOfYearDate,
+      LocalDate reportedBalanceDate,
+      String origin,
+      String moveDescription,
+      boolean openYear,
+      boolean allocatePerPartner,
+      boolean isSimulatedMove)
+      throws AxelorException {
 
-    return moveList;
+    return generateAnnualAccountMoves(
+        year,
+        account,
+        partner,
+        computeBalance(year, account, partner, allocatePerPartner),
+        endOfYearDate,
+        reportedBalanceDate,
+        origin,
+        moveDescription,
+        false,
+        openYear,
+        isSimulatedMove);
   }
 
+  @Override
   @Transactional(rollbackOn = {Exception.class})
-  public List<Move> generateCloseAnnualAccount(
+  public List<Move> generateAnnualAccountMoves(
       Year year,
       Account account,
       Partner partner,
+      BigDecimal balance,
       LocalDate endOfYearDate,
       LocalDate reportedBalanceDate,
       String origin,
       String moveDescription,
       boolean closeYear,
-      boolean allocatePerPartner,
+      boolean openYear,
       boolean isSimulatedMove)
       throws AxelorException {
 
     List<Move> moveList = new ArrayList<>();
 
+    if (balance.signum() == 0) {
+      return (closeYear || openYear) ? null : moveList;
+    }
+
     Move closeYearMove = null;
+    Move openYearMove = null;
 
     if (closeYear) {
       closeYearMove =
           generateCloseOrOpenAnnualAccountMove(
-              year,
               account,
+              balance,
               endOfYearDate,
               endOfYearDate,
               origin,
               moveDescription,
               partner,
               false,
-              allocatePerPartner,
               isSimulatedMove);
 
       if (closeYearMove == null) {
@@ -200,39 +234,17 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
       moveList.add(closeYearMove);
     }
 
-    return moveList;
-  }
-
-  @Transactional(rollbackOn = {Exception.class})
-  public List<Move> generateOpenAnnualAccount(
-      Year year,
-      Account account,
-      Partner partner,
-      LocalDate endOfYearDate,
-      LocalDate reportedBalanceDate,
-      String origin,
-      String moveDescription,
-      boolean openYear,
-      boolean allocatePerPartner,
-      boolean isSimulatedMove)
-      throws AxelorException {
-
-    List<Move> moveList = new ArrayList<>();
-
-    Move openYearMove = null;
-
     if (openYear) {
       openYearMove =
           generateCloseOrOpenAnnualAccountMove(
-              year,
               account,
+              balance,
               reportedBalanceDate,
               endOfYearDate,
               origin,
               moveDescription,
               partner,
               true,
-              allocatePerPartner,
               isSimulatedMove);
 
       if (openYearMove == null) {
@@ -241,19 +253,22 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
       moveList.add(openYearMove);
     }
 
+    if (closeYearMove != null && openYearMove != null) {
+      reconcile(closeYearMove, openYearMove);
+    }
+
     return moveList;
   }
 
   protected Move generateCloseOrOpenAnnualAccountMove(
-      Year year,
       Account account,
+      BigDecimal balance,
       LocalDate moveDate,
       LocalDate originDate,
       String origin,
       String moveDescription,
       Partner partner,
       boolean isReverse,
-      boolean allocatePerPartner,
       boolean isSimulatedMove)
       throws AxelorException {
 
@@ -261,12 +276,6 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
 
     AccountConfig accountConfig = accountConfigService.getAccountConfig(company);
 
-    BigDecimal balance = computeBalance(year, account, partner, allocatePerPartner);
-
-    if (balance.compareTo(BigDecimal.ZERO) == 0) {
-      return null;
-    }
-
     Integer functionalOriginSelect = null;
 
     if (isReverse) {
@@ -376,6 +385,17 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
   protected BigDecimal computeBalance(
       Year year, Account account, Partner partner, boolean allocatePerPartner) {
 
+    if (accountPeriodBalanceService.isBuilt(year.getCompany())) {
+      List<Integer> statusList = Collections.singletonList(MoveRepository.STATUS_ACCOUNTED);
+
+      if (allocatePerPartner && account.getUseForPartnerBalance()) {
+        return accountPeriodBalanceService.computePartnerBalance(
+            account, partner, year, statusList, false);
+      }
+
+      return accountPeriodBalanceService.computeBalance(account, year, statusList, false);
+    }
+
     String prepareQuery =
         "select SUM(self.debit - self.credit) FROM MoveLine as self "
             + "WHERE self.move.ignoreInAccountingOk = false AND self.move.period.year = ?1 AND self.account = ?2 "
@@ -421,13 +441,20 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
     Collections.sort(reverseMoveLineSortedList, Comparator.comparing(MoveLine::getCounter));
 
     Iterator<MoveLine> reverseMoveLinesIt = reverseMoveLineSortedList.iterator();
+    List<Triple<MoveLine, MoveLine, BigDecimal>> reconcileTripleList = new ArrayList<>();
 
     for (MoveLine moveLine : moveLineSortedList) {
 
       MoveLine reverseMoveLine = reverseMoveLinesIt.next();
 
-      reconcileService.reconcile(moveLine, reverseMoveLine, false, false);
+      reconcileTripleList.add(
+          Triple.of(
+              moveLine,
+              reverseMoveLine,
+              moveLine.getAmountRemaining().min(reverseMoveLine.getAmountRemaining())));
     }
+
+    reconcileService.reconcileAll(reconcileTripleList, false, false);
   }
 
   public List<Long> getAllAccountOfYear(Set<Account> accountSet, Year year) {
@@ -491,4 +518,67 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
 
     return result;
   }
+
+  @Override
+  public Map<Pair<Long, Long>, BigDecimal> getClosingBalances(
+      List<Long> accountIdList, Year year, boolean allocatePerPartner) {
+
+    Map<Pair<Long, Long>, BigDecimal> balanceMap = new LinkedHashMap<>();
+    boolean usePeriodBalances = accountPeriodBalanceService.isBuilt(year.getCompany());
+
+    for (List<Long> accountIdSubList : Lists.partition(accountIdList, FETCH_LIMIT)) {
+      Set<Long> partnerAccountIdSet =
+          allocatePerPartner ? getPartnerBalanceAccountIds(accountIdSubList) : new HashSet<>();
+
+      List<Object[]> resultList =
+          JPA.em()
+              .createQuery(
+                  usePeriodBalances
+                      ? "SELECT self.account.id, partner.id, SUM(self.debit - self.credit) "
+                          + "FROM AccountPeriodBalance self "
+                          + "LEFT JOIN self.partner partner "
+                          + "WHERE self.period.year = :year AND self.account.id IN (:accountIds) "
+                          + "AND self.statusSelect = :statusSelect "
+                          + "AND self.autoYearClosureMove IS NOT TRUE "
+                          + "GROUP BY self.account.id, partner.id "
+                          + "ORDER BY self.account.id, partner.id"
+                      : "SELECT self.account.id, partner.id, SUM(self.debit - self.credit) "
+                          + "FROM MoveLine self "
+                          + "JOIN self.move move "
+                          + "LEFT JOIN self.partner partner "
+                          + "WHERE move.ignoreInAccountingOk = false AND move.period.year = :year "
+                          + "AND self.account.id IN (:accountIds) "
+                          + "AND move.statusSelect = :statusSelect "
+                          + "AND move.autoYearClosureMove IS NOT TRUE "
+                          + "GROUP BY self.account.id, partner.id "
+                          + "ORDER BY self.account.id, partner.id",
+                  Object[].class)
+              .setParameter("year", year)
+              .setParameter("accountIds", accountIdSubList)
+              .setParameter("statusSelect", MoveRepository.STATUS_ACCOUNTED)
+              .getResultList();
+
+      for (Object[] result : resultList) {
+        Long accountId = (Long) result[0];
+        Long partnerId = partnerAccountIdSet.contains(accountId) ? (Long) result[1] : null;
+        if (result[2] != null) {
+          balanceMap.merge(Pair.of(accountId, partnerId), (BigDecimal) result[2], BigDecimal::add);
+        }
+      }
+    }
+
+    balanceMap.values().removeIf(balance -> balance.signum() == 0);
+    return balanceMap;
+  }
+
+  protected Set<Long> getPartnerBalanceAccountIds(List<Long> accountIdList) {
+    return new HashSet<>(
+        JPA.em()
+            .createQuery(
+                "SELECT self.id FROM Account self "
+                    + "WHERE self.id IN (:accountIds) AND self.useForPartnerBalance IS TRUE",
+                Long.class)
+            .setParameter("accountIds", accountIdList)
+            .getResultList());
+  }
 }
@@ -60,4 +60,13 @@ public interface AccountingCutOffService {
 
   Query<MoveLine> getMoveLines(
       Company company, Journal researchJournal, LocalDate moveDate, int accountingCutOffTypeSelect);
+
+  /**
+   * Enable or disable the bulk mode, used by the cut-off batches. In bulk mode, the accounts, taxes
+   * and rates resolved while generating the cut-off moves are kept in memory until the mode is
+   * disabled.
+   *
+   * @param bulkMode
+   */
+  void setBulkMode(boolean bulkMode);
 }
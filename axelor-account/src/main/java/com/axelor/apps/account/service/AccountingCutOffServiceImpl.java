@@ -51,6 +51,8 @@ import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.service.CurrencyService;
 import com.axelor.apps.base.service.UnitConversionService;
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
 import com.axelor.db.Query;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
@@ -59,9 +61,11 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 
 public class AccountingCutOffServiceImpl implements AccountingCutOffService {
@@ -87,6 +91,14 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
   protected TaxAccountToolService taxAccountToolService;
   protected MoveLineRepository moveLineRepository;
   protected int counter = 0;
+  protected boolean bulkMode;
+  protected Map<List<Object>, Object> bulkCacheMap = new HashMap<>();
+
+  @FunctionalInterface
+  protected interface CutOffValueSupplier<T> {
+
+    T get() throws AxelorException;
+  }
 
   @Inject
   public AccountingCutOffServiceImpl(
@@ -213,6 +225,55 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
     return moveLineQuery.order("id");
   }
 
+  @Override
+  public void setBulkMode(boolean bulkMode) {
+    this.bulkMode = bulkMode;
+    bulkCacheMap.clear();
+  }
+
+  /**
+   * In bulk mode, compute the value only once for the given keys. Records used as keys are
+   * identified by their id so that they still match after the persistence context is cleared.
+   */
+  @SuppressWarnings("unchecked")
+  protected <T> T getCachedValue(CutOffValueSupplier<T> supplier, Object... keys)
+      throws AxelorException {
+    if (!bulkMode) {
+      return supplier.get();
+    }
+
+    List<Object> key =
+        Arrays.stream(keys)
+            .map(it -> it instanceof Model ? ((Model) it).getId() : it)
+            .collect(Collectors.toList());
+
+    if (bulkCacheMap.containsKey(key)) {
+      return (T) bulkCacheMap.get(key);
+    }
+
+    T value = supplier.get();
+    bulkCacheMap.put(key, value);
+    return value;
+  }
+
+  /** Same as {@link #getCachedValue} for records, which are kept by id between two chunks. */
+  protected <T extends Model> T getCachedRecord(
+      Class<T> klass, CutOffValueSupplier<T> supplier, Object... keys) throws AxelorException {
+    if (!bulkMode) {
+      return supplier.get();
+    }
+
+    Long id =
+        this.getCachedValue(
+            () -> {
+              T record = supplier.get();
+              return record != null ? record.getId() : null;
+            },
+            keys);
+
+    return id != null ? JPA.find(klass, id) : null;
+  }
+
   @Override
   @Transactional(rollbackOn = {Exception.class})
   public List<Move> generateCutOffMovesFromMove(
@@ -375,8 +436,14 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
     Map<Account, MoveLine> cutOffMoveLineMap = new HashMap<>();
 
     BigDecimal currencyRate =
-        currencyService.getCurrencyConversionRate(
-            move.getCurrency(), move.getCompanyCurrency(), moveDate);
+        this.getCachedValue(
+            () ->
+                currencyService.getCurrencyConversionRate(
+                    move.getCurrency(), move.getCompanyCurrency(), moveDate),
+            "currencyRate",
+            move.getCurrency(),
+            move.getCompanyCurrency(),
+            moveDate);
 
     // Sorting so that move lines with analytic move lines are computed first
     List<MoveLine> sortedMoveLineList = new ArrayList<>(move.getMoveLineList());
@@ -574,7 +641,13 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
     Tax tax = taxLine.getTax();
 
     Account taxAccount =
-        taxAccountService.getVatRegulationAccount(tax, move.getCompany(), isPurchase);
+        this.getCachedRecord(
+            Account.class,
+            () -> taxAccountService.getVatRegulationAccount(tax, move.getCompany(), isPurchase),
+            "vatRegulationAccount",
+            tax,
+            move.getCompany(),
+            isPurchase);
 
     BigDecimal currencyTaxAmount =
         InvoiceLineManagement.computeAmount(
@@ -584,12 +657,19 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
     currencyTaxAmount = moveToolService.computeCurrencyAmountSign(currencyTaxAmount, isDebit);
 
     Integer vatSystem =
-        taxAccountToolService.calculateVatSystem(
+        this.getCachedValue(
+            () ->
+                taxAccountToolService.calculateVatSystem(
+                    move.getPartner(),
+                    move.getCompany(),
+                    productMoveLine.getAccount(),
+                    isPurchase,
+                    !isPurchase),
+            "vatSystem",
             move.getPartner(),
             move.getCompany(),
             productMoveLine.getAccount(),
-            isPurchase,
-            !isPurchase);
+            isPurchase);
 
     MoveLine moveLine = this.getMoveLineWithSameTax(move, taxAccount, taxLine, vatSystem);
 
@@ -664,8 +744,21 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
     }
 
     AnalyticDistributionTemplate analyticDistributionTemplate =
-        analyticMoveLineService.getAnalyticDistributionTemplate(
-            move.getPartner(), product, move.getCompany(), move.getTradingName(), isPurchase);
+        this.getCachedRecord(
+            AnalyticDistributionTemplate.class,
+            () ->
+                analyticMoveLineService.getAnalyticDistributionTemplate(
+                    move.getPartner(),
+                    product,
+                    move.getCompany(),
+                    move.getTradingName(),
+                    isPurchase),
+            "analyticDistributionTemplate",
+            move.getPartner(),
+            product,
+            move.getCompany(),
+            move.getTradingName(),
+            isPurchase);
 
     moveLine.setAnalyticDistributionTemplate(analyticDistributionTemplate);
 
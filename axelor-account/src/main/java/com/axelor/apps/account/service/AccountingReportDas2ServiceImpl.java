@@ -33,6 +33,7 @@ import com.axelor.db.JPA;
 import com.axelor.inject.Beans;
 import com.axelor.meta.db.MetaFile;
 import com.axelor.utils.StringHTMLListBuilder;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.io.IOException;
@@ -44,6 +45,8 @@ import org.apache.commons.collections.CollectionUtils;
 
 public class AccountingReportDas2ServiceImpl implements AccountingReportDas2Service {
 
+  protected static final int PARTNER_FETCH_LIMIT = 1000;
+
   protected AccountingReportRepository accountingReportRepo;
   protected AccountConfigService accountConfigService;
   protected AccountingReportMoveLineService accountingReportMoveLineService;
@@ -69,6 +72,7 @@ public class AccountingReportDas2ServiceImpl implements AccountingReportDas2Serv
       throws AxelorException {
 
     processAccountingReportMoveLines(accountingReport);
+    accountingReport = accountingReportRepo.find(accountingReport.getId());
 
     return accountingReportPrintService.print(accountingReport);
   }
@@ -93,7 +97,7 @@ public class AccountingReportDas2ServiceImpl implements AccountingReportDas2Serv
 
   protected void processAccountingReportMoveLines(AccountingReport accountingReport) {
 
-    accountingReport.clearAccountingReportMoveLineList();
+    accountingReportMoveLineService.removeAccountingReportMoveLines(accountingReport);
 
     List<Long> paymentMoveLineDistributioneIds = getAccountingReportDas2Pieces(accountingReport);
     accountingReportMoveLineService.createAccountingReportMoveLines(
@@ -246,10 +250,15 @@ public class AccountingReportDas2ServiceImpl implements AccountingReportDas2Serv
             .setParameter("company", accountingReport.getCompany())
             .setParameter("currency", accountingReport.getCurrency())
             .setParameter("accountingReport", accountingReport)
-            .setParameter("reportType", accountingReport.getReportType().getTypeSelect())
-            .setParameter("partnerIds", partnerIds);
+            .setParameter("reportType", accountingReport.getReportType().getTypeSelect());
+
+    List<Long> paymentMoveLineDistributionIds = new ArrayList<>();
+    for (List<Long> partnerIdList : Lists.partition(partnerIds, PARTNER_FETCH_LIMIT)) {
+      paymentMoveLineDistributionIds.addAll(
+          query.setParameter("partnerIds", partnerIdList).getResultList());
+    }
 
-    return query.getResultList();
+    return paymentMoveLineDistributionIds;
   }
 
   protected MetaFile launchN4DSExport(AccountingReport accountingExport)
@@ -35,9 +35,14 @@ public interface AccountingReportMoveLineService {
   public void createAccountingReportMoveLine(
       PaymentMoveLineDistribution paymentMoveLineDistribution, AccountingReport accountingReport);
 
+  public void removeAccountingReportMoveLines(AccountingReport accountingReport);
+
   public void processExportMoveLine(
       AccountingReportMoveLine reportMoveLine, AccountingReport accountingExport);
 
+  public void processExportMoveLines(
+      AccountingReport accountingReport, AccountingReport accountingExport);
+
   public List<Partner> getDasToDeclarePartnersFromAccountingExport(
       AccountingReport accountingExport);
 
@@ -50,13 +50,13 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.persistence.Query;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 
 public class AccountingReportMoveLineServiceImpl implements AccountingReportMoveLineService {
 
   protected static final String DATE_FORMAT_DDMMYYYY = "ddMMyyyy";
+  protected static final int FETCH_LIMIT = 1000;
 
   protected AccountingReportMoveLineRepository accountingReportMoveLineRepo;
 
@@ -90,13 +90,27 @@ public class AccountingReportMoveLineServiceImpl implements AccountingReportMove
   public void createAccountingReportMoveLines(
       List<Long> paymentMoveLineDistributioneIds, AccountingReport accountingReport) {
 
-    for (Long id : paymentMoveLineDistributioneIds) {
-      PaymentMoveLineDistribution paymentMoveLineDistribution =
-          paymentMoveLineDistributionRepo.find(id);
-      if (paymentMoveLineDistribution != null) {
-        createAccountingReportMoveLine(
-            paymentMoveLineDistribution, accountingReportRepo.find(accountingReport.getId()));
-      }
+    for (List<Long> idList : Lists.partition(paymentMoveLineDistributioneIds, FETCH_LIMIT)) {
+      createAccountingReportMoveLineChunk(idList, accountingReport.getId());
+      JPA.clear();
+    }
+  }
+
+  @Transactional
+  protected void createAccountingReportMoveLineChunk(
+      List<Long> paymentMoveLineDistributionIdList, Long accountingReportId) {
+    AccountingReport accountingReport = accountingReportRepo.find(accountingReportId);
+    List<PaymentMoveLineDistribution> paymentMoveLineDistributionList =
+        paymentMoveLineDistributionRepo
+            .all()
+            .filter("self.id IN (:idList)")
+            .bind("idList", paymentMoveLineDistributionIdList)
+            .order("id")
+            .fetch();
+
+    for (PaymentMoveLineDistribution paymentMoveLineDistribution :
+        paymentMoveLineDistributionList) {
+      createAccountingReportMoveLine(paymentMoveLineDistribution, accountingReport);
     }
   }
 
@@ -112,6 +126,32 @@ public class AccountingReportMoveLineServiceImpl implements AccountingReportMove
     accountingReportMoveLineRepo.save(accountingReportMoveLine);
   }
 
+  @Override
+  @Transactional
+  public void removeAccountingReportMoveLines(AccountingReport accountingReport) {
+    JPA.em()
+        .createQuery(
+            "DELETE FROM AccountingReportMoveLine self "
+                + "WHERE self.accountingReport.id = :accountingReportId")
+        .setParameter("accountingReportId", accountingReport.getId())
+        .executeUpdate();
+  }
+
+  @Override
+  @Transactional
+  public void processExportMoveLines(
+      AccountingReport accountingReport, AccountingReport accountingExport) {
+    JPA.flush();
+    JPA.em()
+        .createQuery(
+            "UPDATE AccountingReportMoveLine self SET self.accountingExport = :accountingExport, "
+                + "self.version = self.version + 1 "
+                + "WHERE self.accountingReport.id = :accountingReportId")
+        .setParameter("accountingExport", accountingExport)
+        .setParameter("accountingReportId", accountingReport.getId())
+        .executeUpdate();
+  }
+
   @Override
   @Transactional
   public void processExportMoveLine(
@@ -499,22 +539,21 @@ public class AccountingReportMoveLineServiceImpl implements AccountingReportMove
   @Override
   @Transactional
   public void updateN4DSExportStatus(AccountingReport accountingExport) {
-
-    int i = 0;
-    List<AccountingReportMoveLine> accountingReportMoveLines =
-        getDasToDeclareLinesFromAccountingExport(accountingExport);
-    if (CollectionUtils.isEmpty(accountingReportMoveLines)) {
-      return;
-    }
-
-    for (AccountingReportMoveLine accountingReportMoveLine : accountingReportMoveLines) {
-      accountingReportMoveLineRepo.find(accountingReportMoveLine.getId());
-      accountingReportMoveLine.setExported(true);
-      accountingReportMoveLineRepo.save(accountingReportMoveLine);
-      i++;
-      if (i % 10 == 0) {
-        JPA.clear();
-      }
-    }
+    JPA.em()
+        .createQuery(
+            "UPDATE AccountingReportMoveLine self SET self.exported = true, "
+                + "self.version = self.version + 1 "
+                + "WHERE self.id IN (SELECT line.id FROM AccountingReportMoveLine line "
+                + "JOIN line.paymentMoveLineDistribution pmvld "
+                + "JOIN pmvld.moveLine moveLine "
+                + "JOIN moveLine.account account "
+                + "JOIN account.serviceType serviceType "
+                + "WHERE line.accountingExport.id = :accountingExportId "
+                + "AND line.excludeFromDas2Report != true "
+                + "AND line.exported != true "
+                + "AND serviceType.isDas2Declarable != true "
+                + "AND serviceType.n4dsCode IS NULL)")
+        .setParameter("accountingExportId", accountingExport.getId())
+        .executeUpdate();
   }
 }
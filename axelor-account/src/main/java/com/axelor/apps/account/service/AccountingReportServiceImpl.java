@@ -21,7 +21,6 @@ package com.axelor.apps.account.service;
 import com.axelor.apps.account.db.Account;
 import com.axelor.apps.account.db.AccountConfig;
 import com.axelor.apps.account.db.AccountingReport;
-import com.axelor.apps.account.db.AccountingReportMoveLine;
 import com.axelor.apps.account.db.AccountingReportType;
 import com.axelor.apps.account.db.JournalType;
 import com.axelor.apps.account.db.repo.AccountRepository;
@@ -928,12 +927,9 @@ public class AccountingReportServiceImpl implements AccountingReportService {
     accountingExport.setDateTo(accountingReport.getDateTo());
     accountingExport.setMinAmountExcl(accountingReport.getMinAmountExcl());
 
-    for (AccountingReportMoveLine reportMoveLine :
-        accountingReport.getAccountingReportMoveLineList()) {
-      accountingReportMoveLineService.processExportMoveLine(reportMoveLine, accountingExport);
-    }
-
     setStatus(accountingExport);
+    accountingReportMoveLineService.processExportMoveLines(accountingReport, accountingExport);
+
     return accountingExport;
   }
 
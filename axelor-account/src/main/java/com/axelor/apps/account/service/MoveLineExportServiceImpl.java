@@ -20,10 +20,8 @@ package com.axelor.apps.account.service;
 
 import com.axelor.apps.account.db.AccountingReport;
 import com.axelor.apps.account.db.AccountingReportType;
-import com.axelor.apps.account.db.Journal;
 import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.MoveLine;
-import com.axelor.apps.account.db.ReconcileGroup;
 import com.axelor.apps.account.db.repo.AccountRepository;
 import com.axelor.apps.account.db.repo.AccountingReportRepository;
 import com.axelor.apps.account.db.repo.JournalRepository;
@@ -50,22 +48,33 @@ import com.axelor.meta.db.MetaFile;
 import com.axelor.utils.file.CsvTool;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.regex.Pattern;
 import javax.persistence.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,6 +98,20 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
 
   protected static final String DATE_FORMAT_YYYYMMDD = "yyyyMMdd";
   protected static final String DATE_FORMAT_YYYYMMDDHHMMSS = "yyyyMMddHHmmss";
+  protected static final DateTimeFormatter DATE_FORMATTER_YYYYMMDD =
+      DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD);
+  protected static final Pattern CSV_CELL_SANITIZE_PATTERN =
+      Pattern.compile("(\r\n|\n\r|\r|\n|\\|)");
+
+  protected static final int FETCH_LIMIT = 10000;
+  protected static final int UPDATE_LIMIT = 1000;
+
+  /** Sort of the FEC export: move accounting date, line date, line name and line id. */
+  protected static final List<String> EXPORT_SORT_LIST =
+      Arrays.asList("move.accountingDate", "self.date", "self.name", "self.id");
+
+  protected static final List<Integer> EXPORT_SORT_INDEXES = Arrays.asList(17, 3, 21, 22);
+  protected static final int EXPORT_MOVE_ID_INDEX = 20;
 
   @Inject
   public MoveLineExportServiceImpl(
@@ -116,44 +139,39 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
     this.appAccountService = appAccountService;
   }
 
-  public void updateMoveList(
-      List<Move> moveList,
+  /**
+   * Mark the exported moves with bulk updates.
+   *
+   * @param moveIdSet the ids of the exported moves
+   * @param accountingReport the export
+   * @param localDate the export date
+   * @param exportNumber the export number
+   */
+  protected void updateMoveList(
+      Set<Long> moveIdSet,
       AccountingReport accountingReport,
       LocalDate localDate,
       String exportNumber) {
 
-    int i = 0;
-
-    int moveListSize = moveList.size();
-
-    for (Move move : moveList) {
-
-      this.updateMove(
-          moveRepo.find(move.getId()),
-          accountingReportRepo.find(accountingReport.getId()),
-          localDate,
-          exportNumber);
-
-      if (i % 10 == 0) {
-        JPA.clear();
-      }
-      if (i++ % 100 == 0) {
-        log.debug("Process : {} / {}", i, moveListSize);
-      }
+    int count = 0;
+
+    for (List<Long> moveIdList : Iterables.partition(moveIdSet, UPDATE_LIMIT)) {
+      count +=
+          JPA.em()
+              .createQuery(
+                  "UPDATE Move self SET self.exportNumber = :exportNumber, "
+                      + "self.exportDate = :exportDate, self.accountingOk = true, "
+                      + "self.accountingReport = :accountingReport, "
+                      + "self.version = self.version + 1 "
+                      + "WHERE self.id IN (:moveIdList)")
+              .setParameter("exportNumber", exportNumber)
+              .setParameter("exportDate", localDate)
+              .setParameter("accountingReport", accountingReport)
+              .setParameter("moveIdList", moveIdList)
+              .executeUpdate();
     }
-  }
-
-  @Transactional
-  public Move updateMove(
-      Move move, AccountingReport accountingReport, LocalDate localDate, String exportNumber) {
-
-    move.setExportNumber(exportNumber);
-    move.setExportDate(localDate);
-    move.setAccountingOk(true);
-    move.setAccountingReport(accountingReport);
-    moveRepo.save(move);
 
-    return move;
+    log.debug("Exported moves updated : {}", count);
   }
 
   public BigDecimal getSumDebit(String queryFilter, List<? extends Move> moveList) {
@@ -332,6 +350,9 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
   /**
    * Méthode réalisant l'export des FEC (Fichiers des écritures Comptables)
    *
+   * <p>Les lignes sont lues par pages (pagination par clé sur le tri de l'export) et écrites au fil
+   * de l'eau dans le fichier.
+   *
    * @throws AxelorException
    * @throws IOException
    */
@@ -341,11 +362,51 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
       throws AxelorException, IOException {
 
     log.info("In Export type 1000 service : ");
-    List<String[]> allMoveLineData = new ArrayList<>();
     Company company = accountingReport.getCompany();
 
     LocalDate interfaceDate = accountingReport.getDate();
 
+    String fileName = this.setFileName(accountingReport);
+    String filePath = getExportFilePath(company);
+
+    String moveLineQueryStr = getExportMoveLineFilter(accountingReport, administration, replay);
+    Set<Long> moveIdSet = new HashSet<>();
+    long count = 0;
+
+    log.debug("Full path to export : {}{}", filePath, fileName);
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(Paths.get(filePath, fileName), StandardCharsets.UTF_8)) {
+      writeCsvLine(writer, this.createHeaderForJournalEntry());
+
+      List<Object[]> rowList;
+      Object[] lastRow = null;
+
+      while (!(rowList = fetchExportMoveLineRows(moveLineQueryStr, lastRow)).isEmpty()) {
+        for (Object[] row : rowList) {
+          moveIdSet.add((Long) row[EXPORT_MOVE_ID_INDEX]);
+          writeCsvLine(writer, createItemForExportMoveLine(row));
+        }
+
+        count += rowList.size();
+        lastRow = rowList.get(rowList.size() - 1);
+        log.debug("Exported move lines : {}", count);
+      }
+    }
+
+    // The moves are marked once every line has been read, as the non administration export only
+    // reads the lines of the moves which are not marked yet.
+    if (!administration) {
+      String exportNumber = this.getSaleExportNumber(company);
+      this.updateMoveList(moveIdSet, accountingReport, interfaceDate, exportNumber);
+    }
+
+    return attachExportFile(filePath, fileName, accountingReport);
+  }
+
+  protected String getExportMoveLineFilter(
+      AccountingReport accountingReport, boolean administration, boolean replay) {
+    Company company = accountingReport.getCompany();
+
     String moveLineQueryStr =
         String.format("(self.move.statusSelect = %s", MoveRepository.STATUS_ACCOUNTED);
     if (!administration) {
@@ -394,101 +455,131 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
       }
     }
 
-    com.axelor.db.Query<MoveLine> moveLineQuery =
-        moveLineRepo
-            .all()
-            .filter(moveLineQueryStr)
-            .order("move.accountingDate")
-            .order("date")
-            .order("name");
-
-    int offset = 0;
-    List<Long> moveLineIdList;
-    List<Move> moveList = new ArrayList<>();
-
-    while (!(moveLineIdList =
-            moveLineQuery
-                .fetchStream(10000, offset)
-                .map(MoveLine::getId)
-                .collect(Collectors.toList()))
-        .isEmpty()) {
-
-      for (Long id : moveLineIdList) {
-        MoveLine moveLine = moveLineRepo.find(id);
-        offset++;
-        allMoveLineData.add(createItemForExportMoveLine(moveLine, moveList));
-      }
+    return moveLineQueryStr;
+  }
+
+  /**
+   * Fetch the next page of exported move lines, as projections, following the given row.
+   *
+   * @param moveLineQueryStr the export filter
+   * @param lastRow the last row of the previous page, null for the first page
+   * @return the rows of the page, see {@link #createItemForExportMoveLine(Object[])}
+   */
+  @SuppressWarnings("unchecked")
+  protected List<Object[]> fetchExportMoveLineRows(String moveLineQueryStr, Object[] lastRow) {
+    Map<String, Object> params = new HashMap<>();
+    String filter = moveLineQueryStr;
+
+    if (lastRow != null) {
+      filter =
+          String.format(
+              "(%s) AND %s",
+              filter,
+              getKeysetFilter(
+                  EXPORT_SORT_LIST,
+                  EXPORT_SORT_INDEXES.stream().map(i -> lastRow[i]).toArray(),
+                  params));
+    }
 
-      JPA.clear();
+    Query query =
+        JPA.em()
+            .createQuery(
+                "SELECT journal.code, journal.name, move.reference, self.date, "
+                    + "account.code, account.name, partner.partnerSeq, partner.name, "
+                    + "accountType.isManageSubsidiaryAccount, self.origin, self.originDate, "
+                    + "self.description, self.debit, self.credit, reconcileGroup.code, "
+                    + "reconcileGroup.statusSelect, reconcileGroup.letteringDateTime, "
+                    + "move.accountingDate, self.currencyAmount, currency.codeISO, "
+                    + "move.id, self.name, self.id "
+                    + "FROM MoveLine self "
+                    + "JOIN self.move move "
+                    + "JOIN move.journal journal "
+                    + "JOIN self.account account "
+                    + "LEFT JOIN account.accountType accountType "
+                    + "LEFT JOIN self.partner partner "
+                    + "LEFT JOIN self.reconcileGroup reconcileGroup "
+                    + "LEFT JOIN move.currency currency "
+                    + "WHERE "
+                    + filter
+                    + " ORDER BY "
+                    + String.join(", ", EXPORT_SORT_LIST))
+            .setMaxResults(FETCH_LIMIT);
+    params.forEach(query::setParameter);
+
+    return query.getResultList();
+  }
 
-      if (!administration) {
-        String exportNumber = this.getSaleExportNumber(company);
-        this.updateMoveList(moveList, accountingReport, interfaceDate, exportNumber);
-      }
+  /**
+   * Build the condition selecting the rows following the given sort values. Null values are sorted
+   * last, as done by the database for an ascending order, and the last sort expression must be
+   * unique and not null.
+   *
+   * @param sortList the sort expressions
+   * @param lastValues the sort values of the last read row
+   * @param params the map filled with the parameters of the condition
+   * @return the condition
+   */
+  protected String getKeysetFilter(
+      List<String> sortList, Object[] lastValues, Map<String, Object> params) {
+    int last = sortList.size() - 1;
+    String filter = String.format("%s > :keyset%d", sortList.get(last), last);
+    params.put("keyset" + last, lastValues[last]);
 
-      moveList.clear();
-    }
+    for (int i = last - 1; i >= 0; i--) {
+      String sort = sortList.get(i);
 
-    accountingReport = accountingReportRepo.find(accountingReport.getId());
+      if (lastValues[i] == null) {
+        filter = String.format("(%s IS NULL AND %s)", sort, filter);
+      } else {
+        filter =
+            String.format(
+                "(%1$s > :keyset%2$d OR %1$s IS NULL OR (%1$s = :keyset%2$d AND %3$s))",
+                sort, i, filter);
+        params.put("keyset" + i, lastValues[i]);
+      }
+    }
 
-    String fileName = this.setFileName(accountingReport);
-    accountingReportRepo.save(accountingReport);
-    return writeMoveLineToCsvFile(
-        company, fileName, this.createHeaderForJournalEntry(), allMoveLineData, accountingReport);
+    return filter;
   }
 
-  protected String[] createItemForExportMoveLine(MoveLine moveLine, List<Move> moveList) {
+  protected String[] createItemForExportMoveLine(Object[] row) {
     String[] items = new String[18];
-    Move move = moveLine.getMove();
-    if (!moveList.contains(move)) {
-      moveList.add(move);
-    }
-    Journal journal = move.getJournal();
-    items[0] = journal.getCode();
-    items[1] = journal.getName();
-    items[2] = moveLine.getMove().getReference();
-    items[3] = moveLine.getDate().format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
-    items[4] = moveLine.getAccount().getCode();
-    items[5] = moveLine.getAccount().getName();
+    items[0] = (String) row[0];
+    items[1] = (String) row[1];
+    items[2] = (String) row[2];
+    items[3] = ((LocalDate) row[3]).format(DATE_FORMATTER_YYYYMMDD);
+    items[4] = (String) row[4];
+    items[5] = (String) row[5];
     items[6] = "";
     items[7] = "";
-    Partner partner = moveLine.getPartner();
-    if (partner != null && moveLine.getAccount().getAccountType().getIsManageSubsidiaryAccount()) {
-      items[6] = partner.getPartnerSeq();
-      items[7] = partner.getName();
+    if (row[6] != null && Boolean.TRUE.equals(row[8])) {
+      items[6] = (String) row[6];
+      items[7] = (String) row[7];
     }
-    String origin = moveLine.getOrigin();
+    String origin = (String) row[9];
     items[8] = Strings.isNullOrEmpty(origin) ? "NA" : origin;
-    if (moveLine.getOriginDate() != null) {
-      items[9] = moveLine.getOriginDate().format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
+    if (row[10] != null) {
+      items[9] = ((LocalDate) row[10]).format(DATE_FORMATTER_YYYYMMDD);
     }
-    items[10] = moveLine.getDescription();
-    items[11] = moveLine.getDebit().toString().replace('.', ',');
-    items[12] = moveLine.getCredit().toString().replace('.', ',');
-
-    ReconcileGroup reconcileGroup = moveLine.getReconcileGroup();
-    if (reconcileGroup != null
-        && reconcileGroup.getStatusSelect() == ReconcileGroupRepository.STATUS_BALANCED) {
-      items[13] = reconcileGroup.getCode();
-      items[14] =
-          reconcileGroup
-              .getLetteringDateTime()
-              .format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
+    items[10] = (String) row[11];
+    items[11] = row[12].toString().replace('.', ',');
+    items[12] = row[13].toString().replace('.', ',');
+
+    if (row[14] != null
+        && Integer.valueOf(ReconcileGroupRepository.STATUS_BALANCED).equals(row[15])) {
+      items[13] = (String) row[14];
+      items[14] = ((LocalDateTime) row[16]).format(DATE_FORMATTER_YYYYMMDD);
     } else {
       items[13] = "";
       items[14] = "";
     }
 
-    if (move.getAccountingDate() != null) {
-      items[15] =
-          move.getAccountingDate().format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
+    if (row[17] != null) {
+      items[15] = ((LocalDate) row[17]).format(DATE_FORMATTER_YYYYMMDD);
     }
 
-    items[16] = moveLine.getCurrencyAmount().toString().replace('.', ',');
-
-    if (move.getCurrency() != null) {
-      items[17] = move.getCurrency().getCodeISO();
-    }
+    items[16] = row[18].toString().replace('.', ',');
+    items[17] = (String) row[19];
     return items;
   }
 
@@ -500,28 +591,54 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
       AccountingReport accountingReport)
       throws AxelorException, IOException {
 
-    String filePath = accountConfigService.getAccountConfig(company).getExportPath();
-    String dataExportDir = appAccountService.getDataExportDir();
+    String filePath = getExportFilePath(company);
 
     for (String[] items : allMoveData) {
       for (int i = 0; i < items.length; i++) {
-        if (items[i] != null) {
-          items[i] = items[i].replaceAll("(\r\n|\n\r|\r|\n|\\|)", " ");
-        }
+        items[i] = sanitizeCsvCell(items[i]);
       }
     }
 
+    log.debug("Full path to export : {}{}", filePath, fileName);
+    CsvTool.csvWriter(filePath, fileName, '|', columnHeader, allMoveData);
+    return attachExportFile(filePath, fileName, accountingReport);
+  }
+
+  protected String getExportFilePath(Company company) throws AxelorException {
+    String filePath = accountConfigService.getAccountConfig(company).getExportPath();
+    String dataExportDir = appAccountService.getDataExportDir();
+
     filePath = filePath == null ? dataExportDir : dataExportDir + filePath;
     new File(filePath).mkdirs();
+    return filePath;
+  }
 
-    log.debug("Full path to export : {}{}", filePath, fileName);
-    CsvTool.csvWriter(filePath, fileName, '|', columnHeader, allMoveData);
+  protected MetaFile attachExportFile(
+      String filePath, String fileName, AccountingReport accountingReport) throws IOException {
     Path path = Paths.get(filePath, fileName);
     try (InputStream is = new FileInputStream(path.toFile())) {
       return Beans.get(MetaFiles.class).attach(is, fileName, accountingReport).getMetaFile();
     }
   }
 
+  /** Write a line the way the CSV export does: separated by pipes, without quotes. */
+  protected void writeCsvLine(Writer writer, String[] items) throws IOException {
+    for (int i = 0; i < items.length; i++) {
+      if (i > 0) {
+        writer.write('|');
+      }
+      String item = sanitizeCsvCell(items[i]);
+      if (item != null) {
+        writer.write(item);
+      }
+    }
+    writer.write('\n');
+  }
+
+  protected String sanitizeCsvCell(String item) {
+    return item == null ? null : CSV_CELL_SANITIZE_PATTERN.matcher(item).replaceAll(" ");
+  }
+
   public String[] createHeaderForJournalEntry() {
     return ("JournalCode;"
             + "JournalLib;"
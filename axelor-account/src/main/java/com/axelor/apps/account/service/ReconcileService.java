@@ -27,6 +27,7 @@ import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Partner;
 import java.math.BigDecimal;
 import java.util.List;
+import org.apache.commons.lang3.tuple.Triple;
 
 public interface ReconcileService {
 
@@ -69,6 +70,19 @@ public interface ReconcileService {
       boolean updateInvoicePayments)
       throws AxelorException;
 
+  /**
+   * Create and confirm a reconcile for each (debit move line, credit move line, amount) triple, in
+   * a single transaction. The invoices and the partner accounting situations impacted are
+   * recomputed once at the end instead of after each reconcile.
+   *
+   * @return the confirmed reconciles
+   */
+  List<Reconcile> reconcileAll(
+      List<Triple<MoveLine, MoveLine, BigDecimal>> reconcileTripleList,
+      boolean canBeZeroBalanceOk,
+      boolean updateInvoicePayments)
+      throws AxelorException;
+
   public void unreconcile(Reconcile reconcile) throws AxelorException;
 
   // public void canBeZeroBalance(Reconcile reconcile) throws AxelorException;
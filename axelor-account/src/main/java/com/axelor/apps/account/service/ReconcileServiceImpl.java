@@ -61,6 +61,7 @@ import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.common.ObjectUtils;
+import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
@@ -75,11 +76,16 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.tuple.Triple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -111,6 +117,16 @@ public class ReconcileServiceImpl implements ReconcileService {
   protected MoveLineCreateService moveLineCreateService;
   protected MoveValidateService moveValidateService;
 
+  /**
+   * Whether the invoices and the partner accounting situations are recomputed at the end of {@link
+   * #reconcileAll} instead of after each reconcile.
+   */
+  protected boolean deferredUpdate;
+
+  protected Set<Long> deferredInvoiceIdSet = new LinkedHashSet<>();
+  protected Set<Long> deferredAmountPaidInvoiceIdSet = new LinkedHashSet<>();
+  protected Map<Long, Set<Long>> deferredPartnerIdSetMap = new LinkedHashMap<>();
+
   @Inject
   public ReconcileServiceImpl(
       MoveToolService moveToolService,
@@ -386,12 +402,24 @@ public class ReconcileServiceImpl implements ReconcileService {
 
       Company company = reconcile.getDebitMoveLine().getMove().getCompany();
 
-      if (AccountingService.getUpdateCustomerAccount()) {
-        accountCustomerService.updatePartnerAccountingSituation(
-            partnerList, company, true, true, false);
-      } else {
-        accountCustomerService.flagPartners(partnerList, company);
+      if (deferredUpdate) {
+        deferredPartnerIdSetMap
+            .computeIfAbsent(company.getId(), key -> new LinkedHashSet<>())
+            .addAll(partnerList.stream().map(Partner::getId).collect(Collectors.toList()));
+        return;
       }
+
+      this.updatePartnerAccountingSituation(partnerList, company);
+    }
+  }
+
+  protected void updatePartnerAccountingSituation(List<Partner> partnerList, Company company)
+      throws AxelorException {
+    if (AccountingService.getUpdateCustomerAccount()) {
+      accountCustomerService.updatePartnerAccountingSituation(
+          partnerList, company, true, true, false);
+    } else {
+      accountCustomerService.flagPartners(partnerList, company);
     }
   }
 
@@ -417,6 +445,12 @@ public class ReconcileServiceImpl implements ReconcileService {
     Invoice debitInvoice = reconcile.getDebitMoveLine().getMove().getInvoice();
     Invoice creditInvoice = reconcile.getCreditMoveLine().getMove().getInvoice();
 
+    if (deferredUpdate) {
+      Optional.ofNullable(debitInvoice).map(Invoice::getId).ifPresent(deferredInvoiceIdSet::add);
+      Optional.ofNullable(creditInvoice).map(Invoice::getId).ifPresent(deferredInvoiceIdSet::add);
+      return;
+    }
+
     // Update amount remaining on invoice or refund
     if (debitInvoice != null) {
 
@@ -522,7 +556,11 @@ public class ReconcileServiceImpl implements ReconcileService {
     }
 
     if (invoicePayment != null) {
-      invoicePaymentToolService.updateAmountPaid(invoicePayment.getInvoice());
+      if (deferredUpdate) {
+        deferredAmountPaidInvoiceIdSet.add(invoicePayment.getInvoice().getId());
+      } else {
+        invoicePaymentToolService.updateAmountPaid(invoicePayment.getInvoice());
+      }
       invoicePaymentRepo.save(invoicePayment);
     } else if (!ObjectUtils.isEmpty(invoiceTermPaymentList)) {
       invoiceTermPaymentList.forEach(it -> invoiceTermPaymentRepo.save(it));
@@ -672,6 +710,67 @@ public class ReconcileServiceImpl implements ReconcileService {
     }
   }
 
+  @Override
+  @Transactional(rollbackOn = {Exception.class})
+  public List<Reconcile> reconcileAll(
+      List<Triple<MoveLine, MoveLine, BigDecimal>> reconcileTripleList,
+      boolean canBeZeroBalanceOk,
+      boolean updateInvoicePayments)
+      throws AxelorException {
+    List<Reconcile> reconcileList = new ArrayList<>();
+    deferredUpdate = true;
+
+    try {
+      for (Triple<MoveLine, MoveLine, BigDecimal> reconcileTriple : reconcileTripleList) {
+        Reconcile reconcile =
+            this.createReconcile(
+                reconcileTriple.getLeft(),
+                reconcileTriple.getMiddle(),
+                reconcileTriple.getRight(),
+                canBeZeroBalanceOk);
+
+        if (reconcile != null) {
+          this.confirmReconcile(reconcile, updateInvoicePayments, true);
+          reconcileList.add(reconcile);
+        }
+      }
+
+      deferredUpdate = false;
+      this.applyDeferredUpdates();
+    } finally {
+      deferredUpdate = false;
+      deferredInvoiceIdSet.clear();
+      deferredAmountPaidInvoiceIdSet.clear();
+      deferredPartnerIdSetMap.clear();
+    }
+
+    return reconcileList;
+  }
+
+  /**
+   * Recompute once the invoices and the partner accounting situations impacted by the reconciles of
+   * {@link #reconcileAll}. The amounts paid are computed last as they also set the remaining amount
+   * in company currency.
+   */
+  protected void applyDeferredUpdates() throws AxelorException {
+    for (Long invoiceId : deferredInvoiceIdSet) {
+      Invoice invoice = JPA.find(Invoice.class, invoiceId);
+      invoice.setCompanyInTaxTotalRemaining(moveToolService.getInTaxTotalRemaining(invoice));
+    }
+
+    for (Long invoiceId : deferredAmountPaidInvoiceIdSet) {
+      invoicePaymentToolService.updateAmountPaid(JPA.find(Invoice.class, invoiceId));
+    }
+
+    for (Map.Entry<Long, Set<Long>> entry : deferredPartnerIdSetMap.entrySet()) {
+      List<Partner> partnerList =
+          entry.getValue().stream()
+              .map(partnerId -> JPA.find(Partner.class, partnerId))
+              .collect(Collectors.toList());
+      this.updatePartnerAccountingSituation(partnerList, JPA.find(Company.class, entry.getKey()));
+    }
+  }
+
   /**
    * Méthode permettant de lettrer une écriture au débit avec une écriture au crédit
    *
@@ -93,6 +93,12 @@ public class AccountingBatchService extends AbstractBatchService {
       case AccountingBatchRepository.ACTION_AUTO_MOVE_LETTERING:
         batch = autoMoveLettering(accountingBatch);
         break;
+      case AccountingBatchRepository.ACTION_REBUILD_PERIOD_BALANCES:
+        batch = rebuildPeriodBalances(accountingBatch);
+        break;
+      case AccountingBatchRepository.ACTION_CHECK_PARTNER_BALANCES:
+        batch = checkPartnerBalances(accountingBatch);
+        break;
       default:
         throw new AxelorException(
             TraceBackRepository.CATEGORY_INCONSISTENCY,
@@ -202,6 +208,14 @@ public class AccountingBatchService extends AbstractBatchService {
     return Beans.get(BatchAutoMoveLettering.class).run(accountingBatch);
   }
 
+  public Batch rebuildPeriodBalances(AccountingBatch accountingBatch) {
+    return Beans.get(BatchRebuildPeriodBalances.class).run(accountingBatch);
+  }
+
+  public Batch checkPartnerBalances(AccountingBatch accountingBatch) {
+    return Beans.get(BatchCheckPartnerBalances.class).run(accountingBatch);
+  }
+
   @Transactional
   public AccountingBatch createNewAccountingBatch(int action, Company company) {
     if (company != null) {
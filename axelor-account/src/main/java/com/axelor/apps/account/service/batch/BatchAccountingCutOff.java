@@ -29,7 +29,6 @@ import com.axelor.apps.account.service.AccountingCutOffService;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
-import com.axelor.apps.base.service.administration.AbstractBatch;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
@@ -48,6 +47,8 @@ public class BatchAccountingCutOff extends BatchStrategy {
 
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  protected static final int MOVE_CHUNK_SIZE = 50;
+
   protected AccountingCutOffService cutOffService;
   protected MoveLineRepository moveLineRepository;
   protected AccountingBatchRepository accountingBatchRepository;
@@ -71,10 +72,16 @@ public class BatchAccountingCutOff extends BatchStrategy {
     LocalDate moveDate = accountingBatch.getMoveDate();
     int accountingCutOffTypeSelect = accountingBatch.getAccountingCutOffTypeSelect();
     updateBatch(moveDate, accountingCutOffTypeSelect);
-    if (this.recordIdList == null) {
-      this._processMovesByQuery(accountingBatch);
-    } else {
-      this._processMovesByIds(accountingBatch);
+
+    cutOffService.setBulkMode(true);
+    try {
+      if (this.recordIdList == null) {
+        this._processMovesByQuery(accountingBatch);
+      } else {
+        this._processMovesByIds(accountingBatch);
+      }
+    } finally {
+      cutOffService.setBulkMode(false);
     }
   }
 
@@ -89,26 +96,64 @@ public class BatchAccountingCutOff extends BatchStrategy {
     Query<Move> moveQuery =
         cutOffService.getMoves(company, researchJournal, moveDate, accountingCutOffTypeSelect);
 
-    while (!(moveList = moveQuery.fetch(AbstractBatch.FETCH_LIMIT, offset)).isEmpty()) {
+    while (!(moveList = moveQuery.fetch(MOVE_CHUNK_SIZE, offset)).isEmpty()) {
+      offset += moveList.size();
 
       findBatch();
-      accountingBatch = accountingBatchRepository.find(accountingBatch.getId());
-      company = accountingBatch.getCompany();
-      researchJournal = accountingBatch.getResearchJournal();
+      this._processMoveChunk(
+          moveList.stream().map(Move::getId).collect(Collectors.toList()), accountingBatch.getId());
 
-      for (Move move : moveList) {
-        ++offset;
+      JPA.clear();
+    }
+  }
 
-        if (this._processMove(
-            moveRepo.find(move.getId()), accountingBatchRepository.find(accountingBatch.getId()))) {
-          break;
-        }
-      }
+  /**
+   * Generate the cut-off moves of the chunk in a single transaction. If one of them fails, the
+   * chunk is rolled back and its moves are processed again one by one so that only the failing move
+   * is traced as an anomaly.
+   */
+  protected void _processMoveChunk(List<Long> moveIdList, Long accountingBatchId) {
+    int generatedCount;
 
+    try {
+      generatedCount = this._processMoves(moveIdList, accountingBatchId);
+    } catch (Exception e) {
       JPA.clear();
+
+      for (Long moveId : moveIdList) {
+        this._processMove(moveRepo.find(moveId), accountingBatchRepository.find(accountingBatchId));
+      }
+      return;
+    }
+
+    for (int i = 0; i < generatedCount; i++) {
+      incrementDone();
     }
   }
 
+  @Transactional(rollbackOn = {Exception.class})
+  protected int _processMoves(List<Long> moveIdList, Long accountingBatchId)
+      throws AxelorException {
+    AccountingBatch accountingBatch = accountingBatchRepository.find(accountingBatchId);
+    int generatedCount = 0;
+
+    for (Long moveId : moveIdList) {
+      Move move = moveRepo.find(moveId);
+      List<Move> cutOffMoveList = this.generateCutOffMoves(move, accountingBatch);
+
+      if (cutOffMoveList != null && !cutOffMoveList.isEmpty()) {
+        updateAccountMove(move, false);
+
+        for (Move cutOffMove : cutOffMoveList) {
+          updateAccountMove(cutOffMove, false);
+        }
+        generatedCount++;
+      }
+    }
+
+    return generatedCount;
+  }
+
   protected void _processMovesByIds(AccountingBatch accountingBatch) {
     List<Move> moveList =
         recordIdList.stream()
@@ -124,35 +169,31 @@ public class BatchAccountingCutOff extends BatchStrategy {
     }
   }
 
+  protected List<Move> generateCutOffMoves(Move move, AccountingBatch accountingBatch)
+      throws AxelorException {
+    Journal miscOpeJournal = accountingBatch.getMiscOpeJournal();
+    String prefixOrigin =
+        accountingBatch.getPrefixOrigin() != null
+            ? accountingBatch.getPrefixOrigin()
+            : miscOpeJournal.getPrefixOrigin() != null ? miscOpeJournal.getPrefixOrigin() : "";
+
+    return cutOffService.generateCutOffMovesFromMove(
+        move,
+        miscOpeJournal,
+        accountingBatch.getMoveDate(),
+        accountingBatch.getReverseMoveDate(),
+        accountingBatch.getMoveDescription(),
+        accountingBatch.getReverseMoveDescription(),
+        accountingBatch.getAccountingCutOffTypeSelect(),
+        accountingBatch.getCutOffMoveStatusSelect(),
+        accountingBatch.getAutomaticReverse(),
+        accountingBatch.getAutomaticReconcile(),
+        prefixOrigin);
+  }
+
   protected boolean _processMove(Move move, AccountingBatch accountingBatch) {
     try {
-      Journal miscOpeJournal = accountingBatch.getMiscOpeJournal();
-      LocalDate reverseMoveDate = accountingBatch.getReverseMoveDate();
-      LocalDate moveDate = accountingBatch.getMoveDate();
-      String moveDescription = accountingBatch.getMoveDescription();
-      String reverseMoveDescription = accountingBatch.getReverseMoveDescription();
-      int accountingCutOffTypeSelect = accountingBatch.getAccountingCutOffTypeSelect();
-      int cutOffMoveStatusSelect = accountingBatch.getCutOffMoveStatusSelect();
-      boolean automaticReverse = accountingBatch.getAutomaticReverse();
-      boolean automaticReconcile = accountingBatch.getAutomaticReconcile();
-      String prefixOrigin =
-          accountingBatch.getPrefixOrigin() != null
-              ? accountingBatch.getPrefixOrigin()
-              : miscOpeJournal.getPrefixOrigin() != null ? miscOpeJournal.getPrefixOrigin() : "";
-
-      List<Move> moveList =
-          cutOffService.generateCutOffMovesFromMove(
-              move,
-              miscOpeJournal,
-              moveDate,
-              reverseMoveDate,
-              moveDescription,
-              reverseMoveDescription,
-              accountingCutOffTypeSelect,
-              cutOffMoveStatusSelect,
-              automaticReverse,
-              automaticReconcile,
-              prefixOrigin);
+      List<Move> moveList = this.generateCutOffMoves(move, accountingBatch);
 
       if (moveList != null && !moveList.isEmpty()) {
         updateAccountMove(move, true);
@@ -44,10 +44,13 @@ import com.google.inject.persist.Transactional;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -72,7 +75,7 @@ public class BatchAutoMoveLettering extends BatchStrategy {
   protected ReconcileGroupService reconcileGroupService;
 
   protected AccountingBatch accountingBatch;
-  protected Set<MoveLine> moveLineReconciledSet;
+  protected Set<Long> moveLineReconciledIdSet;
 
   @Inject
   public BatchAutoMoveLettering(
@@ -96,7 +99,7 @@ public class BatchAutoMoveLettering extends BatchStrategy {
   @Override
   protected void process() {
     accountingBatch = batch.getAccountingBatch();
-    moveLineReconciledSet = new HashSet<>();
+    moveLineReconciledIdSet = new HashSet<>();
 
     Map<List<Object>, Pair<List<MoveLine>, List<MoveLine>>> moveLineMap = getMoveLinesMap();
 
@@ -133,51 +136,81 @@ public class BatchAutoMoveLettering extends BatchStrategy {
             reconcileMethodSelect);
       }
     }
-    for (MoveLine moveLine : moveLineReconciledSet) {
+    for (int i = 0; i < moveLineReconciledIdSet.size(); i++) {
       incrementDone();
     }
   }
 
+  /**
+   * Reconcile every sequence of consecutive move lines whose remaining amounts are balanced.
+   *
+   * <p>A sequence starting at a line is balanced when the running balance after its last line is
+   * the same as before its first line, so the ends of the sequences are found from the indexes of
+   * the running balances instead of summing the lines following each line.
+   */
   protected void reconcileWithBalancedMove(List<MoveLine> moveLines) {
 
-    List<MoveLine> debitMoveLines;
-    List<MoveLine> creditMoveLines;
-    List<MoveLine> moveLinesReconciled = new ArrayList<>();
-    BigDecimal progressiveAmount;
+    List<BigDecimal> progressiveAmountList = new ArrayList<>();
+    Map<BigDecimal, List<Integer>> endIndexMap = new HashMap<>();
+    BigDecimal progressiveAmount = BigDecimal.ZERO;
+    progressiveAmountList.add(progressiveAmount);
+
     for (int i = 0; i < moveLines.size(); i++) {
-      List<MoveLine> moveLinesToProcess = new ArrayList<>();
-      progressiveAmount = BigDecimal.ZERO;
-      for (MoveLine moveLine : moveLines.subList(i, moveLines.size())) {
-        if (moveLinesReconciled.contains(moveLine)) {
-          break;
-        }
-        moveLinesToProcess.add(moveLine);
-        if (moveLine.getDebit().signum() > 0) {
-          progressiveAmount = progressiveAmount.subtract(moveLine.getAmountRemaining());
-        } else {
-          progressiveAmount = progressiveAmount.add(moveLine.getAmountRemaining());
-        }
-        if (progressiveAmount.signum() == 0) {
-          debitMoveLines =
-              moveLinesToProcess.stream()
-                  .filter(ml -> ml.getDebit().signum() > 0)
-                  .collect(Collectors.toList());
-          creditMoveLines =
-              moveLinesToProcess.stream()
-                  .filter(ml -> ml.getCredit().signum() > 0)
-                  .collect(Collectors.toList());
-
-          reconcileWithMethod(
-              debitMoveLines,
-              creditMoveLines,
-              AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_BALANCED_MOVE);
-
-          moveLinesReconciled.addAll(moveLinesToProcess);
-        }
+      MoveLine moveLine = moveLines.get(i);
+      if (moveLine.getDebit().signum() > 0) {
+        progressiveAmount = progressiveAmount.subtract(moveLine.getAmountRemaining());
+      } else {
+        progressiveAmount = progressiveAmount.add(moveLine.getAmountRemaining());
+      }
+      progressiveAmountList.add(progressiveAmount);
+      endIndexMap.computeIfAbsent(getAmountKey(progressiveAmount), key -> new ArrayList<>()).add(i);
+    }
+
+    // reconciled sequences never overlap the following lines, a line is reconciled if it is part of
+    // the last reconciled sequence
+    int lastReconciledIndex = -1;
+
+    for (int i = 0; i < moveLines.size(); i++) {
+      if (i <= lastReconciledIndex) {
+        continue;
+      }
+
+      List<Integer> endIndexList = endIndexMap.get(getAmountKey(progressiveAmountList.get(i)));
+      if (endIndexList == null) {
+        continue;
+      }
+
+      int position = Collections.binarySearch(endIndexList, i);
+      for (int j = position < 0 ? -position - 1 : position; j < endIndexList.size(); j++) {
+        int endIndex = endIndexList.get(j);
+        List<MoveLine> moveLinesToProcess = moveLines.subList(i, endIndex + 1);
+
+        List<MoveLine> debitMoveLines =
+            moveLinesToProcess.stream()
+                .filter(ml -> ml.getDebit().signum() > 0)
+                .collect(Collectors.toList());
+        List<MoveLine> creditMoveLines =
+            moveLinesToProcess.stream()
+                .filter(ml -> ml.getCredit().signum() > 0)
+                .collect(Collectors.toList());
+
+        reconcileWithMethod(
+            debitMoveLines,
+            creditMoveLines,
+            AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_BALANCED_MOVE);
+
+        lastReconciledIndex = endIndex;
       }
     }
   }
 
+  /**
+   * Reconcile the debit and credit move lines with the given method.
+   *
+   * <p>Credit move lines are processed in order, each against the debit move lines in order. The
+   * debit move lines are indexed by the key required by the method (amount, origin, external
+   * identifier), so only the pairs which can be reconciled are compared.
+   */
   protected void reconcileWithMethod(
       List<MoveLine> debitMoveLines, List<MoveLine> creditMoveLines, int reconcileMethodSelect) {
 
@@ -194,18 +227,55 @@ public class BatchAutoMoveLettering extends BatchStrategy {
 
     boolean isBalanced = debitTotalRemaining.compareTo(creditTotalRemaining) == 0;
 
-    Map<MoveLine, BigDecimal> debitRemaining = new HashMap<>();
+    if (!isBalanced
+        && reconcileMethodSelect
+            == AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_BALANCED_ACCOUNT) {
+      return;
+    }
+
+    boolean isAmountKey = isAmountMatchingKey(reconcileMethodSelect);
+
+    Map<Long, BigDecimal> debitRemaining = new HashMap<>();
+    Map<Object, List<MoveLine>> debitMoveLineMap = new HashMap<>();
     for (MoveLine debitMoveLine : debitMoveLines) {
-      debitRemaining.put(debitMoveLine, debitMoveLine.getAmountRemaining());
+      debitRemaining.put(debitMoveLine.getId(), debitMoveLine.getAmountRemaining());
+
+      Object key = getMatchingKey(debitMoveLine, debitMoveLine.getDebit(), reconcileMethodSelect);
+      if (key != null) {
+        debitMoveLineMap.computeIfAbsent(key, k -> new ArrayList<>()).add(debitMoveLine);
+      }
     }
+
     for (MoveLine creditMoveLine : creditMoveLines) {
+      Object key =
+          getMatchingKey(creditMoveLine, creditMoveLine.getCredit(), reconcileMethodSelect);
+      List<MoveLine> debitCandidateList = key != null ? debitMoveLineMap.get(key) : null;
+      if (debitCandidateList == null) {
+        continue;
+      }
+
+      BigDecimal credit = creditMoveLine.getCredit();
       BigDecimal creditRemaining = creditMoveLine.getAmountRemaining();
-      for (MoveLine debitMoveLine : debitMoveLines) {
+      Iterator<MoveLine> debitIterator = debitCandidateList.iterator();
+
+      while (debitIterator.hasNext()) {
+        if (!isBalanced
+            && (creditRemaining.signum() <= 0
+                || isAmountKey && creditRemaining.compareTo(credit) < 0)) {
+          // the remaining debit move lines would all exceed the remaining credit
+          break;
+        }
+
+        MoveLine debitMoveLine = debitIterator.next();
         BigDecimal debit = debitMoveLine.getDebit();
-        BigDecimal credit = creditMoveLine.getCredit();
         BigDecimal nextCreditRemaining = creditRemaining.subtract(debit);
-        BigDecimal nextDebitRemaining = debitRemaining.get(debitMoveLine).subtract(credit);
+        BigDecimal nextDebitRemaining = debitRemaining.get(debitMoveLine.getId()).subtract(credit);
         if (!isBalanced && (nextCreditRemaining.signum() < 0 || nextDebitRemaining.signum() < 0)) {
+          if (nextDebitRemaining.signum() < 0
+              && (isAmountKey || debitRemaining.get(debitMoveLine.getId()).signum() <= 0)) {
+            // remaining amounts only decrease, this debit move line would exceed any next credit
+            debitIterator.remove();
+          }
           continue;
         }
 
@@ -216,9 +286,9 @@ public class BatchAutoMoveLettering extends BatchStrategy {
           try {
             reconcile(debitMoveLine, creditMoveLine, debitTotalRemaining, creditTotalRemaining);
             creditRemaining = nextCreditRemaining;
-            debitRemaining.replace(debitMoveLine, nextDebitRemaining);
-            moveLineReconciledSet.add(debitMoveLine);
-            moveLineReconciledSet.add(creditMoveLine);
+            debitRemaining.replace(debitMoveLine.getId(), nextDebitRemaining);
+            moveLineReconciledIdSet.add(debitMoveLine.getId());
+            moveLineReconciledIdSet.add(creditMoveLine.getId());
           } catch (Exception e) {
             TraceBackService.trace(
                 new Exception(
@@ -242,6 +312,56 @@ public class BatchAutoMoveLettering extends BatchStrategy {
     }
   }
 
+  /**
+   * Get the key a debit and a credit move line must share to be reconciled with the given method.
+   *
+   * @param moveLine the move line
+   * @param amount the debit of a debit move line, the credit of a credit move line
+   * @param reconcileMethodSelect the reconcile method
+   * @return the key, null if the move line can not be reconciled with the method
+   */
+  protected Object getMatchingKey(MoveLine moveLine, BigDecimal amount, int reconcileMethodSelect) {
+    switch (reconcileMethodSelect) {
+      case AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_BALANCED_MOVE:
+      case AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_BALANCED_ACCOUNT:
+        return Boolean.TRUE;
+      case AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_AMOUNT:
+        return getAmountKey(amount);
+      case AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_ORIGIN:
+        return getMatchingKey(moveLine.getOrigin(), amount, reconcileMethodSelect);
+      case AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_EXTERNAL_IDENTIFIER:
+        return getMatchingKey(moveLine.getExternalOrigin(), amount, reconcileMethodSelect);
+      default:
+        return null;
+    }
+  }
+
+  protected Object getMatchingKey(String reference, BigDecimal amount, int reconcileMethodSelect) {
+    if (reference == null) {
+      return null;
+    }
+    return isAmountMatchingKey(reconcileMethodSelect)
+        ? Arrays.asList(reference, getAmountKey(amount))
+        : reference;
+  }
+
+  /** Whether the matching key of the method contains the amount of the move lines. */
+  protected boolean isAmountMatchingKey(int reconcileMethodSelect) {
+    switch (reconcileMethodSelect) {
+      case AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_AMOUNT:
+        return true;
+      case AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_ORIGIN:
+      case AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_EXTERNAL_IDENTIFIER:
+        return !accountingBatch.getIsPartialReconcile();
+      default:
+        return false;
+    }
+  }
+
+  protected BigDecimal getAmountKey(BigDecimal amount) {
+    return amount.signum() == 0 ? BigDecimal.ZERO : amount.stripTrailingZeros();
+  }
+
   private boolean canBeReconciled(
       int reconcileMethodSelect,
       MoveLine debitMoveLine,
@@ -31,17 +31,22 @@ import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class BatchBlockCustomersWithLatePayments extends BatchStrategy {
+  protected static final int PARTNER_UPDATE_LIMIT = 1000;
+
   protected final Logger log = LoggerFactory.getLogger(getClass());
 
   private AccountConfigService accountConfigService;
@@ -72,14 +77,20 @@ public class BatchBlockCustomersWithLatePayments extends BatchStrategy {
   protected String blockCustomersWithLatePayments() {
     StringBuilder result = new StringBuilder();
     List<DebtRecovery> debtRecoveries;
-    List<Long> customersToBlock = new ArrayList<Long>();
-    List<Long> customerToUnblock = new ArrayList<Long>();
-    int offset = 0;
+    Set<Long> customersToBlock = new LinkedHashSet<>();
+    Set<Long> customerToUnblock = new LinkedHashSet<>();
+    long lastId = 0L;
     Query<DebtRecovery> query =
-        debtRecoveryRepository.all().filter("self.archived = false or self.archived is null");
-    while (!(debtRecoveries = query.fetch(FETCH_LIMIT, offset)).isEmpty()) {
+        debtRecoveryRepository
+            .all()
+            .filter(
+                "(self.archived = false or self.archived is null) "
+                    + "AND self.invoiceDebtRecoverySet IS NOT EMPTY "
+                    + "AND self.id > :lastId")
+            .order("id");
+    while (!(debtRecoveries = query.bind("lastId", lastId).fetch(FETCH_LIMIT)).isEmpty()) {
       for (DebtRecovery debtRecovery : debtRecoveries) {
-        ++offset;
+        lastId = debtRecovery.getId();
         if (debtRecovery.getRespiteDateBeforeAccountBlocking() != null
             && debtRecovery
                     .getRespiteDateBeforeAccountBlocking()
@@ -131,32 +142,36 @@ public class BatchBlockCustomersWithLatePayments extends BatchStrategy {
       }
       JPA.clear();
     }
-    blockCustomers(customersToBlock);
-    unblockCustomers(customerToUnblock);
+    blockCustomers(new ArrayList<>(customersToBlock));
+    unblockCustomers(new ArrayList<>(customerToUnblock));
     return result.toString();
   }
 
   @Transactional
   protected void blockCustomers(List<Long> customersToBlock) {
     if (CollectionUtils.isNotEmpty(customersToBlock)) {
-      Query.of(Partner.class)
-          .filter("self.id in :ids")
-          .bind("ids", customersToBlock)
-          .update("hasBlockedAccount", true);
+      for (List<Long> ids : Lists.partition(customersToBlock, PARTNER_UPDATE_LIMIT)) {
+        Query.of(Partner.class)
+            .filter("self.id in :ids")
+            .bind("ids", ids)
+            .update("hasBlockedAccount", true);
+      }
     }
   }
 
   @Transactional
   protected void unblockCustomers(List<Long> customersToUnblock) {
     if (CollectionUtils.isNotEmpty(customersToUnblock)) {
-      Query.of(Partner.class)
-          .filter("self.id in :ids")
-          .bind("ids", customersToUnblock)
-          .update("hasBlockedAccount", false);
-      Query.of(Partner.class)
-          .filter("self.id in :ids")
-          .bind("ids", customersToUnblock)
-          .update("hasManuallyBlockedAccount", false);
+      for (List<Long> ids : Lists.partition(customersToUnblock, PARTNER_UPDATE_LIMIT)) {
+        Query.of(Partner.class)
+            .filter("self.id in :ids")
+            .bind("ids", ids)
+            .update("hasBlockedAccount", false);
+        Query.of(Partner.class)
+            .filter("self.id in :ids")
+            .bind("ids", ids)
+            .update("hasManuallyBlockedAccount", false);
+      }
     }
   }
 
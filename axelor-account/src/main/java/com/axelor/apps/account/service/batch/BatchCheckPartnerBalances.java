@@ -0,0 +1,94 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.batch;
+
+import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.account.service.AccountPartnerBalanceService;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.exceptions.BaseExceptionMessage;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.db.JPA;
+import com.axelor.i18n.I18n;
+import com.google.inject.Inject;
+import java.util.List;
+
+public class BatchCheckPartnerBalances extends BatchStrategy {
+
+  protected AccountPartnerBalanceService accountPartnerBalanceService;
+
+  @Inject
+  public BatchCheckPartnerBalances(AccountPartnerBalanceService accountPartnerBalanceService) {
+    this.accountPartnerBalanceService = accountPartnerBalanceService;
+  }
+
+  @Override
+  protected void process() {
+    Company company = batch.getAccountingBatch().getCompany();
+    List<Long> partnerIdList;
+
+    try {
+      // On the first run, every partner with a balance is rebuilt
+      partnerIdList = accountPartnerBalanceService.getInconsistentPartnerIds(company);
+    } catch (Exception e) {
+      TraceBackService.trace(e, null, batch.getId());
+      incrementAnomaly();
+      return;
+    }
+
+    for (Long partnerId : partnerIdList) {
+      try {
+        accountPartnerBalanceService.rebuild(
+            JPA.find(Company.class, company.getId()), JPA.find(Partner.class, partnerId));
+        incrementDone();
+      } catch (Exception e) {
+        TraceBackService.trace(e, null, batch.getId());
+        incrementAnomaly();
+      } finally {
+        JPA.clear();
+      }
+    }
+
+    if (batch.getAnomaly() == 0) {
+      try {
+        accountPartnerBalanceService.setBuilt(JPA.find(Company.class, company.getId()), true);
+      } catch (Exception e) {
+        TraceBackService.trace(e, null, batch.getId());
+        incrementAnomaly();
+      }
+    }
+  }
+
+  @Override
+  protected void stop() {
+    StringBuilder sbComment =
+        new StringBuilder(
+            String.format(
+                "%s\n\t* %s %s\n",
+                I18n.get(AccountExceptionMessage.BATCH_CHECK_PARTNER_BALANCES_1),
+                batch.getDone(),
+                I18n.get(AccountExceptionMessage.BATCH_CHECK_PARTNER_BALANCES_2)));
+
+    sbComment.append(
+        String.format("\t" + I18n.get(BaseExceptionMessage.BASE_BATCH_3), batch.getAnomaly()));
+
+    addComment(sbComment.toString());
+    super.stop();
+  }
+}
@@ -35,6 +35,7 @@ import com.axelor.apps.account.service.move.MoveCreateService;
 import com.axelor.apps.account.service.move.MoveSimulateService;
 import com.axelor.apps.account.service.move.MoveValidateService;
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Batch;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Year;
@@ -55,8 +56,10 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import javax.persistence.PersistenceException;
 import javax.persistence.Query;
@@ -77,6 +80,8 @@ public class BatchCloseAnnualAccounts extends BatchStrategy {
   protected MoveValidateService moveValidateService;
   protected MoveSimulateService moveSimulateService;
 
+  protected static final int GENERATION_CHUNK_SIZE = 50;
+
   protected boolean end = false;
   protected AccountingBatch accountingBatch;
 
@@ -191,162 +196,61 @@ public class BatchCloseAnnualAccounts extends BatchStrategy {
       Year year = accountingBatch.getYear();
       boolean allocatePerPartner = accountingBatch.getAllocatePerPartner();
 
-      List<Long> closureAccountIdList =
-          accountingCloseAnnualService.getAllAccountOfYear(
-              accountingBatch.getClosureAccountSet(), year);
-
-      List<Long> openingAccountIdList =
-          accountingCloseAnnualService.getAllAccountOfYear(
-              accountingBatch.getOpeningAccountSet(), year);
-
-      List<Pair<Long, Long>> closureAccountAndPartnerPairList =
-          accountingCloseAnnualService.assignPartner(
-              closureAccountIdList, year, allocatePerPartner);
-
-      List<Pair<Long, Long>> openingAccountAndPartnerPairList =
-          accountingCloseAnnualService.assignPartner(
-              openingAccountIdList, year, allocatePerPartner);
-      Map<AccountByPartner, Map<Boolean, Boolean>> map = new HashMap<>();
-      map =
-          openAndCloseProcess(
-              closureAccountAndPartnerPairList, accountingBatch.getCloseYear(), false, map);
-      map =
-          openAndCloseProcess(
-              openingAccountAndPartnerPairList, false, accountingBatch.getOpenYear(), map);
-
-      generateMoves(map);
-    }
-  }
+      Map<Pair<Long, Long>, BigDecimal> closureBalanceMap = new HashMap<>();
+      Map<Pair<Long, Long>, BigDecimal> openingBalanceMap = new HashMap<>();
 
-  protected Map<AccountByPartner, Map<Boolean, Boolean>> openAndCloseProcess(
-      List<Pair<Long, Long>> accountAndPartnerPairList,
-      boolean close,
-      boolean open,
-      Map<AccountByPartner, Map<Boolean, Boolean>> map) {
-    for (Pair<Long, Long> accountAndPartnerPair : accountAndPartnerPairList) {
-      Account account = null;
-      Partner partner = null;
-      account = accountRepository.find(accountAndPartnerPair.getLeft());
-      if (accountAndPartnerPair.getRight() != null) {
-        partner = partnerRepository.find(accountAndPartnerPair.getRight());
+      if (accountingBatch.getCloseYear()) {
+        closureBalanceMap =
+            accountingCloseAnnualService.getClosingBalances(
+                accountingCloseAnnualService.getAllAccountOfYear(
+                    accountingBatch.getClosureAccountSet(), year),
+                year,
+                allocatePerPartner);
       }
-      Map<Boolean, Boolean> value = new HashMap<>();
-      if (close) {
-        value.put(close, false);
-        map.put(new AccountByPartner(account, partner), value);
-      } else if (open) {
-        AccountByPartner accountByPartner = new AccountByPartner(account, partner);
-        if (map.containsKey(accountByPartner)) {
-          boolean closeValue = map.get(accountByPartner).containsKey(true);
-          value.put(closeValue, open);
-          map.replace(accountByPartner, value);
-        } else {
-          value.put(false, open);
-          map.put(accountByPartner, value);
-        }
+
+      if (accountingBatch.getOpenYear()) {
+        openingBalanceMap =
+            accountingCloseAnnualService.getClosingBalances(
+                accountingCloseAnnualService.getAllAccountOfYear(
+                    accountingBatch.getOpeningAccountSet(), year),
+                year,
+                allocatePerPartner);
       }
+
+      generateMoves(closureBalanceMap, openingBalanceMap);
     }
-    return map;
   }
 
-  protected void generateMoves(Map<AccountByPartner, Map<Boolean, Boolean>> map) {
-    Map<Boolean, Boolean> value = new HashMap<Boolean, Boolean>();
-    boolean close = false;
-    boolean open = false;
-    boolean allocatePerPartner = accountingBatch.getAllocatePerPartner();
-    boolean closeYear = accountingBatch.getCloseYear();
-    boolean openYear = accountingBatch.getOpenYear();
-    boolean isSimulatedMove = accountingBatch.getSimulateGeneratedMoves();
-    Year year = accountingBatch.getYear();
-    LocalDate endOfYearDate = year.getToDate();
-    LocalDate reportedBalanceDate = year.getReportedBalanceDate();
-    String origin = accountingBatch.getCode();
-    String moveDescription = accountingBatch.getMoveDescription();
-    for (AccountByPartner accountByPartner : map.keySet()) {
+  /**
+   * Generate the closing and opening moves of every account and partner pair, a chunk of pairs per
+   * transaction. The generation stops at the first error, rolling back the moves of its chunk.
+   */
+  protected void generateMoves(
+      Map<Pair<Long, Long>, BigDecimal> closureBalanceMap,
+      Map<Pair<Long, Long>, BigDecimal> openingBalanceMap) {
+    Map<Pair<Long, Long>, BigDecimal> balanceMap = new LinkedHashMap<>(closureBalanceMap);
+    openingBalanceMap.forEach(balanceMap::putIfAbsent);
+
+    for (List<Pair<Long, Long>> accountAndPartnerPairList :
+        Lists.partition(new ArrayList<>(balanceMap.keySet()), GENERATION_CHUNK_SIZE)) {
       try {
-        Account account = accountRepository.find(accountByPartner.account.getId());
-        Partner partner = null;
-        if (accountByPartner.partner != null) {
-          partner = partnerRepository.find(accountByPartner.partner.getId());
-        }
-        value = map.get(accountByPartner);
-        if (value != null) {
-
-          validateSimulatedConfiguration(isSimulatedMove, accountingBatch.getCompany());
-
-          close = value.containsKey(true);
-          open = value.containsValue(true);
-          List<Move> generatedMoves = new ArrayList<Move>();
-          if (close && !open) {
-            generatedMoves =
-                accountingCloseAnnualService.generateCloseAnnualAccount(
-                    yearRepository.find(year.getId()),
-                    account,
-                    partner,
-                    endOfYearDate,
-                    reportedBalanceDate,
-                    origin,
-                    moveDescription,
-                    closeYear,
-                    allocatePerPartner,
-                    isSimulatedMove);
-
-          } else if (open && !close) {
-            generatedMoves =
-                accountingCloseAnnualService.generateOpenAnnualAccount(
-                    yearRepository.find(year.getId()),
-                    account,
-                    partner,
-                    endOfYearDate,
-                    reportedBalanceDate,
-                    origin,
-                    moveDescription,
-                    openYear,
-                    allocatePerPartner,
-                    isSimulatedMove);
-
-          } else if (open && close) {
-            generatedMoves =
-                accountingCloseAnnualService.generateCloseAndOpenAnnualAccount(
-                    yearRepository.find(year.getId()),
-                    account,
-                    partner,
-                    endOfYearDate,
-                    reportedBalanceDate,
-                    origin,
-                    moveDescription,
-                    closeYear,
-                    openYear,
-                    allocatePerPartner,
-                    isSimulatedMove);
-          }
-          if (!CollectionUtils.isEmpty(generatedMoves)) {
-            updateAccount(account);
-
-            for (Move move : generatedMoves) {
-              updateAccountMove(move, false);
-            }
-          }
+        validateSimulatedConfiguration(
+            accountingBatch.getSimulateGeneratedMoves(), accountingBatch.getCompany());
+
+        int generatedCount =
+            generateMoves(
+                accountAndPartnerPairList,
+                balanceMap,
+                closureBalanceMap.keySet(),
+                openingBalanceMap.keySet());
+
+        for (int i = 0; i < generatedCount; i++) {
+          incrementDone();
         }
-      } catch (AxelorException e) {
-        TraceBackService.trace(
-            new AxelorException(
-                e,
-                e.getCategory(),
-                I18n.get("Account") + " %s",
-                accountByPartner.account.getCode()),
-            null,
-            batch.getId());
-        incrementAnomaly();
-        break;
       } catch (Exception e) {
-        TraceBackService.trace(
-            new Exception(
-                String.format(I18n.get("Account") + " %s", accountByPartner.account.getCode()), e),
-            null,
-            batch.getId());
+        TraceBackService.trace(e, null, batch.getId());
         incrementAnomaly();
-        LOG.error("Anomaly generated for the account {}", accountByPartner.account.getCode());
+        LOG.error("Anomaly generated during the annual closure", e);
         break;
       } finally {
         JPA.clear();
@@ -354,6 +258,68 @@ public class BatchCloseAnnualAccounts extends BatchStrategy {
     }
   }
 
+  /**
+   * Generate the closing and opening moves of a chunk of account and partner pairs in a single
+   * transaction.
+   *
+   * @return the number of pairs for which moves were generated.
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected int generateMoves(
+      List<Pair<Long, Long>> accountAndPartnerPairList,
+      Map<Pair<Long, Long>, BigDecimal> balanceMap,
+      Set<Pair<Long, Long>> closureAccountAndPartnerPairSet,
+      Set<Pair<Long, Long>> openingAccountAndPartnerPairSet)
+      throws AxelorException {
+    Year year = yearRepository.find(accountingBatch.getYear().getId());
+    Batch currentBatch = batchRepo.find(batch.getId());
+    int generatedCount = 0;
+
+    for (Pair<Long, Long> accountAndPartnerPair : accountAndPartnerPairList) {
+      Account account = accountRepository.find(accountAndPartnerPair.getLeft());
+      Partner partner = null;
+      if (accountAndPartnerPair.getRight() != null) {
+        partner = partnerRepository.find(accountAndPartnerPair.getRight());
+      }
+
+      List<Move> generatedMoves;
+      try {
+        generatedMoves =
+            accountingCloseAnnualService.generateAnnualAccountMoves(
+                year,
+                account,
+                partner,
+                balanceMap.get(accountAndPartnerPair),
+                year.getToDate(),
+                year.getReportedBalanceDate(),
+                accountingBatch.getCode(),
+                accountingBatch.getMoveDescription(),
+                closureAccountAndPartnerPairSet.contains(accountAndPartnerPair),
+                openingAccountAndPartnerPairSet.contains(accountAndPartnerPair),
+                accountingBatch.getSimulateGeneratedMoves());
+      } catch (AxelorException e) {
+        throw new AxelorException(
+            e, e.getCategory(), I18n.get("Account") + " %s", account.getCode());
+      } catch (Exception e) {
+        throw new AxelorException(
+            e,
+            TraceBackRepository.CATEGORY_INCONSISTENCY,
+            I18n.get("Account") + " %s",
+            account.getCode());
+      }
+
+      if (!CollectionUtils.isEmpty(generatedMoves)) {
+        account.addBatchSetItem(currentBatch);
+        for (Move move : generatedMoves) {
+          move.addBatchSetItem(currentBatch);
+        }
+        generatedCount++;
+      }
+    }
+
+    return generatedCount;
+  }
+
   @Override
   protected void stop() {
     StringBuilder sb = new StringBuilder();
@@ -502,34 +468,4 @@ public class BatchCloseAnnualAccounts extends BatchStrategy {
       moveValidateService.accounting(move);
     }
   }
-
-  class AccountByPartner {
-    protected Account account;
-    protected Partner partner;
-
-    public AccountByPartner(Account account, Partner partner) {
-      this.account = account;
-      this.partner = partner;
-    }
-
-    public int hashCode() {
-      return (int)
-          (this.account.getId() * 1000 + (this.partner != null ? this.partner.getId() : 0));
-    }
-
-    public boolean equals(Object o) {
-      if (o == this) {
-        return true;
-      }
-      if (!(o instanceof AccountByPartner)) {
-        return false;
-      }
-      AccountByPartner other = (AccountByPartner) o;
-      if (this.partner != null) {
-        return this.account.equals(other.account) && this.partner.equals(other.partner);
-      } else {
-        return this.account.equals(other.account) && other.partner == null;
-      }
-    }
-  }
 }
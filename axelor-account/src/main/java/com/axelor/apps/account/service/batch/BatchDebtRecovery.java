@@ -20,10 +20,12 @@ package com.axelor.apps.account.service.batch;
 
 import com.axelor.apps.account.db.DebtRecovery;
 import com.axelor.apps.account.db.repo.DebtRecoveryRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
 import com.axelor.apps.account.service.debtrecovery.DebtRecoveryActionService;
 import com.axelor.apps.account.service.debtrecovery.DebtRecoveryService;
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.callable.ParallelCallableTool;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.TradingName;
@@ -40,13 +42,23 @@ import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.axelor.message.db.repo.MessageRepository;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import javax.persistence.Table;
 
 public class BatchDebtRecovery extends BatchStrategy {
 
+  protected static final int PARTNER_FETCH_LIMIT = 1000;
+  protected static final int MAX_PARALLEL_DEBT_RECOVERY_PARTITIONS = 4;
+
   protected boolean stopping = false;
   protected PartnerRepository partnerRepository;
   protected MessageRepository messageRepository;
@@ -112,6 +124,12 @@ public class BatchDebtRecovery extends BatchStrategy {
       }
     }
 
+    Long companyId = company.getId();
+    List<Long> tradingNameIdList =
+        tradingNameSet != null
+            ? tradingNameSet.stream().map(TradingName::getId).collect(Collectors.toList())
+            : Collections.emptyList();
+
     Query<Partner> query =
         partnerRepository
             .all()
@@ -123,94 +141,255 @@ public class BatchDebtRecovery extends BatchStrategy {
                     + "AND self.id NOT IN ("
                     + Beans.get(BlockingService.class)
                         .listOfBlockedPartner(company, BlockingRepository.REMINDER_BLOCKING)
+                    + ") "
+                    + "AND self.id > :_lastId "
+                    + "AND ("
+                    + getOverdueCandidateFilter()
+                    + " OR "
+                    + getDebtRecoveryCandidateFilter()
                     + ")")
             .bind("_company", company)
+            .bind("_todayDate", appBaseService.getTodayDate(company))
+            .bind("_statusAccounted", MoveRepository.STATUS_ACCOUNTED)
+            .bind("_statusDaybook", MoveRepository.STATUS_DAYBOOK)
             .order("id");
 
-    int offset = 0;
-    List<Partner> partnerList;
+    long lastId = 0L;
+    List<Long> partnerIdList;
+
+    while (!(partnerIdList = fetchPartnerIdList(query, lastId)).isEmpty()) {
+      lastId = partnerIdList.get(partnerIdList.size() - 1);
+
+      List<DebtRecoveryPartnerResult> resultList =
+          debtRecoveryPartnerList(partnerIdList, companyId, tradingNameIdList);
 
-    while (!(partnerList = query.fetch(FETCH_LIMIT, offset)).isEmpty()) {
       findBatch();
+      for (DebtRecoveryPartnerResult result : resultList) {
+        for (Long debtRecoveryId : result.debtRecoveryIdList) {
+          addBatchToModel(DebtRecovery.class, debtRecoveryId);
+        }
+        if (result.done) {
+          addBatchToModel(Partner.class, result.partnerId);
+          _incrementDone();
+        }
+        if (result.anomaly) {
+          _incrementAnomaly();
+        }
+      }
 
-      for (Partner partner : partnerList) {
-        ++offset;
-
-        boolean remindedOk;
-        // if recovery handled by trading name
-        if (tradingNameSet != null && !tradingNameSet.isEmpty()) {
-          boolean incrementPartner = false;
-          for (TradingName tradingName : tradingNameSet) {
-            try {
-              remindedOk = debtRecoveryService.debtRecoveryGenerate(partner, company, tradingName);
-              if (remindedOk) {
-                DebtRecovery debtRecovery =
-                    debtRecoveryService.getDebtRecovery(partner, company, tradingName);
-                addBatchToModel(debtRecovery);
-                incrementPartner = true;
-              }
-              // Catching exceptions
-            } catch (AxelorException e) {
-              TraceBackService.trace(
-                  new AxelorException(
-                      e,
-                      e.getCategory(),
+      JPA.clear();
+    }
+  }
+
+  protected List<Long> fetchPartnerIdList(Query<Partner> query, long lastId) {
+    return query.bind("_lastId", lastId).select("id").fetch(PARTNER_FETCH_LIMIT, 0).stream()
+        .map(it -> (Long) it.get("id"))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Filter on the partners having an overdue receivable in the company, which is a necessary
+   * condition for a positive balance due.
+   */
+  protected String getOverdueCandidateFilter() {
+    return "EXISTS (SELECT 1 FROM InvoiceTerm AS term WHERE term.moveLine.partner = self "
+        + "AND term.moveLine.move.company = :_company "
+        + "AND term.dueDate <= :_todayDate "
+        + "AND term.amountRemaining > 0 "
+        + "AND term.moveLine.debit > 0 "
+        + "AND term.moveLine.amountRemaining > 0 "
+        + "AND term.moveLine.account.useForPartnerBalance = true "
+        + "AND term.moveLine.move.statusSelect IN (:_statusAccounted, :_statusDaybook) "
+        + "AND (term.moveLine.move.ignoreInAccountingOk IS NULL "
+        + "OR term.moveLine.move.ignoreInAccountingOk = false))";
+  }
+
+  /**
+   * Filter on the partners having a debt recovery in the company which has not been reset yet, so
+   * that it is reset once the partner has nothing left to recover.
+   */
+  protected String getDebtRecoveryCandidateFilter() {
+    return "EXISTS (SELECT 1 FROM DebtRecovery AS debtRecovery "
+        + "LEFT JOIN debtRecovery.accountingSituation AS accountingSituation "
+        + "LEFT JOIN debtRecovery.tradingNameAccountingSituation AS tradingNameAccountingSituation "
+        + "WHERE ((accountingSituation.partner = self "
+        + "AND accountingSituation.company = :_company) "
+        + "OR (tradingNameAccountingSituation.partner = self "
+        + "AND tradingNameAccountingSituation.company = :_company)) "
+        + "AND (debtRecovery.balanceDue != 0 "
+        + "OR debtRecovery.balanceDueDebtRecovery != 0 "
+        + "OR debtRecovery.debtRecoveryMethodLine IS NOT NULL "
+        + "OR debtRecovery.waitDebtRecoveryMethodLine IS NOT NULL "
+        + "OR debtRecovery.invoiceDebtRecoverySet IS NOT EMPTY "
+        + "OR debtRecovery.paymentScheduleLineDebtRecoverySet IS NOT EMPTY))";
+  }
+
+  /**
+   * Generate the debt recoveries of the given partners, split in partitions processed in parallel
+   * when there is enough partners. The batch counters are only updated by the caller from the
+   * returned results.
+   */
+  protected List<DebtRecoveryPartnerResult> debtRecoveryPartnerList(
+      List<Long> partnerIdList, Long companyId, List<Long> tradingNameIdList) {
+    int parallelism =
+        Math.min(MAX_PARALLEL_DEBT_RECOVERY_PARTITIONS, Runtime.getRuntime().availableProcessors());
+
+    if (parallelism <= 1 || partnerIdList.size() <= FETCH_LIMIT) {
+      return debtRecoveryPartition(
+          debtRecoveryService, partnerIdList, companyId, tradingNameIdList);
+    }
+
+    List<Callable<List<DebtRecoveryPartnerResult>>> partitionList = new ArrayList<>();
+    for (List<Long> partitionPartnerIdList :
+        Lists.partition(partnerIdList, (partnerIdList.size() + parallelism - 1) / parallelism)) {
+      partitionList.add(
+          () ->
+              // debt recovery services may be request scoped, each worker uses its own
+              debtRecoveryPartition(
+                  Beans.get(DebtRecoveryService.class),
+                  partitionPartnerIdList,
+                  companyId,
+                  tradingNameIdList));
+    }
+    return runDebtRecoveryPartitions(partitionList);
+  }
+
+  protected List<DebtRecoveryPartnerResult> runDebtRecoveryPartitions(
+      List<Callable<List<DebtRecoveryPartnerResult>>> partitionList) {
+    List<DebtRecoveryPartnerResult> resultList = new ArrayList<>();
+
+    // reminders are generated on behalf of the user running the batch
+    List<Future<List<DebtRecoveryPartnerResult>>> futureList;
+    try {
+      futureList =
+          new ParallelCallableTool<List<DebtRecoveryPartnerResult>>()
+              .invokeAll(partitionList, MAX_PARALLEL_DEBT_RECOVERY_PARTITIONS, false);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      TraceBackService.trace(e, ExceptionOriginRepository.DEBT_RECOVERY, batch.getId());
+      return resultList;
+    }
+
+    for (Future<List<DebtRecoveryPartnerResult>> future : futureList) {
+      try {
+        resultList.addAll(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        TraceBackService.trace(e, ExceptionOriginRepository.DEBT_RECOVERY, batch.getId());
+      } catch (ExecutionException e) {
+        TraceBackService.trace(
+            e.getCause() instanceof Exception ? (Exception) e.getCause() : e,
+            ExceptionOriginRepository.DEBT_RECOVERY,
+            batch.getId());
+        findBatch();
+        _incrementAnomaly();
+      }
+    }
+    return resultList;
+  }
+
+  /** Generate the debt recoveries of the given partners one after another. */
+  protected List<DebtRecoveryPartnerResult> debtRecoveryPartition(
+      DebtRecoveryService debtRecoveryService,
+      List<Long> partnerIdList,
+      Long companyId,
+      List<Long> tradingNameIdList) {
+    List<DebtRecoveryPartnerResult> resultList = new ArrayList<>();
+    int count = 0;
+
+    Company company = JPA.find(Company.class, companyId);
+    List<TradingName> tradingNameList =
+        tradingNameIdList.stream()
+            .map(id -> JPA.find(TradingName.class, id))
+            .collect(Collectors.toList());
+
+    for (Long partnerId : partnerIdList) {
+      DebtRecoveryPartnerResult result =
+          debtRecoveryPartner(
+              debtRecoveryService, partnerRepository.find(partnerId), company, tradingNameList);
+      resultList.add(result);
+
+      if (result.anomaly || ++count % FETCH_LIMIT == 0) {
+        JPA.clear();
+      }
+    }
+    return resultList;
+  }
+
+  protected DebtRecoveryPartnerResult debtRecoveryPartner(
+      DebtRecoveryService debtRecoveryService,
+      Partner partner,
+      Company company,
+      List<TradingName> tradingNameList) {
+    DebtRecoveryPartnerResult result = new DebtRecoveryPartnerResult(partner.getId());
+
+    boolean remindedOk;
+    // if recovery handled by trading name
+    if (!tradingNameList.isEmpty()) {
+      boolean incrementPartner = false;
+      for (TradingName tradingName : tradingNameList) {
+        try {
+          remindedOk = debtRecoveryService.debtRecoveryGenerate(partner, company, tradingName);
+          if (remindedOk) {
+            DebtRecovery debtRecovery =
+                debtRecoveryService.getDebtRecovery(partner, company, tradingName);
+            result.debtRecoveryIdList.add(debtRecovery.getId());
+            incrementPartner = true;
+          }
+          // Catching exceptions
+        } catch (AxelorException e) {
+          TraceBackService.trace(
+              new AxelorException(
+                  e,
+                  e.getCategory(),
+                  I18n.get("Partner") + " %s, " + I18n.get("Trading name") + " %s",
+                  partner.getName(),
+                  tradingName.getName()),
+              ExceptionOriginRepository.DEBT_RECOVERY,
+              batch.getId());
+          result.anomaly = true;
+          return result;
+        } catch (Exception e) {
+          TraceBackService.trace(
+              new Exception(
+                  String.format(
                       I18n.get("Partner") + " %s, " + I18n.get("Trading name") + " %s",
                       partner.getName(),
                       tradingName.getName()),
-                  ExceptionOriginRepository.DEBT_RECOVERY,
-                  batch.getId());
-              incrementAnomaly(partner);
-              break;
-            } catch (Exception e) {
-              TraceBackService.trace(
-                  new Exception(
-                      String.format(
-                          I18n.get("Partner") + " %s, " + I18n.get("Trading name") + " %s",
-                          partner.getName(),
-                          tradingName.getName()),
-                      e),
-                  ExceptionOriginRepository.DEBT_RECOVERY,
-                  batch.getId());
-              incrementAnomaly(partner);
-              break;
-            }
-            // \Catching exceptions
-          }
-          if (incrementPartner) {
-            incrementDone(partner);
-          }
-        } else { // if recovery handled by company
-          try {
-            remindedOk = debtRecoveryService.debtRecoveryGenerate(partner, company, null);
-            if (remindedOk) {
-              DebtRecovery debtRecovery = debtRecoveryService.getDebtRecovery(partner, company);
-              addBatchToModel(debtRecovery);
-              incrementDone(partner);
-            }
-            // Catching exceptions
-          } catch (AxelorException e) {
-            TraceBackService.trace(
-                new AxelorException(
-                    e, e.getCategory(), I18n.get("Partner") + " %s", partner.getName()),
-                ExceptionOriginRepository.DEBT_RECOVERY,
-                batch.getId());
-            incrementAnomaly(partner);
-            break;
-          } catch (Exception e) {
-            TraceBackService.trace(
-                new Exception(String.format(I18n.get("Partner") + " %s", partner.getName()), e),
-                ExceptionOriginRepository.DEBT_RECOVERY,
-                batch.getId());
-            incrementAnomaly(partner);
-            break;
-          }
-          // \Catching exceptions
+                  e),
+              ExceptionOriginRepository.DEBT_RECOVERY,
+              batch.getId());
+          result.anomaly = true;
+          return result;
         }
+        // \Catching exceptions
       }
-
-      JPA.clear();
+      result.done = incrementPartner;
+    } else { // if recovery handled by company
+      try {
+        remindedOk = debtRecoveryService.debtRecoveryGenerate(partner, company, null);
+        if (remindedOk) {
+          DebtRecovery debtRecovery = debtRecoveryService.getDebtRecovery(partner, company);
+          result.debtRecoveryIdList.add(debtRecovery.getId());
+          result.done = true;
+        }
+        // Catching exceptions
+      } catch (AxelorException e) {
+        TraceBackService.trace(
+            new AxelorException(e, e.getCategory(), I18n.get("Partner") + " %s", partner.getName()),
+            ExceptionOriginRepository.DEBT_RECOVERY,
+            batch.getId());
+        result.anomaly = true;
+      } catch (Exception e) {
+        TraceBackService.trace(
+            new Exception(String.format(I18n.get("Partner") + " %s", partner.getName()), e),
+            ExceptionOriginRepository.DEBT_RECOVERY,
+            batch.getId());
+        result.anomaly = true;
+      }
+      // \Catching exceptions
     }
+    return result;
   }
 
   protected void incrementDone(Partner partner) {
@@ -226,21 +405,42 @@ public class BatchDebtRecovery extends BatchStrategy {
   }
 
   protected void addBatchToModel(Model model) {
-    String tableName = getBatchSetTableName(model);
+    addBatchToModel(EntityHelper.getEntityClass(model), model.getId());
+  }
+
+  protected void addBatchToModel(Class<? extends Model> modelClass, Long modelId) {
+    String tableName = getBatchSetTableName(modelClass);
 
     // Insert using native query for performance reasons in case of big batch set.
     String sqlString = String.format("INSERT INTO %s VALUES (:modelId, :batchId)", tableName);
     javax.persistence.Query query = JPA.em().createNativeQuery(sqlString);
-    query.setParameter("modelId", model.getId());
+    query.setParameter("modelId", modelId);
     query.setParameter("batchId", batch.getId());
     JPA.runInTransaction(query::executeUpdate);
   }
 
   protected String getBatchSetTableName(Model model) {
-    String modelTableName = EntityHelper.getEntityClass(model).getAnnotation(Table.class).name();
+    return getBatchSetTableName(EntityHelper.getEntityClass(model));
+  }
+
+  protected String getBatchSetTableName(Class<? extends Model> modelClass) {
+    String modelTableName = modelClass.getAnnotation(Table.class).name();
     return modelTableName + "_BATCH_SET";
   }
 
+  /** Outcome of the debt recovery of a partner, recorded on the batch by the calling thread. */
+  protected static class DebtRecoveryPartnerResult {
+
+    protected final Long partnerId;
+    protected final List<Long> debtRecoveryIdList = new ArrayList<>();
+    protected boolean done;
+    protected boolean anomaly;
+
+    protected DebtRecoveryPartnerResult(Long partnerId) {
+      this.partnerId = partnerId;
+    }
+  }
+
   /**
    * As {@code batch} entity can be detached from the session, call {@code Batch.find()} get the
    * entity in the persistant context. Warning : {@code batch} entity have to be saved before.
@@ -28,6 +28,7 @@ import com.axelor.apps.account.exception.AccountExceptionMessage;
 import com.axelor.apps.account.service.fixedasset.FixedAssetDerogatoryLineMoveService;
 import com.axelor.apps.account.service.fixedasset.FixedAssetLineMoveService;
 import com.axelor.apps.account.service.fixedasset.FixedAssetLineService;
+import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.administration.AbstractBatch;
@@ -36,15 +37,21 @@ import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
 import com.axelor.db.JPA;
+import com.axelor.db.Model;
+import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public class BatchRealizeFixedAssetLine extends AbstractBatch {
 
@@ -55,8 +62,9 @@ public class BatchRealizeFixedAssetLine extends AbstractBatch {
   protected FixedAssetDerogatoryLineRepository fixedAssetDerogatoryLineRepo;
   protected FixedAssetDerogatoryLineMoveService fixedAssetDerogatoryLineMoveService;
   protected static final int DEROGATORY_TYPE_SELECT = 99;
+  protected static final int FIXED_ASSET_LINE_CHUNK_SIZE = 50;
 
-  protected final Set<FixedAsset> fixedAssetSet = new HashSet<>();
+  protected final Set<Long> fixedAssetIdSet = new HashSet<>();
   protected final Map<Integer, Integer> typeCountMap = new HashMap<>();
 
   @Inject
@@ -105,58 +113,146 @@ public class BatchRealizeFixedAssetLine extends AbstractBatch {
                 : Optional.ofNullable(AuthUtils.getUser())
                     .map(User::getActiveCompany)
                     .orElse(null)));
-    List<FixedAssetLine> fixedAssetLineList =
-        fixedAssetLineRepo.all().filter(query).bind(queryParameters).fetch();
-    List<FixedAssetDerogatoryLine> fixedAssetDerogatoryLineList =
-        fixedAssetDerogatoryLineRepo.all().filter(query).bind(queryParameters).fetch();
+    List<Long> fixedAssetLineIdList =
+        getIdList(fixedAssetLineRepo.all().filter(query).bind(queryParameters));
+    List<Long> fixedAssetDerogatoryLineIdList =
+        getIdList(fixedAssetDerogatoryLineRepo.all().filter(query).bind(queryParameters));
 
     fixedAssetLineMoveService.setBatch(batch);
-    realizeFixedAssetLineList(fixedAssetLineList);
-    realizeFixedAssetDerogatoryLineList(fixedAssetDerogatoryLineList);
+    realizeFixedAssetLineList(fixedAssetLineIdList);
+    realizeFixedAssetDerogatoryLineList(fixedAssetDerogatoryLineIdList);
   }
 
-  protected void realizeFixedAssetLineList(List<FixedAssetLine> fixedAssetLineList) {
-    for (FixedAssetLine fixedAssetLine : fixedAssetLineList) {
+  protected List<Long> getIdList(Query<? extends Model> query) {
+    return query.order("id").select("id").fetch(0, 0).stream()
+        .map(it -> (Long) it.get("id"))
+        .collect(Collectors.toList());
+  }
+
+  protected boolean isRealizable(FixedAsset fixedAsset) {
+    return fixedAsset != null && fixedAsset.getStatusSelect() > FixedAssetRepository.STATUS_DRAFT;
+  }
+
+  /**
+   * Realize the lines by chunks, each chunk in a single transaction. If a line of the chunk fails,
+   * the chunk is rolled back and its lines are realized again one by one so that only the failing
+   * line is traced as an anomaly.
+   */
+  protected void realizeFixedAssetLineList(List<Long> fixedAssetLineIdList) {
+    for (List<Long> idList : Lists.partition(fixedAssetLineIdList, FIXED_ASSET_LINE_CHUNK_SIZE)) {
+      Set<Long> chunkFixedAssetIdSet = new HashSet<>();
+      List<FixedAssetLine> realizedLineList = new ArrayList<>();
+
       try {
-        fixedAssetLine = fixedAssetLineRepo.find(fixedAssetLine.getId());
-        FixedAsset fixedAsset = fixedAssetLineService.getFixedAsset(fixedAssetLine);
-        if (fixedAsset != null
-            && fixedAsset.getStatusSelect() > FixedAssetRepository.STATUS_DRAFT) {
-          fixedAssetSet.add(fixedAsset);
-          fixedAssetLineMoveService.realize(fixedAssetLine, true, true, false);
-          incrementDone();
-          countFixedAssetLineType(fixedAssetLine);
-        }
+        realizeFixedAssetLines(idList, chunkFixedAssetIdSet, realizedLineList);
       } catch (Exception e) {
-        incrementAnomaly();
-        TraceBackService.trace(e, null, this.batch.getId());
+        JPA.clear();
+        idList.forEach(this::realizeFixedAssetLine);
+        continue;
+      }
+
+      fixedAssetIdSet.addAll(chunkFixedAssetIdSet);
+      for (FixedAssetLine fixedAssetLine : realizedLineList) {
+        incrementDone();
+        countFixedAssetLineType(fixedAssetLine);
       }
       JPA.clear();
     }
   }
 
-  protected void realizeFixedAssetDerogatoryLineList(
-      List<FixedAssetDerogatoryLine> fixedAssetDerogatoryLineList) {
-    for (FixedAssetDerogatoryLine fixedAssetDerogatoryLine : fixedAssetDerogatoryLineList) {
+  @Transactional(rollbackOn = {Exception.class})
+  protected void realizeFixedAssetLines(
+      List<Long> fixedAssetLineIdList,
+      Set<Long> chunkFixedAssetIdSet,
+      List<FixedAssetLine> realizedLineList)
+      throws AxelorException {
+    for (Long fixedAssetLineId : fixedAssetLineIdList) {
+      FixedAssetLine fixedAssetLine = fixedAssetLineRepo.find(fixedAssetLineId);
+      FixedAsset fixedAsset = fixedAssetLineService.getFixedAsset(fixedAssetLine);
+      if (isRealizable(fixedAsset)) {
+        fixedAssetLineMoveService.realize(fixedAssetLine, true, true, false);
+        chunkFixedAssetIdSet.add(fixedAsset.getId());
+        realizedLineList.add(fixedAssetLine);
+      }
+    }
+  }
+
+  protected void realizeFixedAssetLine(Long fixedAssetLineId) {
+    try {
+      FixedAssetLine fixedAssetLine = fixedAssetLineRepo.find(fixedAssetLineId);
+      FixedAsset fixedAsset = fixedAssetLineService.getFixedAsset(fixedAssetLine);
+      if (isRealizable(fixedAsset)) {
+        fixedAssetIdSet.add(fixedAsset.getId());
+        fixedAssetLineMoveService.realize(fixedAssetLine, true, true, false);
+        incrementDone();
+        countFixedAssetLineType(fixedAssetLine);
+      }
+    } catch (Exception e) {
+      incrementAnomaly();
+      TraceBackService.trace(e, null, this.batch.getId());
+    }
+    JPA.clear();
+  }
+
+  protected void realizeFixedAssetDerogatoryLineList(List<Long> fixedAssetDerogatoryLineIdList) {
+    for (List<Long> idList :
+        Lists.partition(fixedAssetDerogatoryLineIdList, FIXED_ASSET_LINE_CHUNK_SIZE)) {
+      Set<Long> chunkFixedAssetIdSet = new HashSet<>();
+      List<FixedAssetDerogatoryLine> realizedLineList = new ArrayList<>();
+
       try {
-        fixedAssetDerogatoryLine =
-            fixedAssetDerogatoryLineRepo.find(fixedAssetDerogatoryLine.getId());
-        FixedAsset fixedAsset = fixedAssetDerogatoryLine.getFixedAsset();
-        if (fixedAsset != null
-            && fixedAsset.getStatusSelect() > FixedAssetRepository.STATUS_DRAFT) {
-          fixedAssetSet.add(fixedAsset);
-          fixedAssetDerogatoryLineMoveService.realize(fixedAssetDerogatoryLine, true, true);
-          incrementDone();
-          countFixedAssetDerogatoryLineType(fixedAssetDerogatoryLine);
-        }
+        realizeFixedAssetDerogatoryLines(idList, chunkFixedAssetIdSet, realizedLineList);
       } catch (Exception e) {
-        incrementAnomaly();
-        TraceBackService.trace(e);
+        JPA.clear();
+        idList.forEach(this::realizeFixedAssetDerogatoryLine);
+        continue;
+      }
+
+      fixedAssetIdSet.addAll(chunkFixedAssetIdSet);
+      for (FixedAssetDerogatoryLine fixedAssetDerogatoryLine : realizedLineList) {
+        incrementDone();
+        countFixedAssetDerogatoryLineType(fixedAssetDerogatoryLine);
       }
       JPA.clear();
     }
   }
 
+  @Transactional(rollbackOn = {Exception.class})
+  protected void realizeFixedAssetDerogatoryLines(
+      List<Long> fixedAssetDerogatoryLineIdList,
+      Set<Long> chunkFixedAssetIdSet,
+      List<FixedAssetDerogatoryLine> realizedLineList)
+      throws AxelorException {
+    for (Long fixedAssetDerogatoryLineId : fixedAssetDerogatoryLineIdList) {
+      FixedAssetDerogatoryLine fixedAssetDerogatoryLine =
+          fixedAssetDerogatoryLineRepo.find(fixedAssetDerogatoryLineId);
+      FixedAsset fixedAsset = fixedAssetDerogatoryLine.getFixedAsset();
+      if (isRealizable(fixedAsset)) {
+        fixedAssetDerogatoryLineMoveService.realize(fixedAssetDerogatoryLine, true, true);
+        chunkFixedAssetIdSet.add(fixedAsset.getId());
+        realizedLineList.add(fixedAssetDerogatoryLine);
+      }
+    }
+  }
+
+  protected void realizeFixedAssetDerogatoryLine(Long fixedAssetDerogatoryLineId) {
+    try {
+      FixedAssetDerogatoryLine fixedAssetDerogatoryLine =
+          fixedAssetDerogatoryLineRepo.find(fixedAssetDerogatoryLineId);
+      FixedAsset fixedAsset = fixedAssetDerogatoryLine.getFixedAsset();
+      if (isRealizable(fixedAsset)) {
+        fixedAssetIdSet.add(fixedAsset.getId());
+        fixedAssetDerogatoryLineMoveService.realize(fixedAssetDerogatoryLine, true, true);
+        incrementDone();
+        countFixedAssetDerogatoryLineType(fixedAssetDerogatoryLine);
+      }
+    } catch (Exception e) {
+      incrementAnomaly();
+      TraceBackService.trace(e);
+    }
+    JPA.clear();
+  }
+
   protected void countFixedAssetLineType(FixedAssetLine fixedAssetLine) {
     if (typeCountMap.containsKey(fixedAssetLine.getTypeSelect())) {
       typeCountMap.compute(fixedAssetLine.getTypeSelect(), (k, v) -> ++v);
@@ -180,7 +276,7 @@ public class BatchRealizeFixedAssetLine extends AbstractBatch {
         new StringBuilder(
             String.format(
                 "\t* %s " + I18n.get(AccountExceptionMessage.BATCH_PROCESSED_FIXED_ASSET) + "\n",
-                fixedAssetSet.size()));
+                fixedAssetIdSet.size()));
 
     sbComment.append(
         String.format(
@@ -0,0 +1,102 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.batch;
+
+import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.account.service.AccountPeriodBalanceService;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Period;
+import com.axelor.apps.base.exceptions.BaseExceptionMessage;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.db.JPA;
+import com.axelor.i18n.I18n;
+import com.google.inject.Inject;
+import java.util.List;
+
+public class BatchRebuildPeriodBalances extends BatchStrategy {
+
+  protected AccountPeriodBalanceService accountPeriodBalanceService;
+
+  @Inject
+  public BatchRebuildPeriodBalances(AccountPeriodBalanceService accountPeriodBalanceService) {
+    this.accountPeriodBalanceService = accountPeriodBalanceService;
+  }
+
+  @Override
+  protected void process() {
+    Company company = batch.getAccountingBatch().getCompany();
+
+    try {
+      // Balances are computed from the move lines while the periods are rebuilt
+      accountPeriodBalanceService.setBuilt(company, false);
+    } catch (Exception e) {
+      TraceBackService.trace(e, null, batch.getId());
+      incrementAnomaly();
+      return;
+    }
+
+    List<Long> periodIdList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id FROM Period self WHERE self.year.company = :company "
+                    + "ORDER BY self.fromDate",
+                Long.class)
+            .setParameter("company", company)
+            .getResultList();
+
+    for (Long periodId : periodIdList) {
+      try {
+        accountPeriodBalanceService.rebuild(
+            JPA.find(Company.class, company.getId()), JPA.find(Period.class, periodId));
+        incrementDone();
+      } catch (Exception e) {
+        TraceBackService.trace(e, null, batch.getId());
+        incrementAnomaly();
+      } finally {
+        JPA.clear();
+      }
+    }
+
+    if (batch.getAnomaly() == 0) {
+      try {
+        accountPeriodBalanceService.setBuilt(JPA.find(Company.class, company.getId()), true);
+      } catch (Exception e) {
+        TraceBackService.trace(e, null, batch.getId());
+        incrementAnomaly();
+      }
+    }
+  }
+
+  @Override
+  protected void stop() {
+    StringBuilder sbComment =
+        new StringBuilder(
+            String.format(
+                "%s\n\t* %s %s\n",
+                I18n.get(AccountExceptionMessage.BATCH_REBUILD_PERIOD_BALANCES_1),
+                batch.getDone(),
+                I18n.get(AccountExceptionMessage.BATCH_REBUILD_PERIOD_BALANCES_2)));
+
+    sbComment.append(
+        String.format("\t" + I18n.get(BaseExceptionMessage.BASE_BATCH_3), batch.getAnomaly()));
+
+    addComment(sbComment.toString());
+    super.stop();
+  }
+}
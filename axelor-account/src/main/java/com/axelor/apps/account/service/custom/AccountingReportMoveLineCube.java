@@ -0,0 +1,93 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.custom;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Amounts of the move lines of a custom accounting report computation, fetched once and shared by
+ * all of its cells. A cube belongs to a single computation and is not thread safe.
+ */
+public class AccountingReportMoveLineCube {
+
+  /** Debit and credit by account, by date range. */
+  protected final Map<Pair<LocalDate, LocalDate>, List<AccountAmount>> accountAmountMap =
+      new HashMap<>();
+
+  /** Ids of the analytic accounts matching a code filter, by code filter. */
+  protected final Map<String, Set<Long>> analyticAccountIdMap = new HashMap<>();
+
+  public List<AccountAmount> getAccountAmounts(
+      Pair<LocalDate, LocalDate> dates,
+      Function<Pair<LocalDate, LocalDate>, List<AccountAmount>> loader) {
+    return accountAmountMap.computeIfAbsent(dates, loader);
+  }
+
+  public Set<Long> getAnalyticAccountIds(String code, Function<String, Set<Long>> loader) {
+    return analyticAccountIdMap.computeIfAbsent(code, loader);
+  }
+
+  public static class AccountAmount {
+    protected final Long accountId;
+    protected final String accountCode;
+    protected final Long accountTypeId;
+    protected final BigDecimal debit;
+    protected final BigDecimal credit;
+
+    public AccountAmount(
+        Long accountId,
+        String accountCode,
+        Long accountTypeId,
+        BigDecimal debit,
+        BigDecimal credit) {
+      this.accountId = accountId;
+      this.accountCode = accountCode;
+      this.accountTypeId = accountTypeId;
+      this.debit = debit == null ? BigDecimal.ZERO : debit;
+      this.credit = credit == null ? BigDecimal.ZERO : credit;
+    }
+
+    public Long getAccountId() {
+      return accountId;
+    }
+
+    public String getAccountCode() {
+      return accountCode;
+    }
+
+    public Long getAccountTypeId() {
+      return accountTypeId;
+    }
+
+    public BigDecimal getDebit() {
+      return debit;
+    }
+
+    public BigDecimal getCredit() {
+      return credit;
+    }
+  }
+}
@@ -96,21 +96,21 @@ public abstract class AccountingReportValueAbstractService {
       Map<String, Map<String, AccountingReportValue>> valuesMapByLine,
       AnalyticAccount configAnalyticAccount,
       String lineCode,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException {
     DateTimeFormatter format = dateService.getDateFormat();
     String period = String.format("%s - %s", startDate.format(format), endDate.format(format));
     int groupNumber = groupColumn == null ? 0 : groupColumn.getSequence();
     int columnNumber = column.getSequence();
-    int lineNumber = line.getSequence();
+    int lineNumber = context.getLineNumber(line, lineCode);
 
     AccountingReportValue accountingReportValue =
         new AccountingReportValue(
             groupNumber,
             columnNumber,
-            lineNumber + AccountingReportValueServiceImpl.getLineOffset(),
-            AccountingReportValueServiceImpl.getPeriodNumber(),
-            analyticCounter,
+            lineNumber,
+            context.getPeriodNumber(),
+            context.getAnalyticCounter(),
             this.getStyleSelect(groupColumn, column, line),
             groupColumn == null
                 ? AccountingReportConfigLineRepository.STYLE_NO_STYLE
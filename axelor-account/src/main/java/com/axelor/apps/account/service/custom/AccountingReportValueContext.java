@@ -0,0 +1,121 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.custom;
+
+import com.axelor.apps.account.db.AccountingReportConfigLine;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Layout of a custom accounting report being computed. The line offsets are computed once per
+ * report and shared by the computations of its periods, analytic accounts and column groups, which
+ * each get their own context with {@link #forComputation(int, int, Integer)}. Contexts are
+ * immutable apart from the move line cube owned by their computation, so reports and parts of a
+ * report can be computed at the same time.
+ */
+public class AccountingReportValueContext {
+
+  /** Number of detail lines displayed before each line, by line code. */
+  protected final Map<String, Integer> lineOffsetMap;
+
+  protected final int periodNumber;
+  protected final int analyticCounter;
+
+  /** Index of the only column group to compute, null to compute every group. */
+  protected final Integer groupIndex;
+
+  protected final AccountingReportMoveLineCube moveLineCube = new AccountingReportMoveLineCube();
+
+  protected AccountingReportValueContext(
+      Map<String, Integer> lineOffsetMap,
+      int periodNumber,
+      int analyticCounter,
+      Integer groupIndex) {
+    this.lineOffsetMap = lineOffsetMap;
+    this.periodNumber = periodNumber;
+    this.analyticCounter = analyticCounter;
+    this.groupIndex = groupIndex;
+  }
+
+  /**
+   * Create the context of a report.
+   *
+   * @param lineList the lines of the report, sorted by sequence.
+   * @param detailLineCounter the number of detail lines displayed for a line.
+   */
+  public static AccountingReportValueContext create(
+      List<AccountingReportConfigLine> lineList,
+      ToIntFunction<AccountingReportConfigLine> detailLineCounter) {
+    Map<String, Integer> lineOffsetMap = new HashMap<>();
+    int lineOffset = 0;
+
+    for (AccountingReportConfigLine line : lineList) {
+      lineOffsetMap.put(line.getCode(), lineOffset);
+      // the first detail line takes the place of the line itself
+      lineOffset += Math.max(detailLineCounter.applyAsInt(line) - 1, 0);
+    }
+
+    return new AccountingReportValueContext(Collections.unmodifiableMap(lineOffsetMap), 0, 0, null);
+  }
+
+  public AccountingReportValueContext forComputation(
+      int periodNumber, int analyticCounter, Integer groupIndex) {
+    return new AccountingReportValueContext(
+        lineOffsetMap, periodNumber, analyticCounter, groupIndex);
+  }
+
+  /**
+   * Get the line number of a value, the same in every column, period and analytic account.
+   *
+   * @param line the line of the value.
+   * @param lineCode the code of the line, or of one of its detail lines (line code followed by _1,
+   *     _2...).
+   */
+  public int getLineNumber(AccountingReportConfigLine line, String lineCode) {
+    int lineNumber = line.getSequence() + lineOffsetMap.getOrDefault(line.getCode(), 0);
+    String detailPrefix = line.getCode() + "_";
+
+    if (lineCode != null
+        && lineCode.startsWith(detailPrefix)
+        && lineCode.substring(detailPrefix.length()).matches("[0-9]+")) {
+      lineNumber += Integer.parseInt(lineCode.substring(detailPrefix.length())) - 1;
+    }
+
+    return lineNumber;
+  }
+
+  public int getPeriodNumber() {
+    return periodNumber;
+  }
+
+  public int getAnalyticCounter() {
+    return analyticCounter;
+  }
+
+  public AccountingReportMoveLineCube getMoveLineCube() {
+    return moveLineCube;
+  }
+
+  public boolean isComputedGroup(int index) {
+    return groupIndex == null || groupIndex == index;
+  }
+}
@@ -38,7 +38,7 @@ public interface AccountingReportValueCustomRuleService {
       String parentTitle,
       LocalDate startDate,
       LocalDate endDate,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException;
 
   void createValueFromCustomRule(
@@ -52,6 +52,6 @@ public interface AccountingReportValueCustomRuleService {
       LocalDate startDate,
       LocalDate endDate,
       String parentTitle,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException;
 }
@@ -65,7 +65,7 @@ public class AccountingReportValueCustomRuleServiceImpl extends AccountingReport
       String parentTitle,
       LocalDate startDate,
       LocalDate endDate,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException {
     if (accountingReport.getDisplayDetails()
         && line.getDetailBySelect() != AccountingReportConfigLineRepository.DETAIL_BY_NOTHING) {
@@ -85,7 +85,7 @@ public class AccountingReportValueCustomRuleServiceImpl extends AccountingReport
             endDate,
             parentTitle,
             lineCode,
-            analyticCounter);
+            context);
       }
     } else {
       this.createValueFromCustomRule(
@@ -99,7 +99,7 @@ public class AccountingReportValueCustomRuleServiceImpl extends AccountingReport
           startDate,
           endDate,
           parentTitle,
-          analyticCounter);
+          context);
     }
   }
 
@@ -115,7 +115,7 @@ public class AccountingReportValueCustomRuleServiceImpl extends AccountingReport
       LocalDate startDate,
       LocalDate endDate,
       String parentTitle,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException {
     this.createValueFromCustomRule(
         accountingReport,
@@ -129,7 +129,7 @@ public class AccountingReportValueCustomRuleServiceImpl extends AccountingReport
         endDate,
         parentTitle,
         line.getCode(),
-        analyticCounter);
+        context);
   }
 
   protected void createValueFromCustomRule(
@@ -144,7 +144,7 @@ public class AccountingReportValueCustomRuleServiceImpl extends AccountingReport
       LocalDate endDate,
       String parentTitle,
       String lineCode,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException {
     Map<String, AccountingReportValue> valuesMap =
         this.getValuesMap(
@@ -201,7 +201,7 @@ public class AccountingReportValueCustomRuleServiceImpl extends AccountingReport
         valuesMapByLine,
         configAnalyticAccount,
         lineCode,
-        analyticCounter);
+        context);
   }
 
   protected Map<String, AccountingReportValue> getValuesMap(
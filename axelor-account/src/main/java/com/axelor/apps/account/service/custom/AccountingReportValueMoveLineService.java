@@ -40,6 +40,13 @@ public interface AccountingReportValueMoveLineService {
       String parentTitle,
       LocalDate startDate,
       LocalDate endDate,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException;
+
+  /**
+   * Get the number of detail lines displayed for a line of the report.
+   *
+   * @return 0 if the line is not detailed.
+   */
+  int getDetailLineCount(AccountingReport accountingReport, AccountingReportConfigLine line);
 }
@@ -24,8 +24,6 @@ import com.axelor.apps.account.db.AccountingReport;
 import com.axelor.apps.account.db.AccountingReportConfigLine;
 import com.axelor.apps.account.db.AccountingReportValue;
 import com.axelor.apps.account.db.AnalyticAccount;
-import com.axelor.apps.account.db.AnalyticMoveLine;
-import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.db.repo.AccountRepository;
 import com.axelor.apps.account.db.repo.AccountingReportConfigLineRepository;
 import com.axelor.apps.account.db.repo.AccountingReportValueRepository;
@@ -40,7 +38,6 @@ import com.axelor.auth.db.AuditableModel;
 import com.axelor.common.StringUtils;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
-import com.axelor.db.Query;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
 import java.math.BigDecimal;
@@ -55,20 +52,21 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.persistence.Parameter;
+import javax.persistence.Query;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.tuple.Pair;
 
 public class AccountingReportValueMoveLineServiceImpl extends AccountingReportValueAbstractService
     implements AccountingReportValueMoveLineService {
   protected MoveLineRepository moveLineRepo;
-  protected Set<AnalyticAccount> groupColumnAnalyticAccountSet;
-  protected Set<AnalyticAccount> columnAnalyticAccountSet;
-  protected Set<AnalyticAccount> lineAnalyticAccountSet;
 
   @Inject
   public AccountingReportValueMoveLineServiceImpl(
@@ -94,7 +92,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
       String parentTitle,
       LocalDate startDate,
       LocalDate endDate,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException {
     this.checkResultSelects(accountingReport, groupColumn, column, line);
 
@@ -102,21 +100,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
         && line.getDetailBySelect() == AccountingReportConfigLineRepository.DETAIL_BY_ACCOUNT) {
       int counter = 1;
 
-      Set<Account> detailByAccountSet = new HashSet<>(line.getAccountSet());
-
-      if (CollectionUtils.isNotEmpty(line.getAccountTypeSet())) {
-        detailByAccountSet =
-            this.mergeWithAccountTypes(detailByAccountSet, line.getAccountTypeSet());
-      }
-
-      if (StringUtils.notEmpty(line.getAccountCode())) {
-        detailByAccountSet = this.mergeWithAccountCode(detailByAccountSet, line.getAccountCode());
-      }
-
-      detailByAccountSet =
-          this.sortSet(detailByAccountSet, Comparator.comparing(Account::getLabel));
-
-      for (Account account : detailByAccountSet) {
+      for (Account account : this.getDetailByAccountSet(line)) {
         String lineCode = String.format("%s_%d", line.getCode(), counter++);
 
         if (!valuesMapByLine.containsKey(lineCode)) {
@@ -154,27 +138,16 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
             lineCode,
             startDate,
             endDate,
-            analyticCounter);
+            context);
 
         JPA.clear();
-        AccountingReportValueServiceImpl.incrementLineOffset();
       }
     } else if (accountingReport.getDisplayDetails()
         && line.getDetailBySelect()
             == AccountingReportConfigLineRepository.DETAIL_BY_ACCOUNT_TYPE) {
       int counter = 1;
 
-      Set<AccountType> detailByAccountTypeSet = new HashSet<>(line.getAccountTypeSet());
-
-      if (CollectionUtils.isNotEmpty(line.getAccountSet())) {
-        detailByAccountTypeSet =
-            this.mergeWithAccounts(detailByAccountTypeSet, line.getAccountSet());
-      }
-
-      detailByAccountTypeSet =
-          this.sortSet(detailByAccountTypeSet, Comparator.comparing(AccountType::getName));
-
-      for (AccountType accountType : detailByAccountTypeSet) {
+      for (AccountType accountType : this.getDetailByAccountTypeSet(line)) {
         String lineCode = String.format("%s_%d", line.getCode(), counter++);
 
         if (!valuesMapByLine.containsKey(lineCode)) {
@@ -212,20 +185,16 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
             lineCode,
             startDate,
             endDate,
-            analyticCounter);
+            context);
 
         JPA.clear();
-        AccountingReportValueServiceImpl.incrementLineOffset();
       }
     } else if (accountingReport.getDisplayDetails()
         && line.getDetailBySelect()
             == AccountingReportConfigLineRepository.DETAIL_BY_ANALYTIC_ACCOUNT) {
       int counter = 1;
-      Set<AnalyticAccount> sortedAnalyticAccountSet =
-          this.sortSet(
-              line.getAnalyticAccountSet(), Comparator.comparing(AnalyticAccount::getFullName));
 
-      for (AnalyticAccount analyticAccount : sortedAnalyticAccountSet) {
+      for (AnalyticAccount analyticAccount : this.getDetailByAnalyticAccountSet(line)) {
         String lineCode = String.format("%s_%d", line.getCode(), counter++);
 
         if (!valuesMapByLine.containsKey(lineCode)) {
@@ -263,10 +232,9 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
             lineCode,
             startDate,
             endDate,
-            analyticCounter);
+            context);
 
         JPA.clear();
-        AccountingReportValueServiceImpl.incrementLineOffset();
       }
     } else {
       this.mergeSetsAndCreateValueFromMoveLines(
@@ -286,8 +254,58 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
           line.getCode(),
           startDate,
           endDate,
-          analyticCounter);
+          context);
+    }
+  }
+
+  @Override
+  public int getDetailLineCount(
+      AccountingReport accountingReport, AccountingReportConfigLine line) {
+    if (!accountingReport.getDisplayDetails()
+        || line.getRuleTypeSelect() == AccountingReportConfigLineRepository.RULE_TYPE_NO_VALUE
+        || line.getRuleTypeSelect() == AccountingReportConfigLineRepository.RULE_TYPE_CUSTOM_RULE) {
+      return 0;
     }
+
+    switch (line.getDetailBySelect()) {
+      case AccountingReportConfigLineRepository.DETAIL_BY_ACCOUNT:
+        return this.getDetailByAccountSet(line).size();
+      case AccountingReportConfigLineRepository.DETAIL_BY_ACCOUNT_TYPE:
+        return this.getDetailByAccountTypeSet(line).size();
+      case AccountingReportConfigLineRepository.DETAIL_BY_ANALYTIC_ACCOUNT:
+        return this.getDetailByAnalyticAccountSet(line).size();
+      default:
+        return 0;
+    }
+  }
+
+  protected Set<Account> getDetailByAccountSet(AccountingReportConfigLine line) {
+    Set<Account> detailByAccountSet = new HashSet<>(line.getAccountSet());
+
+    if (CollectionUtils.isNotEmpty(line.getAccountTypeSet())) {
+      detailByAccountSet = this.mergeWithAccountTypes(detailByAccountSet, line.getAccountTypeSet());
+    }
+
+    if (StringUtils.notEmpty(line.getAccountCode())) {
+      detailByAccountSet = this.mergeWithAccountCode(detailByAccountSet, line.getAccountCode());
+    }
+
+    return this.sortSet(detailByAccountSet, Comparator.comparing(Account::getLabel));
+  }
+
+  protected Set<AccountType> getDetailByAccountTypeSet(AccountingReportConfigLine line) {
+    Set<AccountType> detailByAccountTypeSet = new HashSet<>(line.getAccountTypeSet());
+
+    if (CollectionUtils.isNotEmpty(line.getAccountSet())) {
+      detailByAccountTypeSet = this.mergeWithAccounts(detailByAccountTypeSet, line.getAccountSet());
+    }
+
+    return this.sortSet(detailByAccountTypeSet, Comparator.comparing(AccountType::getName));
+  }
+
+  protected Set<AnalyticAccount> getDetailByAnalyticAccountSet(AccountingReportConfigLine line) {
+    return this.sortSet(
+        line.getAnalyticAccountSet(), Comparator.comparing(AnalyticAccount::getFullName));
   }
 
   protected <T extends AuditableModel> Set<T> sortSet(Set<T> set, Comparator<T> comparator) {
@@ -314,7 +332,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
       String lineCode,
       LocalDate startDate,
       LocalDate endDate,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException {
     Set<Account> lineAccountSet = line.getAccountSet();
     Set<AccountType> lineAccountTypeSet = line.getAccountTypeSet();
@@ -370,7 +388,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
         parentTitle,
         lineTitle,
         lineCode,
-        analyticCounter);
+        context);
   }
 
   protected Set<AnalyticAccount> getParentAnalyticAccountSet(AnalyticAccount analyticAccount) {
@@ -493,7 +511,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
       String parentTitle,
       String lineTitle,
       String lineCode,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException {
     Set<AnalyticAccount> resultAnalyticAccountSet =
         this.mergeSets(
@@ -502,30 +520,18 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
                 ? null
                 : new HashSet<>(Collections.singletonList(configAnalyticAccount)));
 
-    List<MoveLine> moveLineList =
-        this.getMoveLineQuery(
-                accountingReport,
-                groupColumn,
-                column,
-                line,
-                accountSet,
-                accountTypeSet,
-                resultAnalyticAccountSet,
-                startDate,
-                endDate)
-            .fetch();
-
     BigDecimal result =
-        this.getResultFromMoveLine(
+        this.getResult(
             accountingReport,
             groupColumn,
             column,
             line,
-            moveLineList,
+            accountSet,
+            accountTypeSet,
             resultAnalyticAccountSet,
             startDate,
             endDate,
-            this.getResultSelect(column, line, groupColumn));
+            context.getMoveLineCube());
 
     this.createReportValue(
         accountingReport,
@@ -541,7 +547,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
         valuesMapByLine,
         configAnalyticAccount,
         lineCode,
-        analyticCounter);
+        context);
   }
 
   protected int getResultSelect(
@@ -559,7 +565,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
     }
   }
 
-  protected Query<MoveLine> getMoveLineQuery(
+  protected BigDecimal getResult(
       AccountingReport accountingReport,
       AccountingReportConfigLine groupColumn,
       AccountingReportConfigLine column,
@@ -568,20 +574,295 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
       Set<AccountType> accountTypeSet,
       Set<AnalyticAccount> analyticAccountSet,
       LocalDate startDate,
-      LocalDate endDate) {
+      LocalDate endDate,
+      AccountingReportMoveLineCube moveLineCube) {
     Pair<LocalDate, LocalDate> dates =
         this.getDates(accountingReport, groupColumn, column, line, startDate, endDate);
+    Pair<BigDecimal, BigDecimal> amounts;
+
+    if (!this.areAllAnalyticAccountSetsEmpty(accountingReport, groupColumn, column, line)
+        && CollectionUtils.isEmpty(analyticAccountSet)) {
+      // the analytic accounts of the report, group column, column and line have none in common
+      amounts = Pair.of(BigDecimal.ZERO, BigDecimal.ZERO);
+    } else if (this.isAnalyticResult(groupColumn, column, line, analyticAccountSet)) {
+      amounts =
+          this.getAnalyticAmounts(
+              accountingReport,
+              groupColumn,
+              column,
+              line,
+              accountSet,
+              accountTypeSet,
+              analyticAccountSet,
+              dates,
+              moveLineCube);
+    } else {
+      amounts =
+          this.getAccountAmounts(
+              accountingReport,
+              groupColumn,
+              column,
+              line,
+              accountSet,
+              accountTypeSet,
+              dates,
+              moveLineCube);
+    }
 
-    return this.buildMoveLineQuery(
-        accountingReport,
-        accountSet,
-        accountTypeSet,
-        analyticAccountSet,
-        groupColumn,
-        column,
-        line,
-        dates.getLeft(),
-        dates.getRight());
+    BigDecimal value =
+        this.getResultFromAmounts(
+            amounts.getLeft(), amounts.getRight(), this.getResultSelect(column, line, groupColumn));
+
+    if ((groupColumn != null && groupColumn.getNegateValue())
+        || column.getNegateValue()
+        || line.getNegateValue()) {
+      value = value.negate();
+    }
+
+    return value;
+  }
+
+  protected BigDecimal getResultFromAmounts(BigDecimal debit, BigDecimal credit, int resultSelect) {
+    switch (resultSelect) {
+      case AccountingReportConfigLineRepository.RESULT_DEBIT_MINUS_CREDIT:
+        return debit.subtract(credit);
+      case AccountingReportConfigLineRepository.RESULT_DEBIT:
+        return debit;
+      case AccountingReportConfigLineRepository.RESULT_CREDIT:
+        return credit;
+      default:
+        return BigDecimal.ZERO;
+    }
+  }
+
+  protected boolean isAnalyticResult(
+      AccountingReportConfigLine groupColumn,
+      AccountingReportConfigLine column,
+      AccountingReportConfigLine line,
+      Set<AnalyticAccount> analyticAccountSet) {
+    return CollectionUtils.isNotEmpty(analyticAccountSet)
+        || (groupColumn != null && StringUtils.notEmpty(groupColumn.getAnalyticAccountCode()))
+        || StringUtils.notEmpty(column.getAnalyticAccountCode())
+        || StringUtils.notEmpty(line.getAnalyticAccountCode());
+  }
+
+  /**
+   * Sum the debit and credit of the accounts matching the filters of a cell. The amounts of every
+   * account are fetched once per date range with a single grouped query and kept in the cube.
+   */
+  protected Pair<BigDecimal, BigDecimal> getAccountAmounts(
+      AccountingReport accountingReport,
+      AccountingReportConfigLine groupColumn,
+      AccountingReportConfigLine column,
+      AccountingReportConfigLine line,
+      Set<Account> accountSet,
+      Set<AccountType> accountTypeSet,
+      Pair<LocalDate, LocalDate> dates,
+      AccountingReportMoveLineCube moveLineCube) {
+    // dates are only filtered on when the report itself has dates
+    Pair<LocalDate, LocalDate> cubeDates =
+        Pair.of(
+            accountingReport.getDateFrom() != null ? dates.getLeft() : null,
+            accountingReport.getDateTo() != null ? dates.getRight() : null);
+    List<AccountingReportMoveLineCube.AccountAmount> accountAmountList =
+        moveLineCube.getAccountAmounts(
+            cubeDates, it -> this.fetchAccountAmounts(accountingReport, it));
+
+    Set<Long> accountIdSet =
+        this.areAllAccountSetsEmpty(accountingReport, groupColumn, column, line)
+            ? null
+            : this.getIdSet(accountSet);
+    Set<Long> accountTypeIdSet =
+        CollectionUtils.isNotEmpty(accountTypeSet) ? this.getIdSet(accountTypeSet) : null;
+    List<Pattern> accountCodePatternList =
+        Stream.of(
+                groupColumn == null ? null : groupColumn.getAccountCode(),
+                column.getAccountCode(),
+                line.getAccountCode())
+            .filter(StringUtils::notEmpty)
+            .map(this::getAccountCodePattern)
+            .collect(Collectors.toList());
+
+    BigDecimal debit = BigDecimal.ZERO;
+    BigDecimal credit = BigDecimal.ZERO;
+
+    for (AccountingReportMoveLineCube.AccountAmount accountAmount : accountAmountList) {
+      if ((accountIdSet == null || accountIdSet.contains(accountAmount.getAccountId()))
+          && (accountTypeIdSet == null
+              || accountTypeIdSet.contains(accountAmount.getAccountTypeId()))
+          && accountCodePatternList.stream()
+              .allMatch(
+                  it ->
+                      accountAmount.getAccountCode() != null
+                          && it.matcher(accountAmount.getAccountCode()).matches())) {
+        debit = debit.add(accountAmount.getDebit());
+        credit = credit.add(accountAmount.getCredit());
+      }
+    }
+
+    return Pair.of(debit, credit);
+  }
+
+  @SuppressWarnings("unchecked")
+  protected List<AccountingReportMoveLineCube.AccountAmount> fetchAccountAmounts(
+      AccountingReport accountingReport, Pair<LocalDate, LocalDate> dates) {
+    Query query =
+        JPA.em()
+            .createQuery(
+                "SELECT account.id, account.code, accountType.id, SUM(self.debit), SUM(self.credit) "
+                    + "FROM MoveLine self "
+                    + "JOIN self.account account "
+                    + "LEFT JOIN account.accountType accountType "
+                    + "WHERE "
+                    + String.join(" AND ", this.getReportQueryList(accountingReport))
+                    + " GROUP BY account.id, account.code, accountType.id");
+
+    Map<String, Object> params = this.getReportQueryParams(accountingReport);
+    params.put("dateFrom", dates.getLeft());
+    params.put("dateTo", dates.getRight());
+    this.bindParams(query, params);
+
+    return ((List<Object[]>) query.getResultList())
+        .stream()
+            .map(
+                it ->
+                    new AccountingReportMoveLineCube.AccountAmount(
+                        (Long) it[0],
+                        (String) it[1],
+                        (Long) it[2],
+                        (BigDecimal) it[3],
+                        (BigDecimal) it[4]))
+            .collect(Collectors.toList());
+  }
+
+  /**
+   * Sum the amounts of the analytic move lines of a cell, split between debit and credit move
+   * lines, with a single aggregate query.
+   */
+  protected Pair<BigDecimal, BigDecimal> getAnalyticAmounts(
+      AccountingReport accountingReport,
+      AccountingReportConfigLine groupColumn,
+      AccountingReportConfigLine column,
+      AccountingReportConfigLine line,
+      Set<Account> accountSet,
+      Set<AccountType> accountTypeSet,
+      Set<AnalyticAccount> analyticAccountSet,
+      Pair<LocalDate, LocalDate> dates,
+      AccountingReportMoveLineCube moveLineCube) {
+    Set<Long> codeAnalyticAccountIdSet =
+        this.getCodeAnalyticAccountIdSet(groupColumn, column, line, moveLineCube);
+    List<String> analyticFilterList = new ArrayList<>();
+
+    if (CollectionUtils.isNotEmpty(analyticAccountSet)) {
+      analyticFilterList.add("analyticMoveLine.analyticAccount IN :analyticAccountSet");
+    }
+
+    if (!codeAnalyticAccountIdSet.isEmpty()) {
+      analyticFilterList.add("analyticMoveLine.analyticAccount.id IN :codeAnalyticAccountIdSet");
+    }
+
+    if (analyticFilterList.isEmpty()) {
+      return Pair.of(BigDecimal.ZERO, BigDecimal.ZERO);
+    }
+
+    Query query =
+        JPA.em()
+            .createQuery(
+                "SELECT SUM(CASE WHEN self.debit > 0 THEN analyticMoveLine.amount ELSE 0 END), "
+                    + "SUM(CASE WHEN self.debit > 0 THEN 0 ELSE analyticMoveLine.amount END) "
+                    + "FROM AnalyticMoveLine analyticMoveLine "
+                    + "JOIN analyticMoveLine.moveLine self "
+                    + "WHERE "
+                    + this.getMoveLineQuery(
+                        accountingReport,
+                        accountSet,
+                        accountTypeSet,
+                        analyticAccountSet,
+                        groupColumn,
+                        column,
+                        line)
+                    + String.format(" AND (%s)", String.join(" OR ", analyticFilterList)));
+
+    Map<String, Object> params =
+        this.getMoveLineQueryParams(
+            accountingReport,
+            accountSet,
+            accountTypeSet,
+            analyticAccountSet,
+            groupColumn,
+            column,
+            line,
+            dates.getLeft(),
+            dates.getRight());
+    params.put("codeAnalyticAccountIdSet", codeAnalyticAccountIdSet);
+    this.bindParams(query, params);
+
+    Object[] result = (Object[]) query.getSingleResult();
+
+    return Pair.of(
+        Optional.ofNullable((BigDecimal) result[0]).orElse(BigDecimal.ZERO),
+        Optional.ofNullable((BigDecimal) result[1]).orElse(BigDecimal.ZERO));
+  }
+
+  /** Ids of the analytic accounts matching the codes of the group column, column and line. */
+  protected Set<Long> getCodeAnalyticAccountIdSet(
+      AccountingReportConfigLine groupColumn,
+      AccountingReportConfigLine column,
+      AccountingReportConfigLine line,
+      AccountingReportMoveLineCube moveLineCube) {
+    return Stream.of(
+            groupColumn == null ? null : groupColumn.getAnalyticAccountCode(),
+            column.getAnalyticAccountCode(),
+            line.getAnalyticAccountCode())
+        .filter(StringUtils::notEmpty)
+        .map(it -> moveLineCube.getAnalyticAccountIds(it, this::fetchAnalyticAccountIdsFromCode))
+        .flatMap(Collection::stream)
+        .collect(Collectors.toSet());
+  }
+
+  protected Set<Long> fetchAnalyticAccountIdsFromCode(String code) {
+    return new HashSet<>(
+        JPA.em()
+            .createQuery(
+                "SELECT self.id FROM AnalyticAccount self WHERE self.code LIKE :code", Long.class)
+            .setParameter("code", code)
+            .getResultList());
+  }
+
+  /** Translate a comma separated list of LIKE patterns on account codes. */
+  protected Pattern getAccountCodePattern(String accountFilter) {
+    return Pattern.compile(
+        Arrays.stream(accountFilter.split(","))
+            .map(this::getLikePatternRegex)
+            .collect(Collectors.joining("|")));
+  }
+
+  protected String getLikePatternRegex(String likePattern) {
+    StringBuilder regex = new StringBuilder();
+
+    for (char character : likePattern.toCharArray()) {
+      if (character == '%') {
+        regex.append(".*");
+      } else if (character == '_') {
+        regex.append('.');
+      } else {
+        regex.append(Pattern.quote(String.valueOf(character)));
+      }
+    }
+
+    return regex.toString();
+  }
+
+  protected <T extends Model> Set<Long> getIdSet(Set<T> set) {
+    return set == null
+        ? Collections.emptySet()
+        : set.stream().map(Model::getId).collect(Collectors.toSet());
+  }
+
+  protected void bindParams(Query query, Map<String, Object> params) {
+    for (Parameter<?> parameter : query.getParameters()) {
+      query.setParameter(parameter.getName(), params.get(parameter.getName()));
+    }
   }
 
   protected Pair<LocalDate, LocalDate> getDates(
@@ -616,7 +897,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
         || (groupColumn != null && groupColumn.getComputeOtherPeriod());
   }
 
-  protected Query<MoveLine> buildMoveLineQuery(
+  protected Map<String, Object> getMoveLineQueryParams(
       AccountingReport accountingReport,
       Set<Account> accountSet,
       Set<AccountType> accountTypeSet,
@@ -626,42 +907,50 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
       AccountingReportConfigLine line,
       LocalDate startDate,
       LocalDate endDate) {
-    Query<MoveLine> moveLineQuery =
-        moveLineRepo
-            .all()
-            .filter(
-                this.getMoveLineQuery(
-                    accountingReport,
-                    accountSet,
-                    accountTypeSet,
-                    analyticAccountSet,
-                    groupColumn,
-                    column,
-                    line))
-            .bind("dateFrom", startDate)
-            .bind("dateTo", endDate)
-            .bind("journal", accountingReport.getJournal())
-            .bind("paymentMode", accountingReport.getPaymentMode())
-            .bind("currency", accountingReport.getCurrency())
-            .bind("company", accountingReport.getCompany())
-            .bind("statusList", this.getMoveLineStatusList(accountingReport))
-            .bind("accountSet", accountSet)
-            .bind(
-                "groupColumnAnalyticAccountFilter",
-                groupColumn == null ? "" : groupColumn.getAnalyticAccountCode())
-            .bind("columnAnalyticAccountFilter", column.getAnalyticAccountCode())
-            .bind("lineAnalyticAccountFilter", line.getAnalyticAccountCode())
-            .bind("accountTypeSet", accountTypeSet)
-            .bind("analyticAccountSet", analyticAccountSet);
+    Map<String, Object> params = this.getReportQueryParams(accountingReport);
+    params.put("dateFrom", startDate);
+    params.put("dateTo", endDate);
+    params.put("accountSet", accountSet);
+    params.put(
+        "groupColumnAnalyticAccountFilter",
+        groupColumn == null ? "" : groupColumn.getAnalyticAccountCode());
+    params.put("columnAnalyticAccountFilter", column.getAnalyticAccountCode());
+    params.put("lineAnalyticAccountFilter", line.getAnalyticAccountCode());
+    params.put("accountTypeSet", accountTypeSet);
+    params.put("analyticAccountSet", analyticAccountSet);
 
     if (groupColumn != null) {
-      moveLineQuery =
-          this.bindAccountFilters(moveLineQuery, groupColumn.getAccountCode(), "groupColumn");
+      this.putAccountFilterParams(params, groupColumn.getAccountCode(), "groupColumn");
+    }
+
+    this.putAccountFilterParams(params, column.getAccountCode(), "column");
+    this.putAccountFilterParams(params, line.getAccountCode(), "line");
+
+    return params;
+  }
+
+  protected Map<String, Object> getReportQueryParams(AccountingReport accountingReport) {
+    Map<String, Object> params = new HashMap<>();
+    params.put("journal", accountingReport.getJournal());
+    params.put("paymentMode", accountingReport.getPaymentMode());
+    params.put("currency", accountingReport.getCurrency());
+    params.put("company", accountingReport.getCompany());
+    params.put("statusList", this.getMoveLineStatusList(accountingReport));
+
+    return params;
+  }
+
+  protected void putAccountFilterParams(
+      Map<String, Object> params, String accountFilter, String type) {
+    if (StringUtils.isEmpty(accountFilter)) {
+      return;
     }
 
-    moveLineQuery = this.bindAccountFilters(moveLineQuery, column.getAccountCode(), "column");
+    String[] tokens = accountFilter.split(",");
 
-    return this.bindAccountFilters(moveLineQuery, line.getAccountCode(), "line");
+    for (int i = 0; i < tokens.length; i++) {
+      params.put(String.format("%sAccountFilter%d", type, i), tokens[i]);
+    }
   }
 
   protected String getMoveLineQuery(
@@ -672,26 +961,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
       AccountingReportConfigLine groupColumn,
       AccountingReportConfigLine column,
       AccountingReportConfigLine line) {
-    List<String> queryList =
-        new ArrayList<>(Collections.singletonList("self.move.statusSelect IN :statusList"));
-
-    this.addDateQueries(queryList, accountingReport);
-
-    if (accountingReport.getJournal() != null) {
-      queryList.add("(self.move.journal IS NULL OR self.move.journal = :journal)");
-    }
-
-    if (accountingReport.getPaymentMode() != null) {
-      queryList.add("(self.move.paymentMode IS NULL OR self.move.paymentMode = :paymentMode)");
-    }
-
-    if (accountingReport.getCurrency() != null) {
-      queryList.add("(self.move.currency IS NULL OR self.move.currency = :currency)");
-    }
-
-    if (accountingReport.getCompany() != null) {
-      queryList.add("(self.move.company IS NULL OR self.move.company = :company)");
-    }
+    List<String> queryList = this.getReportQueryList(accountingReport);
 
     queryList.addAll(
         this.getAccountFilters(
@@ -725,6 +995,32 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
     return String.join(" AND ", queryList);
   }
 
+  /** Filters of the move lines of the report, shared by all of its cells. */
+  protected List<String> getReportQueryList(AccountingReport accountingReport) {
+    List<String> queryList =
+        new ArrayList<>(Collections.singletonList("self.move.statusSelect IN :statusList"));
+
+    this.addDateQueries(queryList, accountingReport);
+
+    if (accountingReport.getJournal() != null) {
+      queryList.add("(self.move.journal IS NULL OR self.move.journal = :journal)");
+    }
+
+    if (accountingReport.getPaymentMode() != null) {
+      queryList.add("(self.move.paymentMode IS NULL OR self.move.paymentMode = :paymentMode)");
+    }
+
+    if (accountingReport.getCurrency() != null) {
+      queryList.add("(self.move.currency IS NULL OR self.move.currency = :currency)");
+    }
+
+    if (accountingReport.getCompany() != null) {
+      queryList.add("(self.move.company IS NULL OR self.move.company = :company)");
+    }
+
+    return queryList;
+  }
+
   protected void addDateQueries(List<String> queryList, AccountingReport accountingReport) {
     if (accountingReport.getDateFrom() != null) {
       queryList.add("(self.date IS NULL OR self.date >= :dateFrom)");
@@ -735,49 +1031,6 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
     }
   }
 
-  protected BigDecimal getResultFromMoveLine(
-      AccountingReport accountingReport,
-      AccountingReportConfigLine groupColumn,
-      AccountingReportConfigLine column,
-      AccountingReportConfigLine line,
-      List<MoveLine> moveLineList,
-      Set<AnalyticAccount> analyticAccountSet,
-      LocalDate startDate,
-      LocalDate endDate,
-      int resultSelect) {
-    String groupColumnAnalyticAccountCode =
-        groupColumn != null ? groupColumn.getAnalyticAccountCode() : null;
-    String columnAnalyticAccountCode = column.getAnalyticAccountCode();
-    String lineAnalyticAccountCode = line.getAnalyticAccountCode();
-    groupColumnAnalyticAccountSet =
-        groupColumn != null && StringUtils.notEmpty(groupColumnAnalyticAccountCode)
-            ? this.fetchAnalyticAccountsFromCode(groupColumnAnalyticAccountCode)
-            : new HashSet<>();
-    columnAnalyticAccountSet =
-        StringUtils.notEmpty(columnAnalyticAccountCode)
-            ? this.fetchAnalyticAccountsFromCode(columnAnalyticAccountCode)
-            : new HashSet<>();
-    lineAnalyticAccountSet =
-        StringUtils.notEmpty(lineAnalyticAccountCode)
-            ? this.fetchAnalyticAccountsFromCode(lineAnalyticAccountCode)
-            : new HashSet<>();
-    return moveLineList.stream()
-        .map(
-            it ->
-                this.getMoveLineAmount(
-                    it,
-                    accountingReport,
-                    groupColumn,
-                    column,
-                    line,
-                    analyticAccountSet,
-                    startDate,
-                    endDate,
-                    resultSelect))
-        .reduce(BigDecimal::add)
-        .orElse(BigDecimal.ZERO);
-  }
-
   protected List<Integer> getMoveLineStatusList(AccountingReport accountingReport) {
     List<Integer> statusList =
         new ArrayList<>(
@@ -789,86 +1042,4 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
 
     return statusList;
   }
-
-  protected BigDecimal getMoveLineAmount(
-      MoveLine moveLine,
-      AccountingReport accountingReport,
-      AccountingReportConfigLine groupColumn,
-      AccountingReportConfigLine column,
-      AccountingReportConfigLine line,
-      Set<AnalyticAccount> analyticAccountSet,
-      LocalDate startDate,
-      LocalDate endDate,
-      int resultSelect) {
-    String groupColumnAnalyticAccountCode =
-        groupColumn == null ? null : groupColumn.getAnalyticAccountCode();
-
-    BigDecimal value = BigDecimal.ZERO;
-
-    if (CollectionUtils.isNotEmpty(analyticAccountSet)
-        || StringUtils.notEmpty(groupColumnAnalyticAccountCode)
-        || StringUtils.notEmpty(column.getAnalyticAccountCode())
-        || StringUtils.notEmpty(line.getAnalyticAccountCode())) {
-      value =
-          this.getAnalyticAmount(
-              moveLine, analyticAccountSet, resultSelect, moveLine.getDebit().signum() > 0);
-    } else {
-      switch (resultSelect) {
-        case AccountingReportConfigLineRepository.RESULT_DEBIT_MINUS_CREDIT:
-          value = moveLine.getDebit().subtract(moveLine.getCredit());
-          break;
-        case AccountingReportConfigLineRepository.RESULT_DEBIT:
-          value = moveLine.getDebit();
-          break;
-        case AccountingReportConfigLineRepository.RESULT_CREDIT:
-          value = moveLine.getCredit();
-          break;
-      }
-    }
-
-    if ((groupColumn != null && groupColumn.getNegateValue())
-        || column.getNegateValue()
-        || line.getNegateValue()) {
-      value = value.negate();
-    }
-
-    return value;
-  }
-
-  protected BigDecimal getAnalyticAmount(
-      MoveLine moveLine,
-      Set<AnalyticAccount> analyticAccountSet,
-      int resultSelect,
-      boolean isDebit) {
-    if (CollectionUtils.isEmpty(moveLine.getAnalyticMoveLineList())) {
-      return BigDecimal.ZERO;
-    }
-
-    BigDecimal value =
-        moveLine.getAnalyticMoveLineList().stream()
-            .filter(it -> this.containsAnalyticAccount(it.getAnalyticAccount(), analyticAccountSet))
-            .map(AnalyticMoveLine::getAmount)
-            .reduce(BigDecimal::add)
-            .orElse(BigDecimal.ZERO);
-
-    switch (resultSelect) {
-      case AccountingReportConfigLineRepository.RESULT_DEBIT_MINUS_CREDIT:
-        return isDebit ? value : value.negate();
-      case AccountingReportConfigLineRepository.RESULT_DEBIT:
-        return isDebit ? value : BigDecimal.ZERO;
-      case AccountingReportConfigLineRepository.RESULT_CREDIT:
-        return isDebit ? BigDecimal.ZERO : value;
-    }
-
-    return BigDecimal.ZERO;
-  }
-
-  protected boolean containsAnalyticAccount(
-      AnalyticAccount analyticAccount, Set<AnalyticAccount> analyticAccountSet) {
-    return (CollectionUtils.isNotEmpty(analyticAccountSet)
-            && analyticAccountSet.contains(analyticAccount))
-        || groupColumnAnalyticAccountSet.contains(analyticAccount)
-        || columnAnalyticAccountSet.contains(analyticAccount)
-        || lineAnalyticAccountSet.contains(analyticAccount);
-  }
 }
@@ -38,6 +38,6 @@ public interface AccountingReportValuePercentageService {
       LocalDate startDate,
       LocalDate endDate,
       String parentTitle,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException;
 }
@@ -64,7 +64,7 @@ public class AccountingReportValuePercentageServiceImpl extends AccountingReport
       LocalDate startDate,
       LocalDate endDate,
       String parentTitle,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException {
     Map<String, AccountingReportValue> valuesMap =
         valuesMapByColumn.get(
@@ -103,7 +103,7 @@ public class AccountingReportValuePercentageServiceImpl extends AccountingReport
           startDate,
           endDate,
           parentTitle,
-          analyticCounter);
+          context);
     }
   }
 
@@ -119,7 +119,7 @@ public class AccountingReportValuePercentageServiceImpl extends AccountingReport
       LocalDate startDate,
       LocalDate endDate,
       String parentTitle,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException {
     AccountingReportValue totalValue = null;
     List<String> linesCodeList = Collections.singletonList(line.getCode());
@@ -164,7 +164,7 @@ public class AccountingReportValuePercentageServiceImpl extends AccountingReport
           parentTitle,
           code,
           result,
-          analyticCounter);
+          context);
     }
   }
 
@@ -183,7 +183,7 @@ public class AccountingReportValuePercentageServiceImpl extends AccountingReport
       String parentTitle,
       String lineCode,
       BigDecimal result,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException {
     if (baseValue == null
         || (totalValue == null && StringUtils.notEmpty(line.getPercentageTotalLine()))) {
@@ -224,6 +224,6 @@ public class AccountingReportValuePercentageServiceImpl extends AccountingReport
         valuesMapByLine,
         configAnalyticAccount,
         lineCode,
-        analyticCounter);
+        context);
   }
 }
@@ -34,6 +34,7 @@ import com.axelor.apps.account.db.repo.AccountingReportValueRepository;
 import com.axelor.apps.account.db.repo.AnalyticAccountRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.callable.ParallelCallableTool;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.DateService;
 import com.axelor.apps.base.service.app.AppBaseService;
@@ -47,6 +48,7 @@ import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -57,9 +59,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,8 +79,9 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
   protected AppBaseService appBaseService;
   protected TraceBackRepository traceBackRepository;
 
-  protected static int lineOffset = 0;
-  protected static int periodNumber = 0;
+  /** Maximum number of parts of a report computed at the same time. */
+  protected static final int MAX_PARALLEL_COMPUTATIONS = 4;
+
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   @Inject
@@ -94,22 +103,6 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
     this.traceBackRepository = traceBackRepository;
   }
 
-  public static synchronized void incrementLineOffset() {
-    lineOffset++;
-  }
-
-  public static synchronized int getLineOffset() {
-    return lineOffset;
-  }
-
-  public static synchronized void incrementPeriodNumber() {
-    periodNumber++;
-  }
-
-  public static synchronized int getPeriodNumber() {
-    return periodNumber;
-  }
-
   @Override
   @Transactional
   public void clearReportValues(AccountingReport accountingReport) {
@@ -118,19 +111,187 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
 
   @Override
   public void computeReportValues(AccountingReport accountingReport) throws AxelorException {
+    this.checkAccountingReportType(accountingReport.getReportType());
+    this.clearTracebacks(accountingReport);
+
+    AccountingReportValueContext context = this.createContext(accountingReport);
+
+    List<AnalyticAccount> configAnalyticAccountList = new ArrayList<>();
     Set<AnalyticAccount> configAnalyticAccountSet =
         this.getConfigAnalyticAccountSet(
             accountingReport.getAccountingReportAnalyticConfigLineList());
 
     if (CollectionUtils.isEmpty(configAnalyticAccountSet)) {
-      this.computeReportValues(accountingReport, null, 0);
+      configAnalyticAccountList.add(null);
     } else {
-      int analyticCounter = 0;
+      configAnalyticAccountList.addAll(this.getSortedAnalyticAccountSet(configAnalyticAccountSet));
+    }
 
-      for (AnalyticAccount configAnalyticAccount :
-          this.getSortedAnalyticAccountSet(configAnalyticAccountSet)) {
-        this.computeReportValues(accountingReport, configAnalyticAccount, analyticCounter++);
+    List<Pair<LocalDate, LocalDate>> periodList = this.getPeriodList(accountingReport);
+    List<Integer> groupIndexList = this.getGroupIndexList(accountingReport);
+    Long accountingReportId = accountingReport.getId();
+
+    // values of different analytic accounts, periods or independent groups never depend on each
+    // other, so they are computed separately
+    List<Callable<Void>> computationList = new ArrayList<>();
+    int analyticCounter = 0;
+
+    for (AnalyticAccount configAnalyticAccount : configAnalyticAccountList) {
+      Long configAnalyticAccountId =
+          configAnalyticAccount != null ? configAnalyticAccount.getId() : null;
+
+      for (int periodNumber = 0; periodNumber < periodList.size(); periodNumber++) {
+        Pair<LocalDate, LocalDate> period = periodList.get(periodNumber);
+
+        for (Integer groupIndex : groupIndexList) {
+          AccountingReportValueContext computationContext =
+              context.forComputation(periodNumber, analyticCounter, groupIndex);
+
+          computationList.add(
+              () -> {
+                this.computeReportValues(
+                    accountingReportId,
+                    configAnalyticAccountId,
+                    period.getLeft(),
+                    period.getRight(),
+                    computationContext);
+                return null;
+              });
+        }
       }
+
+      analyticCounter++;
+    }
+
+    this.runComputations(computationList);
+  }
+
+  protected AccountingReportValueContext createContext(AccountingReport accountingReport) {
+    return AccountingReportValueContext.create(
+        accountingReport.getReportType().getAccountingReportConfigLineList().stream()
+            .sorted(Comparator.comparing(AccountingReportConfigLine::getSequence))
+            .collect(Collectors.toList()),
+        line -> accountingReportValueMoveLineService.getDetailLineCount(accountingReport, line));
+  }
+
+  /** Get the start and end dates of the periods of the report, in order of period number. */
+  protected List<Pair<LocalDate, LocalDate>> getPeriodList(AccountingReport accountingReport) {
+    LocalDate startDate = accountingReport.getDateFrom();
+    LocalDate endDate = accountingReport.getDateTo();
+
+    List<Pair<LocalDate, LocalDate>> periodList = new ArrayList<>();
+    periodList.add(Pair.of(startDate, endDate));
+
+    AccountingReportType reportType = accountingReport.getReportType();
+
+    switch (reportType.getComparison()) {
+      case AccountingReportTypeRepository.COMPARISON_PREVIOUS_YEAR:
+        for (int i = 1; i < reportType.getNoOfPeriods() + 1; i++) {
+          periodList.add(
+              Pair.of(
+                  startDate.minusYears(i).with(TemporalAdjusters.firstDayOfYear()),
+                  endDate.minusYears(i).with(TemporalAdjusters.lastDayOfYear())));
+        }
+        break;
+      case AccountingReportTypeRepository.COMPARISON_SAME_PERIOD_ON_PREVIOUS_YEAR:
+        for (int i = 1; i < reportType.getNoOfPeriods() + 1; i++) {
+          periodList.add(Pair.of(startDate.minusYears(i), endDate.minusYears(i)));
+        }
+        break;
+      case AccountingReportTypeRepository.COMPARISON_OTHER_PERIOD:
+        periodList.add(
+            Pair.of(accountingReport.getOtherDateFrom(), accountingReport.getOtherDateTo()));
+    }
+
+    return periodList;
+  }
+
+  /**
+   * Get the indexes of the column groups to compute separately. Groups can not be computed
+   * separately when a group column has a custom rule, since this rule uses the values of the other
+   * groups.
+   *
+   * @return a list with only null if all the groups are computed together.
+   */
+  protected List<Integer> getGroupIndexList(AccountingReport accountingReport) {
+    List<AccountingReportConfigLine> columnList =
+        accountingReport.getReportType().getAccountingReportConfigLineColumnList();
+    List<AccountingReportConfigLine> groupColumnList =
+        columnList.stream()
+            .filter(it -> it.getTypeSelect() == AccountingReportConfigLineRepository.TYPE_GROUP)
+            .collect(Collectors.toList());
+    AccountingReportConfigLine groupByAccountColumn =
+        columnList.stream()
+            .filter(
+                it ->
+                    it.getTypeSelect()
+                        == AccountingReportConfigLineRepository.TYPE_GROUP_BY_ACCOUNT)
+            .findAny()
+            .orElse(null);
+
+    int groupCount = 0;
+
+    if (groupByAccountColumn != null && groupColumnList.isEmpty()) {
+      groupCount = this.getColumnGroupAccounts(groupByAccountColumn).size();
+    } else if (groupByAccountColumn == null
+        && groupColumnList.stream()
+            .noneMatch(
+                it ->
+                    it.getRuleTypeSelect()
+                        == AccountingReportConfigLineRepository.RULE_TYPE_CUSTOM_RULE)) {
+      groupCount = groupColumnList.size();
+    }
+
+    if (groupCount <= 1) {
+      return Collections.singletonList(null);
+    }
+
+    return IntStream.range(0, groupCount).boxed().collect(Collectors.toList());
+  }
+
+  protected void runComputations(List<Callable<Void>> computationList) throws AxelorException {
+    if (computationList.size() == 1) {
+      this.runComputation(computationList.get(0));
+      return;
+    }
+
+    // computations run on behalf of the current user, values must not be created anymore once the
+    // report values are cleared by the caller: the tool waits for every computation to be over
+    List<Future<Void>> futureList;
+    try {
+      futureList =
+          new ParallelCallableTool<Void>()
+              .invokeAll(computationList, MAX_PARALLEL_COMPUTATIONS, true);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AxelorException(e, TraceBackRepository.CATEGORY_INCONSISTENCY);
+    }
+
+    for (Future<Void> future : futureList) {
+      try {
+        future.get();
+      } catch (CancellationException e) {
+        // cancelled because another computation failed, its error is thrown instead
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AxelorException(e, TraceBackRepository.CATEGORY_INCONSISTENCY);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof AxelorException) {
+          throw (AxelorException) e.getCause();
+        }
+
+        throw new AxelorException(e.getCause(), TraceBackRepository.CATEGORY_INCONSISTENCY);
+      }
+    }
+  }
+
+  protected void runComputation(Callable<Void> computation) throws AxelorException {
+    try {
+      computation.call();
+    } catch (AxelorException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new AxelorException(e, TraceBackRepository.CATEGORY_INCONSISTENCY);
     }
   }
 
@@ -196,51 +357,19 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
   }
 
   protected void computeReportValues(
-      AccountingReport accountingReport, AnalyticAccount configAnalyticAccount, int analyticCounter)
+      Long accountingReportId,
+      Long configAnalyticAccountId,
+      LocalDate startDate,
+      LocalDate endDate,
+      AccountingReportValueContext context)
       throws AxelorException {
-    LocalDate startDate = accountingReport.getDateFrom();
-    LocalDate endDate = accountingReport.getDateTo();
-
-    this.computeReportValues(
-        accountingReport, configAnalyticAccount, startDate, endDate, analyticCounter);
-
-    AccountingReportType reportType = accountingReport.getReportType();
+    AccountingReport accountingReport = JPA.find(AccountingReport.class, accountingReportId);
+    AnalyticAccount configAnalyticAccount =
+        configAnalyticAccountId != null
+            ? JPA.find(AnalyticAccount.class, configAnalyticAccountId)
+            : null;
 
-    switch (reportType.getComparison()) {
-      case AccountingReportTypeRepository.COMPARISON_PREVIOUS_YEAR:
-        for (int i = 1; i < accountingReport.getReportType().getNoOfPeriods() + 1; i++) {
-          AccountingReportValueServiceImpl.incrementPeriodNumber();
-
-          this.computeReportValues(
-              accountingReport,
-              configAnalyticAccount,
-              startDate.minusYears(i).with(TemporalAdjusters.firstDayOfYear()),
-              endDate.minusYears(i).with(TemporalAdjusters.lastDayOfYear()),
-              analyticCounter);
-        }
-        break;
-      case AccountingReportTypeRepository.COMPARISON_SAME_PERIOD_ON_PREVIOUS_YEAR:
-        for (int i = 1; i < accountingReport.getReportType().getNoOfPeriods() + 1; i++) {
-          AccountingReportValueServiceImpl.incrementPeriodNumber();
-
-          this.computeReportValues(
-              accountingReport,
-              configAnalyticAccount,
-              startDate.minusYears(i),
-              endDate.minusYears(i),
-              analyticCounter);
-        }
-        break;
-      case AccountingReportTypeRepository.COMPARISON_OTHER_PERIOD:
-        AccountingReportValueServiceImpl.incrementPeriodNumber();
-
-        this.computeReportValues(
-            accountingReport,
-            configAnalyticAccount,
-            accountingReport.getOtherDateFrom(),
-            accountingReport.getOtherDateTo(),
-            analyticCounter);
-    }
+    this.computeReportValues(accountingReport, configAnalyticAccount, startDate, endDate, context);
   }
 
   protected void computeReportValues(
@@ -248,15 +377,11 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
       AnalyticAccount configAnalyticAccount,
       LocalDate startDate,
       LocalDate endDate,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException {
     Map<String, Map<String, AccountingReportValue>> valuesMapByColumn = new HashMap<>();
     Map<String, Map<String, AccountingReportValue>> valuesMapByLine = new HashMap<>();
 
-    AccountingReportType accountingReportType = accountingReport.getReportType();
-    this.checkAccountingReportType(accountingReportType);
-
-    this.clearTracebacks(accountingReport);
     accountingReport.setTraceAnomalies(false);
 
     int nullCount = -1;
@@ -273,7 +398,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
               configAnalyticAccount,
               startDate,
               endDate,
-              analyticCounter);
+              context);
 
       if (nullCount == previousNullCount) {
         accountingReport.setTraceAnomalies(true);
@@ -285,7 +410,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
             configAnalyticAccount,
             startDate,
             endDate,
-            analyticCounter);
+            context);
 
         throw new AxelorException(
             accountingReport,
@@ -345,7 +470,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
       AnalyticAccount configAnalyticAccount,
       LocalDate startDate,
       LocalDate endDate,
-      int analyticCounter)
+      AccountingReportValueContext context)
       throws AxelorException {
     List<AccountingReportConfigLine> columnList =
         accountingReport.getReportType().getAccountingReportConfigLineColumnList().stream()
@@ -377,9 +502,18 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
 
     if (groupByAccountColumn != null) {
       columnList.remove(groupByAccountColumn);
-      Set<Account> accountSet = this.getColumnGroupAccounts(groupByAccountColumn);
+      // sorted, so every computation gives the same index to each group
+      List<Account> accountList =
+          this.getColumnGroupAccounts(groupByAccountColumn).stream()
+              .sorted(Comparator.comparing(Account::getId))
+              .collect(Collectors.toList());
 
-      for (Account account : accountSet) {
+      for (int groupIndex = 0; groupIndex < accountList.size(); groupIndex++) {
+        if (!context.isComputedGroup(groupIndex)) {
+          continue;
+        }
+
+        Account account = accountList.get(groupIndex);
         this.createReportValues(
             accountingReport,
             valuesMapByColumn,
@@ -392,12 +526,17 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
             account.getLabel(),
             startDate,
             endDate,
-            analyticCounter);
+            context);
       }
     } else if (CollectionUtils.isNotEmpty(groupColumnList)) {
       columnList.removeAll(groupColumnList);
 
-      for (AccountingReportConfigLine groupColumn : groupColumnList) {
+      for (int groupIndex = 0; groupIndex < groupColumnList.size(); groupIndex++) {
+        if (!context.isComputedGroup(groupIndex)) {
+          continue;
+        }
+
+        AccountingReportConfigLine groupColumn = groupColumnList.get(groupIndex);
         this.createReportValues(
             accountingReport,
             valuesMapByColumn,
@@ -410,7 +549,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
             groupColumn.getLabel(),
             startDate,
             endDate,
-            analyticCounter);
+            context);
       }
     } else {
       this.createReportValues(
@@ -425,7 +564,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
           null,
           startDate,
           endDate,
-          analyticCounter);
+          context);
     }
 
     return this.getNullCount(valuesMapByColumn);
@@ -456,7 +595,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
       String parentTitle,
       LocalDate startDate,
       LocalDate endDate,
-      int analyticCounter) {
+      AccountingReportValueContext context) {
     for (AccountingReportConfigLine column : columnList) {
       if (StringUtils.notEmpty(column.getGroupsWithoutColumn()) && groupColumn != null) {
         List<String> groupsWithoutColumnCodeList =
@@ -506,7 +645,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
               parentTitle,
               startDate,
               endDate,
-              analyticCounter);
+              context);
           JPA.clear();
         }
       }
@@ -525,7 +664,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
       String parentTitle,
       LocalDate startDate,
       LocalDate endDate,
-      int analyticCounter) {
+      AccountingReportValueContext context) {
     if (this.isValueAlreadyComputed(
         groupColumn, column, line, valuesMapByColumn, configAnalyticAccount, parentTitle)) {
       return;
@@ -552,7 +691,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
             parentTitle,
             startDate,
             endDate,
-            analyticCounter);
+            context);
       } else if (this.isNotCompute(column, line)) {
         this.createReportValue(
             accountingReport,
@@ -568,7 +707,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
             valuesMapByLine,
             configAnalyticAccount,
             line.getCode(),
-            analyticCounter);
+            context);
       } else if (column.getRuleTypeSelect()
           == AccountingReportConfigLineRepository.RULE_TYPE_CUSTOM_RULE) {
         accountingReportValueCustomRuleService.createValueFromCustomRuleForColumn(
@@ -582,7 +721,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
             parentTitle,
             startDate,
             endDate,
-            analyticCounter);
+            context);
       } else if (column.getRuleTypeSelect()
           == AccountingReportConfigLineRepository.RULE_TYPE_PERCENTAGE) {
         accountingReportValuePercentageService.createPercentageValue(
@@ -596,7 +735,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
             startDate,
             endDate,
             parentTitle,
-            analyticCounter);
+            context);
       } else if (line.getRuleTypeSelect()
           == AccountingReportConfigLineRepository.RULE_TYPE_CUSTOM_RULE) {
         accountingReportValueCustomRuleService.createValueFromCustomRule(
@@ -610,7 +749,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
             startDate,
             endDate,
             parentTitle,
-            analyticCounter);
+            context);
       } else {
         accountingReportValueMoveLineService.createValueFromMoveLines(
             accountingReport,
@@ -624,7 +763,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
             parentTitle,
             startDate,
             endDate,
-            analyticCounter);
+            context);
       }
     } catch (Exception e) {
       this.traceException(e, accountingReport, groupColumn, column, line);
@@ -26,6 +26,7 @@ import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.service.app.AppAccountService;
 import com.axelor.apps.account.service.move.MoveValidateService;
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.callable.ParallelCallableTool;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.ImportHistory;
 import com.axelor.apps.base.db.repo.CompanyRepository;
@@ -37,13 +38,23 @@ import com.axelor.data.csv.CSVImporter;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
 
 public class FECImporter extends Importer {
 
@@ -52,7 +63,11 @@ public class FECImporter extends Importer {
   protected MoveRepository moveRepository;
   protected FECImportRepository fecImportRepository;
   protected CompanyRepository companyRepository;
-  private final List<Move> moveList = new ArrayList<>();
+
+  protected static final int MAX_PARALLEL_VALIDATIONS = 8;
+  protected static final int UPDATE_LIMIT = 1000;
+
+  private final Set<Long> moveIdSet = new LinkedHashSet<>();
   private FECImport fecImport;
   private Company company;
 
@@ -95,7 +110,7 @@ public class FECImporter extends Importer {
           @Override
           public void imported(Integer total, Integer success) {
             try {
-              completeAndvalidateMoves(fecImport, moveList, this);
+              completeAndvalidateMoves(fecImport, moveIdSet, this);
             } catch (Exception e) {
               this.handle(null, e);
             }
@@ -132,11 +147,8 @@ public class FECImporter extends Importer {
   protected void addMoveFromMoveLine(Model bean) {
     if (bean.getClass().equals(MoveLine.class)) {
       MoveLine moveLine = (MoveLine) bean;
-      if (moveLine.getMove() != null) {
-        Move move = moveLine.getMove();
-        if (!moveList.contains(move)) {
-          moveList.add(move);
-        }
+      if (moveLine.getMove() != null && moveLine.getMove().getId() != null) {
+        moveIdSet.add(moveLine.getMove().getId());
       }
     }
   }
@@ -151,84 +163,220 @@ public class FECImporter extends Importer {
     return process(bind, data, null);
   }
 
-  public List<Move> getMoves() {
-    return this.moveList;
+  public Set<Long> getMoveIds() {
+    return this.moveIdSet;
   }
 
+  /**
+   * Complete the imported moves and validate them if required.
+   *
+   * <p>The moves are grouped by journal, so that the moves sharing a sequence are processed in
+   * their import order by a single worker, and the groups are processed in parallel. An error on a
+   * move is reported in the import log and does not stop the processing of the other moves.
+   */
   protected void completeAndvalidateMoves(
-      FECImport fecImport, List<Move> moveList, ImporterListener listener) {
-    if (fecImport != null) {
-      int i = 0;
-      Long companyId = null;
-      for (Move move : moveList) {
-        move = moveRepository.find(move.getId());
-        if (companyId == null && move != null) {
-          companyId = move.getCompany().getId();
-        }
-        // We modify move in two parts. First part we set description and fecImport on the move
-        // Second part we set reference and validate the move if necessary.
-        // We do this in two parts because reference for move must be unique, and in case there is
-        // an error the rollback must not undo description and fecImport.
-        move = setDescriptionAndFecImport(fecImport, listener, move);
-        move = setReferenceAndValidate(fecImport, listener, move);
-        if (i % 10 == 0) {
-          JPA.clear();
-        }
-        i++;
-      }
-      if (companyId != null) {
-        this.company = companyRepository.find(companyId);
-      }
+      FECImport fecImport, Set<Long> moveIdSet, ImporterListener listener) {
+    if (fecImport == null || moveIdSet.isEmpty()) {
+      return;
+    }
+
+    // We modify moves in two parts. First part we set description and fecImport on the moves.
+    // Second part we set reference and validate each move if necessary.
+    // We do this in two parts because reference for move must be unique, and in case there is
+    // an error the rollback must not undo description and fecImport.
+    setDescriptionAndFecImport(fecImport, moveIdSet);
+    JPA.clear();
+
+    boolean validate = Boolean.TRUE.equals(fecImport.getValidGeneratedMove());
+    List<Long> retryMoveIdList = Collections.synchronizedList(new ArrayList<>());
+    List<Callable<Void>> taskList = new ArrayList<>();
+
+    for (List<Long> moveIdList : getMoveIdsByJournal(moveIdSet).values()) {
+      taskList.add(
+          () -> {
+            for (Long moveId : moveIdList) {
+              completeMove(listener, moveId, validate, retryMoveIdList);
+            }
+            return null;
+          });
+    }
+
+    runTasks(taskList, listener);
+
+    // Moves of different journals may update the same records, the moves which failed because of
+    // a concurrent update are processed again one at a time.
+    List<Long> moveIdList = new ArrayList<>(retryMoveIdList);
+    Collections.sort(moveIdList);
+    for (Long moveId : moveIdList) {
+      completeMove(listener, moveId, validate, null);
+    }
+
+    Long companyId =
+        JPA.em()
+            .createQuery("SELECT self.company.id FROM Move self WHERE self.id = :id", Long.class)
+            .setParameter("id", moveIdSet.iterator().next()).getResultList().stream()
+            .findFirst()
+            .orElse(null);
+    if (companyId != null) {
+      this.company = companyRepository.find(companyId);
     }
   }
 
   @Transactional
-  protected Move setReferenceAndValidate(
-      FECImport fecImport, ImporterListener listener, Move move) {
-    try {
+  protected void setDescriptionAndFecImport(FECImport fecImport, Set<Long> moveIdSet) {
+    fecImport = fecImportRepository.find(fecImport.getId());
+
+    for (List<Long> moveIdList : Iterables.partition(moveIdSet, UPDATE_LIMIT)) {
+      JPA.em()
+          .createQuery(
+              "UPDATE Move self SET self.description = :description, self.fecImport = :fecImport, "
+                  + "self.version = self.version + 1 WHERE self.id IN (:moveIdList)")
+          .setParameter("description", fecImport.getMoveDescription())
+          .setParameter("fecImport", fecImport)
+          .setParameter("moveIdList", moveIdList)
+          .executeUpdate();
+    }
+  }
 
-      if (move != null) {
-        String csvReference = extractCSVMoveReference(move.getReference());
-
-        if (move.getAccountingDate() != null) {
-          move.setReference(String.format("%s", csvReference));
-        } else {
-          move.setReference(String.format("#%s", move.getId().toString()));
-        }
-
-        if (fecImport.getValidGeneratedMove()) {
-          moveValidateService.accounting(move);
-        } else {
-          return moveRepository.save(move);
-        }
-        return move;
+  /** Group the move ids by journal, keeping the import order within each journal. */
+  protected Map<Long, List<Long>> getMoveIdsByJournal(Set<Long> moveIdSet) {
+    Map<Long, Long> journalIdMap = new HashMap<>();
+
+    for (List<Long> moveIdList : Iterables.partition(moveIdSet, UPDATE_LIMIT)) {
+      List<Object[]> resultList =
+          JPA.em()
+              .createQuery(
+                  "SELECT self.id, journal.id FROM Move self LEFT JOIN self.journal journal "
+                      + "WHERE self.id IN (:moveIdList)",
+                  Object[].class)
+              .setParameter("moveIdList", moveIdList)
+              .getResultList();
+
+      for (Object[] result : resultList) {
+        journalIdMap.put((Long) result[0], (Long) result[1]);
       }
+    }
 
-    } catch (Exception e) {
-      move.setStatusSelect(MoveRepository.STATUS_NEW);
-      listener.handle(move, e);
+    Map<Long, List<Long>> moveIdsByJournal = new LinkedHashMap<>();
+    for (Long moveId : moveIdSet) {
+      if (journalIdMap.containsKey(moveId)) {
+        moveIdsByJournal
+            .computeIfAbsent(journalIdMap.get(moveId), key -> new ArrayList<>())
+            .add(moveId);
+      }
     }
-    return null;
+    return moveIdsByJournal;
   }
 
-  @Transactional
-  protected Move setDescriptionAndFecImport(
-      FECImport fecImport, ImporterListener listener, Move move) {
+  protected void runTasks(List<Callable<Void>> taskList, ImporterListener listener) {
+    if (taskList.size() == 1) {
+      try {
+        taskList.get(0).call();
+      } catch (Exception e) {
+        handle(listener, null, e);
+      }
+      return;
+    }
+
+    // moves are validated on behalf of the user running the import
+    List<Future<Void>> futureList;
     try {
-      if (move != null) {
-        fecImport = fecImportRepository.find(fecImport.getId());
-        move.setDescription(fecImport.getMoveDescription());
-        move.setFecImport(fecImport);
-        return moveRepository.save(move);
+      futureList =
+          new ParallelCallableTool<Void>().invokeAll(taskList, MAX_PARALLEL_VALIDATIONS, false);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      handle(listener, null, e);
+      return;
+    }
+
+    for (Future<Void> future : futureList) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        handle(listener, null, e);
+      } catch (ExecutionException e) {
+        handle(listener, null, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
       }
+    }
+  }
 
+  /**
+   * Set the reference of the move and validate it if required.
+   *
+   * @param retryMoveIdList the list filled with the move if it failed because of a concurrent
+   *     update, null to report every error
+   */
+  protected void completeMove(
+      ImporterListener listener, Long moveId, boolean validate, List<Long> retryMoveIdList) {
+    try {
+      setReferenceAndValidate(moveId, validate);
     } catch (Exception e) {
+      if (retryMoveIdList != null && isConcurrentUpdate(e)) {
+        retryMoveIdList.add(moveId);
+        return;
+      }
+
+      JPA.clear();
+      Move move = setReference(moveId);
+      handle(listener, move, e);
+    } finally {
+      JPA.clear();
+    }
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected void setReferenceAndValidate(Long moveId, boolean validate) throws AxelorException {
+    Move move = moveRepository.find(moveId);
+    if (move == null) {
+      return;
+    }
+
+    computeReference(move);
+
+    if (validate) {
+      moveValidateService.accounting(move);
+    } else {
+      moveRepository.save(move);
+    }
+  }
+
+  @Transactional
+  protected Move setReference(Long moveId) {
+    Move move = moveRepository.find(moveId);
+    if (move != null) {
+      computeReference(move);
       move.setStatusSelect(MoveRepository.STATUS_NEW);
-      listener.handle(move, e);
+      return moveRepository.save(move);
     }
     return null;
   }
 
+  protected void computeReference(Move move) {
+    String csvReference = extractCSVMoveReference(move.getReference());
+
+    if (move.getAccountingDate() != null) {
+      move.setReference(String.format("%s", csvReference));
+    } else {
+      move.setReference(String.format("#%s", move.getId().toString()));
+    }
+  }
+
+  protected boolean isConcurrentUpdate(Exception e) {
+    return Throwables.getCausalChain(e).stream()
+        .anyMatch(
+            cause ->
+                cause instanceof OptimisticLockException
+                    || cause instanceof PessimisticLockException);
+  }
+
+  protected void handle(ImporterListener listener, Model bean, Exception e) {
+    // the listener is shared by the workers
+    synchronized (listener) {
+      listener.handle(bean, e);
+    }
+  }
+
   protected String extractCSVMoveReference(String reference) {
     if (reference != null) {
       int indexOfSeparator = reference.indexOf("-");
@@ -86,6 +86,24 @@ public interface InvoiceService {
    */
   public void ventilate(Invoice invoice) throws AxelorException;
 
+  /**
+   * Enable or disable the deferred PDF generation, used by the ventilation batch. When enabled, the
+   * ventilation does not generate the invoice PDF which has to be generated afterwards with {@link
+   * #printVentilatedInvoice(Invoice)}.
+   *
+   * @param deferredPdfGeneration
+   */
+  void setDeferredPdfGeneration(boolean deferredPdfGeneration);
+
+  /**
+   * Generate and attach the PDF of a ventilated invoice, if enabled in the invoice app for this
+   * type of invoice.
+   *
+   * @param invoice a ventilated invoice
+   * @throws AxelorException
+   */
+  void printVentilatedInvoice(Invoice invoice) throws AxelorException;
+
   /**
    * Validate and ventilate an invoice.
    *
@@ -117,6 +117,9 @@ public class InvoiceServiceImpl extends InvoiceRepository implements InvoiceServ
   protected InvoiceProductStatementService invoiceProductStatementService;
   protected TemplateMessageService templateMessageService;
 
+  /** Whether the invoice PDF generation is left to the caller of the ventilation. */
+  protected boolean deferredPdfGeneration;
+
   @Inject
   public InvoiceServiceImpl(
       ValidateFactory validateFactory,
@@ -350,6 +353,19 @@ public class InvoiceServiceImpl extends InvoiceRepository implements InvoiceServ
     ventilateFactory.getVentilator(invoice).process();
 
     invoiceRepo.save(invoice);
+    if (!deferredPdfGeneration) {
+      this.printVentilatedInvoice(invoice);
+    }
+  }
+
+  @Override
+  public void setDeferredPdfGeneration(boolean deferredPdfGeneration) {
+    this.deferredPdfGeneration = deferredPdfGeneration;
+  }
+
+  @Override
+  @Transactional(rollbackOn = {Exception.class})
+  public void printVentilatedInvoice(Invoice invoice) throws AxelorException {
     if (this.checkEnablePDFGenerationOnVentilation(invoice)) {
       Beans.get(InvoicePrintService.class)
           .printAndSave(
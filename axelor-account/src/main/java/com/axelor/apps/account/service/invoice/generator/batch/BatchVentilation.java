@@ -18,17 +18,40 @@
  */
 package com.axelor.apps.account.service.invoice.generator.batch;
 
+import com.axelor.apps.account.db.AccountConfig;
 import com.axelor.apps.account.db.Invoice;
+import com.axelor.apps.account.db.Journal;
+import com.axelor.apps.account.db.repo.InvoiceRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
 import com.axelor.apps.account.service.invoice.InvoiceService;
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.callable.ParallelCallableTool;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Sequence;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.db.JPA;
 import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
 import com.google.inject.Inject;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +59,8 @@ public class BatchVentilation extends BatchWkf {
 
   static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  protected static final int MAX_PARALLEL_VENTILATION_PARTITIONS = 4;
+
   @Inject
   public BatchVentilation(InvoiceService invoiceService) {
 
@@ -45,34 +70,284 @@ public class BatchVentilation extends BatchWkf {
   @Override
   protected void process() {
 
-    for (Invoice invoice : invoices(batch.getInvoiceBatch(), true)) {
+    Collection<List<Long>> partitionInvoiceIdLists =
+        getVentilationPartitions(invoices(batch.getInvoiceBatch(), true));
+    int parallelism =
+        new ParallelCallableTool<>()
+            .getParallelism(partitionInvoiceIdLists.size(), MAX_PARALLEL_VENTILATION_PARTITIONS);
 
-      try {
+    if (parallelism > 1) {
+      ventilateInParallel(partitionInvoiceIdLists);
+      return;
+    }
+
+    for (List<Long> invoiceIdList : partitionInvoiceIdLists) {
+      for (Long invoiceId : invoiceIdList) {
+        if (ventilate(invoiceService, invoiceRepo.find(invoiceId))) {
+          updateInvoice(invoiceRepo.find(invoiceId));
+        } else {
+          incrementAnomaly();
+        }
+        JPA.clear();
+      }
+    }
+  }
 
-        invoiceService.ventilate(invoiceRepo.find(invoice.getId()));
-        updateInvoice(invoiceRepo.find(invoice.getId()));
+  /**
+   * Group the invoices which share an invoice sequence or the sequence of the journal of their
+   * move, directly or through other invoices, each group being sorted by invoice date so that the
+   * numbers given by these sequences follow the invoice dates.
+   */
+  protected Collection<List<Long>> getVentilationPartitions(
+      Collection<? extends Invoice> invoices) {
+    List<Invoice> invoiceList =
+        invoices.stream()
+            .sorted(
+                Comparator.comparing(
+                        Invoice::getInvoiceDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                    .thenComparing(Invoice::getId))
+            .collect(Collectors.toList());
 
+    // union-find of the invoice indexes, each sequence key joins its invoices together
+    int[] parents = IntStream.range(0, invoiceList.size()).toArray();
+    Map<List<Object>, Integer> keyIndexMap = new HashMap<>();
+    for (int i = 0; i < invoiceList.size(); i++) {
+      Invoice invoice = invoiceList.get(i);
+      for (List<Object> key :
+          Arrays.asList(getInvoiceSequenceKey(invoice), getMoveSequenceKey(invoice))) {
+        Integer keyIndex = keyIndexMap.putIfAbsent(key, i);
+        if (keyIndex != null) {
+          parents[findRoot(parents, i)] = findRoot(parents, keyIndex);
+        }
+      }
+    }
+
+    Map<Integer, List<Long>> partitionMap = new LinkedHashMap<>();
+    for (int i = 0; i < invoiceList.size(); i++) {
+      partitionMap
+          .computeIfAbsent(findRoot(parents, i), root -> new ArrayList<>())
+          .add(invoiceList.get(i).getId());
+    }
+    return partitionMap.values();
+  }
+
+  protected int findRoot(int[] parents, int index) {
+    while (parents[index] != index) {
+      parents[index] = parents[parents[index]];
+      index = parents[index];
+    }
+    return index;
+  }
+
+  /** The sequence giving its number to the invoice. */
+  protected List<Object> getInvoiceSequenceKey(Invoice invoice) {
+    Company company = invoice.getCompany();
+    AccountConfig accountConfig = company != null ? company.getAccountConfig() : null;
+    Sequence sequence = null;
+
+    if (accountConfig != null) {
+      switch (invoice.getOperationTypeSelect()) {
+        case InvoiceRepository.OPERATION_TYPE_SUPPLIER_PURCHASE:
+          sequence = accountConfig.getSuppInvSequence();
+          break;
+        case InvoiceRepository.OPERATION_TYPE_SUPPLIER_REFUND:
+          sequence = accountConfig.getSuppRefSequence();
+          break;
+        case InvoiceRepository.OPERATION_TYPE_CLIENT_SALE:
+          sequence = accountConfig.getCustInvSequence();
+          break;
+        case InvoiceRepository.OPERATION_TYPE_CLIENT_REFUND:
+          sequence = accountConfig.getCustRefSequence();
+          break;
+        default:
+          break;
+      }
+    }
+
+    return Arrays.asList(
+        "invoice",
+        company != null ? company.getId() : null,
+        sequence != null ? sequence.getId() : null,
+        sequence == null ? invoice.getOperationTypeSelect() : null);
+  }
+
+  /** The sequence of the journal giving its reference to the move of the invoice. */
+  protected List<Object> getMoveSequenceKey(Invoice invoice) {
+    Journal journal = invoice.getJournal();
+    if (journal == null) {
+      try {
+        journal = invoiceService.getJournal(invoice);
       } catch (AxelorException e) {
+        // the ventilation of the invoice fails on the same error
+      }
+    }
 
-        TraceBackService.trace(
-            new AxelorException(
-                e, e.getCategory(), I18n.get("Invoice") + " %s", invoice.getInvoiceId()),
-            ExceptionOriginRepository.INVOICE_ORIGIN,
-            batch.getId());
-        incrementAnomaly();
+    if (journal == null) {
+      Company company = invoice.getCompany();
+      return Arrays.asList("move", "company", company != null ? company.getId() : null);
+    }
 
-      } catch (Exception e) {
+    Sequence sequence = journal.getSequence();
+    return sequence != null
+        ? Arrays.asList("move", "sequence", sequence.getId())
+        : Arrays.asList("move", "journal", journal.getId());
+  }
 
-        TraceBackService.trace(
-            new Exception(String.format(I18n.get("Invoice") + " %s", invoice.getInvoiceId()), e),
-            ExceptionOriginRepository.INVOICE_ORIGIN,
-            batch.getId());
-        incrementAnomaly();
+  /**
+   * Ventilate each partition in its own thread. The PDF generation is deferred to a single thread
+   * queue fed as soon as an invoice is ventilated, and the batch counters are only updated once
+   * both are over.
+   */
+  protected void ventilateInParallel(Collection<List<Long>> partitionInvoiceIdLists) {
+    ParallelCallableTool<Boolean> printTool = new ParallelCallableTool<>();
+    ExecutorService printExecutor = Executors.newSingleThreadExecutor();
+    Map<Long, Future<Boolean>> printFutureMap = new ConcurrentHashMap<>();
+    List<List<Long>> partitionList = new ArrayList<>(partitionInvoiceIdLists);
+    List<Callable<List<Long>>> callableList = new ArrayList<>();
+    List<Long> ventilatedInvoiceIdList = new ArrayList<>();
+    int anomaly = 0;
 
-      } finally {
+    for (List<Long> invoiceIdList : partitionList) {
+      callableList.add(
+          () -> ventilatePartition(invoiceIdList, printTool, printExecutor, printFutureMap));
+    }
 
-        JPA.clear();
+    try {
+      // invoices are ventilated on behalf of the user running the batch
+      List<Future<List<Long>>> futureList =
+          new ParallelCallableTool<List<Long>>()
+              .invokeAll(callableList, MAX_PARALLEL_VENTILATION_PARTITIONS, false);
+
+      for (int i = 0; i < futureList.size(); i++) {
+        try {
+          List<Long> partitionVentilatedIdList = futureList.get(i).get();
+          ventilatedInvoiceIdList.addAll(partitionVentilatedIdList);
+          anomaly += partitionList.get(i).size() - partitionVentilatedIdList.size();
+        } catch (ExecutionException e) {
+          TraceBackService.trace(
+              e.getCause() instanceof Exception ? (Exception) e.getCause() : e,
+              ExceptionOriginRepository.INVOICE_ORIGIN,
+              batch.getId());
+          anomaly += partitionList.get(i).size();
+        }
+      }
+
+      printExecutor.shutdown();
+      // an invoice whose PDF failed is ventilated but only counted as an anomaly, as when its PDF
+      // is generated during its ventilation, unless its whole partition is already counted so
+      for (Map.Entry<Long, Future<Boolean>> printFutureEntry : printFutureMap.entrySet()) {
+        boolean printed;
+        try {
+          printed = printFutureEntry.getValue().get();
+        } catch (ExecutionException e) {
+          TraceBackService.trace(
+              e.getCause() instanceof Exception ? (Exception) e.getCause() : e,
+              ExceptionOriginRepository.INVOICE_ORIGIN,
+              batch.getId());
+          printed = false;
+        }
+        if (!printed && ventilatedInvoiceIdList.remove(printFutureEntry.getKey())) {
+          anomaly++;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      TraceBackService.trace(e, ExceptionOriginRepository.INVOICE_ORIGIN, batch.getId());
+    } finally {
+      printExecutor.shutdown();
+    }
+
+    for (Long invoiceId : ventilatedInvoiceIdList) {
+      updateInvoice(invoiceRepo.find(invoiceId));
+      JPA.clear();
+    }
+    for (int i = 0; i < anomaly; i++) {
+      incrementAnomaly();
+    }
+  }
+
+  /**
+   * Ventilate the invoices of a partition one after another, queuing the generation of their PDF.
+   *
+   * @return the ids of the ventilated invoices
+   */
+  protected List<Long> ventilatePartition(
+      List<Long> invoiceIdList,
+      ParallelCallableTool<Boolean> printTool,
+      ExecutorService printExecutor,
+      Map<Long, Future<Boolean>> printFutureMap) {
+    // each worker uses its own invoice service as the PDF generation mode is set on it
+    InvoiceService partitionInvoiceService = Beans.get(InvoiceService.class);
+    List<Long> ventilatedInvoiceIdList = new ArrayList<>();
+
+    for (Long invoiceId : invoiceIdList) {
+      Invoice invoice = invoiceRepo.find(invoiceId);
+      boolean deferredPdfGeneration = !isPdfRequiredOnVentilation(invoice);
+      partitionInvoiceService.setDeferredPdfGeneration(deferredPdfGeneration);
+
+      if (ventilate(partitionInvoiceService, invoice)) {
+        ventilatedInvoiceIdList.add(invoiceId);
+        if (deferredPdfGeneration) {
+          printFutureMap.put(
+              invoiceId,
+              printExecutor.submit(printTool.wrap(() -> printVentilatedInvoice(invoiceId))));
+        }
       }
+      JPA.clear();
+    }
+    return ventilatedInvoiceIdList;
+  }
+
+  /**
+   * Whether the PDF of the invoice is used during its ventilation, so it can not be generated
+   * afterwards: the PDF of an invoice sent by email is generated before the email.
+   */
+  protected boolean isPdfRequiredOnVentilation(Invoice invoice) {
+    return invoice.getInvoiceAutomaticMail();
+  }
+
+  /**
+   * Ventilate an invoice, tracing the error if any.
+   *
+   * @return true if the invoice has been ventilated
+   */
+  protected boolean ventilate(InvoiceService invoiceService, Invoice invoice) {
+    String invoiceId = invoice.getInvoiceId();
+
+    try {
+
+      invoiceService.ventilate(invoice);
+      return true;
+
+    } catch (AxelorException e) {
+
+      TraceBackService.trace(
+          new AxelorException(e, e.getCategory(), I18n.get("Invoice") + " %s", invoiceId),
+          ExceptionOriginRepository.INVOICE_ORIGIN,
+          batch.getId());
+
+    } catch (Exception e) {
+
+      TraceBackService.trace(
+          new Exception(String.format(I18n.get("Invoice") + " %s", invoiceId), e),
+          ExceptionOriginRepository.INVOICE_ORIGIN,
+          batch.getId());
+    }
+    return false;
+  }
+
+  protected boolean printVentilatedInvoice(Long invoiceId) {
+    Invoice invoice = invoiceRepo.find(invoiceId);
+
+    try {
+      Beans.get(InvoiceService.class).printVentilatedInvoice(invoice);
+      return true;
+    } catch (Exception e) {
+      TraceBackService.trace(
+          new Exception(String.format(I18n.get("Invoice") + " %s", invoice.getInvoiceId()), e),
+          ExceptionOriginRepository.INVOICE_ORIGIN,
+          batch.getId());
+      return false;
     }
   }
 
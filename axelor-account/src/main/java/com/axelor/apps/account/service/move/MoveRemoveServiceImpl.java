@@ -26,6 +26,7 @@ import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.db.repo.ReconcileRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
 import com.axelor.apps.account.service.AccountCustomerService;
+import com.axelor.apps.account.service.AccountPeriodBalanceService;
 import com.axelor.apps.account.service.AccountingSituationService;
 import com.axelor.apps.account.service.ReconcileService;
 import com.axelor.apps.base.AxelorException;
@@ -54,6 +55,8 @@ public class MoveRemoveServiceImpl implements MoveRemoveService {
 
   protected AccountCustomerService accountCustomerService;
 
+  protected AccountPeriodBalanceService accountPeriodBalanceService;
+
   @Inject
   public MoveRemoveServiceImpl(
       MoveRepository moveRepo,
@@ -61,13 +64,15 @@ public class MoveRemoveServiceImpl implements MoveRemoveService {
       ArchivingToolService archivingToolService,
       ReconcileService reconcileService,
       AccountingSituationService accountingSituationService,
-      AccountCustomerService accountCustomerService) {
+      AccountCustomerService accountCustomerService,
+      AccountPeriodBalanceService accountPeriodBalanceService) {
     this.moveRepo = moveRepo;
     this.moveLineRepo = moveLineRepo;
     this.archivingToolService = archivingToolService;
     this.reconcileService = reconcileService;
     this.accountingSituationService = accountingSituationService;
     this.accountCustomerService = accountCustomerService;
+    this.accountPeriodBalanceService = accountPeriodBalanceService;
   }
 
   @Override
@@ -91,6 +96,7 @@ public class MoveRemoveServiceImpl implements MoveRemoveService {
           I18n.get(AccountExceptionMessage.MOVE_CANCEL_4));
     }
 
+    accountPeriodBalanceService.registerMove(move);
     move.setStatusSelect(MoveRepository.STATUS_CANCELED);
     return move;
   }
@@ -234,6 +240,7 @@ public class MoveRemoveServiceImpl implements MoveRemoveService {
   @Override
   @Transactional
   public void deleteMove(Move move) {
+    accountPeriodBalanceService.registerMove(move);
     moveRepo.remove(move);
   }
 }
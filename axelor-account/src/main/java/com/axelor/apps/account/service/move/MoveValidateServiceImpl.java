@@ -38,6 +38,7 @@ import com.axelor.apps.account.db.repo.JournalTypeRepository;
 import com.axelor.apps.account.db.repo.MoveLineRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.account.service.AccountPeriodBalanceService;
 import com.axelor.apps.account.service.PeriodServiceAccount;
 import com.axelor.apps.account.service.app.AppAccountService;
 import com.axelor.apps.account.service.config.AccountConfigService;
@@ -45,6 +46,7 @@ import com.axelor.apps.account.service.fixedasset.FixedAssetGenerationService;
 import com.axelor.apps.account.service.moveline.MoveLineTaxService;
 import com.axelor.apps.account.service.moveline.MoveLineToolService;
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.callable.ParallelCallableTool;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.repo.PartnerRepository;
@@ -53,14 +55,16 @@ import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.auth.AuthUtils;
-import com.axelor.auth.db.User;
 import com.axelor.common.ObjectUtils;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
 import com.axelor.meta.MetaStore;
 import com.axelor.meta.schema.views.Selection.Option;
 import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import com.google.inject.servlet.RequestScoped;
@@ -71,11 +75,23 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -84,6 +100,9 @@ import org.slf4j.LoggerFactory;
 public class MoveValidateServiceImpl implements MoveValidateService {
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   protected int jpaLimit = 20;
+
+  protected static final int MAX_PARALLEL_ACCOUNTING_PARTITIONS = 8;
+  protected static final int ACCOUNTING_PARTITION_FETCH_LIMIT = 1000;
   protected MoveLineControlService moveLineControlService;
   protected MoveLineToolService moveLineToolService;
   protected AccountConfigService accountConfigService;
@@ -101,6 +120,7 @@ public class MoveValidateServiceImpl implements MoveValidateService {
   protected PeriodServiceAccount periodServiceAccount;
   protected MoveControlService moveControlService;
   protected MoveComputeService moveComputeService;
+  protected AccountPeriodBalanceService accountPeriodBalanceService;
 
   @Inject
   public MoveValidateServiceImpl(
@@ -120,7 +140,8 @@ public class MoveValidateServiceImpl implements MoveValidateService {
       MoveLineTaxService moveLineTaxService,
       PeriodServiceAccount periodServiceAccount,
       MoveControlService moveControlService,
-      MoveComputeService moveComputeService) {
+      MoveComputeService moveComputeService,
+      AccountPeriodBalanceService accountPeriodBalanceService) {
 
     this.moveLineControlService = moveLineControlService;
     this.moveLineToolService = moveLineToolService;
@@ -139,6 +160,7 @@ public class MoveValidateServiceImpl implements MoveValidateService {
     this.periodServiceAccount = periodServiceAccount;
     this.moveControlService = moveControlService;
     this.moveComputeService = moveComputeService;
+    this.accountPeriodBalanceService = accountPeriodBalanceService;
   }
 
   /**
@@ -527,6 +549,8 @@ public class MoveValidateServiceImpl implements MoveValidateService {
 
   @Override
   public void updateValidateStatus(Move move, boolean daybook) throws AxelorException {
+    accountPeriodBalanceService.registerMove(move);
+
     if (move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK || !daybook) {
       move.setStatusSelect(MoveRepository.STATUS_ACCOUNTED);
       move.setAccountingDate(appBaseService.getTodayDate(move.getCompany()));
@@ -540,6 +564,7 @@ public class MoveValidateServiceImpl implements MoveValidateService {
   public void updateInDayBookMode(Move move) throws AxelorException {
 
     this.checkPreconditions(move);
+    accountPeriodBalanceService.registerMove(move);
 
     Set<Partner> partnerSet = new HashSet<>();
 
@@ -626,16 +651,214 @@ public class MoveValidateServiceImpl implements MoveValidateService {
 
   @Override
   public String accountingMultiple(List<Integer> moveIds) {
-    String errors = "";
     if (moveIds == null) {
-      return errors;
+      return "";
+    }
+
+    List<Long> moveIdList = moveIds.stream().map(Integer::longValue).collect(Collectors.toList());
+    Map<Long, Exception> errorMap = accountingMultiple(moveIdList, true, false);
+
+    List<String> referenceList = new ArrayList<>();
+    for (Long moveId : moveIdList) {
+      Exception e = errorMap.get(moveId);
+      if (e != null) {
+        TraceBackService.trace(e);
+        referenceList.add(moveRepository.find(moveId).getReference());
+      }
+    }
+
+    return String.join(", ", referenceList);
+  }
+
+  public void accountingMultiple(Query<Move> moveListQuery) throws AxelorException {
+    List<Long> moveIdList =
+        moveListQuery.select("id").fetch(0, 0).stream()
+            .map(values -> (Long) values.get("id"))
+            .collect(Collectors.toList());
+
+    Map<Long, Exception> errorMap = accountingMultiple(moveIdList, false, true);
+
+    for (Long moveId : moveIdList) {
+      Exception e = errorMap.get(moveId);
+      if (e instanceof AxelorException) {
+        throw (AxelorException) e;
+      } else if (e != null) {
+        throw new AxelorException(e, TraceBackRepository.CATEGORY_INCONSISTENCY);
+      }
+    }
+  }
+
+  /**
+   * Account the given moves.
+   *
+   * <p>Moves are partitioned by company and journal, so that the moves of a journal are accounted
+   * one after another in the given order, and the partitions are accounted in parallel, each move
+   * in its own transaction. Moves which failed because of a concurrent update with another
+   * partition are accounted again one at a time at the end.
+   *
+   * @param moveIdList the ids of the moves to account
+   * @param checkPeriodAuthorization whether the user must be authorized to account on the period
+   * @param stopOnError whether the accounting stops at the first error
+   * @return the errors by move id
+   */
+  protected Map<Long, Exception> accountingMultiple(
+      List<Long> moveIdList, boolean checkPeriodAuthorization, boolean stopOnError) {
+    Map<Long, Exception> errorMap = new ConcurrentHashMap<>();
+    List<Long> retryMoveIdList = Collections.synchronizedList(new ArrayList<>());
+    List<List<Long>> partitionMoveIdLists = new ArrayList<>(getAccountingPartitions(moveIdList));
+
+    if (partitionMoveIdLists.size() <= 1) {
+      for (List<Long> partitionMoveIdList : partitionMoveIdLists) {
+        accountingPartition(
+            this,
+            partitionMoveIdList,
+            checkPeriodAuthorization,
+            stopOnError,
+            errorMap,
+            retryMoveIdList);
+      }
+    } else {
+      List<Callable<Void>> partitionList = new ArrayList<>();
+      for (List<Long> partitionMoveIdList : partitionMoveIdLists) {
+        partitionList.add(
+            () -> {
+              // move services are request scoped, each worker uses its own
+              accountingPartition(
+                  Beans.get(MoveValidateService.class),
+                  partitionMoveIdList,
+                  checkPeriodAuthorization,
+                  stopOnError,
+                  errorMap,
+                  retryMoveIdList);
+              return null;
+            });
+      }
+      runAccountingPartitions(partitionList, partitionMoveIdLists, stopOnError, errorMap);
+    }
+
+    Map<Long, Integer> moveIndexMap = new HashMap<>();
+    for (int i = 0; i < moveIdList.size(); i++) {
+      moveIndexMap.putIfAbsent(moveIdList.get(i), i);
+    }
+    List<Long> retryList = new ArrayList<>(retryMoveIdList);
+    retryList.sort(Comparator.comparing(moveIndexMap::get));
+    accountingPartition(this, retryList, checkPeriodAuthorization, stopOnError, errorMap, null);
+
+    return errorMap;
+  }
+
+  /** Partition the move ids by company and journal, keeping the given order in each partition. */
+  protected Collection<List<Long>> getAccountingPartitions(List<Long> moveIdList) {
+    Map<Long, List<Object>> partitionKeyMap = new HashMap<>();
+
+    for (List<Long> idList : Lists.partition(moveIdList, ACCOUNTING_PARTITION_FETCH_LIMIT)) {
+      List<Object[]> resultList =
+          JPA.em()
+              .createQuery(
+                  "SELECT self.id, self.company.id, journal.id FROM Move self "
+                      + "LEFT JOIN self.journal journal WHERE self.id IN (:moveIdList)",
+                  Object[].class)
+              .setParameter("moveIdList", idList)
+              .getResultList();
+
+      for (Object[] result : resultList) {
+        partitionKeyMap.put((Long) result[0], Arrays.asList(result[1], result[2]));
+      }
     }
-    User user = AuthUtils.getUser();
+
+    Map<List<Object>, List<Long>> partitionMap = new LinkedHashMap<>();
+    for (Long moveId : moveIdList) {
+      List<Object> partitionKey = partitionKeyMap.get(moveId);
+      if (partitionKey != null) {
+        partitionMap.computeIfAbsent(partitionKey, key -> new ArrayList<>()).add(moveId);
+      }
+    }
+    return partitionMap.values();
+  }
+
+  /**
+   * Run the partitions in parallel. The moves of a partition which failed as a whole get its error,
+   * unless they are already accounted or have their own error. When the accounting stops on error,
+   * the partitions not started yet are cancelled once a partition failed.
+   *
+   * @param partitionList the partitions to run
+   * @param partitionMoveIdLists the ids of the moves of each partition, in the same order
+   */
+  protected void runAccountingPartitions(
+      List<Callable<Void>> partitionList,
+      List<List<Long>> partitionMoveIdLists,
+      boolean stopOnError,
+      Map<Long, Exception> errorMap) {
+    // moves are accounted on behalf of the current user
+    List<Future<Void>> futureList;
+    try {
+      futureList =
+          new ParallelCallableTool<Void>()
+              .invokeAll(partitionList, MAX_PARALLEL_ACCOUNTING_PARTITIONS, stopOnError);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      partitionMoveIdLists.forEach(moveIdList -> putPartitionError(moveIdList, e, errorMap));
+      return;
+    }
+
+    for (int i = 0; i < futureList.size(); i++) {
+      try {
+        futureList.get(i).get();
+      } catch (CancellationException e) {
+        // cancelled because another partition failed, its error is reported instead
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        putPartitionError(partitionMoveIdLists.get(i), e, errorMap);
+      } catch (ExecutionException e) {
+        putPartitionError(
+            partitionMoveIdLists.get(i),
+            e.getCause() instanceof Exception ? (Exception) e.getCause() : e,
+            errorMap);
+      }
+    }
+  }
+
+  /** Report the error of a failed partition on its moves which are not accounted. */
+  protected void putPartitionError(
+      List<Long> moveIdList, Exception e, Map<Long, Exception> errorMap) {
+    for (List<Long> idList : Lists.partition(moveIdList, ACCOUNTING_PARTITION_FETCH_LIMIT)) {
+      JPA.em()
+          .createQuery(
+              "SELECT self.id FROM Move self WHERE self.id IN (:moveIdList) "
+                  + "AND self.statusSelect NOT IN (:statusList)",
+              Long.class)
+          .setParameter("moveIdList", idList)
+          .setParameter(
+              "statusList",
+              Arrays.asList(MoveRepository.STATUS_ACCOUNTED, MoveRepository.STATUS_CANCELED))
+          .getResultList()
+          .forEach(moveId -> errorMap.putIfAbsent(moveId, e));
+    }
+  }
+
+  /**
+   * Account the moves of a partition one after another.
+   *
+   * @param retryMoveIdList the list filled with the moves which failed because of a concurrent
+   *     update, null to report every error
+   */
+  protected void accountingPartition(
+      MoveValidateService moveValidateService,
+      List<Long> moveIdList,
+      boolean checkPeriodAuthorization,
+      boolean stopOnError,
+      Map<Long, Exception> errorMap,
+      List<Long> retryMoveIdList) {
     int i = 0;
-    for (Integer moveId : moveIds) {
-      Move move = moveRepository.find(moveId.longValue());
+    for (Long moveId : moveIdList) {
+      if (stopOnError && !errorMap.isEmpty()) {
+        return;
+      }
+
       try {
-        if (!periodServiceAccount.isAuthorizedToAccountOnPeriod(move, user)) {
+        Move move = moveRepository.find(moveId);
+        if (checkPeriodAuthorization
+            && !periodServiceAccount.isAuthorizedToAccountOnPeriod(move, AuthUtils.getUser())) {
           throw new AxelorException(
               TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
               String.format(
@@ -644,31 +867,29 @@ public class MoveValidateServiceImpl implements MoveValidateService {
         }
         if (move.getStatusSelect() != MoveRepository.STATUS_ACCOUNTED
             && move.getStatusSelect() != MoveRepository.STATUS_CANCELED) {
-          accounting(move);
+          moveValidateService.accounting(move);
         }
       } catch (Exception e) {
-        TraceBackService.trace(e);
-        if (errors.length() > 0) {
-          errors = errors.concat(", ");
+        if (retryMoveIdList != null && isConcurrentUpdate(e)) {
+          retryMoveIdList.add(moveId);
+        } else {
+          errorMap.put(moveId, e);
         }
-        errors = errors.concat(move.getReference());
+        JPA.clear();
       } finally {
         if (++i % jpaLimit == 0) {
           JPA.clear();
         }
       }
     }
-
-    return errors;
   }
 
-  public void accountingMultiple(Query<Move> moveListQuery) throws AxelorException {
-    Move move;
-
-    while (!((move = moveListQuery.fetchOne()) == null)) {
-      accounting(move);
-      JPA.clear();
-    }
+  protected boolean isConcurrentUpdate(Exception e) {
+    return Throwables.getCausalChain(e).stream()
+        .anyMatch(
+            cause ->
+                cause instanceof OptimisticLockException
+                    || cause instanceof PessimisticLockException);
   }
 
   protected void checkInactiveAnalyticAccount(Move move) throws AxelorException {
@@ -271,12 +271,13 @@ public class MoveLineServiceImpl implements MoveLineService {
 
       Move move = moveLine.getMove();
 
+      // grouped by ids, the hash code of the entities is not based on their id
       List<Object> keys = new ArrayList<Object>();
 
-      keys.add(move.getCompany());
-      keys.add(moveLine.getAccount());
+      keys.add(move.getCompany().getId());
+      keys.add(moveLine.getAccount().getId());
       if (moveLine.getAccount().getUseForPartnerBalance()) {
-        keys.add(moveLine.getPartner());
+        keys.add(moveLine.getPartner() != null ? moveLine.getPartner().getId() : null);
       }
 
       Pair<List<MoveLine>, List<MoveLine>> moveLineLists = moveLineMap.get(keys);
@@ -28,6 +28,7 @@ import com.axelor.apps.account.db.repo.AccountTypeRepository;
 import com.axelor.apps.account.db.repo.MoveLineRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.account.service.AccountPartnerBalanceService;
 import com.axelor.apps.account.service.move.MoveToolService;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
@@ -58,17 +59,20 @@ public class MoveLineToolServiceImpl implements MoveLineToolService {
   protected CurrencyService currencyService;
   protected MoveLineRepository moveLineRepository;
   protected MoveToolService moveToolService;
+  protected AccountPartnerBalanceService accountPartnerBalanceService;
 
   @Inject
   public MoveLineToolServiceImpl(
       TaxService taxService,
       CurrencyService currencyService,
       MoveLineRepository moveLineRepository,
-      MoveToolService moveToolService) {
+      MoveToolService moveToolService,
+      AccountPartnerBalanceService accountPartnerBalanceService) {
     this.taxService = taxService;
     this.currencyService = currencyService;
     this.moveLineRepository = moveLineRepository;
     this.moveToolService = moveToolService;
+    this.accountPartnerBalanceService = accountPartnerBalanceService;
   }
 
   /**
@@ -378,6 +382,7 @@ public class MoveLineToolServiceImpl implements MoveLineToolService {
   public void setAmountRemainingReconciliableMoveLines(Context context) {
     Long accountId = Long.valueOf(context.get("_accountId").toString());
     String startDate = (String) context.get("startDate");
+    LocalDate fromDate = startDate != null ? LocalDate.parse(startDate) : null;
 
     Query update =
         JPA.em()
@@ -387,10 +392,13 @@ public class MoveLineToolServiceImpl implements MoveLineToolService {
                     + (startDate == null ? ")" : " AND self.move.date >= :startDate)"));
     update.setParameter("accountId", accountId);
 
-    if (startDate != null) {
-      update.setParameter("startDate", LocalDate.parse(startDate));
+    if (fromDate != null) {
+      update.setParameter("startDate", fromDate);
     }
     update.executeUpdate();
+
+    // the bulk update bypasses the moves, the balances of their partners are recomputed at commit
+    accountPartnerBalanceService.registerAccountMoveLines(accountId, fromDate);
   }
 
   @Override
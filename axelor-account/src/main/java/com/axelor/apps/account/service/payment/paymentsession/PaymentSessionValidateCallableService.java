@@ -0,0 +1,137 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.payment.paymentsession;
+
+import com.axelor.apps.account.db.PaymentSession;
+import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.repo.TraceBackRepository;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.auth.AuthUtils;
+import com.axelor.db.JPA;
+import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
+import com.axelor.message.service.MailMessageService;
+import com.google.inject.persist.Transactional;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+public class PaymentSessionValidateCallableService implements Callable<StringBuilder> {
+
+  /** Namespace of the advisory locks taken on the validated payment sessions. */
+  protected static final long LOCK_NAMESPACE = "account_payment_session".hashCode();
+
+  private PaymentSession paymentSession;
+
+  /** Whether the payment session has been locked by this validation. */
+  protected boolean locked;
+
+  public void setPaymentSession(PaymentSession paymentSession) {
+    this.paymentSession = paymentSession;
+  }
+
+  @Override
+  public StringBuilder call() throws AxelorException {
+    final RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+    try (RequestScoper.CloseableScope ignored = scope.open()) {
+      StringBuilder flashMessage = processInvoiceTerms();
+      sendMessage(flashMessage);
+      return flashMessage;
+    } catch (Exception e) {
+      if (locked) {
+        onRunnerException(e);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Validate the payment session in a single transaction, which keeps the session locked in
+   * database until it is over: a second validation of the session, from any server, fails at once
+   * instead of processing the same invoice terms again. The lock is an advisory lock rather than a
+   * row lock, so the validation progress can be committed on the session meanwhile.
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected StringBuilder processInvoiceTerms() throws AxelorException {
+    paymentSession = lockPaymentSession();
+    return Beans.get(PaymentSessionValidateService.class).processInvoiceTerms(paymentSession);
+  }
+
+  protected PaymentSession lockPaymentSession() throws AxelorException {
+    Object lockAcquired =
+        JPA.em()
+            .createNativeQuery("SELECT pg_try_advisory_xact_lock(:lockKey)")
+            .setParameter(
+                "lockKey", (LOCK_NAMESPACE << 32) | (paymentSession.getId() & 0xffffffffL))
+            .getSingleResult();
+    if (!Boolean.TRUE.equals(lockAcquired)) {
+      throw new AxelorException(
+          paymentSession,
+          TraceBackRepository.CATEGORY_INCONSISTENCY,
+          I18n.get(AccountExceptionMessage.PAYMENT_SESSION_VALIDATION_IN_PROGRESS),
+          paymentSession.getName());
+    }
+    PaymentSession lockedPaymentSession =
+        JPA.em().find(PaymentSession.class, paymentSession.getId());
+    JPA.em().refresh(lockedPaymentSession);
+
+    // the session changed since the validation was launched, a validation ran in the meantime
+    if (!Objects.equals(lockedPaymentSession.getVersion(), paymentSession.getVersion())) {
+      throw new AxelorException(
+          paymentSession,
+          TraceBackRepository.CATEGORY_INCONSISTENCY,
+          I18n.get(AccountExceptionMessage.PAYMENT_SESSION_VALIDATION_IN_PROGRESS),
+          paymentSession.getName());
+    }
+
+    locked = true;
+    return lockedPaymentSession;
+  }
+
+  protected void sendMessage(StringBuilder flashMessage) {
+    String subject =
+        String.format(
+            I18n.get(AccountExceptionMessage.PAYMENT_SESSION_VALIDATION_MESSAGE),
+            paymentSession.getName());
+    Beans.get(MailMessageService.class)
+        .sendNotification(
+            AuthUtils.getUser(),
+            subject,
+            flashMessage.length() > 0 ? flashMessage.toString() : subject,
+            paymentSession.getId(),
+            paymentSession.getClass());
+  }
+
+  @Transactional
+  protected void onRunnerException(Exception e) {
+    TraceBackService.trace(e);
+    Beans.get(MailMessageService.class)
+        .sendNotification(
+            AuthUtils.getUser(),
+            String.format(
+                I18n.get(AccountExceptionMessage.PAYMENT_SESSION_VALIDATION_EXCEPTION_MESSAGE),
+                paymentSession.getName()),
+            e.getMessage(),
+            paymentSession.getId(),
+            paymentSession.getClass());
+  }
+}
@@ -53,6 +53,7 @@ import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.PartnerService;
 import com.axelor.apps.base.service.administration.AbstractBatch;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.auth.AuthUtils;
 import com.axelor.common.ObjectUtils;
 import com.axelor.db.JPA;
@@ -62,6 +63,7 @@ import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -70,6 +72,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.xml.bind.JAXBException;
 import javax.xml.datatype.DatatypeConfigurationException;
@@ -140,23 +143,25 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
   @Override
   public int checkValidTerms(PaymentSession paymentSession) {
     LocalDate nextSessionDate;
-    int offset = 0;
+    long lastId = 0L;
     List<InvoiceTerm> invoiceTermList;
     Query<InvoiceTerm> invoiceTermQuery =
         invoiceTermRepo
             .all()
             .filter(
                 "self.paymentSession = :paymentSession "
-                    + "AND self.isSelectedOnPaymentSession IS TRUE")
+                    + "AND self.isSelectedOnPaymentSession IS TRUE "
+                    + "AND self.id > :lastId")
             .bind("paymentSession", paymentSession)
             .order("id");
 
-    while (!(invoiceTermList = invoiceTermQuery.fetch(AbstractBatch.FETCH_LIMIT, offset))
+    while (!(invoiceTermList =
+            invoiceTermQuery.bind("lastId", lastId).fetch(AbstractBatch.FETCH_LIMIT))
         .isEmpty()) {
       nextSessionDate = this.fetchNextSessionDate(paymentSession);
 
       for (InvoiceTerm invoiceTerm : invoiceTermList) {
-        offset++;
+        lastId = invoiceTerm.getId();
 
         if (nextSessionDate != null
             && invoiceTerm.getFinancialDiscount() != null
@@ -249,21 +254,28 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
       boolean isGlobal)
       throws AxelorException {
     counter = 0;
-    int offset = 0;
+    // Released terms leave the session, so pages are read by id rather than by offset
+    long lastId = 0L;
     List<InvoiceTerm> invoiceTermList;
     Query<InvoiceTerm> invoiceTermQuery =
         invoiceTermRepo
             .all()
-            .filter("self.paymentSession = :paymentSession")
+            .filter("self.paymentSession = :paymentSession AND self.id > :lastId")
             .bind("paymentSession", paymentSession)
             .order("id");
 
-    while (!(invoiceTermList = invoiceTermQuery.fetch(AbstractBatch.FETCH_LIMIT, offset))
+    Long paymentSessionId = paymentSession.getId();
+    long invoiceTermCount = invoiceTermQuery.bind("lastId", lastId).count();
+    long processedCount = 0;
+    updateValidationProgress(paymentSessionId, BigDecimal.ZERO);
+
+    while (!(invoiceTermList =
+            invoiceTermQuery.bind("lastId", lastId).fetch(AbstractBatch.FETCH_LIMIT))
         .isEmpty()) {
       paymentSession = paymentSessionRepo.find(paymentSession.getId());
 
       for (InvoiceTerm invoiceTerm : invoiceTermList) {
-        offset++;
+        lastId = invoiceTerm.getId();
         if (paymentSession.getStatusSelect() == PaymentSessionRepository.STATUS_AWAITING_PAYMENT
             || this.shouldBeProcessed(invoiceTerm)) {
 
@@ -282,10 +294,45 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
         }
       }
 
+      processedCount += invoiceTermList.size();
+      updateValidationProgress(
+          paymentSessionId,
+          new BigDecimal(processedCount * 100)
+              .divide(
+                  new BigDecimal(Math.max(invoiceTermCount, processedCount)),
+                  2,
+                  RoundingMode.HALF_UP));
       JPA.clear();
     }
   }
 
+  /**
+   * Commit the validation progress of the payment session in its own transaction, on another
+   * connection, so it can be followed while the validation transaction is running. The progress is
+   * skipped rather than waited for if the payment session row is locked.
+   */
+  protected void updateValidationProgress(Long paymentSessionId, BigDecimal validationProgress) {
+    EntityManager em = JPA.em().getEntityManagerFactory().createEntityManager();
+    try {
+      em.getTransaction().begin();
+      em.createNativeQuery(
+              "UPDATE account_payment_session SET validation_progress = :validationProgress "
+                  + "WHERE id IN (SELECT id FROM account_payment_session "
+                  + "WHERE id = :paymentSessionId FOR UPDATE SKIP LOCKED)")
+          .setParameter("validationProgress", validationProgress)
+          .setParameter("paymentSessionId", paymentSessionId)
+          .executeUpdate();
+      em.getTransaction().commit();
+    } catch (RuntimeException e) {
+      if (em.getTransaction().isActive()) {
+        em.getTransaction().rollback();
+      }
+      TraceBackService.trace(e);
+    } finally {
+      em.close();
+    }
+  }
+
   protected boolean shouldBeProcessed(InvoiceTerm invoiceTerm) {
     return invoiceTerm.getIsSelectedOnPaymentSession()
         && !invoiceTerm.getIsPaid()
@@ -748,6 +795,7 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
     } else {
       paymentSession.setStatusSelect(PaymentSessionRepository.STATUS_AWAITING_PAYMENT);
     }
+    paymentSession.setValidationProgress(new BigDecimal(100));
 
     paymentSessionRepo.save(paymentSession);
   }
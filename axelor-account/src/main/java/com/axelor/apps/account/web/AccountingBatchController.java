@@ -296,6 +296,14 @@ public class AccountingBatchController {
     runBatch(AccountingBatchRepository.ACTION_ACCOUNTING_CUT_OFF, request, response);
   }
 
+  public void actionRebuildPeriodBalances(ActionRequest request, ActionResponse response) {
+    runBatch(AccountingBatchRepository.ACTION_REBUILD_PERIOD_BALANCES, request, response);
+  }
+
+  public void actionCheckPartnerBalances(ActionRequest request, ActionResponse response) {
+    runBatch(AccountingBatchRepository.ACTION_CHECK_PARTNER_BALANCES, request, response);
+  }
+
   public void actionAutoMoveLettering(ActionRequest request, ActionResponse response) {
     AccountingBatch accountingBatch = request.getContext().asType(AccountingBatch.class);
     BatchAutoMoveLettering service = Beans.get(BatchAutoMoveLettering.class);
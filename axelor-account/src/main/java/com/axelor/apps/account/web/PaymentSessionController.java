@@ -27,9 +27,11 @@ import com.axelor.apps.account.exception.AccountExceptionMessage;
 import com.axelor.apps.account.service.payment.paymentsession.PaymentSessionCancelService;
 import com.axelor.apps.account.service.payment.paymentsession.PaymentSessionEmailService;
 import com.axelor.apps.account.service.payment.paymentsession.PaymentSessionService;
+import com.axelor.apps.account.service.payment.paymentsession.PaymentSessionValidateCallableService;
 import com.axelor.apps.account.service.payment.paymentsession.PaymentSessionValidateService;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.ResponseMessageType;
+import com.axelor.apps.base.callable.ControllerCallableTool;
 import com.axelor.apps.base.db.BankDetails;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.service.exception.TraceBackService;
@@ -167,9 +169,13 @@ public class PaymentSessionController {
     try {
       PaymentSession paymentSession = request.getContext().asType(PaymentSession.class);
       paymentSession = Beans.get(PaymentSessionRepository.class).find(paymentSession.getId());
+      PaymentSessionValidateCallableService paymentSessionValidateCallableService =
+          Beans.get(PaymentSessionValidateCallableService.class);
+      paymentSessionValidateCallableService.setPaymentSession(paymentSession);
       StringBuilder flashMessage =
-          Beans.get(PaymentSessionValidateService.class).processInvoiceTerms(paymentSession);
-      if (flashMessage.length() > 0) {
+          new ControllerCallableTool<StringBuilder>()
+              .runInSeparateThread(paymentSessionValidateCallableService, response);
+      if (flashMessage != null && flashMessage.length() > 0) {
         response.setInfo(flashMessage.toString());
       }
       response.setReload(true);
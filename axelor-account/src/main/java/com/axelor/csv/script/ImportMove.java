@@ -26,7 +26,6 @@ import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.db.repo.AccountRepository;
 import com.axelor.apps.account.db.repo.FECImportRepository;
 import com.axelor.apps.account.db.repo.JournalRepository;
-import com.axelor.apps.account.db.repo.MoveLineRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
 import com.axelor.apps.account.service.app.AppAccountService;
@@ -51,13 +50,13 @@ import com.google.inject.persist.Transactional;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
 public class ImportMove {
 
   @Inject private MoveRepository moveRepository;
-  @Inject private MoveLineRepository moveLineRepo;
   @Inject private MoveValidateService moveValidateService;
   @Inject private MoveLineToolService moveLineToolService;
   @Inject private AppAccountService appAccountService;
@@ -66,6 +65,14 @@ public class ImportMove {
 
   private String lastImportDate;
 
+  /*
+   * Import references contain the import date, so the moves and counters of an import are only
+   * created by this instance and can be tracked here instead of being searched for each line.
+   */
+  private final Map<String, Long> moveIdMap = new HashMap<>();
+  private final Map<String, Integer> lastCounterMap = new HashMap<>();
+  private final Map<String, Long> accountIdMap = new HashMap<>();
+
   @Transactional(rollbackOn = {Exception.class})
   public Object importFECMove(Object bean, Map<String, Object> values) throws AxelorException {
     assert bean instanceof MoveLine;
@@ -75,7 +82,6 @@ public class ImportMove {
       if (values.get("FECImport") != null) {
         fecImport = fecImportRepository.find(((FECImport) values.get("FECImport")).getId());
       }
-      moveLine.setCounter(1);
 
       if (values.get("EcritureNum") == null) {
         return null;
@@ -96,16 +102,7 @@ public class ImportMove {
       }
       String importReference = String.format("#%s-%s", csvReference, lastImportDate);
 
-      MoveLine mvLine =
-          moveLineRepo
-              .all()
-              .filter("self.name LIKE '" + importReference + "-%'")
-              .order("-counter")
-              .fetchOne();
-      if (mvLine != null) {
-        int counter = mvLine.getCounter() + 1;
-        moveLine.setCounter(counter);
-      }
+      moveLine.setCounter(lastCounterMap.merge(importReference, 1, Integer::sum));
 
       if (values.get("EcritureDate") != null) {
         moveLine.setDate(parseDate(values.get("EcritureDate").toString()));
@@ -114,7 +111,9 @@ public class ImportMove {
       Period period =
           periodService.getPeriod(moveLine.getDate(), company, YearRepository.TYPE_FISCAL);
 
-      Move move = moveRepository.all().filter("self.reference = ?", importReference).fetchOne();
+      Long moveId = moveIdMap.get(importReference);
+      // the move is not found anymore if the transaction which created it was rolled back
+      Move move = moveId != null ? moveRepository.find(moveId) : null;
       if (move == null) {
         move = new Move();
         move.setFecImport(fecImport);
@@ -185,17 +184,11 @@ public class ImportMove {
           }
         }
 
-        moveRepository.save(move);
+        move = moveRepository.save(move);
+        moveIdMap.put(importReference, move.getId());
       }
       if (values.get("CompteNum") != null) {
-        Account account =
-            Beans.get(AccountRepository.class)
-                .all()
-                .filter(
-                    "self.code = ?1 AND self.company.id = ?2",
-                    values.get("CompteNum").toString(),
-                    move.getCompany().getId())
-                .fetchOne();
+        Account account = getAccount(values.get("CompteNum").toString(), move.getCompany());
         if (account == null) {
           throw new AxelorException(
               fecImport,
@@ -227,6 +220,24 @@ public class ImportMove {
     return moveLine;
   }
 
+  protected Account getAccount(String code, Company company) {
+    String key = company.getId() + "-" + code;
+    Long accountId = accountIdMap.get(key);
+    if (accountId != null) {
+      return Beans.get(AccountRepository.class).find(accountId);
+    }
+
+    Account account =
+        Beans.get(AccountRepository.class)
+            .all()
+            .filter("self.code = ?1 AND self.company.id = ?2", code, company.getId())
+            .fetchOne();
+    if (account != null) {
+      accountIdMap.put(key, account.getId());
+    }
+    return account;
+  }
+
   protected Company getCompany(Map<String, Object> values) {
     final Path path = (Path) values.get("__path__");
     String fileName = path.getFileName().toString();
@@ -0,0 +1,250 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.Journal;
+import com.axelor.apps.account.db.JournalType;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.AccountRepository;
+import com.axelor.apps.account.db.repo.JournalTypeRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.service.move.MoveRemoveServiceImpl;
+import com.axelor.apps.account.service.moveline.MoveLineToolServiceImpl;
+import com.axelor.apps.account.test.TestModule;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.db.Period;
+import com.axelor.apps.base.db.Year;
+import com.axelor.apps.base.db.repo.YearRepository;
+import com.axelor.db.JPA;
+import com.axelor.rpc.Context;
+import com.axelor.test.GuiceModules;
+import com.axelor.test.GuiceRunner;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+/**
+ * Runs the partner balances against the test database, when the move lines or the accounts change
+ * without going through the moves, and when moves are cancelled or deleted.
+ */
+@RunWith(GuiceRunner.class)
+@GuiceModules({TestModule.class})
+public class TestAccountPartnerBalanceService {
+
+  protected final AccountPartnerBalanceServiceImpl accountPartnerBalanceService =
+      new AccountPartnerBalanceServiceImpl(null, null);
+
+  protected Long companyId;
+  protected Long journalId;
+  protected Long accountId;
+  protected Long counterpartAccountId;
+  protected Long partnerId;
+  protected Long periodId;
+
+  @Before
+  public void prepareTest() {
+    String suffix = String.valueOf(System.nanoTime());
+    JPA.runInTransaction(
+        () -> {
+          Company company = new Company();
+          company.setName("Partner balance test " + suffix);
+          company.setCode("PAB" + suffix);
+          companyId = JPA.save(company).getId();
+
+          JournalType journalType = new JournalType();
+          journalType.setName("Partner balance test " + suffix);
+          journalType.setCode("PA" + suffix);
+          journalType.setTechnicalTypeSelect(JournalTypeRepository.TECHNICAL_TYPE_SELECT_OTHER);
+          Journal journal = new Journal();
+          journal.setName("Partner balance test " + suffix);
+          journal.setJournalType(JPA.save(journalType));
+          journal.setCompany(company);
+          journalId = JPA.save(journal).getId();
+
+          accountId = createAccount(company, "411" + suffix, false);
+          counterpartAccountId = createAccount(company, "706" + suffix, false);
+
+          Partner partner = new Partner();
+          partner.setName("Partner balance test " + suffix);
+          partnerId = JPA.save(partner).getId();
+
+          Year year = new Year();
+          year.setName("Partner balance test " + suffix);
+          year.setCode("PAB" + suffix);
+          year.setCompany(company);
+          year.setTypeSelect(YearRepository.TYPE_FISCAL);
+          year.setFromDate(LocalDate.of(2025, 1, 1));
+          year.setToDate(LocalDate.of(2025, 12, 31));
+          Period period = new Period();
+          period.setName(year.getName());
+          period.setYear(JPA.save(year));
+          period.setFromDate(year.getFromDate());
+          period.setToDate(year.getToDate());
+          periodId = JPA.save(period).getId();
+        });
+    JPA.clear();
+    createMove(MoveRepository.STATUS_ACCOUNTED, new BigDecimal("150"), new BigDecimal("40"));
+  }
+
+  @Test
+  public void testBalanceAfterTurningOnUseForPartnerBalance() {
+    Assert.assertEquals(0, BigDecimal.ZERO.compareTo(getBalance()));
+
+    JPA.runInTransaction(() -> JPA.find(Account.class, accountId).setUseForPartnerBalance(true));
+    JPA.clear();
+
+    Assert.assertEquals(0, new BigDecimal("40").compareTo(getBalance()));
+    Assert.assertEquals(
+        Collections.emptyList(),
+        accountPartnerBalanceService.getInconsistentPartnerIds(JPA.find(Company.class, companyId)));
+  }
+
+  @Test
+  public void testBalanceAfterResettingAmountRemainingOfTheAccount() {
+    JPA.runInTransaction(() -> JPA.find(Account.class, accountId).setUseForPartnerBalance(true));
+    JPA.clear();
+
+    Context context = Mockito.mock(Context.class);
+    Mockito.when(context.get("_accountId")).thenReturn(accountId);
+    MoveLineToolServiceImpl moveLineToolService =
+        new MoveLineToolServiceImpl(null, null, null, null, accountPartnerBalanceService);
+    JPA.runInTransaction(
+        () -> moveLineToolService.setAmountRemainingReconciliableMoveLines(context));
+    JPA.clear();
+
+    Assert.assertEquals(0, new BigDecimal("150").compareTo(getBalance()));
+    Assert.assertEquals(
+        Collections.emptyList(),
+        accountPartnerBalanceService.getInconsistentPartnerIds(JPA.find(Company.class, companyId)));
+  }
+
+  @Test
+  public void testBalanceAfterCancellingAndDeletingDaybookMoves() {
+    JPA.runInTransaction(() -> JPA.find(Account.class, accountId).setUseForPartnerBalance(true));
+    JPA.clear();
+    Long cancelledMoveId =
+        createMove(MoveRepository.STATUS_DAYBOOK, new BigDecimal("70"), new BigDecimal("70"));
+    Long deletedMoveId =
+        createMove(MoveRepository.STATUS_DAYBOOK, new BigDecimal("25"), new BigDecimal("25"));
+    Assert.assertEquals(0, new BigDecimal("135").compareTo(getBalance()));
+
+    TestMoveRemoveService moveRemoveService =
+        new TestMoveRemoveService(
+            new AccountPeriodBalanceServiceImpl(null, null, accountPartnerBalanceService));
+    moveRemoveService.cancelMove(cancelledMoveId);
+    Assert.assertEquals(0, new BigDecimal("65").compareTo(getBalance()));
+
+    JPA.runInTransaction(() -> moveRemoveService.deleteMove(JPA.find(Move.class, deletedMoveId)));
+    JPA.clear();
+    Assert.assertEquals(0, new BigDecimal("40").compareTo(getBalance()));
+    Assert.assertEquals(
+        Collections.emptyList(),
+        accountPartnerBalanceService.getInconsistentPartnerIds(JPA.find(Company.class, companyId)));
+  }
+
+  protected BigDecimal getBalance() {
+    return accountPartnerBalanceService.getBalance(
+        JPA.find(Partner.class, partnerId), JPA.find(Company.class, companyId));
+  }
+
+  /** Create a validated move with a partly reconciled debit line of the partner. */
+  protected Long createMove(int statusSelect, BigDecimal amount, BigDecimal amountRemaining) {
+    Long[] moveId = new Long[1];
+    JPA.runInTransaction(
+        () -> {
+          Company company = JPA.find(Company.class, companyId);
+          Partner partner = JPA.find(Partner.class, partnerId);
+          Period period = JPA.find(Period.class, periodId);
+
+          Move move = new Move();
+          move.setCompany(company);
+          move.setJournal(JPA.find(Journal.class, journalId));
+          move.setPeriod(period);
+          move.setDate(period.getFromDate());
+          move.setTechnicalOriginSelect(MoveRepository.TECHNICAL_ORIGIN_ENTRY);
+          move.setStatusSelect(statusSelect);
+          move.addMoveLineListItem(
+              createMoveLine(accountId, partner, amount, BigDecimal.ZERO, amountRemaining));
+          move.addMoveLineListItem(
+              createMoveLine(counterpartAccountId, null, BigDecimal.ZERO, amount, amount));
+          moveId[0] = JPA.save(move).getId();
+
+          accountPartnerBalanceService.registerPartners(
+              company, Collections.singletonList(partner));
+        });
+    JPA.clear();
+    return moveId[0];
+  }
+
+  protected MoveLine createMoveLine(
+      Long lineAccountId,
+      Partner partner,
+      BigDecimal debit,
+      BigDecimal credit,
+      BigDecimal amountRemaining) {
+    MoveLine moveLine = new MoveLine();
+    moveLine.setAccount(JPA.find(Account.class, lineAccountId));
+    moveLine.setAccountId(lineAccountId);
+    moveLine.setPartner(partner);
+    moveLine.setPartnerId(partner != null ? partner.getId() : null);
+    moveLine.setDebit(debit);
+    moveLine.setCredit(credit);
+    moveLine.setAmountRemaining(amountRemaining);
+    return moveLine;
+  }
+
+  protected Long createAccount(Company company, String code, boolean useForPartnerBalance) {
+    Account account = new Account();
+    account.setName("Partner balance test " + code);
+    account.setCode(code);
+    account.setCompany(company);
+    account.setCommonPosition(AccountRepository.COMMON_POSITION_NONE);
+    account.setUseForPartnerBalance(useForPartnerBalance);
+    return JPA.save(account).getId();
+  }
+
+  /** Cancels a daybook move as the archiving does, without the checks of its links. */
+  protected static class TestMoveRemoveService extends MoveRemoveServiceImpl {
+
+    public TestMoveRemoveService(AccountPeriodBalanceService accountPeriodBalanceService) {
+      super(new MoveRepository(), null, null, null, null, null, accountPeriodBalanceService);
+    }
+
+    public void cancelMove(Long moveId) {
+      JPA.runInTransaction(
+          () -> {
+            try {
+              updateMoveToArchived(JPA.find(Move.class, moveId));
+            } catch (AxelorException e) {
+              throw new IllegalStateException(e);
+            }
+          });
+      JPA.clear();
+    }
+  }
+}
@@ -0,0 +1,387 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.Journal;
+import com.axelor.apps.account.db.JournalType;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.AccountRepository;
+import com.axelor.apps.account.db.repo.JournalTypeRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.test.TestModule;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.db.Period;
+import com.axelor.apps.base.db.Year;
+import com.axelor.apps.base.db.repo.YearRepository;
+import com.axelor.db.JPA;
+import com.axelor.test.GuiceModules;
+import com.axelor.test.GuiceRunner;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.persistence.TypedQuery;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+/**
+ * Runs the period balances against the test database: the balances read from them must be the ones
+ * computed from the move lines, after moves are validated, cancelled or deleted.
+ */
+@RunWith(GuiceRunner.class)
+@GuiceModules({TestModule.class})
+public class TestAccountPeriodBalanceService {
+
+  protected static final List<Integer> STATUS_LIST =
+      Arrays.asList(MoveRepository.STATUS_ACCOUNTED, MoveRepository.STATUS_DAYBOOK);
+
+  protected final AccountPeriodBalanceServiceImpl accountPeriodBalanceService =
+      new AccountPeriodBalanceServiceImpl(
+          null, null, Mockito.mock(AccountPartnerBalanceService.class)) {
+        @Override
+        public boolean isBuilt(Company company) {
+          return true;
+        }
+      };
+
+  /** Computes the balances from the period balances. */
+  protected final AccountService periodBalanceAccountService =
+      new AccountService(null, null, null, accountPeriodBalanceService);
+
+  /** Computes the balances from the move lines, as before the period balances. */
+  protected final AccountService moveLineAccountService =
+      new AccountService(null, null, null, Mockito.mock(AccountPeriodBalanceService.class));
+
+  protected Long companyId;
+  protected Long journalId;
+  protected Long accountId;
+  protected Long counterpartAccountId;
+  protected Long partnerId;
+  protected Long previousYearId;
+  protected Long yearId;
+  protected Long previousPeriodId;
+  protected Long periodId;
+
+  @Before
+  public void prepareTest() {
+    String suffix = String.valueOf(System.nanoTime());
+    JPA.runInTransaction(
+        () -> {
+          Company company = new Company();
+          company.setName("Period balance test " + suffix);
+          company.setCode("PBT" + suffix);
+          companyId = JPA.save(company).getId();
+
+          JournalType journalType = new JournalType();
+          journalType.setName("Period balance test " + suffix);
+          journalType.setCode("PB" + suffix);
+          journalType.setTechnicalTypeSelect(JournalTypeRepository.TECHNICAL_TYPE_SELECT_OTHER);
+          Journal journal = new Journal();
+          journal.setName("Period balance test " + suffix);
+          journal.setJournalType(JPA.save(journalType));
+          journal.setCompany(company);
+          journalId = JPA.save(journal).getId();
+
+          accountId = createAccount(company, "411" + suffix);
+          counterpartAccountId = createAccount(company, "706" + suffix);
+
+          Partner partner = new Partner();
+          partner.setName("Period balance test " + suffix);
+          partnerId = JPA.save(partner).getId();
+
+          Year previousYear = createYear(company, 2024, suffix);
+          previousYearId = previousYear.getId();
+          previousPeriodId = createPeriod(previousYear).getId();
+          Year year = createYear(company, 2025, suffix);
+          yearId = year.getId();
+          periodId = createPeriod(year).getId();
+        });
+    JPA.clear();
+  }
+
+  @Test
+  public void testBalancesAfterValidationCancellationAndDeletion() {
+    Long daybookMoveId =
+        createMove(previousPeriodId, MoveRepository.STATUS_DAYBOOK, "120.50", true, move -> {});
+    Long accountedMoveId =
+        createMove(periodId, MoveRepository.STATUS_ACCOUNTED, "80", false, move -> {});
+    createMove(periodId, MoveRepository.STATUS_ACCOUNTED, "1000", true, this::ignoreInAccounting);
+    createMove(periodId, MoveRepository.STATUS_ACCOUNTED, "300", true, this::closeYear);
+    createMove(periodId, MoveRepository.STATUS_NEW, "45", true, move -> {});
+    assertSameBalances();
+
+    changeMove(
+        daybookMoveId,
+        move -> {
+          accountPeriodBalanceService.registerMove(move);
+          move.setStatusSelect(MoveRepository.STATUS_CANCELED);
+        });
+    assertSameBalances();
+
+    changeMove(
+        accountedMoveId,
+        move -> {
+          accountPeriodBalanceService.registerMove(move);
+          JPA.remove(move);
+        });
+    assertSameBalances();
+
+    // nothing is left but the year closure move
+    Assert.assertEquals(
+        0,
+        new BigDecimal("300")
+            .compareTo(
+                accountPeriodBalanceService.computeBalance(
+                    JPA.find(Account.class, accountId), null, STATUS_LIST, true)));
+    Assert.assertEquals(
+        0,
+        BigDecimal.ZERO.compareTo(
+            accountPeriodBalanceService.computeBalance(
+                JPA.find(Account.class, accountId), null, STATUS_LIST, false)));
+  }
+
+  @Test
+  public void testBalancesAfterChangingTheAccountOfADaybookMove() {
+    Long moveId =
+        createMove(previousPeriodId, MoveRepository.STATUS_DAYBOOK, "64", true, move -> {});
+    assertSameBalances();
+
+    // the account of a daybook move can be changed, its former account is recomputed too
+    changeMove(
+        moveId,
+        move -> {
+          move.getMoveLineList().stream()
+              .filter(moveLine -> moveLine.getAccount().getId().equals(accountId))
+              .forEach(
+                  moveLine -> moveLine.setAccount(JPA.find(Account.class, counterpartAccountId)));
+          accountPeriodBalanceService.registerMove(move);
+          freezeFields(move);
+        });
+    assertSameBalances();
+
+    changeMove(
+        moveId,
+        move -> {
+          accountPeriodBalanceService.registerMove(move);
+          move.setStatusSelect(MoveRepository.STATUS_ACCOUNTED);
+        });
+    assertSameBalances();
+  }
+
+  @Test
+  public void testBalancesAfterChangingTheAmountsOfADaybookMoveTwice() {
+    Long moveId =
+        createMove(previousPeriodId, MoveRepository.STATUS_DAYBOOK, "64", true, move -> {});
+    assertSameBalances();
+
+    // a move registered again after its change is flushed is only counted once
+    changeMove(
+        moveId,
+        move -> {
+          accountPeriodBalanceService.registerMove(move);
+          setAmount(move, new BigDecimal("100"));
+          JPA.flush();
+          accountPeriodBalanceService.registerMove(move);
+          setAmount(move, new BigDecimal("250.75"));
+        });
+    assertSameBalances();
+    Assert.assertEquals(
+        0,
+        new BigDecimal("250.75")
+            .compareTo(
+                accountPeriodBalanceService.computeBalance(
+                    JPA.find(Account.class, accountId), null, STATUS_LIST, true)));
+  }
+
+  protected void setAmount(Move move, BigDecimal amount) {
+    for (MoveLine moveLine : move.getMoveLineList()) {
+      boolean isDebit = moveLine.getDebit().signum() != 0;
+      moveLine.setDebit(isDebit ? amount : BigDecimal.ZERO);
+      moveLine.setCredit(isDebit ? BigDecimal.ZERO : amount);
+      moveLine.setCurrencyAmount(isDebit ? amount : amount.negate());
+    }
+  }
+
+  protected void assertSameBalances() {
+    JPA.clear();
+    for (Long id : Arrays.asList(accountId, counterpartAccountId)) {
+      Account account = JPA.find(Account.class, id);
+      for (Long balanceYearId : Arrays.asList(null, previousYearId, yearId)) {
+        Year year = balanceYearId != null ? JPA.find(Year.class, balanceYearId) : null;
+        for (Integer balanceType :
+            Arrays.asList(
+                AccountService.BALANCE_TYPE_DEBIT_BALANCE,
+                AccountService.BALANCE_TYPE_CREDIT_BALANCE)) {
+          assertSameBalance(
+              moveLineAccountService.computeBalance(account, null, year, balanceType),
+              periodBalanceAccountService.computeBalance(account, null, year, balanceType));
+        }
+
+        for (boolean includeYearClosureMoves : Arrays.asList(true, false)) {
+          assertSameBalance(
+              computeMoveLinePartnerBalance(account, year, includeYearClosureMoves),
+              accountPeriodBalanceService.computePartnerBalance(
+                  account,
+                  JPA.find(Partner.class, partnerId),
+                  year,
+                  STATUS_LIST,
+                  includeYearClosureMoves));
+        }
+      }
+    }
+  }
+
+  protected void assertSameBalance(BigDecimal expected, BigDecimal actual) {
+    Assert.assertEquals(expected + " <> " + actual, 0, expected.compareTo(actual));
+  }
+
+  protected BigDecimal computeMoveLinePartnerBalance(
+      Account account, Year year, boolean includeYearClosureMoves) {
+    TypedQuery<BigDecimal> query =
+        JPA.em()
+            .createQuery(
+                "SELECT SUM(self.debit - self.credit) FROM MoveLine self "
+                    + "WHERE self.account = :account AND self.partner.id = :partnerId "
+                    + "AND self.move.statusSelect IN (:statusList) "
+                    + "AND self.move.ignoreInAccountingOk = false"
+                    + (year != null ? " AND self.move.period.year = :year" : "")
+                    + (includeYearClosureMoves
+                        ? ""
+                        : " AND (self.move.autoYearClosureMove IS NULL "
+                            + "OR self.move.autoYearClosureMove = false)"),
+                BigDecimal.class)
+            .setParameter("account", account)
+            .setParameter("partnerId", partnerId)
+            .setParameter("statusList", STATUS_LIST);
+    if (year != null) {
+      query.setParameter("year", year);
+    }
+    BigDecimal balance = query.getSingleResult();
+    return balance != null ? balance : BigDecimal.ZERO;
+  }
+
+  /**
+   * Create a move with a debit line on the account and a credit line on the counterpart, as a
+   * validation would.
+   */
+  protected Long createMove(
+      Long movePeriodId,
+      int statusSelect,
+      String amount,
+      boolean withPartner,
+      Consumer<Move> moveCustomizer) {
+    Long[] moveId = new Long[1];
+    JPA.runInTransaction(
+        () -> {
+          Period period = JPA.find(Period.class, movePeriodId);
+          Partner partner = withPartner ? JPA.find(Partner.class, partnerId) : null;
+
+          Move move = new Move();
+          move.setCompany(JPA.find(Company.class, companyId));
+          move.setJournal(JPA.find(Journal.class, journalId));
+          move.setPeriod(period);
+          move.setDate(period.getFromDate());
+          move.setTechnicalOriginSelect(MoveRepository.TECHNICAL_ORIGIN_ENTRY);
+          move.setStatusSelect(MoveRepository.STATUS_NEW);
+          move.addMoveLineListItem(
+              createMoveLine(accountId, partner, new BigDecimal(amount), BigDecimal.ZERO));
+          move.addMoveLineListItem(
+              createMoveLine(
+                  counterpartAccountId, partner, BigDecimal.ZERO, new BigDecimal(amount)));
+          moveCustomizer.accept(move);
+
+          if (statusSelect != MoveRepository.STATUS_NEW) {
+            freezeFields(move);
+            accountPeriodBalanceService.registerMove(move);
+          }
+          move.setStatusSelect(statusSelect);
+          moveId[0] = JPA.save(move).getId();
+        });
+    JPA.clear();
+    return moveId[0];
+  }
+
+  protected MoveLine createMoveLine(
+      Long lineAccountId, Partner partner, BigDecimal debit, BigDecimal credit) {
+    MoveLine moveLine = new MoveLine();
+    moveLine.setAccount(JPA.find(Account.class, lineAccountId));
+    moveLine.setPartner(partner);
+    moveLine.setDebit(debit);
+    moveLine.setCredit(credit);
+    moveLine.setCurrencyAmount(debit.subtract(credit));
+    return moveLine;
+  }
+
+  /** Freeze the account and partner of the move lines, as a validation does. */
+  protected void freezeFields(Move move) {
+    for (MoveLine moveLine : move.getMoveLineList()) {
+      moveLine.setAccountId(moveLine.getAccount().getId());
+      moveLine.setPartnerId(moveLine.getPartner() != null ? moveLine.getPartner().getId() : null);
+    }
+  }
+
+  protected void changeMove(Long moveId, Consumer<Move> change) {
+    JPA.runInTransaction(() -> change.accept(JPA.find(Move.class, moveId)));
+    JPA.clear();
+  }
+
+  protected void ignoreInAccounting(Move move) {
+    move.setIgnoreInAccountingOk(true);
+  }
+
+  protected void closeYear(Move move) {
+    move.setAutoYearClosureMove(true);
+  }
+
+  protected Long createAccount(Company company, String code) {
+    Account account = new Account();
+    account.setName("Period balance test " + code);
+    account.setCode(code);
+    account.setCompany(company);
+    account.setCommonPosition(AccountRepository.COMMON_POSITION_NONE);
+    return JPA.save(account).getId();
+  }
+
+  protected Year createYear(Company company, int yearNumber, String suffix) {
+    Year year = new Year();
+    year.setName(yearNumber + " " + suffix);
+    year.setCode(yearNumber + suffix);
+    year.setCompany(company);
+    year.setTypeSelect(YearRepository.TYPE_FISCAL);
+    year.setFromDate(LocalDate.of(yearNumber, 1, 1));
+    year.setToDate(LocalDate.of(yearNumber, 12, 31));
+    return JPA.save(year);
+  }
+
+  protected Period createPeriod(Year year) {
+    Period period = new Period();
+    period.setName(year.getName());
+    period.setYear(year);
+    period.setFromDate(year.getFromDate());
+    period.setToDate(year.getToDate());
+    return JPA.save(period);
+  }
+}
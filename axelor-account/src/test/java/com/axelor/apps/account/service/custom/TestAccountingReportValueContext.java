@@ -0,0 +1,187 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.custom;
+
+import com.axelor.apps.account.db.AccountingReportConfigLine;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAccountingReportValueContext {
+
+  protected static final int LINE_COUNT = 200;
+  protected static final int COLUMN_COUNT = 24;
+
+  @Test
+  public void testDetailLinesShiftFollowingLines() {
+    List<AccountingReportConfigLine> lineList = createLines(3);
+    AccountingReportValueContext context =
+        AccountingReportValueContext.create(lineList, line -> line.getCode().equals("L1") ? 3 : 0);
+
+    Assert.assertEquals(0, context.getLineNumber(lineList.get(0), "L0"));
+    Assert.assertEquals(1, context.getLineNumber(lineList.get(1), "L1_1"));
+    Assert.assertEquals(3, context.getLineNumber(lineList.get(1), "L1_3"));
+    Assert.assertEquals(4, context.getLineNumber(lineList.get(2), "L2"));
+  }
+
+  @Test
+  public void testComputationContexts() {
+    AccountingReportValueContext context =
+        AccountingReportValueContext.create(createLines(1), line -> 0);
+    AccountingReportValueContext computationContext = context.forComputation(3, 2, 1);
+
+    Assert.assertEquals(0, context.getPeriodNumber());
+    Assert.assertEquals(3, computationContext.getPeriodNumber());
+    Assert.assertEquals(2, computationContext.getAnalyticCounter());
+    Assert.assertTrue(context.isComputedGroup(0));
+    Assert.assertTrue(computationContext.isComputedGroup(1));
+    Assert.assertFalse(computationContext.isComputedGroup(0));
+  }
+
+  @Test
+  public void testTwoReportsComputedAtOnce() throws Exception {
+    List<AccountingReportConfigLine> lineList = createLines(LINE_COUNT);
+    ToIntFunction<AccountingReportConfigLine> firstDetailLineCounter =
+        line -> line.getSequence() % 5;
+    ToIntFunction<AccountingReportConfigLine> secondDetailLineCounter =
+        line -> line.getSequence() % 3 == 0 ? 12 : 0;
+
+    Map<String, Integer> firstExpectedLayout =
+        computeLayout(
+            AccountingReportValueContext.create(lineList, firstDetailLineCounter),
+            lineList,
+            firstDetailLineCounter,
+            0);
+    Map<String, Integer> secondExpectedLayout =
+        computeLayout(
+            AccountingReportValueContext.create(lineList, secondDetailLineCounter),
+            lineList,
+            secondDetailLineCounter,
+            0);
+    assertRowsOrdered(lineList, firstDetailLineCounter, firstExpectedLayout);
+    assertRowsOrdered(lineList, secondDetailLineCounter, secondExpectedLayout);
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Map<String, Integer>>> firstFutureList =
+          submitColumns(executor, lineList, firstDetailLineCounter);
+      List<Future<Map<String, Integer>>> secondFutureList =
+          submitColumns(executor, lineList, secondDetailLineCounter);
+
+      for (Future<Map<String, Integer>> future : firstFutureList) {
+        Assert.assertEquals(firstExpectedLayout, future.get());
+      }
+      for (Future<Map<String, Integer>> future : secondFutureList) {
+        Assert.assertEquals(secondExpectedLayout, future.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Lay out every column of a report as separate computations, as done for each period. */
+  protected List<Future<Map<String, Integer>>> submitColumns(
+      ExecutorService executor,
+      List<AccountingReportConfigLine> lineList,
+      ToIntFunction<AccountingReportConfigLine> detailLineCounter) {
+    AccountingReportValueContext context =
+        AccountingReportValueContext.create(lineList, detailLineCounter);
+    List<Future<Map<String, Integer>>> futureList = new ArrayList<>();
+
+    for (int column = 0; column < COLUMN_COUNT; column++) {
+      int periodNumber = column;
+      Callable<Map<String, Integer>> computation =
+          () -> computeLayout(context, lineList, detailLineCounter, periodNumber);
+      futureList.add(executor.submit(computation));
+    }
+
+    return futureList;
+  }
+
+  protected Map<String, Integer> computeLayout(
+      AccountingReportValueContext context,
+      List<AccountingReportConfigLine> lineList,
+      ToIntFunction<AccountingReportConfigLine> detailLineCounter,
+      int periodNumber) {
+    AccountingReportValueContext computationContext = context.forComputation(periodNumber, 0, null);
+    Assert.assertEquals(periodNumber, computationContext.getPeriodNumber());
+
+    Map<String, Integer> layout = new HashMap<>();
+    for (AccountingReportConfigLine line : lineList) {
+      for (String lineCode : getLineCodes(line, detailLineCounter)) {
+        layout.put(lineCode, computationContext.getLineNumber(line, lineCode));
+      }
+    }
+    return layout;
+  }
+
+  protected void assertRowsOrdered(
+      List<AccountingReportConfigLine> lineList,
+      ToIntFunction<AccountingReportConfigLine> detailLineCounter,
+      Map<String, Integer> layout) {
+    Set<Integer> lineNumberSet = new HashSet<>();
+    int previousLineNumber = -1;
+
+    for (AccountingReportConfigLine line : lineList) {
+      for (String lineCode : getLineCodes(line, detailLineCounter)) {
+        int lineNumber = layout.get(lineCode);
+        Assert.assertTrue(lineNumber > previousLineNumber);
+        Assert.assertTrue(lineNumberSet.add(lineNumber));
+        previousLineNumber = lineNumber;
+      }
+    }
+  }
+
+  protected List<String> getLineCodes(
+      AccountingReportConfigLine line,
+      ToIntFunction<AccountingReportConfigLine> detailLineCounter) {
+    List<String> lineCodeList = new ArrayList<>();
+    int detailLineCount = detailLineCounter.applyAsInt(line);
+
+    if (detailLineCount == 0) {
+      lineCodeList.add(line.getCode());
+    }
+    for (int i = 1; i <= detailLineCount; i++) {
+      lineCodeList.add(String.format("%s_%d", line.getCode(), i));
+    }
+    return lineCodeList;
+  }
+
+  protected List<AccountingReportConfigLine> createLines(int lineCount) {
+    List<AccountingReportConfigLine> lineList = new ArrayList<>();
+
+    for (int i = 0; i < lineCount; i++) {
+      AccountingReportConfigLine line = new AccountingReportConfigLine();
+      line.setCode("L" + i);
+      line.setSequence(i);
+      lineList.add(line);
+    }
+    return lineList;
+  }
+}
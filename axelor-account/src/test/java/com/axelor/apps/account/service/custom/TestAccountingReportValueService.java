@@ -0,0 +1,201 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.custom;
+
+import com.axelor.apps.account.db.AccountingReport;
+import com.axelor.apps.account.db.AccountingReportConfigLine;
+import com.axelor.apps.account.db.AccountingReportType;
+import com.axelor.apps.account.db.repo.AccountingReportConfigLineRepository;
+import com.axelor.apps.account.db.repo.AccountingReportRepository;
+import com.axelor.apps.account.db.repo.AccountingReportTypeRepository;
+import com.axelor.apps.account.test.TestModule;
+import com.axelor.test.GuiceModules;
+import com.axelor.test.GuiceRunner;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+/**
+ * Computes two reports at once through the service. The values themselves are not computed: each
+ * computation of a part of a report only records what it was asked to compute.
+ */
+@RunWith(GuiceRunner.class)
+@GuiceModules({TestModule.class})
+public class TestAccountingReportValueService {
+
+  protected static final int PERIOD_COUNT = 3;
+  protected static final String USER_CODE = "report-user";
+
+  protected static class Computation {
+    protected final LocalDate startDate;
+    protected final LocalDate endDate;
+    protected final int periodNumber;
+    protected final Object principal;
+    protected final Thread thread;
+
+    protected Computation(LocalDate startDate, LocalDate endDate, int periodNumber) {
+      this.startDate = startDate;
+      this.endDate = endDate;
+      this.periodNumber = periodNumber;
+      this.principal = SecurityUtils.getSubject().getPrincipal();
+      this.thread = Thread.currentThread();
+    }
+  }
+
+  protected static class TestAccountingReportValueServiceImpl
+      extends AccountingReportValueServiceImpl {
+
+    protected final Map<Long, List<Computation>> computationMap = new ConcurrentHashMap<>();
+
+    public TestAccountingReportValueServiceImpl() {
+      super(
+          null,
+          null,
+          null,
+          Mockito.mock(AccountingReportValueMoveLineService.class),
+          null,
+          null,
+          null,
+          null,
+          null);
+    }
+
+    @Override
+    protected void clearTracebacks(AccountingReport accountingReport) {}
+
+    @Override
+    protected void computeReportValues(
+        Long accountingReportId,
+        Long configAnalyticAccountId,
+        LocalDate startDate,
+        LocalDate endDate,
+        AccountingReportValueContext context) {
+      computationMap
+          .computeIfAbsent(
+              accountingReportId, id -> Collections.synchronizedList(new ArrayList<>()))
+          .add(new Computation(startDate, endDate, context.getPeriodNumber()));
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testTwoReportsComputedAtOnce() throws Exception {
+    TestAccountingReportValueServiceImpl service = new TestAccountingReportValueServiceImpl();
+    List<AccountingReport> accountingReportList =
+        List.of(
+            createAccountingReport(1L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)),
+            createAccountingReport(2L, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 5, 31)));
+    Subject subject =
+        new Subject.Builder(new DefaultSecurityManager())
+            .principals(new SimplePrincipalCollection(USER_CODE, "test"))
+            .authenticated(true)
+            .buildSubject();
+
+    ExecutorService executor = Executors.newFixedThreadPool(accountingReportList.size());
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Thread>> futureList = new ArrayList<>();
+    try {
+      for (AccountingReport accountingReport : accountingReportList) {
+        futureList.add(
+            executor.submit(
+                subject.associateWith(
+                    () -> {
+                      start.await();
+                      service.computeReportValues(accountingReport);
+                      return Thread.currentThread();
+                    })));
+      }
+      start.countDown();
+
+      for (int i = 0; i < accountingReportList.size(); i++) {
+        Thread callerThread = futureList.get(i).get();
+        AccountingReport accountingReport = accountingReportList.get(i);
+        List<Computation> computationList = service.computationMap.get(accountingReport.getId());
+
+        Assert.assertEquals(PERIOD_COUNT + 1, computationList.size());
+        Assert.assertEquals(
+            Set.of(0, 1, 2, 3),
+            computationList.stream().map(it -> it.periodNumber).collect(Collectors.toSet()));
+        for (Computation computation : computationList) {
+          LocalDate dateFrom = accountingReport.getDateFrom();
+          LocalDate dateTo = accountingReport.getDateTo();
+
+          if (computation.periodNumber == 0) {
+            Assert.assertEquals(dateFrom, computation.startDate);
+            Assert.assertEquals(dateTo, computation.endDate);
+          } else {
+            Assert.assertEquals(
+                LocalDate.of(dateFrom.getYear() - computation.periodNumber, 1, 1),
+                computation.startDate);
+            Assert.assertEquals(
+                LocalDate.of(dateTo.getYear() - computation.periodNumber, 12, 31),
+                computation.endDate);
+          }
+          // the parts of a report are computed by workers, on behalf of the user
+          Assert.assertNotSame(callerThread, computation.thread);
+          Assert.assertEquals(USER_CODE, computation.principal);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  protected AccountingReport createAccountingReport(Long id, LocalDate dateFrom, LocalDate dateTo) {
+    AccountingReportConfigLine column = new AccountingReportConfigLine();
+    column.setCode("C" + id);
+    column.setTypeSelect(AccountingReportConfigLineRepository.TYPE_VALUE);
+
+    AccountingReportConfigLine line = new AccountingReportConfigLine();
+    line.setCode("L" + id);
+    line.setSequence(0);
+    line.setTypeSelect(AccountingReportConfigLineRepository.TYPE_VALUE);
+
+    AccountingReportType reportType = new AccountingReportType();
+    reportType.setName("Report type " + id);
+    reportType.setTypeSelect(AccountingReportRepository.REPORT_CUSTOM_STATE);
+    reportType.setComparison(AccountingReportTypeRepository.COMPARISON_PREVIOUS_YEAR);
+    reportType.setNoOfPeriods(PERIOD_COUNT);
+    reportType.setAccountingReportConfigLineList(new ArrayList<>(List.of(line)));
+    reportType.setAccountingReportConfigLineColumnList(new ArrayList<>(List.of(column)));
+
+    AccountingReport accountingReport = new AccountingReport();
+    accountingReport.setId(id);
+    accountingReport.setReportType(reportType);
+    accountingReport.setDateFrom(dateFrom);
+    accountingReport.setDateTo(dateTo);
+    return accountingReport;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.callable;
+
+import com.axelor.db.JPA;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+
+/**
+ * Tool class to run callables in worker threads.
+ *
+ * <p>A worker runs on behalf of the user of the calling thread, in its own request scope, and its
+ * persistence context is cleared when it is over, so request scoped services and {@code
+ * AuthUtils.getUser()} behave as in the calling thread.
+ *
+ * @param <V> the type returned by the callables.
+ */
+public class ParallelCallableTool<V> {
+
+  /**
+   * Wrap the given callable so it can be submitted to an executor: it runs on behalf of the user of
+   * the current thread, in a new request scope, and clears the persistence context of its thread
+   * once over.
+   *
+   * @param callable a callable
+   * @return the callable to submit to an executor
+   */
+  public Callable<V> wrap(Callable<V> callable) {
+    Callable<V> scopedCallable = () -> callInScope(callable);
+    Subject subject = ThreadContext.getSubject();
+    return subject != null ? subject.associateWith(scopedCallable) : scopedCallable;
+  }
+
+  protected V callInScope(Callable<V> callable) throws Exception {
+    final RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+    try (RequestScoper.CloseableScope ignored = scope.open()) {
+      return callable.call();
+    } finally {
+      JPA.clear();
+    }
+  }
+
+  /**
+   * Number of threads to use for the given number of callables: at most the given maximum and the
+   * number of available processors.
+   */
+  public int getParallelism(int callableCount, int maxParallelism) {
+    return Math.max(
+        1,
+        Math.min(
+            callableCount, Math.min(maxParallelism, Runtime.getRuntime().availableProcessors())));
+  }
+
+  /**
+   * Run the callables in parallel and wait until they are all over. No callable is running anymore
+   * when this method returns, even if it is interrupted.
+   *
+   * @param callableList the callables to run
+   * @param maxParallelism the maximum number of threads
+   * @param cancelOnError whether the callables not started yet are cancelled once one of them fails
+   * @return the futures of the callables, in the same order, all done: a callable which failed
+   *     throws an {@link ExecutionException} on {@link Future#get()}, a cancelled one a {@link
+   *     java.util.concurrent.CancellationException}.
+   * @throws InterruptedException if the current thread is interrupted while waiting
+   */
+  public List<Future<V>> invokeAll(
+      List<Callable<V>> callableList, int maxParallelism, boolean cancelOnError)
+      throws InterruptedException {
+    ExecutorService executor =
+        Executors.newFixedThreadPool(getParallelism(callableList.size(), maxParallelism));
+    CompletionService<V> completionService = new ExecutorCompletionService<>(executor);
+    List<Future<V>> futureList = new ArrayList<>();
+
+    try {
+      for (Callable<V> callable : callableList) {
+        futureList.add(completionService.submit(wrap(callable)));
+      }
+
+      for (int i = 0; i < futureList.size(); i++) {
+        Future<V> future = completionService.take();
+        if (cancelOnError && isFailed(future)) {
+          futureList.forEach(it -> it.cancel(false));
+        }
+      }
+    } catch (InterruptedException e) {
+      futureList.forEach(it -> it.cancel(false));
+      throw e;
+    } finally {
+      executor.shutdown();
+      awaitTermination(executor);
+    }
+    return futureList;
+  }
+
+  protected boolean isFailed(Future<V> future) throws InterruptedException {
+    if (future.isCancelled()) {
+      return false;
+    }
+    try {
+      future.get();
+      return false;
+    } catch (ExecutionException e) {
+      return true;
+    }
+  }
+
+  protected void awaitTermination(ExecutorService executor) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+          break;
+        }
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
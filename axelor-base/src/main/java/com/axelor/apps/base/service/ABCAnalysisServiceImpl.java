@@ -27,6 +27,7 @@ import com.axelor.apps.base.db.ABCAnalysisClass;
 import com.axelor.apps.base.db.ABCAnalysisLine;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.Sequence;
+import com.axelor.apps.base.db.Unit;
 import com.axelor.apps.base.db.repo.ABCAnalysisClassRepository;
 import com.axelor.apps.base.db.repo.ABCAnalysisLineRepository;
 import com.axelor.apps.base.db.repo.ABCAnalysisRepository;
@@ -37,18 +38,24 @@ import com.axelor.apps.base.report.IReport;
 import com.axelor.apps.base.service.administration.SequenceService;
 import com.axelor.apps.report.engine.ReportSettings;
 import com.axelor.db.JPA;
+import com.axelor.db.Model;
 import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.utils.StringTool;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.lang3.tuple.Pair;
 
 public class ABCAnalysisServiceImpl implements ABCAnalysisService {
   protected ABCAnalysisLineRepository abcAnalysisLineRepository;
@@ -66,6 +73,8 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
 
   private final String abcAnalysisSequenceCode = "abcAnalysis";
 
+  protected static final int ABC_ANALYSIS_CHUNK_SIZE = 1000;
+
   private List<ABCAnalysisClass> abcAnalysisClassList;
 
   @Inject
@@ -126,9 +135,13 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
     checkOnGoing(abcAnalysis);
     reset(abcAnalysis);
     start(abcAnalysis);
-    getAbcAnalysisClassList(abcAnalysis);
-    createAllABCAnalysisLine(abcAnalysis);
-    doAnalysis(abcAnalysisRepository.find(abcAnalysis.getId()));
+    if (getQtyWorthQuery() != null) {
+      createAndAnalyzeAllABCAnalysisLine(abcAnalysis.getId());
+    } else {
+      getAbcAnalysisClassList(abcAnalysis);
+      createAllABCAnalysisLine(abcAnalysis);
+      doAnalysis(abcAnalysisRepository.find(abcAnalysis.getId()));
+    }
     finish(abcAnalysisRepository.find(abcAnalysis.getId()));
   }
 
@@ -198,6 +211,167 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
     return "self.productFamily in (?1) AND self.productTypeSelect = ?2 AND self.dtype = 'Product'";
   }
 
+  /**
+   * JPQL query computing the quantity and the worth of the products given by the {@code
+   * :productIds} parameter. Each row selects the product id, the product unit id, the unit id of
+   * the quantity, the quantity and the worth, the query being grouped by product and unit.
+   *
+   * <p>When a query is given, the analysis is computed with set-based queries instead of product by
+   * product with {@link #createABCAnalysisLine(ABCAnalysis, Product)}.
+   *
+   * @return the query, or null if the analysis is computed product by product.
+   */
+  protected String getQtyWorthQuery() {
+    return null;
+  }
+
+  /** Bind the parameters of {@link #getQtyWorthQuery()} other than {@code :productIds}. */
+  protected void bindQtyWorthQuery(javax.persistence.Query query, ABCAnalysis abcAnalysis)
+      throws AxelorException {}
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected void createAndAnalyzeAllABCAnalysisLine(Long abcAnalysisId) throws AxelorException {
+    List<Long> productIdList = getProductIdList(abcAnalysisRepository.find(abcAnalysisId));
+
+    for (List<Long> productIdChunk : Lists.partition(productIdList, ABC_ANALYSIS_CHUNK_SIZE)) {
+      Map<Long, Pair<BigDecimal, BigDecimal>> qtyWorthMap =
+          computeQtyWorthByProduct(abcAnalysisRepository.find(abcAnalysisId), productIdChunk);
+      createABCAnalysisLines(abcAnalysisId, qtyWorthMap);
+      JPA.flush();
+      JPA.clear();
+    }
+
+    analyzeAllABCAnalysisLine(abcAnalysisId);
+  }
+
+  protected List<Long> getProductIdList(ABCAnalysis abcAnalysis) {
+    Set<Long> productIdSet = new TreeSet<>();
+
+    abcAnalysis.getProductSet().forEach(product -> productIdSet.add(product.getId()));
+
+    if (!abcAnalysis.getProductCategorySet().isEmpty()) {
+      productIdSet.addAll(
+          fetchProductIdList(getProductCategoryQuery(), abcAnalysis.getProductCategorySet()));
+    }
+
+    if (!abcAnalysis.getProductFamilySet().isEmpty()) {
+      productIdSet.addAll(
+          fetchProductIdList(getProductFamilyQuery(), abcAnalysis.getProductFamilySet()));
+    }
+
+    return new ArrayList<>(productIdSet);
+  }
+
+  protected List<Long> fetchProductIdList(String filter, Set<? extends Model> modelSet) {
+    return JPA.em()
+        .createQuery("SELECT self.id FROM Product self WHERE " + filter, Long.class)
+        .setParameter(1, modelSet)
+        .setParameter(2, ProductRepository.PRODUCT_TYPE_STORABLE)
+        .getResultList();
+  }
+
+  /**
+   * Compute the quantity, in the product unit, and the worth of each product with {@link
+   * #getQtyWorthQuery()}.
+   *
+   * @return a pair of quantity and worth by product id.
+   */
+  @SuppressWarnings("unchecked")
+  protected Map<Long, Pair<BigDecimal, BigDecimal>> computeQtyWorthByProduct(
+      ABCAnalysis abcAnalysis, List<Long> productIdList) throws AxelorException {
+    javax.persistence.Query query =
+        JPA.em().createQuery(getQtyWorthQuery()).setParameter("productIds", productIdList);
+    bindQtyWorthQuery(query, abcAnalysis);
+
+    Map<Long, Pair<BigDecimal, BigDecimal>> qtyWorthMap = new HashMap<>();
+    for (Object[] result : (List<Object[]>) query.getResultList()) {
+      Long productId = (Long) result[0];
+      Long productUnitId = (Long) result[1];
+      Long unitId = (Long) result[2];
+      BigDecimal qty = result[3] != null ? (BigDecimal) result[3] : BigDecimal.ZERO;
+      BigDecimal worth = result[4] != null ? (BigDecimal) result[4] : BigDecimal.ZERO;
+
+      if (unitId != null && productUnitId != null && !unitId.equals(productUnitId)) {
+        Product product = productRepository.find(productId);
+        qty =
+            unitConversionService.convert(
+                JPA.find(Unit.class, unitId), product.getUnit(), qty, 5, product);
+      }
+
+      qtyWorthMap.merge(
+          productId,
+          Pair.of(qty, worth),
+          (qtyWorth, otherQtyWorth) ->
+              Pair.of(
+                  qtyWorth.getLeft().add(otherQtyWorth.getLeft()),
+                  qtyWorth.getRight().add(otherQtyWorth.getRight())));
+    }
+    return qtyWorthMap;
+  }
+
+  protected void createABCAnalysisLines(
+      Long abcAnalysisId, Map<Long, Pair<BigDecimal, BigDecimal>> qtyWorthMap) {
+    ABCAnalysis abcAnalysis = JPA.em().getReference(ABCAnalysis.class, abcAnalysisId);
+
+    for (Map.Entry<Long, Pair<BigDecimal, BigDecimal>> entry : qtyWorthMap.entrySet()) {
+      BigDecimal decimalQty = entry.getValue().getLeft();
+      BigDecimal decimalWorth = entry.getValue().getRight();
+      if (decimalQty.signum() == 0 && decimalWorth.signum() == 0) {
+        continue;
+      }
+
+      ABCAnalysisLine abcAnalysisLine = new ABCAnalysisLine();
+      abcAnalysisLine.setAbcAnalysis(abcAnalysis);
+      abcAnalysisLine.setProduct(JPA.em().getReference(Product.class, entry.getKey()));
+      abcAnalysisLine.setDecimalQty(decimalQty);
+      abcAnalysisLine.setDecimalWorth(decimalWorth);
+      abcAnalysisLineRepository.save(abcAnalysisLine);
+    }
+  }
+
+  /**
+   * Compute the percentages, the cumulated percentages and the class of every line of the analysis
+   * with one update. The lines are cumulated by decreasing worth, and a line gets the first class
+   * whose cumulated quantity and worth limits are not exceeded, as in {@link
+   * #doAnalysis(ABCAnalysis)}.
+   */
+  protected void analyzeAllABCAnalysisLine(Long abcAnalysisId) {
+    JPA.flush();
+    JPA.em()
+        .createNativeQuery(
+            "WITH line_share AS ("
+                + " SELECT id, decimal_worth,"
+                + " CASE WHEN SUM(decimal_qty) OVER () > 0"
+                + " THEN ROUND(decimal_qty * 100 / SUM(decimal_qty) OVER (), 3) ELSE 0 END AS qty,"
+                + " CASE WHEN SUM(decimal_worth) OVER () > 0"
+                + " THEN ROUND(decimal_worth * 100 / SUM(decimal_worth) OVER (), 3) ELSE 0 END AS worth"
+                + " FROM base_abc_analysis_line WHERE abc_analysis = :abcAnalysisId),"
+                + " line_cumulated AS ("
+                + " SELECT id, qty, worth,"
+                + " SUM(qty) OVER (ORDER BY decimal_worth DESC, id) AS cumulated_qty,"
+                + " SUM(worth) OVER (ORDER BY decimal_worth DESC, id) AS cumulated_worth"
+                + " FROM line_share),"
+                + " class_limit AS ("
+                + " SELECT id, sequence,"
+                + " SUM(qty) OVER (ORDER BY sequence, id) AS max_qty,"
+                + " SUM(worth) OVER (ORDER BY sequence, id) AS max_worth"
+                + " FROM base_abc_analysis_class WHERE abc_analysis = :abcAnalysisId)"
+                + " UPDATE base_abc_analysis_line line SET"
+                + " qty = line_cumulated.qty,"
+                + " worth = line_cumulated.worth,"
+                + " cumulated_qty = line_cumulated.cumulated_qty,"
+                + " cumulated_worth = line_cumulated.cumulated_worth,"
+                + " abc_analysis_class = ("
+                + " SELECT class_limit.id FROM class_limit"
+                + " WHERE ROUND(line_cumulated.cumulated_qty, 2) <= class_limit.max_qty"
+                + " AND ROUND(line_cumulated.cumulated_worth, 2) <= class_limit.max_worth"
+                + " ORDER BY class_limit.sequence, class_limit.id LIMIT 1)"
+                + " FROM line_cumulated WHERE line.id = line_cumulated.id")
+        .setParameter("abcAnalysisId", abcAnalysisId)
+        .executeUpdate();
+    JPA.clear();
+  }
+
   protected void createAllABCAnalysisLine(ABCAnalysis abcAnalysis) throws AxelorException {
     int offset = 0;
 
@@ -45,6 +45,7 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoField;
 import java.time.temporal.IsoFields;
+import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.persistence.FlushModeType;
@@ -210,6 +211,74 @@ public class SequenceService {
     return nextSeq;
   }
 
+  /**
+   * Method returning a block of consecutive sequence numbers from a given generic sequence and a
+   * date. The sequence is locked and its version updated only once for the whole block.
+   *
+   * @param sequence
+   * @param refDate
+   * @param count the number of sequence numbers to return
+   * @return
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  public List<String> getSequenceNumbers(
+      Sequence sequence, LocalDate refDate, int count, Class objectClass, String fieldName)
+      throws AxelorException {
+    Sequence seq =
+        JPA.em()
+            .createQuery("SELECT self FROM Sequence self WHERE id = :id", Sequence.class)
+            .setParameter("id", sequence.getId())
+            .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+            .setFlushMode(FlushModeType.COMMIT)
+            .getSingleResult();
+    SequenceVersion sequenceVersion = getVersion(seq, refDate);
+
+    List<String> nextSeqList = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      nextSeqList.add(computeNextSeq(sequenceVersion, seq, refDate));
+      sequenceVersion.setNextNum(sequenceVersion.getNextNum() + seq.getToBeAdded());
+    }
+
+    if (appBaseService.getAppBase().getCheckExistingSequenceOnGeneration()
+        && objectClass != null
+        && !Strings.isNullOrEmpty(fieldName)
+        && !nextSeqList.isEmpty()) {
+      this.isSequenceAlreadyExisting(objectClass, fieldName, nextSeqList, seq);
+    }
+
+    if (sequenceVersion.getId() == null) {
+      sequenceVersionRepository.save(sequenceVersion);
+    }
+    return nextSeqList;
+  }
+
+  protected void isSequenceAlreadyExisting(
+      Class objectClass, String fieldName, List<String> nextSeqList, Sequence seq)
+      throws AxelorException {
+    String table = objectClass.getSimpleName();
+    List<?> existingSeqList =
+        JPA.em()
+            .createQuery(
+                "SELECT self."
+                    + fieldName
+                    + " FROM "
+                    + table
+                    + " self WHERE self."
+                    + fieldName
+                    + " IN (:nextSeqList)")
+            .setParameter("nextSeqList", nextSeqList)
+            .setFlushMode(FlushModeType.COMMIT)
+            .setMaxResults(1)
+            .getResultList();
+    if (!existingSeqList.isEmpty()) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(BaseExceptionMessage.SEQUENCE_ALREADY_EXISTS),
+          existingSeqList.get(0),
+          seq.getFullName());
+    }
+  }
+
   protected void isSequenceAlreadyExisting(
       Class objectClass, String fieldName, String nextSeq, Sequence seq) throws AxelorException {
     String table = objectClass.getSimpleName();
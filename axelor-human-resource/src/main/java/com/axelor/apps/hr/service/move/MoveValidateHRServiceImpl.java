@@ -21,6 +21,7 @@ package com.axelor.apps.hr.service.move;
 import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.repo.AccountRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.service.AccountPeriodBalanceService;
 import com.axelor.apps.account.service.PeriodServiceAccount;
 import com.axelor.apps.account.service.app.AppAccountService;
 import com.axelor.apps.account.service.config.AccountConfigService;
@@ -68,6 +69,7 @@ public class MoveValidateHRServiceImpl extends MoveValidateServiceImpl
       PeriodServiceAccount periodServiceAccount,
       MoveControlService moveControlService,
       MoveComputeService moveComputeService,
+      AccountPeriodBalanceService accountPeriodBalanceService,
       ExpenseRepository expenseRepository) {
     super(
         moveLineControlService,
@@ -86,7 +88,8 @@ public class MoveValidateHRServiceImpl extends MoveValidateServiceImpl
         moveLineTaxService,
         periodServiceAccount,
         moveControlService,
-        moveComputeService);
+        moveComputeService,
+        accountPeriodBalanceService);
     this.expenseRepository = expenseRepository;
   }
 
@@ -47,6 +47,9 @@ public final class StockExceptionMessage {
   public static final String INVENTORY_3_CURRENT_QUANTITY = /*$$(*/
       "Current quantity problem" /*)*/;
   public static final String INVENTORY_3_DATA_NULL_OR_EMPTY = /*$$(*/ "Data is null or empty" /*)*/;
+  public static final String INVENTORY_IMPORT_ROW_ERRORS = /*$$(*/
+      "File %s imported, %s line(s) could not be imported and were skipped : %s" /*)*/;
+  public static final String INVENTORY_IMPORT_ROW_ERROR = /*$$(*/ "Line %s : %s" /*)*/;
   public static final String INVENTORY_PLAN_WRONG_STATUS = /*$$(*/
       "Can only plan a draft inventory." /*)*/;
   public static final String INVENTORY_START_WRONG_STATUS = /*$$(*/
@@ -61,6 +64,10 @@ public final class StockExceptionMessage {
       "Can only return to draft if cancelled." /*)*/;
   public static final String INVENTORY_VALIDATE_INVENTORY_LINE_LIST = /*$$(*/
       "Please fill all inventory lines" /*)*/;
+  public static final String INVENTORY_VALIDATION_MESSAGE = /*$$(*/
+      "Inventory %s is now validated" /*)*/;
+  public static final String INVENTORY_VALIDATION_EXCEPTION_MESSAGE = /*$$(*/
+      "Error when validating inventory %s" /*)*/;
 
   public static final String INVENTORY_LINE_STOCK_LOCATION_MISSING = /*$$(*/
       "Stock location is missing for these lines : %s" /*)*/;
@@ -277,4 +284,15 @@ public final class StockExceptionMessage {
       "Error: %s field is required and can not be null" /*)*/;
   public static final String REST_STOCK_MOVE_LINE_STOCK_LOCATIONS_REQUIRED = /*$$(*/
       "Error: %s and %s fields are required and can not be null" /*)*/;
+
+  public static final String BATCH_REALIZE_STOCK_MOVES_1 = /*$$(*/
+      "Batch realize stock moves :" /*)*/;
+  public static final String BATCH_REALIZE_STOCK_MOVES_2 = /*$$(*/ "Stock move(s) realized" /*)*/;
+
+  public static final String BATCH_VERIFY_STOCK_VALUES_1 = /*$$(*/
+      "Batch verify stock values :" /*)*/;
+
+  public static final String BATCH_VERIFY_STOCK_VALUES_2 = /*$$(*/ "Product(s) verified" /*)*/;
+  public static final String BATCH_VERIFY_STOCK_VALUES_3 = /*$$(*/
+      "Stock value of product %s in company %s was %s for a quantity of %s instead of %s for a quantity of %s, it has been corrected." /*)*/;
 }
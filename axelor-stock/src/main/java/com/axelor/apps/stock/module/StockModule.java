@@ -45,10 +45,14 @@ import com.axelor.apps.stock.db.repo.TrackingNumberRepository;
 import com.axelor.apps.stock.rest.StockProductRestService;
 import com.axelor.apps.stock.rest.StockProductRestServiceImpl;
 import com.axelor.apps.stock.service.AddressServiceStockImpl;
+import com.axelor.apps.stock.service.InventoryImportService;
+import com.axelor.apps.stock.service.InventoryImportServiceImpl;
 import com.axelor.apps.stock.service.InventoryProductService;
 import com.axelor.apps.stock.service.InventoryProductServiceImpl;
 import com.axelor.apps.stock.service.InventoryUpdateService;
 import com.axelor.apps.stock.service.InventoryUpdateServiceImpl;
+import com.axelor.apps.stock.service.InventoryValidateService;
+import com.axelor.apps.stock.service.InventoryValidateServiceImpl;
 import com.axelor.apps.stock.service.LogisticalFormLineService;
 import com.axelor.apps.stock.service.LogisticalFormLineServiceImpl;
 import com.axelor.apps.stock.service.LogisticalFormService;
@@ -57,11 +61,15 @@ import com.axelor.apps.stock.service.PartnerProductQualityRatingService;
 import com.axelor.apps.stock.service.PartnerProductQualityRatingServiceImpl;
 import com.axelor.apps.stock.service.PartnerStockSettingsService;
 import com.axelor.apps.stock.service.PartnerStockSettingsServiceImpl;
+import com.axelor.apps.stock.service.ProductStockValueService;
+import com.axelor.apps.stock.service.ProductStockValueServiceImpl;
 import com.axelor.apps.stock.service.ProductVariantServiceStockImpl;
 import com.axelor.apps.stock.service.StockCorrectionService;
 import com.axelor.apps.stock.service.StockCorrectionServiceImpl;
 import com.axelor.apps.stock.service.StockHistoryService;
 import com.axelor.apps.stock.service.StockHistoryServiceImpl;
+import com.axelor.apps.stock.service.StockIndicatorCacheService;
+import com.axelor.apps.stock.service.StockIndicatorCacheServiceImpl;
 import com.axelor.apps.stock.service.StockLocationLineHistoryService;
 import com.axelor.apps.stock.service.StockLocationLineHistoryServiceImpl;
 import com.axelor.apps.stock.service.StockLocationLineService;
@@ -124,6 +132,7 @@ public class StockModule extends AxelorModule {
     bind(StockLocationLineRepository.class).to(StockLocationLineStockRepository.class);
     bind(StockCorrectionService.class).to(StockCorrectionServiceImpl.class);
     bind(WeightedAveragePriceService.class).to(WeightedAveragePriceServiceImpl.class);
+    bind(ProductStockValueService.class).to(ProductStockValueServiceImpl.class);
     bind(StockHistoryService.class).to(StockHistoryServiceImpl.class);
     bind(StockCorrectionRepository.class).to(StockCorrectionStockRepository.class);
     bind(InventoryProductService.class).to(InventoryProductServiceImpl.class);
@@ -134,5 +143,8 @@ public class StockModule extends AxelorModule {
     bind(StockHistoryLineRepository.class).to(StockHistoryLineManagementRepository.class);
     bind(StockMoveCheckWapService.class).to(StockMoveCheckWapServiceImpl.class);
     bind(StockLocationLineHistoryService.class).to(StockLocationLineHistoryServiceImpl.class);
+    bind(StockIndicatorCacheService.class).to(StockIndicatorCacheServiceImpl.class);
+    bind(InventoryImportService.class).to(InventoryImportServiceImpl.class);
+    bind(InventoryValidateService.class).to(InventoryValidateServiceImpl.class);
   }
 }
@@ -21,6 +21,7 @@ package com.axelor.apps.stock.rest;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.stock.db.Inventory;
 import com.axelor.apps.stock.db.StockMove;
+import com.axelor.apps.stock.db.repo.InventoryRepository;
 import com.axelor.apps.stock.rest.dto.InventoryPutRequest;
 import com.axelor.apps.stock.rest.dto.InventoryResponse;
 import com.axelor.apps.stock.service.InventoryUpdateService;
@@ -63,6 +64,7 @@ public class InventoryRestController {
 
     Beans.get(InventoryUpdateService.class)
         .updateInventoryStatus(inventory, requestBody.getStatus(), requestBody.fetchUser());
+    inventory = Beans.get(InventoryRepository.class).find(inventoryId);
 
     return ResponseConstructor.build(
         Response.Status.OK, "Inventory successfully updated", new InventoryResponse(inventory));
@@ -26,6 +26,7 @@ import com.axelor.apps.base.db.ProductVariantAttr;
 import com.axelor.apps.base.db.ProductVariantValue;
 import com.axelor.apps.stock.db.StockLocation;
 import com.axelor.apps.stock.rest.dto.StockProductGetRequest;
+import com.axelor.apps.stock.rest.dto.StockProductListGetRequest;
 import com.axelor.apps.stock.rest.dto.StockProductPutRequest;
 import com.axelor.apps.stock.rest.dto.StockProductVariantResponse;
 import com.axelor.apps.stock.service.StockLocationService;
@@ -81,6 +82,28 @@ public class StockProductRestController {
         .getProductIndicators(product, company, stockLocation);
   }
 
+  /**
+   * Fetch stock indicators of several products at once. Full path to request is
+   * /ws/aos/stock-product/fetch-product-list-with-stock
+   */
+  @Operation(
+      summary = "Fetch indicators of a list of products",
+      tags = {"Stock product"})
+  @Path("/fetch-product-list-with-stock")
+  @POST
+  @HttpExceptionHandler
+  public Response fetchProductListIndicators(StockProductListGetRequest requestBody)
+      throws AxelorException {
+    RequestValidator.validateBody(requestBody);
+    new SecurityCheck().readAccess(Product.class).check();
+
+    Company company = requestBody.fetchCompany();
+    StockLocation stockLocation = requestBody.fetchStockLocation();
+
+    return Beans.get(StockProductRestService.class)
+        .getProductListIndicators(requestBody.getProductIdList(), company, stockLocation);
+  }
+
   /**
    * Modify locker of product in given stock location. Full path to request is
    * /ws/aos/modify-locker/{productId}
@@ -31,6 +31,10 @@ public interface StockProductRestService {
   Response getProductIndicators(Product product, Company company, StockLocation stockLocation)
       throws AxelorException;
 
+  Response getProductListIndicators(
+      List<Long> productIdList, Company company, StockLocation stockLocation)
+      throws AxelorException;
+
   List<StockProductVariantAttributeResponse> fetchAttributes(Product product)
       throws AxelorException;
 }
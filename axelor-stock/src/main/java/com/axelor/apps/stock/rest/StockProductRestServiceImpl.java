@@ -24,10 +24,12 @@ import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.ProductVariant;
 import com.axelor.apps.base.db.ProductVariantAttr;
 import com.axelor.apps.base.db.ProductVariantValue;
+import com.axelor.apps.base.db.repo.ProductRepository;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.stock.db.StockLocation;
 import com.axelor.apps.stock.rest.dto.StockProductResponse;
 import com.axelor.apps.stock.rest.dto.StockProductVariantAttributeResponse;
+import com.axelor.apps.stock.service.StockIndicatorCacheService;
 import com.axelor.apps.stock.service.StockLocationService;
 import com.axelor.inject.Beans;
 import com.axelor.utils.api.ResponseConstructor;
@@ -60,6 +62,35 @@ public class StockProductRestServiceImpl implements StockProductRestService {
         new StockProductResponse(product, stockIndicators));
   }
 
+  @Override
+  public Response getProductListIndicators(
+      List<Long> productIdList, Company company, StockLocation stockLocation)
+      throws AxelorException {
+    Long companyId = company != null ? company.getId() : 0L;
+    Long stockLocationId = company != null && stockLocation != null ? stockLocation.getId() : 0L;
+
+    Map<Long, Map<String, Object>> stockIndicatorsByProductId =
+        Beans.get(StockIndicatorCacheService.class)
+            .getStockIndicators(productIdList, companyId, stockLocationId);
+
+    List<StockProductResponse> stockProductResponseList = new ArrayList<>();
+    if (!stockIndicatorsByProductId.isEmpty()) {
+      List<Product> productList =
+          Beans.get(ProductRepository.class)
+              .all()
+              .filter("self.id IN (:productIdList)")
+              .bind("productIdList", stockIndicatorsByProductId.keySet())
+              .fetch();
+      for (Product product : productList) {
+        stockProductResponseList.add(
+            new StockProductResponse(product, stockIndicatorsByProductId.get(product.getId())));
+      }
+    }
+
+    return ResponseConstructor.build(
+        Response.Status.OK, "Request completed", stockProductResponseList);
+  }
+
   @Override
   public List<StockProductVariantAttributeResponse> fetchAttributes(Product product)
       throws AxelorException {
@@ -38,6 +38,7 @@ import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.google.inject.Inject;
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -122,6 +123,29 @@ public class ABCAnalysisServiceStockImpl extends ABCAnalysisServiceImpl {
     return Optional.ofNullable(abcAnalysisLine);
   }
 
+  @Override
+  protected String getQtyWorthQuery() {
+    return "SELECT product.id, productUnit.id, unit.id, SUM(self.currentQty), SUM(self.avgPrice) "
+        + "FROM StockLocationLine self "
+        + "JOIN self.product product "
+        + "LEFT JOIN product.unit productUnit "
+        + "LEFT JOIN self.unit unit "
+        + "WHERE self.stockLocation.id IN (:stockLocationIds) "
+        + "AND product.id IN (:productIds) "
+        + "AND self.currentQty != 0 "
+        + "GROUP BY product.id, productUnit.id, unit.id";
+  }
+
+  @Override
+  protected void bindQtyWorthQuery(javax.persistence.Query query, ABCAnalysis abcAnalysis) {
+    List<Long> stockLocationIdList =
+        stockLocationService.getAllLocationAndSubLocationId(abcAnalysis.getStockLocation(), false);
+    if (stockLocationIdList == null || stockLocationIdList.isEmpty()) {
+      stockLocationIdList = Collections.singletonList(0L);
+    }
+    query.setParameter("stockLocationIds", stockLocationIdList);
+  }
+
   @Override
   protected String getProductCategoryQuery() {
     return super.getProductCategoryQuery() + STOCK_MANAGED_TRUE;
@@ -0,0 +1,41 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.stock.db.Inventory;
+import java.util.Map;
+
+public interface InventoryImportService {
+
+  /**
+   * Import the inventory lines of the import file of the given inventory.
+   *
+   * <p>The file is read row by row and processed by chunks, each chunk in its own transaction:
+   * products and tracking numbers of a chunk are fetched with one query each, existing lines
+   * matching a row (same product, tracking number and stock location) are updated and the other
+   * rows create new lines. A row in error is skipped and reported without stopping the import. If
+   * no row is in error, lines that were not in the file are removed from the inventory.
+   *
+   * @param inventory an inventory with an import file.
+   * @return the error messages by row number in the file, empty if every row was imported.
+   * @throws AxelorException if the file cannot be read.
+   */
+  Map<Integer, String> importFile(Inventory inventory) throws AxelorException;
+}
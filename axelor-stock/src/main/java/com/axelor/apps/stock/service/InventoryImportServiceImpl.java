@@ -0,0 +1,455 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.repo.ProductRepository;
+import com.axelor.apps.base.db.repo.TraceBackRepository;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.apps.stock.db.Inventory;
+import com.axelor.apps.stock.db.InventoryLine;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.db.TrackingNumber;
+import com.axelor.apps.stock.db.repo.InventoryLineRepository;
+import com.axelor.apps.stock.db.repo.InventoryRepository;
+import com.axelor.apps.stock.db.repo.StockLocationRepository;
+import com.axelor.apps.stock.db.repo.TrackingNumberRepository;
+import com.axelor.apps.stock.exception.StockExceptionMessage;
+import com.axelor.db.JPA;
+import com.axelor.i18n.I18n;
+import com.axelor.meta.MetaFiles;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.StringUtils;
+
+public class InventoryImportServiceImpl implements InventoryImportService {
+
+  private final String PRODUCT_CODE = I18n.get("Product Code");
+  private final String RACK = I18n.get("Rack");
+  private final String TRACKING_NUMBER = I18n.get("Tracking Number");
+  private final String CURRENT_QUANTITY = I18n.get("Current Quantity");
+  private final String REAL_QUANTITY = I18n.get("Real Quantity");
+  private final String DESCRIPTION = I18n.get("Description");
+  private final String STOCK_LOCATION = I18n.get("Stock Location");
+
+  protected static final int IMPORT_CHUNK_SIZE = 1000;
+  protected static final int DELETE_CHUNK_SIZE = 1000;
+  protected static final char SEPARATOR = ';';
+
+  protected InventoryRepository inventoryRepo;
+  protected InventoryLineRepository inventoryLineRepository;
+  protected InventoryLineService inventoryLineService;
+  protected ProductRepository productRepo;
+  protected TrackingNumberRepository trackingNumberRepository;
+  protected StockLocationRepository stockLocationRepository;
+  protected AppBaseService appBaseService;
+
+  @Inject
+  public InventoryImportServiceImpl(
+      InventoryRepository inventoryRepo,
+      InventoryLineRepository inventoryLineRepository,
+      InventoryLineService inventoryLineService,
+      ProductRepository productRepo,
+      TrackingNumberRepository trackingNumberRepository,
+      StockLocationRepository stockLocationRepository,
+      AppBaseService appBaseService) {
+    this.inventoryRepo = inventoryRepo;
+    this.inventoryLineRepository = inventoryLineRepository;
+    this.inventoryLineService = inventoryLineService;
+    this.productRepo = productRepo;
+    this.trackingNumberRepository = trackingNumberRepository;
+    this.stockLocationRepository = stockLocationRepository;
+    this.appBaseService = appBaseService;
+  }
+
+  @Override
+  public Map<Integer, String> importFile(Inventory inventory) throws AxelorException {
+    Long inventoryId = inventory.getId();
+    Path filePath = MetaFiles.getPath(inventory.getImportFile());
+
+    Map<Integer, String> errorMap = new LinkedHashMap<>();
+    Set<Long> importedLineIdSet = new HashSet<>();
+    Map<String, Long> stockLocationIdMap = new HashMap<>();
+
+    try (Reader reader = Files.newBufferedReader(filePath, StandardCharsets.UTF_8);
+        CSVParser csvParser = CSVFormat.DEFAULT.withDelimiter(SEPARATOR).parse(reader)) {
+      Iterator<CSVRecord> recordIterator = csvParser.iterator();
+      if (!recordIterator.hasNext()) {
+        throw new AxelorException(
+            new Throwable(I18n.get(StockExceptionMessage.INVENTORY_3_DATA_NULL_OR_EMPTY)),
+            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+            I18n.get(StockExceptionMessage.INVENTORY_3));
+      }
+      List<String> headers = toList(recordIterator.next());
+
+      Map<Integer, List<String>> rowChunk = new LinkedHashMap<>();
+      while (recordIterator.hasNext()) {
+        CSVRecord record = recordIterator.next();
+        rowChunk.put(Math.toIntExact(record.getRecordNumber()), toList(record));
+        if (rowChunk.size() >= IMPORT_CHUNK_SIZE) {
+          importChunk(
+              inventoryId, headers, rowChunk, stockLocationIdMap, importedLineIdSet, errorMap);
+          rowChunk.clear();
+          JPA.clear();
+        }
+      }
+      if (!rowChunk.isEmpty()) {
+        importChunk(
+            inventoryId, headers, rowChunk, stockLocationIdMap, importedLineIdSet, errorMap);
+        JPA.clear();
+      }
+    } catch (IOException | IllegalStateException e) {
+      throw new AxelorException(
+          e,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(StockExceptionMessage.INVENTORY_5));
+    }
+
+    if (errorMap.isEmpty()) {
+      removeNotImportedLines(inventoryId, importedLineIdSet);
+    }
+
+    return errorMap;
+  }
+
+  protected List<String> toList(CSVRecord record) {
+    List<String> values = new ArrayList<>();
+    record.forEach(value -> values.add(value.replace("\"", "")));
+    return values;
+  }
+
+  /**
+   * Import a chunk of rows in one transaction. Products, tracking numbers and existing inventory
+   * lines of the whole chunk are fetched at once.
+   *
+   * @param rowChunk the rows by row number in the file
+   * @param stockLocationIdMap cache of the stock location ids by name, shared by all chunks
+   * @param importedLineIdSet ids of created or updated inventory lines, completed by this method
+   * @param errorMap error messages by row number, completed by this method
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected void importChunk(
+      Long inventoryId,
+      List<String> headers,
+      Map<Integer, List<String>> rowChunk,
+      Map<String, Long> stockLocationIdMap,
+      Set<Long> importedLineIdSet,
+      Map<Integer, String> errorMap) {
+    Inventory inventory = inventoryRepo.find(inventoryId);
+
+    Set<String> codeSet =
+        rowChunk.values().stream()
+            .filter(row -> row.size() >= 6)
+            .map(row -> getValue(headers, row, PRODUCT_CODE))
+            .collect(Collectors.toSet());
+    Map<String, List<Product>> productMap = fetchProducts(codeSet);
+
+    Set<Long> productIdSet =
+        productMap.values().stream()
+            .flatMap(List::stream)
+            .map(Product::getId)
+            .collect(Collectors.toSet());
+    Set<String> trackingNumberSeqSet =
+        rowChunk.values().stream()
+            .filter(row -> row.size() >= 6)
+            .map(row -> getValue(headers, row, TRACKING_NUMBER))
+            .filter(StringUtils::isNotEmpty)
+            .collect(Collectors.toSet());
+    Map<String, TrackingNumber> trackingNumberMap =
+        fetchTrackingNumbers(productIdSet, trackingNumberSeqSet);
+    Map<String, InventoryLine> inventoryLineMap = fetchInventoryLines(inventoryId, productIdSet);
+
+    for (Map.Entry<Integer, List<String>> rowEntry : rowChunk.entrySet()) {
+      try {
+        InventoryLine inventoryLine =
+            importRow(
+                inventory,
+                headers,
+                rowEntry.getValue(),
+                productMap,
+                trackingNumberMap,
+                inventoryLineMap,
+                stockLocationIdMap);
+        importedLineIdSet.add(inventoryLine.getId());
+      } catch (AxelorException e) {
+        errorMap.put(rowEntry.getKey(), e.getMessage());
+      } catch (Exception e) {
+        TraceBackService.trace(e);
+        errorMap.put(rowEntry.getKey(), e.toString());
+      }
+    }
+  }
+
+  protected InventoryLine importRow(
+      Inventory inventory,
+      List<String> headers,
+      List<String> row,
+      Map<String, List<Product>> productMap,
+      Map<String, TrackingNumber> trackingNumberMap,
+      Map<String, InventoryLine> inventoryLineMap,
+      Map<String, Long> stockLocationIdMap)
+      throws AxelorException {
+    if (row.size() < 6) {
+      throw new AxelorException(
+          inventory,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(StockExceptionMessage.INVENTORY_3_LINE_LENGHT));
+    }
+
+    String code = getValue(headers, row, PRODUCT_CODE);
+    String rack = getValue(headers, row, RACK);
+    String trackingNumberSeq = getValue(headers, row, TRACKING_NUMBER);
+    String description = getValue(headers, row, DESCRIPTION);
+    String stockLocationName = getValue(headers, row, STOCK_LOCATION);
+    BigDecimal realQty = getRealQty(inventory, headers, row);
+    BigDecimal currentQty = getCurrentQty(inventory, headers, row);
+    Product product = getProduct(inventory, productMap, code);
+
+    if (!product.getProductTypeSelect().equals(ProductRepository.PRODUCT_TYPE_STORABLE)) {
+      throw new AxelorException(
+          inventory,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(StockExceptionMessage.INVENTORY_4) + " " + code);
+    }
+
+    String key = code + trackingNumberSeq + stockLocationName;
+    InventoryLine inventoryLine = inventoryLineMap.get(key);
+    if (inventoryLine != null) {
+      inventoryLine.setRealQty(realQty);
+      inventoryLine.setDescription(description);
+      if (inventoryLine.getTrackingNumber() != null) {
+        inventoryLine.getTrackingNumber().setCounter(realQty);
+      }
+      inventoryLineService.compute(inventoryLine, inventory);
+      return inventoryLine;
+    }
+
+    inventoryLine =
+        inventoryLineService.createInventoryLine(
+            inventory,
+            product,
+            currentQty,
+            rack,
+            getTrackingNumber(trackingNumberMap, trackingNumberSeq, product, realQty),
+            realQty,
+            description,
+            getStockLocation(stockLocationIdMap, stockLocationName),
+            null);
+    inventoryLine = inventoryLineRepository.save(inventoryLine);
+    inventoryLineMap.put(key, inventoryLine);
+    return inventoryLine;
+  }
+
+  protected String getValue(List<String> headers, List<String> row, String header) {
+    int index = headers.indexOf(header);
+    return index >= 0 && index < row.size() ? row.get(index) : "";
+  }
+
+  protected Map<String, List<Product>> fetchProducts(Set<String> codeSet) {
+    if (codeSet.isEmpty()) {
+      return new HashMap<>();
+    }
+    return productRepo.all().filter("self.code IN (:codeList) AND self.dtype = 'Product'")
+        .bind("codeList", codeSet).fetch().stream()
+        .collect(Collectors.groupingBy(Product::getCode));
+  }
+
+  /** @return tracking numbers by product id and tracking number sequence. */
+  protected Map<String, TrackingNumber> fetchTrackingNumbers(
+      Set<Long> productIdSet, Set<String> trackingNumberSeqSet) {
+    Map<String, TrackingNumber> trackingNumberMap = new HashMap<>();
+    if (productIdSet.isEmpty() || trackingNumberSeqSet.isEmpty()) {
+      return trackingNumberMap;
+    }
+    trackingNumberRepository
+        .all()
+        .filter("self.product.id IN (:productIdList) AND self.trackingNumberSeq IN (:seqList)")
+        .bind("productIdList", productIdSet)
+        .bind("seqList", trackingNumberSeqSet)
+        .order("id")
+        .fetch()
+        .forEach(
+            trackingNumber ->
+                trackingNumberMap.putIfAbsent(
+                    getTrackingNumberKey(
+                        trackingNumber.getProduct(), trackingNumber.getTrackingNumberSeq()),
+                    trackingNumber));
+    return trackingNumberMap;
+  }
+
+  /**
+   * @return the existing lines of the inventory for the given products, by product code, tracking
+   *     number sequence and stock location name.
+   */
+  protected Map<String, InventoryLine> fetchInventoryLines(
+      Long inventoryId, Set<Long> productIdSet) {
+    Map<String, InventoryLine> inventoryLineMap = new HashMap<>();
+    if (productIdSet.isEmpty()) {
+      return inventoryLineMap;
+    }
+    for (InventoryLine line :
+        inventoryLineRepository
+            .all()
+            .filter("self.inventory.id = :inventoryId AND self.product.id IN (:productIdList)")
+            .bind("inventoryId", inventoryId)
+            .bind("productIdList", productIdSet)
+            .fetch()) {
+      StringBuilder key = new StringBuilder();
+      key.append(line.getProduct().getCode());
+      if (line.getTrackingNumber() != null) {
+        key.append(line.getTrackingNumber().getTrackingNumberSeq());
+      }
+      if (line.getStockLocation() != null) {
+        key.append(line.getStockLocation().getName());
+      }
+      inventoryLineMap.put(key.toString(), line);
+    }
+    return inventoryLineMap;
+  }
+
+  protected Product getProduct(
+      Inventory inventory, Map<String, List<Product>> productMap, String code)
+      throws AxelorException {
+    List<Product> productList = productMap.get(code);
+    if (productList == null || productList.isEmpty()) {
+      throw new AxelorException(
+          inventory,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(StockExceptionMessage.INVENTORY_4) + " " + code);
+    }
+    if (productList.size() > 1) {
+      throw new AxelorException(
+          inventory,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(StockExceptionMessage.INVENTORY_12) + " " + code);
+    }
+    return productList.get(0);
+  }
+
+  protected TrackingNumber getTrackingNumber(
+      Map<String, TrackingNumber> trackingNumberMap,
+      String sequence,
+      Product product,
+      BigDecimal realQty) {
+    if (StringUtils.isEmpty(sequence)) {
+      return null;
+    }
+    return trackingNumberMap.computeIfAbsent(
+        getTrackingNumberKey(product, sequence),
+        key -> {
+          TrackingNumber trackingNumber = new TrackingNumber();
+          trackingNumber.setTrackingNumberSeq(sequence);
+          trackingNumber.setProduct(product);
+          trackingNumber.setCounter(realQty);
+          return trackingNumber;
+        });
+  }
+
+  protected String getTrackingNumberKey(Product product, String sequence) {
+    return product.getId() + "|" + sequence;
+  }
+
+  protected StockLocation getStockLocation(
+      Map<String, Long> stockLocationIdMap, String stockLocationName) {
+    if (!stockLocationIdMap.containsKey(stockLocationName)) {
+      StockLocation stockLocation = stockLocationRepository.findByName(stockLocationName);
+      stockLocationIdMap.put(
+          stockLocationName, stockLocation != null ? stockLocation.getId() : null);
+    }
+    Long stockLocationId = stockLocationIdMap.get(stockLocationName);
+    return stockLocationId != null ? stockLocationRepository.find(stockLocationId) : null;
+  }
+
+  protected BigDecimal getCurrentQty(Inventory inventory, List<String> headers, List<String> row)
+      throws AxelorException {
+    int qtyScale = appBaseService.getAppBase().getNbDecimalDigitForQty();
+    try {
+      return new BigDecimal(getValue(headers, row, CURRENT_QUANTITY))
+          .setScale(qtyScale, RoundingMode.HALF_UP);
+    } catch (NumberFormatException e) {
+      throw new AxelorException(
+          inventory,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(StockExceptionMessage.INVENTORY_3_CURRENT_QUANTITY));
+    }
+  }
+
+  protected BigDecimal getRealQty(Inventory inventory, List<String> headers, List<String> row)
+      throws AxelorException {
+    int qtyScale = appBaseService.getAppBase().getNbDecimalDigitForQty();
+    String realQty = getValue(headers, row, REAL_QUANTITY);
+    if (StringUtils.isBlank(realQty)) {
+      return null;
+    }
+    try {
+      return new BigDecimal(realQty).setScale(qtyScale, RoundingMode.HALF_UP);
+    } catch (NumberFormatException e) {
+      throw new AxelorException(
+          inventory,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(StockExceptionMessage.INVENTORY_3_REAL_QUANTITY));
+    }
+  }
+
+  /** Remove lines of the inventory that were neither created nor updated by the import. */
+  protected void removeNotImportedLines(Long inventoryId, Set<Long> importedLineIdSet) {
+    List<Long> lineIdList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id FROM InventoryLine self WHERE self.inventory.id = :inventoryId",
+                Long.class)
+            .setParameter("inventoryId", inventoryId)
+            .getResultList();
+    List<Long> removedLineIdList =
+        lineIdList.stream()
+            .filter(id -> !importedLineIdSet.contains(id))
+            .collect(Collectors.toList());
+
+    for (List<Long> idChunk : Lists.partition(removedLineIdList, DELETE_CHUNK_SIZE)) {
+      JPA.runInTransaction(
+          () ->
+              JPA.em()
+                  .createQuery("DELETE FROM InventoryLine self WHERE self.id IN (:idList)")
+                  .setParameter("idList", idChunk)
+                  .executeUpdate());
+    }
+  }
+}
@@ -209,6 +209,11 @@ public class InventoryService {
     return ref;
   }
 
+  /**
+   * @deprecated loads the whole file and every inventory line in memory, use {@link
+   *     InventoryImportService#importFile(Inventory)} instead.
+   */
+  @Deprecated
   @Transactional(rollbackOn = {Exception.class})
   public Path importFile(Inventory inventory) throws AxelorException {
 
@@ -29,17 +29,40 @@ public class InventoryUpdateServiceImpl implements InventoryUpdateService {
 
   protected InventoryService inventoryService;
   protected InventoryProductService inventoryProductService;
+  protected InventoryValidateService inventoryValidateService;
+  protected InventoryRepository inventoryRepository;
 
   @Inject
   public InventoryUpdateServiceImpl(
-      InventoryService inventoryService, InventoryProductService inventoryProductService) {
+      InventoryService inventoryService,
+      InventoryProductService inventoryProductService,
+      InventoryValidateService inventoryValidateService,
+      InventoryRepository inventoryRepository) {
     this.inventoryService = inventoryService;
     this.inventoryProductService = inventoryProductService;
+    this.inventoryValidateService = inventoryValidateService;
+    this.inventoryRepository = inventoryRepository;
   }
 
-  @Transactional(rollbackOn = {Exception.class})
+  @Override
   public void updateInventoryStatus(Inventory inventory, Integer wantedStatus, User user)
       throws AxelorException {
+    if (wantedStatus == InventoryRepository.STATUS_VALIDATED) {
+      // a large inventory is validated by chunks committed one by one, so the validation must not
+      // join a transaction of the caller
+      inventoryProductService.checkDuplicate(inventory);
+      inventoryValidateService.validate(inventory);
+      if (user != null) {
+        setValidatedBy(inventory.getId(), user);
+      }
+    } else {
+      updateInventoryStatusInTransaction(inventory, wantedStatus, user);
+    }
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected void updateInventoryStatusInTransaction(
+      Inventory inventory, Integer wantedStatus, User user) throws AxelorException {
     inventoryProductService.checkDuplicate(inventory);
     if (wantedStatus == InventoryRepository.STATUS_IN_PROGRESS) {
       inventoryService.startInventory(inventory);
@@ -50,11 +73,13 @@ public class InventoryUpdateServiceImpl implements InventoryUpdateService {
         inventory.setCompletedBy(user);
       }
     }
-    if (wantedStatus == InventoryRepository.STATUS_VALIDATED) {
-      inventoryService.validateInventory(inventory);
-      if (user != null) {
-        inventory.setValidatedBy(user);
-      }
-    }
+  }
+
+  /** The validation clears the persistence context, so the inventory is found again. */
+  @Transactional
+  protected void setValidatedBy(Long inventoryId, User user) {
+    Inventory inventory = inventoryRepository.find(inventoryId);
+    inventory.setValidatedBy(user);
+    inventoryRepository.save(inventory);
   }
 }
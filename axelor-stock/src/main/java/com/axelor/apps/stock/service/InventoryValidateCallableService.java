@@ -0,0 +1,85 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.apps.stock.db.Inventory;
+import com.axelor.apps.stock.db.repo.InventoryRepository;
+import com.axelor.apps.stock.exception.StockExceptionMessage;
+import com.axelor.auth.AuthUtils;
+import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
+import com.axelor.message.service.MailMessageService;
+import com.google.inject.persist.Transactional;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+public class InventoryValidateCallableService implements Callable<Inventory> {
+
+  private Inventory inventory;
+
+  public void setInventory(Inventory inventory) {
+    this.inventory = inventory;
+  }
+
+  @Override
+  public Inventory call() throws AxelorException {
+    final RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+    try (RequestScoper.CloseableScope ignored = scope.open()) {
+      inventory = Beans.get(InventoryRepository.class).find(inventory.getId());
+      validateInventoryAndSendMessage();
+      return inventory;
+    } catch (Exception e) {
+      onRunnerException(e);
+      throw e;
+    }
+  }
+
+  protected void validateInventoryAndSendMessage() throws AxelorException {
+    Beans.get(InventoryValidateService.class).validate(inventory);
+    Beans.get(MailMessageService.class)
+        .sendNotification(
+            AuthUtils.getUser(),
+            String.format(
+                I18n.get(StockExceptionMessage.INVENTORY_VALIDATION_MESSAGE),
+                inventory.getInventorySeq()),
+            String.format(
+                I18n.get(StockExceptionMessage.INVENTORY_VALIDATION_MESSAGE),
+                inventory.getInventorySeq()),
+            inventory.getId(),
+            inventory.getClass());
+  }
+
+  @Transactional
+  protected void onRunnerException(Exception e) {
+    TraceBackService.trace(e);
+    Beans.get(MailMessageService.class)
+        .sendNotification(
+            AuthUtils.getUser(),
+            String.format(
+                I18n.get(StockExceptionMessage.INVENTORY_VALIDATION_EXCEPTION_MESSAGE),
+                inventory.getInventorySeq()),
+            e.getMessage(),
+            inventory.getId(),
+            inventory.getClass());
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.stock.db.Inventory;
+
+public interface InventoryValidateService {
+
+  /**
+   * Validate the given completed inventory and realize the stock moves correcting the quantities of
+   * its stock locations.
+   *
+   * <p>Small inventories go through {@link InventoryService#validateInventory(Inventory)}. Above
+   * the threshold configured with {@code aos.stock.inventory.bulk-validation.threshold}, the
+   * inventory is validated in bulk: the gaps are computed in memory from one query, the stock move
+   * lines are inserted by chunks directly in a realized stock move, and the stock location lines
+   * are updated once per product for each chunk instead of once per stock move line. Each chunk is
+   * committed on its own: if the validation fails, the inventory stays completed and validating it
+   * again resumes from the gaps not applied yet.
+   *
+   * @param inventory a completed inventory.
+   * @throws AxelorException if the inventory cannot be validated.
+   */
+  void validate(Inventory inventory) throws AxelorException;
+}
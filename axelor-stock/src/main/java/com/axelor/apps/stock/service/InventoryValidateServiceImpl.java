@@ -0,0 +1,776 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.app.AppSettings;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.db.repo.ProductRepository;
+import com.axelor.apps.base.db.repo.TraceBackRepository;
+import com.axelor.apps.base.service.UnitConversionService;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.stock.db.Inventory;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.db.StockLocationLine;
+import com.axelor.apps.stock.db.StockMove;
+import com.axelor.apps.stock.db.StockMoveLine;
+import com.axelor.apps.stock.db.TrackingNumber;
+import com.axelor.apps.stock.db.repo.InventoryLineRepository;
+import com.axelor.apps.stock.db.repo.InventoryRepository;
+import com.axelor.apps.stock.db.repo.StockLocationLineHistoryRepository;
+import com.axelor.apps.stock.db.repo.StockLocationLineRepository;
+import com.axelor.apps.stock.db.repo.StockLocationRepository;
+import com.axelor.apps.stock.db.repo.StockMoveLineRepository;
+import com.axelor.apps.stock.db.repo.StockMoveRepository;
+import com.axelor.apps.stock.exception.StockExceptionMessage;
+import com.axelor.apps.stock.service.config.StockConfigService;
+import com.axelor.auth.AuthUtils;
+import com.axelor.db.JPA;
+import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.persistence.LockModeType;
+import javax.persistence.TypedQuery;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class InventoryValidateServiceImpl implements InventoryValidateService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected static final String BULK_VALIDATION_THRESHOLD_PROPERTY =
+      "aos.stock.inventory.bulk-validation.threshold";
+  protected static final int DEFAULT_BULK_VALIDATION_THRESHOLD = 1000;
+  protected static final int VALIDATION_CHUNK_SIZE = 1000;
+
+  protected InventoryService inventoryService;
+  protected InventoryRepository inventoryRepo;
+  protected InventoryLineRepository inventoryLineRepo;
+  protected StockMoveService stockMoveService;
+  protected StockMoveToolService stockMoveToolService;
+  protected StockMoveRepository stockMoveRepo;
+  protected StockMoveLineService stockMoveLineService;
+  protected StockMoveLineRepository stockMoveLineRepo;
+  protected StockLocationLineService stockLocationLineService;
+  protected StockLocationLineRepository stockLocationLineRepo;
+  protected StockLocationRepository stockLocationRepo;
+  protected StockConfigService stockConfigService;
+  protected WeightedAveragePriceService weightedAveragePriceService;
+  protected UnitConversionService unitConversionService;
+  protected ProductRepository productRepo;
+  protected AppBaseService appBaseService;
+
+  @Inject
+  public InventoryValidateServiceImpl(
+      InventoryService inventoryService,
+      InventoryRepository inventoryRepo,
+      InventoryLineRepository inventoryLineRepo,
+      StockMoveService stockMoveService,
+      StockMoveToolService stockMoveToolService,
+      StockMoveRepository stockMoveRepo,
+      StockMoveLineService stockMoveLineService,
+      StockMoveLineRepository stockMoveLineRepo,
+      StockLocationLineService stockLocationLineService,
+      StockLocationLineRepository stockLocationLineRepo,
+      StockLocationRepository stockLocationRepo,
+      StockConfigService stockConfigService,
+      WeightedAveragePriceService weightedAveragePriceService,
+      UnitConversionService unitConversionService,
+      ProductRepository productRepo,
+      AppBaseService appBaseService) {
+    this.inventoryService = inventoryService;
+    this.inventoryRepo = inventoryRepo;
+    this.inventoryLineRepo = inventoryLineRepo;
+    this.stockMoveService = stockMoveService;
+    this.stockMoveToolService = stockMoveToolService;
+    this.stockMoveRepo = stockMoveRepo;
+    this.stockMoveLineService = stockMoveLineService;
+    this.stockMoveLineRepo = stockMoveLineRepo;
+    this.stockLocationLineService = stockLocationLineService;
+    this.stockLocationLineRepo = stockLocationLineRepo;
+    this.stockLocationRepo = stockLocationRepo;
+    this.stockConfigService = stockConfigService;
+    this.weightedAveragePriceService = weightedAveragePriceService;
+    this.unitConversionService = unitConversionService;
+    this.productRepo = productRepo;
+    this.appBaseService = appBaseService;
+  }
+
+  @Override
+  public void validate(Inventory inventory) throws AxelorException {
+    long lineCount =
+        inventoryLineRepo
+            .all()
+            .filter("self.inventory.id = :inventoryId")
+            .bind("inventoryId", inventory.getId())
+            .count();
+
+    // An inventory with realized stock moves was partially validated in bulk: resume it.
+    boolean isPartiallyValidated =
+        stockMoveRepo
+                .all()
+                .filter("self.inventory.id = :inventoryId")
+                .bind("inventoryId", inventory.getId())
+                .count()
+            > 0;
+
+    if (!isPartiallyValidated
+        && lineCount
+            <= AppSettings.get()
+                .getInt(BULK_VALIDATION_THRESHOLD_PROPERTY, DEFAULT_BULK_VALIDATION_THRESHOLD)) {
+      inventoryService.validateInventory(inventory);
+    } else {
+      bulkValidate(inventory.getId());
+    }
+  }
+
+  /**
+   * Validate the inventory by chunks, each chunk of gaps being applied in its own transaction so
+   * that the stock location lines are only locked for the duration of a chunk.
+   *
+   * <p>The inventory stays completed until every gap has been applied. The gaps already applied by
+   * the realized stock moves of the inventory are skipped, so that validating the inventory again
+   * after a failure resumes where the previous validation stopped.
+   */
+  protected void bulkValidate(Long inventoryId) throws AxelorException {
+    checkBulkValidation(inventoryId);
+
+    Inventory inventory = inventoryRepo.find(inventoryId);
+    String inventorySeq = inventory.getInventorySeq();
+    Long virtualStockLocationId =
+        stockConfigService
+            .getInventoryVirtualStockLocation(
+                stockConfigService.getStockConfig(inventory.getCompany()))
+            .getId();
+
+    Map<Long, List<InventoryGap>> gapListByStockLocation =
+        computeGaps(inventoryId, virtualStockLocationId);
+    int gapCount = countGaps(inventoryId);
+    // the gaps applied by a previous validation are already processed
+    int processedCount =
+        gapCount - gapListByStockLocation.values().stream().mapToInt(List::size).sum();
+    LOG.info(
+        "Inventory {} validation : {} lines to process", inventorySeq, gapCount - processedCount);
+
+    for (Map.Entry<Long, List<InventoryGap>> entry : gapListByStockLocation.entrySet()) {
+      for (boolean isEnteringStock : new boolean[] {true, false}) {
+        List<InventoryGap> gapList =
+            entry.getValue().stream()
+                .filter(gap -> gap.getGap().signum() == (isEnteringStock ? 1 : -1))
+                .collect(Collectors.toList());
+        if (gapList.isEmpty()) {
+          continue;
+        }
+        processedCount =
+            generateRealizedStockMove(
+                inventoryId,
+                entry.getKey(),
+                virtualStockLocationId,
+                gapList,
+                isEnteringStock,
+                processedCount,
+                gapCount);
+      }
+    }
+
+    Set<Long> storableProductIdSet = fetchStorableProductIds(inventoryId);
+    computeAvgPrices(storableProductIdSet);
+    finishBulkValidation(inventoryId);
+    Beans.get(StockIndicatorCacheService.class).invalidate(storableProductIdSet);
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected void checkBulkValidation(Long inventoryId) throws AxelorException {
+    checkCompleted(inventoryRepo.find(inventoryId));
+    inventoryService.checkMissingStockLocation(
+        inventoryLineRepo
+            .all()
+            .filter("self.inventory.id = :inventoryId AND self.stockLocation IS NULL")
+            .bind("inventoryId", inventoryId)
+            .fetch());
+  }
+
+  protected void checkCompleted(Inventory inventory) throws AxelorException {
+    if (inventory.getStatusSelect() == null
+        || inventory.getStatusSelect() != InventoryRepository.STATUS_COMPLETED) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_INCONSISTENCY,
+          I18n.get(StockExceptionMessage.INVENTORY_VALIDATE_WRONG_STATUS));
+    }
+  }
+
+  /** Mark the inventory as validated once every gap has been applied. */
+  @Transactional(rollbackOn = {Exception.class})
+  protected void finishBulkValidation(Long inventoryId) throws AxelorException {
+    Inventory inventory =
+        JPA.em().find(Inventory.class, inventoryId, LockModeType.PESSIMISTIC_WRITE);
+    checkCompleted(inventory);
+    inventory.setValidatedOn(
+        appBaseService.getTodayDateTime(inventory.getCompany()).toLocalDateTime());
+    inventory.setStatusSelect(InventoryRepository.STATUS_VALIDATED);
+    inventory.setValidationProgress(new BigDecimal(100));
+    inventory.setValidatedBy(AuthUtils.getUser());
+    inventoryRepo.save(inventory);
+    inventoryService.storeLastInventoryData(inventory);
+  }
+
+  /**
+   * Compute the gap between the real and the current quantity of every inventory line, in one
+   * query, leaving out the gaps already applied by a previous validation.
+   *
+   * @return the lines with a gap, by stock location id.
+   */
+  protected Map<Long, List<InventoryGap>> computeGaps(
+      Long inventoryId, Long virtualStockLocationId) {
+    List<Object[]> resultList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.stockLocation.id, self.product.id, trackingNumber.id, "
+                    + "self.realQty - self.currentQty "
+                    + "FROM InventoryLine self "
+                    + "LEFT JOIN self.trackingNumber trackingNumber "
+                    + "WHERE self.inventory.id = :inventoryId "
+                    + "AND self.realQty IS NOT NULL "
+                    + "AND self.realQty <> self.currentQty "
+                    + "ORDER BY self.stockLocation.id, self.id",
+                Object[].class)
+            .setParameter("inventoryId", inventoryId)
+            .getResultList();
+    Set<Triple<Long, Long, Long>> appliedGapKeySet =
+        fetchAppliedGapKeys(inventoryId, virtualStockLocationId, null);
+
+    Map<Long, List<InventoryGap>> gapListByStockLocation = new LinkedHashMap<>();
+    for (Object[] result : resultList) {
+      InventoryGap gap =
+          new InventoryGap((Long) result[1], (Long) result[2], (BigDecimal) result[3]);
+      if (appliedGapKeySet.contains(getGapKey((Long) result[0], gap))) {
+        continue;
+      }
+      gapListByStockLocation
+          .computeIfAbsent((Long) result[0], stockLocationId -> new ArrayList<>())
+          .add(gap);
+    }
+    return gapListByStockLocation;
+  }
+
+  /** Count the inventory lines with a gap, including the ones already applied. */
+  protected int countGaps(Long inventoryId) {
+    return (int)
+        inventoryLineRepo
+            .all()
+            .filter(
+                "self.inventory.id = :inventoryId "
+                    + "AND self.realQty IS NOT NULL "
+                    + "AND self.realQty <> self.currentQty")
+            .bind("inventoryId", inventoryId)
+            .count();
+  }
+
+  /**
+   * Fetch the keys of the gaps already applied by the realized stock moves of the inventory. A
+   * stock move line with a tracking number also matches an inventory line without tracking number,
+   * since the tracking number may have been generated when creating the stock move line.
+   *
+   * @param productIdSet the products to look for, or null for every product.
+   * @return the (stock location id, product id, tracking number id) keys of the applied gaps.
+   */
+  protected Set<Triple<Long, Long, Long>> fetchAppliedGapKeys(
+      Long inventoryId, Long virtualStockLocationId, Set<Long> productIdSet) {
+    TypedQuery<Object[]> query =
+        JPA.em()
+            .createQuery(
+                "SELECT stockMove.fromStockLocation.id, stockMove.toStockLocation.id, "
+                    + "self.product.id, trackingNumber.id "
+                    + "FROM StockMoveLine self "
+                    + "JOIN self.stockMove stockMove "
+                    + "LEFT JOIN self.trackingNumber trackingNumber "
+                    + "WHERE stockMove.inventory.id = :inventoryId "
+                    + "AND stockMove.statusSelect = :statusRealized"
+                    + (productIdSet != null ? " AND self.product.id IN (:productIds)" : ""),
+                Object[].class)
+            .setParameter("inventoryId", inventoryId)
+            .setParameter("statusRealized", StockMoveRepository.STATUS_REALIZED);
+    if (productIdSet != null) {
+      query.setParameter("productIds", productIdSet);
+    }
+
+    Set<Triple<Long, Long, Long>> appliedGapKeySet = new HashSet<>();
+    for (Object[] result : query.getResultList()) {
+      Long stockLocationId =
+          virtualStockLocationId.equals(result[0]) ? (Long) result[1] : (Long) result[0];
+      appliedGapKeySet.add(Triple.of(stockLocationId, (Long) result[2], (Long) result[3]));
+      appliedGapKeySet.add(Triple.of(stockLocationId, (Long) result[2], null));
+    }
+    return appliedGapKeySet;
+  }
+
+  protected Triple<Long, Long, Long> getGapKey(Long stockLocationId, InventoryGap gap) {
+    return Triple.of(stockLocationId, gap.getProductId(), gap.getTrackingNumberId());
+  }
+
+  /**
+   * Create a realized stock move between the stock location and the inventory virtual stock
+   * location, its lines being inserted by chunks, one transaction per chunk.
+   *
+   * @return the number of inventory lines processed so far.
+   */
+  protected int generateRealizedStockMove(
+      Long inventoryId,
+      Long stockLocationId,
+      Long virtualStockLocationId,
+      List<InventoryGap> gapList,
+      boolean isEnteringStock,
+      int processedCount,
+      int gapCount)
+      throws AxelorException {
+    Long stockMoveId =
+        createRealizedStockMove(
+            inventoryId, stockLocationId, virtualStockLocationId, isEnteringStock);
+    String inventorySeq = inventoryRepo.find(inventoryId).getInventorySeq();
+
+    int sequence = 0;
+    for (List<InventoryGap> gapChunk : Lists.partition(gapList, VALIDATION_CHUNK_SIZE)) {
+      processedCount += gapChunk.size();
+      applyGapChunk(
+          inventoryId,
+          stockLocationId,
+          virtualStockLocationId,
+          stockMoveId,
+          gapChunk,
+          sequence,
+          new BigDecimal(processedCount * 100L)
+              .divide(new BigDecimal(gapCount), 2, RoundingMode.HALF_UP));
+      sequence += gapChunk.size();
+
+      JPA.clear();
+      LOG.info(
+          "Inventory {} validation : {}/{} lines processed",
+          inventorySeq,
+          processedCount,
+          gapCount);
+    }
+    return processedCount;
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected Long createRealizedStockMove(
+      Long inventoryId, Long stockLocationId, Long virtualStockLocationId, boolean isEnteringStock)
+      throws AxelorException {
+    Inventory inventory = inventoryRepo.find(inventoryId);
+    Company company = inventory.getCompany();
+    StockLocation stockLocation = stockLocationRepo.find(stockLocationId);
+    StockLocation virtualStockLocation = stockLocationRepo.find(virtualStockLocationId);
+    String inventorySeq = inventory.getInventorySeq();
+    LocalDate today = appBaseService.getTodayDate(company);
+
+    StockMove stockMove =
+        stockMoveService.createStockMove(
+            null,
+            null,
+            company,
+            isEnteringStock ? virtualStockLocation : stockLocation,
+            isEnteringStock ? stockLocation : virtualStockLocation,
+            today,
+            inventory.getPlannedStartDateT().toLocalDate(),
+            null,
+            StockMoveRepository.TYPE_INTERNAL);
+    stockMove.setName(inventorySeq);
+    stockMove.setInventory(inventory);
+    stockMove.setOrigin(inventorySeq);
+    stockMove.setStockMoveSeq(
+        stockMoveToolService.getSequenceStockMove(StockMoveRepository.TYPE_INTERNAL, company));
+    stockMove.setStatusSelect(StockMoveRepository.STATUS_REALIZED);
+    stockMove.setRealDate(today);
+    stockMove.setExTaxTotal(BigDecimal.ZERO);
+    return stockMoveRepo.save(stockMove).getId();
+  }
+
+  /**
+   * Apply a chunk of gaps in one transaction. The inventory row is locked first so that two
+   * validations of the same inventory cannot apply the same gap twice: the gaps applied in the
+   * meantime are left out. The validation progress of the inventory is committed with the chunk.
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected void applyGapChunk(
+      Long inventoryId,
+      Long stockLocationId,
+      Long virtualStockLocationId,
+      Long stockMoveId,
+      List<InventoryGap> gapChunk,
+      int sequence,
+      BigDecimal validationProgress)
+      throws AxelorException {
+    Inventory inventory =
+        JPA.em().find(Inventory.class, inventoryId, LockModeType.PESSIMISTIC_WRITE);
+    checkCompleted(inventory);
+    inventory.setValidationProgress(validationProgress);
+
+    Set<Triple<Long, Long, Long>> appliedGapKeySet =
+        fetchAppliedGapKeys(
+            inventoryId,
+            virtualStockLocationId,
+            gapChunk.stream().map(InventoryGap::getProductId).collect(Collectors.toSet()));
+    List<InventoryGap> remainingGapList =
+        gapChunk.stream()
+            .filter(gap -> !appliedGapKeySet.contains(getGapKey(stockLocationId, gap)))
+            .collect(Collectors.toList());
+    if (remainingGapList.isEmpty()) {
+      return;
+    }
+
+    StockMove stockMove = stockMoveRepo.find(stockMoveId);
+    stockMove.setExTaxTotal(
+        stockMove
+            .getExTaxTotal()
+            .add(generateStockMoveLines(stockMove, remainingGapList, sequence)));
+    stockMoveRepo.save(stockMove);
+  }
+
+  /**
+   * Fetch the storable and stock managed products moved by the realized stock moves of the
+   * inventory, including the ones applied by a previous validation.
+   */
+  protected Set<Long> fetchStorableProductIds(Long inventoryId) {
+    return new HashSet<>(
+        JPA.em()
+            .createQuery(
+                "SELECT DISTINCT self.product.id FROM StockMoveLine self "
+                    + "WHERE self.stockMove.inventory.id = :inventoryId "
+                    + "AND self.stockMove.statusSelect = :statusRealized "
+                    + "AND self.product.productTypeSelect = :productTypeStorable "
+                    + "AND self.product.stockManaged = true",
+                Long.class)
+            .setParameter("inventoryId", inventoryId)
+            .setParameter("statusRealized", StockMoveRepository.STATUS_REALIZED)
+            .setParameter("productTypeStorable", ProductRepository.PRODUCT_TYPE_STORABLE)
+            .getResultList());
+  }
+
+  /**
+   * Create the stock move lines of a chunk of gaps, then apply the resulting quantities to the
+   * stock location lines, grouped by product and by tracking number.
+   *
+   * @return the total amount of the created lines.
+   */
+  protected BigDecimal generateStockMoveLines(
+      StockMove stockMove, List<InventoryGap> gapChunk, int sequence) throws AxelorException {
+    StockLocation fromStockLocation = stockMove.getFromStockLocation();
+    StockLocation toStockLocation = stockMove.getToStockLocation();
+
+    Set<Long> productIdSet =
+        gapChunk.stream().map(InventoryGap::getProductId).collect(Collectors.toSet());
+    Map<Long, Product> productMap =
+        productRepo.all().filter("self.id IN (:productIds)").bind("productIds", productIdSet)
+            .fetch().stream()
+            .collect(Collectors.toMap(Product::getId, Function.identity()));
+    Map<Long, StockLocationLine> fromLineMap =
+        fetchStockLocationLines(fromStockLocation, productIdSet);
+    Map<Long, StockLocationLine> toLineMap = fetchStockLocationLines(toStockLocation, productIdSet);
+
+    Map<Long, BigDecimal> qtyByProduct = new HashMap<>();
+    Map<Pair<Long, Long>, BigDecimal> qtyByTrackingNumber = new HashMap<>();
+    BigDecimal exTaxTotal = BigDecimal.ZERO;
+
+    for (InventoryGap gap : gapChunk) {
+      Product product = productMap.get(gap.getProductId());
+      BigDecimal qty = gap.getGap().abs();
+      StockLocationLine toStockLocationLine = toLineMap.get(product.getId());
+      BigDecimal avgPrice =
+          toStockLocationLine != null ? toStockLocationLine.getAvgPrice() : BigDecimal.ZERO;
+
+      StockMoveLine stockMoveLine =
+          stockMoveLineService.createStockMoveLine(
+              product,
+              product.getName(),
+              product.getDescription(),
+              qty,
+              avgPrice,
+              avgPrice,
+              product.getUnit(),
+              null,
+              StockMoveLineService.TYPE_NULL,
+              false,
+              BigDecimal.ZERO,
+              fromStockLocation,
+              toStockLocation);
+      if (stockMoveLine == null) {
+        throw new AxelorException(
+            stockMove.getInventory(),
+            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+            I18n.get(StockExceptionMessage.INVENTORY_7)
+                + " "
+                + stockMove.getInventory().getInventorySeq());
+      }
+      if (gap.getTrackingNumberId() != null && stockMoveLine.getTrackingNumber() == null) {
+        stockMoveLine.setTrackingNumber(
+            JPA.em().getReference(TrackingNumber.class, gap.getTrackingNumberId()));
+      }
+      // The stock move line is not added to the stock move collection, which would load every
+      // line already inserted.
+      stockMoveLine.setStockMove(stockMove);
+      stockMoveLine.setSequence(++sequence);
+      if (fromStockLocation.getTypeSelect() != StockLocationRepository.TYPE_VIRTUAL
+          && fromLineMap.containsKey(product.getId())) {
+        stockMoveLine.setWapPrice(fromLineMap.get(product.getId()).getAvgPrice());
+      }
+      stockMoveLineRepo.save(stockMoveLine);
+
+      exTaxTotal =
+          exTaxTotal.add(
+              stockMoveLine
+                  .getRealQty()
+                  .multiply(stockMoveLine.getUnitPriceUntaxed())
+                  .setScale(2, RoundingMode.HALF_UP));
+
+      if (ProductRepository.PRODUCT_TYPE_STORABLE.equals(product.getProductTypeSelect())
+          && product.getStockManaged()) {
+        qtyByProduct.merge(product.getId(), qty, BigDecimal::add);
+        if (stockMoveLine.getTrackingNumber() != null) {
+          qtyByTrackingNumber.merge(
+              Pair.of(product.getId(), stockMoveLine.getTrackingNumber().getId()),
+              qty,
+              BigDecimal::add);
+        }
+      }
+    }
+
+    String origin = stockMove.getStockMoveSeq();
+    updateStockLocationLines(
+        fromStockLocation, fromLineMap, productMap, qtyByProduct, false, origin);
+    updateStockLocationLines(toStockLocation, toLineMap, productMap, qtyByProduct, true, origin);
+    updateDetailLocationLines(fromStockLocation, productMap, qtyByTrackingNumber, false);
+    updateDetailLocationLines(toStockLocation, productMap, qtyByTrackingNumber, true);
+
+    return exTaxTotal;
+  }
+
+  protected Map<Long, StockLocationLine> fetchStockLocationLines(
+      StockLocation stockLocation, Collection<Long> productIds) {
+    return stockLocationLineRepo.all()
+        .filter("self.stockLocation.id = :stockLocationId AND self.product.id IN (:productIds)")
+        .bind("stockLocationId", stockLocation.getId()).bind("productIds", productIds).fetch()
+        .stream()
+        .collect(
+            Collectors.toMap(
+                stockLocationLine -> stockLocationLine.getProduct().getId(),
+                Function.identity(),
+                (stockLocationLine, duplicate) -> stockLocationLine));
+  }
+
+  /**
+   * Apply the realized quantities to the stock location lines, once per product. The average price
+   * of the stock location lines does not change: entering lines are valued at the average price of
+   * the receiving stock location line.
+   */
+  protected void updateStockLocationLines(
+      StockLocation stockLocation,
+      Map<Long, StockLocationLine> stockLocationLineMap,
+      Map<Long, Product> productMap,
+      Map<Long, BigDecimal> qtyByProduct,
+      boolean isIncrement,
+      String origin)
+      throws AxelorException {
+    for (Map.Entry<Long, BigDecimal> entry : qtyByProduct.entrySet()) {
+      Product product = productMap.get(entry.getKey());
+      StockLocationLine stockLocationLine = stockLocationLineMap.get(entry.getKey());
+      if (stockLocationLine == null) {
+        stockLocationLine = new StockLocationLine();
+        stockLocationLine.setStockLocation(stockLocation);
+        stockLocationLine.setProduct(product);
+        stockLocationLine.setUnit(product.getUnit());
+        stockLocationLine.setCurrentQty(BigDecimal.ZERO);
+        stockLocationLine.setFutureQty(BigDecimal.ZERO);
+      }
+      if (stockLocationLine.getUnit() == null) {
+        throw new AxelorException(
+            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+            I18n.get(StockExceptionMessage.LOCATION_LINE_MISSING_UNIT),
+            stockLocation.getName(),
+            product.getFullName());
+      }
+
+      addQty(stockLocationLine, product, entry.getValue(), isIncrement);
+      stockLocationLineService.checkStockMin(stockLocationLine, false);
+      stockLocationLineRepo.save(stockLocationLine);
+
+      if (stockLocation.getTypeSelect() != StockLocationRepository.TYPE_VIRTUAL) {
+        stockLocationLineService.updateHistory(
+            stockLocationLine,
+            null,
+            null,
+            origin,
+            StockLocationLineHistoryRepository.TYPE_SELECT_STOCK_MOVE);
+      }
+    }
+  }
+
+  /** Apply the realized quantities to the detail stock location lines, once per tracking number. */
+  protected void updateDetailLocationLines(
+      StockLocation stockLocation,
+      Map<Long, Product> productMap,
+      Map<Pair<Long, Long>, BigDecimal> qtyByTrackingNumber,
+      boolean isIncrement)
+      throws AxelorException {
+    if (qtyByTrackingNumber.isEmpty()) {
+      return;
+    }
+
+    Map<Pair<Long, Long>, StockLocationLine> detailLocationLineMap =
+        stockLocationLineRepo.all()
+            .filter(
+                "self.detailsStockLocation.id = :stockLocationId "
+                    + "AND self.product.id IN (:productIds) "
+                    + "AND self.trackingNumber.id IN (:trackingNumberIds)")
+            .bind("stockLocationId", stockLocation.getId())
+            .bind(
+                "productIds",
+                qtyByTrackingNumber.keySet().stream()
+                    .map(Pair::getLeft)
+                    .collect(Collectors.toSet()))
+            .bind(
+                "trackingNumberIds",
+                qtyByTrackingNumber.keySet().stream()
+                    .map(Pair::getRight)
+                    .collect(Collectors.toSet()))
+            .fetch().stream()
+            .collect(
+                Collectors.toMap(
+                    detailLocationLine ->
+                        Pair.of(
+                            detailLocationLine.getProduct().getId(),
+                            detailLocationLine.getTrackingNumber().getId()),
+                    Function.identity(),
+                    (detailLocationLine, duplicate) -> detailLocationLine));
+
+    for (Map.Entry<Pair<Long, Long>, BigDecimal> entry : qtyByTrackingNumber.entrySet()) {
+      Product product = productMap.get(entry.getKey().getLeft());
+      StockLocationLine detailLocationLine = detailLocationLineMap.get(entry.getKey());
+      if (detailLocationLine == null) {
+        detailLocationLine = new StockLocationLine();
+        detailLocationLine.setDetailsStockLocation(stockLocation);
+        detailLocationLine.setProduct(product);
+        detailLocationLine.setUnit(product.getUnit());
+        detailLocationLine.setCurrentQty(BigDecimal.ZERO);
+        detailLocationLine.setFutureQty(BigDecimal.ZERO);
+        detailLocationLine.setTrackingNumber(
+            JPA.em().getReference(TrackingNumber.class, entry.getKey().getRight()));
+      }
+      if (detailLocationLine.getUnit() == null) {
+        throw new AxelorException(
+            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+            I18n.get(StockExceptionMessage.DETAIL_LOCATION_LINE_MISSING_UNIT),
+            detailLocationLine.getTrackingNumber().getTrackingNumberSeq(),
+            stockLocation.getName(),
+            product.getFullName());
+      }
+
+      addQty(detailLocationLine, product, entry.getValue(), isIncrement);
+      stockLocationLineService.checkStockMin(detailLocationLine, true);
+      stockLocationLineRepo.save(detailLocationLine);
+    }
+  }
+
+  /**
+   * Add the given quantity, in the product unit, to the current and future quantities of the line:
+   * the stock move is realized without having been planned.
+   */
+  protected void addQty(
+      StockLocationLine stockLocationLine, Product product, BigDecimal qty, boolean isIncrement)
+      throws AxelorException {
+    Unit unit = stockLocationLine.getUnit();
+    if (!unit.equals(product.getUnit())) {
+      qty = unitConversionService.convert(product.getUnit(), unit, qty, qty.scale(), product);
+    }
+    if (!isIncrement) {
+      qty = qty.negate();
+    }
+    stockLocationLine.setCurrentQty(stockLocationLine.getCurrentQty().add(qty));
+    stockLocationLine.setFutureQty(stockLocationLine.getFutureQty().add(qty));
+  }
+
+  /**
+   * Compute the weighted average price once per product instead of once per stock move line, one
+   * transaction per chunk of products.
+   */
+  protected void computeAvgPrices(Set<Long> productIdSet) throws AxelorException {
+    for (List<Long> productIdList :
+        Lists.partition(new ArrayList<>(productIdSet), VALIDATION_CHUNK_SIZE)) {
+      computeAvgPrices(productIdList);
+      JPA.clear();
+    }
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected void computeAvgPrices(List<Long> productIdList) throws AxelorException {
+    List<Product> productList =
+        productRepo
+            .all()
+            .filter("self.id IN (:productIds)")
+            .bind("productIds", productIdList)
+            .fetch();
+    for (Product product : productList) {
+      weightedAveragePriceService.computeAvgPriceForProduct(product);
+    }
+  }
+
+  protected static class InventoryGap {
+
+    protected final Long productId;
+    protected final Long trackingNumberId;
+    protected final BigDecimal gap;
+
+    public InventoryGap(Long productId, Long trackingNumberId, BigDecimal gap) {
+      this.productId = productId;
+      this.trackingNumberId = trackingNumberId;
+      this.gap = gap;
+    }
+
+    public Long getProductId() {
+      return productId;
+    }
+
+    public Long getTrackingNumberId() {
+      return trackingNumberId;
+    }
+
+    public BigDecimal getGap() {
+      return gap;
+    }
+  }
+}
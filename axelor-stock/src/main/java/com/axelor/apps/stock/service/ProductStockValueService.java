@@ -0,0 +1,94 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.stock.db.StockLocationLine;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Maintains, per product and company, the sum of the current quantities and of the stock values
+ * (current quantity multiplied by average price) of the stock location lines in non virtual stock
+ * locations, so the weighted average price of a product does not need to read all its stock
+ * location lines.
+ *
+ * <p>Stock location line changes are collected when they are flushed and applied to the aggregates
+ * as deltas, before the transaction is committed. Only the changes made through the entities are
+ * collected: code updating stock location lines with native or bulk queries must call {@link
+ * #resetStockValues(Collection)} or {@link #resetAllStockValues()} in the same transaction. The
+ * aggregates of a product are then rebuilt from its stock location lines on its next change, and
+ * the "Verify stock values" stock batch corrects the aggregates that drifted for any other reason.
+ */
+public interface ProductStockValueService {
+
+  /**
+   * Register the change of quantity and average price of a stock location line since it was loaded.
+   * Called when the stock location line is flushed.
+   *
+   * @param stockLocationLine a stock location line
+   * @param removed whether the stock location line was removed
+   */
+  void registerChange(StockLocationLine stockLocationLine, boolean removed);
+
+  /** Apply the changes registered in the current transaction to the aggregates. */
+  void applyPendingChanges();
+
+  /**
+   * Compute the weighted average price of the product from the aggregates and the changes of the
+   * current transaction. The session is not flushed.
+   *
+   * @param product a product
+   * @param company a company, or null to compute the price for every company
+   * @return the weighted average price, zero if there is no quantity in stock.
+   */
+  BigDecimal computeAvgPrice(Product product, Company company);
+
+  /**
+   * Compute the quantity and the stock value of the given products from their stock location lines,
+   * without using the aggregates.
+   *
+   * @return a map from (product id, company id) to (quantity, stock value)
+   */
+  Map<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> computeStockValues(List<Long> productIdList);
+
+  /**
+   * Get the aggregated quantity and stock value of the given products.
+   *
+   * @return a map from (product id, company id) to (quantity, stock value)
+   */
+  Map<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> getStockValues(List<Long> productIdList);
+
+  /**
+   * Remove the aggregates of the given products, after their stock location lines were updated
+   * without going through the entities. Until the aggregates are rebuilt, the weighted average
+   * price of these products is computed from their stock location lines.
+   */
+  void resetStockValues(Collection<Long> productIdList);
+
+  /** Remove the aggregates of every product, see {@link #resetStockValues(Collection)}. */
+  void resetAllStockValues();
+
+  /** Overwrite the aggregated quantity and stock value of a product in a company. */
+  void setStockValue(Long productId, Long companyId, BigDecimal qty, BigDecimal stockValue);
+}
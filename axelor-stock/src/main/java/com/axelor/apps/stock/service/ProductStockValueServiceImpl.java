@@ -0,0 +1,423 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.db.StockLocationLine;
+import com.axelor.apps.stock.db.repo.StockLocationRepository;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.persistence.Query;
+import org.apache.commons.lang3.tuple.Pair;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+
+@Singleton
+public class ProductStockValueServiceImpl implements ProductStockValueService {
+
+  /** Changes registered in the current transaction, per (product id, company id). */
+  protected final ThreadLocal<PendingChanges> pendingChanges =
+      ThreadLocal.withInitial(PendingChanges::new);
+
+  protected AppBaseService appBaseService;
+
+  @Inject
+  public ProductStockValueServiceImpl(AppBaseService appBaseService) {
+    this.appBaseService = appBaseService;
+  }
+
+  @Override
+  public void registerChange(StockLocationLine stockLocationLine, boolean removed) {
+    StockLocation stockLocation = stockLocationLine.getStockLocation();
+    if (stockLocation == null
+        || stockLocation.getCompany() == null
+        || stockLocation.getTypeSelect() == StockLocationRepository.TYPE_VIRTUAL
+        || stockLocationLine.getProduct() == null) {
+      return;
+    }
+
+    BigDecimal oldQty = stockLocationLine.getLoadedCurrentQty();
+    BigDecimal oldValue = oldQty.multiply(stockLocationLine.getLoadedAvgPrice());
+    BigDecimal newQty = removed ? BigDecimal.ZERO : stockLocationLine.getCurrentQty();
+    BigDecimal newValue =
+        removed ? BigDecimal.ZERO : newQty.multiply(stockLocationLine.getAvgPrice());
+    BigDecimal qtyDelta = newQty.subtract(oldQty);
+    BigDecimal valueDelta = newValue.subtract(oldValue);
+    if (qtyDelta.signum() == 0 && valueDelta.signum() == 0) {
+      return;
+    }
+
+    PendingChanges pending = pendingChanges.get();
+    if (!pending.processRegistered) {
+      registerProcesses();
+      pending.processRegistered = true;
+    }
+    pending.deltaMap.merge(
+        Pair.of(stockLocationLine.getProduct().getId(), stockLocation.getCompany().getId()),
+        Pair.of(qtyDelta, valueDelta),
+        (delta1, delta2) ->
+            Pair.of(
+                delta1.getLeft().add(delta2.getLeft()), delta1.getRight().add(delta2.getRight())));
+  }
+
+  /**
+   * Apply the remaining changes once the session is flushed, just before the commit, and forget
+   * them when the transaction is over.
+   */
+  protected void registerProcesses() {
+    SessionImplementor session = JPA.em().unwrap(SessionImplementor.class);
+    session
+        .getActionQueue()
+        .registerProcess(
+            (BeforeTransactionCompletionProcess) sessionImplementor -> applyPendingChanges());
+    session
+        .getActionQueue()
+        .registerProcess(
+            (AfterTransactionCompletionProcess)
+                (success, sessionImplementor) -> pendingChanges.remove());
+  }
+
+  @Override
+  public void applyPendingChanges() {
+    Map<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> deltaMap = pendingChanges.get().deltaMap;
+    if (deltaMap.isEmpty()) {
+      return;
+    }
+    // sorted, so aggregates are always locked in the same order
+    Map<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> sortedDeltaMap = new TreeMap<>(deltaMap);
+    deltaMap.clear();
+
+    List<Long> initializedProductIdList = new ArrayList<>();
+    for (Pair<Long, Long> key : new ArrayList<>(sortedDeltaMap.keySet())) {
+      Long productId = key.getLeft();
+      if (!initializedProductIdList.contains(productId)) {
+        initialize(productId, sortedDeltaMap);
+        initializedProductIdList.add(productId);
+      }
+    }
+
+    for (Map.Entry<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> entry :
+        sortedDeltaMap.entrySet()) {
+      applyChange(
+          entry.getKey().getLeft(),
+          entry.getKey().getRight(),
+          entry.getValue().getLeft(),
+          entry.getValue().getRight());
+    }
+  }
+
+  /**
+   * On the first change of a product, create its aggregates for every company from its stock
+   * location lines. The lines are flushed, so the aggregates created by this transaction already
+   * include its changes, which are removed from the given deltas.
+   */
+  protected void initialize(
+      Long productId, Map<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> deltaMap) {
+    long aggregateCount =
+        ((Number)
+                JPA.em()
+                    .createNativeQuery(
+                        "SELECT COUNT(*) FROM stock_product_stock_value WHERE product = :product")
+                    .setParameter("product", productId)
+                    .getSingleResult())
+            .longValue();
+    if (aggregateCount > 0) {
+      return;
+    }
+
+    @SuppressWarnings("unchecked")
+    List<Number> companyIdList =
+        JPA.em()
+            .createNativeQuery(
+                "SELECT DISTINCT location.company FROM stock_stock_location_line line "
+                    + "JOIN stock_stock_location location ON location.id = line.stock_location "
+                    + "WHERE line.product = :product AND location.type_select != :virtual")
+            .setParameter("product", productId)
+            .setParameter("virtual", StockLocationRepository.TYPE_VIRTUAL)
+            .getResultList();
+    for (Number companyId : companyIdList) {
+      if (insertFromStockLocationLines(productId, companyId.longValue())) {
+        deltaMap.remove(Pair.of(productId, companyId.longValue()));
+      }
+    }
+  }
+
+  protected void applyChange(
+      Long productId, Long companyId, BigDecimal qtyDelta, BigDecimal valueDelta) {
+    if (updateStockValue(productId, companyId, qtyDelta, valueDelta)) {
+      return;
+    }
+    // first change of the product in this company
+    if (!insertFromStockLocationLines(productId, companyId)) {
+      // created in the meantime by another transaction, which could not see this change
+      updateStockValue(productId, companyId, qtyDelta, valueDelta);
+    }
+  }
+
+  protected boolean updateStockValue(
+      Long productId, Long companyId, BigDecimal qtyDelta, BigDecimal valueDelta) {
+    return JPA.em()
+            .createNativeQuery(
+                "UPDATE stock_product_stock_value "
+                    + "SET qty = qty + :qty, stock_value = stock_value + :stockValue, "
+                    + "version = version + 1 "
+                    + "WHERE product = :product AND company = :company")
+            .setParameter("qty", qtyDelta)
+            .setParameter("stockValue", valueDelta)
+            .setParameter("product", productId)
+            .setParameter("company", companyId)
+            .executeUpdate()
+        > 0;
+  }
+
+  /**
+   * Create the aggregate of the product in the company from its stock location lines.
+   *
+   * @return false if the aggregate already exists.
+   */
+  protected boolean insertFromStockLocationLines(Long productId, Long companyId) {
+    return JPA.em()
+            .createNativeQuery(
+                "INSERT INTO stock_product_stock_value "
+                    + "(id, version, product, company, qty, stock_value) "
+                    + "SELECT nextval('stock_product_stock_value_seq'), 0, :product, :company, "
+                    + "COALESCE(SUM(line.current_qty), 0), "
+                    + "COALESCE(SUM(line.current_qty * line.avg_price), 0) "
+                    + "FROM stock_stock_location_line line "
+                    + "JOIN stock_stock_location location ON location.id = line.stock_location "
+                    + "WHERE line.product = :product AND location.company = :company "
+                    + "AND location.type_select != :virtual "
+                    + "ON CONFLICT (product, company) DO NOTHING")
+            .setParameter("product", productId)
+            .setParameter("company", companyId)
+            .setParameter("virtual", StockLocationRepository.TYPE_VIRTUAL)
+            .executeUpdate()
+        > 0;
+  }
+
+  @Override
+  public BigDecimal computeAvgPrice(Product product, Company company) {
+    if (product.getId() == null) {
+      return BigDecimal.ZERO;
+    }
+
+    String filter = "self.product.id = :productId";
+    if (company != null) {
+      filter += " AND self.company.id = :companyId";
+    }
+    Query query =
+        JPA.em()
+            .createQuery(
+                "SELECT COUNT(self), SUM(self.qty), SUM(self.stockValue) "
+                    + "FROM ProductStockValue self WHERE "
+                    + filter)
+            .setParameter("productId", product.getId());
+    if (company != null) {
+      query.setParameter("companyId", company.getId());
+    }
+    Object[] result = (Object[]) query.getSingleResult();
+
+    BigDecimal qty;
+    BigDecimal stockValue;
+    if (((Number) result[0]).longValue() > 0) {
+      // the changes of the current transaction are only applied to the aggregates before commit
+      Pair<BigDecimal, BigDecimal> delta =
+          computeTransactionDelta(product.getId(), company != null ? company.getId() : null);
+      qty = result[1] != null ? ((BigDecimal) result[1]).add(delta.getLeft()) : null;
+      stockValue = result[2] != null ? ((BigDecimal) result[2]).add(delta.getRight()) : null;
+    } else {
+      // no aggregate yet, the product did not change since the aggregates were introduced
+      Pair<BigDecimal, BigDecimal> qtyAndValue =
+          computeStockValue(product.getId(), company != null ? company.getId() : null);
+      qty = qtyAndValue.getLeft();
+      stockValue = qtyAndValue.getRight();
+    }
+
+    if (qty == null || qty.signum() == 0 || stockValue == null) {
+      return BigDecimal.ZERO;
+    }
+    return stockValue.divide(
+        qty, appBaseService.getNbDecimalDigitForUnitPrice(), RoundingMode.HALF_UP);
+  }
+
+  /**
+   * Compute the change of quantity and stock value of the product made by the current transaction
+   * and not applied to the aggregates yet, without flushing: the changes already flushed are
+   * registered, the others are read from the stock location lines of the persistence context.
+   */
+  protected Pair<BigDecimal, BigDecimal> computeTransactionDelta(Long productId, Long companyId) {
+    BigDecimal qtyDelta = BigDecimal.ZERO;
+    BigDecimal valueDelta = BigDecimal.ZERO;
+    if (!JPA.em().getTransaction().isActive()) {
+      return Pair.of(qtyDelta, valueDelta);
+    }
+
+    for (Map.Entry<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> entry :
+        pendingChanges.get().deltaMap.entrySet()) {
+      if (entry.getKey().getLeft().equals(productId)
+          && (companyId == null || entry.getKey().getRight().equals(companyId))) {
+        qtyDelta = qtyDelta.add(entry.getValue().getLeft());
+        valueDelta = valueDelta.add(entry.getValue().getRight());
+      }
+    }
+
+    PersistenceContext persistenceContext =
+        JPA.em().unwrap(SessionImplementor.class).getPersistenceContext();
+    for (Map.Entry<Object, EntityEntry> entry : persistenceContext.reentrantSafeEntityEntries()) {
+      // the removals already flushed are registered
+      if (!(entry.getKey() instanceof StockLocationLine)
+          || entry.getValue().getStatus() == Status.GONE) {
+        continue;
+      }
+      StockLocationLine stockLocationLine = (StockLocationLine) entry.getKey();
+      StockLocation stockLocation = stockLocationLine.getStockLocation();
+      if (stockLocation == null
+          || stockLocation.getCompany() == null
+          || stockLocation.getTypeSelect() == StockLocationRepository.TYPE_VIRTUAL
+          || stockLocationLine.getProduct() == null
+          || !productId.equals(stockLocationLine.getProduct().getId())
+          || (companyId != null && !companyId.equals(stockLocation.getCompany().getId()))) {
+        continue;
+      }
+      boolean removed = entry.getValue().getStatus() == Status.DELETED;
+      BigDecimal oldQty = stockLocationLine.getLoadedCurrentQty();
+      BigDecimal oldValue = oldQty.multiply(stockLocationLine.getLoadedAvgPrice());
+      BigDecimal newQty = removed ? BigDecimal.ZERO : stockLocationLine.getCurrentQty();
+      BigDecimal newValue =
+          removed ? BigDecimal.ZERO : newQty.multiply(stockLocationLine.getAvgPrice());
+      qtyDelta = qtyDelta.add(newQty.subtract(oldQty));
+      valueDelta = valueDelta.add(newValue.subtract(oldValue));
+    }
+    return Pair.of(qtyDelta, valueDelta);
+  }
+
+  protected Pair<BigDecimal, BigDecimal> computeStockValue(Long productId, Long companyId) {
+    String filter = "self.product.id = :productId AND self.stockLocation.typeSelect != :virtual";
+    if (companyId != null) {
+      filter += " AND self.stockLocation.company.id = :companyId";
+    }
+    Query query =
+        JPA.em()
+            .createQuery(
+                "SELECT SUM(self.currentQty), SUM(self.currentQty * self.avgPrice) "
+                    + "FROM StockLocationLine self WHERE "
+                    + filter)
+            .setParameter("productId", productId)
+            .setParameter("virtual", StockLocationRepository.TYPE_VIRTUAL);
+    if (companyId != null) {
+      query.setParameter("companyId", companyId);
+    }
+    Object[] result = (Object[]) query.getSingleResult();
+    return Pair.of((BigDecimal) result[0], (BigDecimal) result[1]);
+  }
+
+  @Override
+  public Map<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> computeStockValues(
+      List<Long> productIdList) {
+    return toStockValueMap(
+        JPA.em()
+            .createQuery(
+                "SELECT self.product.id, self.stockLocation.company.id, "
+                    + "SUM(self.currentQty), SUM(self.currentQty * self.avgPrice) "
+                    + "FROM StockLocationLine self "
+                    + "WHERE self.product.id IN (:productIds) "
+                    + "AND self.stockLocation.typeSelect != :virtual "
+                    + "GROUP BY self.product.id, self.stockLocation.company.id")
+            .setParameter("productIds", productIdList)
+            .setParameter("virtual", StockLocationRepository.TYPE_VIRTUAL));
+  }
+
+  @Override
+  public Map<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> getStockValues(
+      List<Long> productIdList) {
+    return toStockValueMap(
+        JPA.em()
+            .createQuery(
+                "SELECT self.product.id, self.company.id, self.qty, self.stockValue "
+                    + "FROM ProductStockValue self "
+                    + "WHERE self.product.id IN (:productIds)")
+            .setParameter("productIds", productIdList));
+  }
+
+  @SuppressWarnings("unchecked")
+  protected Map<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> toStockValueMap(Query query) {
+    Map<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> stockValueMap = new HashMap<>();
+    for (Object[] result : (List<Object[]>) query.getResultList()) {
+      stockValueMap.put(
+          Pair.of((Long) result[0], (Long) result[1]),
+          Pair.of((BigDecimal) result[2], (BigDecimal) result[3]));
+    }
+    return stockValueMap;
+  }
+
+  @Override
+  public void setStockValue(Long productId, Long companyId, BigDecimal qty, BigDecimal stockValue) {
+    JPA.em()
+        .createNativeQuery(
+            "INSERT INTO stock_product_stock_value "
+                + "(id, version, product, company, qty, stock_value) "
+                + "VALUES (nextval('stock_product_stock_value_seq'), 0, :product, :company, "
+                + ":qty, :stockValue) "
+                + "ON CONFLICT (product, company) DO UPDATE "
+                + "SET qty = EXCLUDED.qty, stock_value = EXCLUDED.stock_value, "
+                + "version = stock_product_stock_value.version + 1")
+        .setParameter("product", productId)
+        .setParameter("company", companyId)
+        .setParameter("qty", qty)
+        .setParameter("stockValue", stockValue)
+        .executeUpdate();
+  }
+
+  @Override
+  public void resetStockValues(Collection<Long> productIdList) {
+    if (productIdList.isEmpty()) {
+      return;
+    }
+    JPA.em()
+        .createNativeQuery("DELETE FROM stock_product_stock_value WHERE product IN (:products)")
+        .setParameter("products", productIdList)
+        .executeUpdate();
+  }
+
+  @Override
+  public void resetAllStockValues() {
+    JPA.em().createNativeQuery("DELETE FROM stock_product_stock_value").executeUpdate();
+  }
+
+  protected static class PendingChanges {
+    protected final Map<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> deltaMap = new HashMap<>();
+    protected boolean processRegistered;
+  }
+}
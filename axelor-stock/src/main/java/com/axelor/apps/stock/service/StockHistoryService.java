@@ -24,6 +24,7 @@ import com.axelor.meta.db.MetaFile;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 public interface StockHistoryService {
 
@@ -42,6 +43,38 @@ public interface StockHistoryService {
       Long productId, Long companyId, Long stockLocationId, LocalDate beginDate, LocalDate endDate)
       throws AxelorException;
 
+  /**
+   * Same as {@link StockHistoryService#computeStockHistoryLineList(Long, Long, Long, LocalDate,
+   * LocalDate)} for several products at once. Every period of every product is computed with
+   * grouped queries, so the number of queries does not depend on the number of products or periods.
+   *
+   * @param productIdList ids of the queried products, cannot be null.
+   * @param companyId id of the company used as filter, cannot be null.
+   * @param stockLocationId id of the stock location used as filter, can be null.
+   * @param beginDate mandatory date used for the generation.
+   * @param endDate mandatory date used for the generation.
+   * @return the computed lines by product id.
+   */
+  Map<Long, List<StockHistoryLine>> computeStockHistoryLineList(
+      List<Long> productIdList,
+      Long companyId,
+      Long stockLocationId,
+      LocalDate beginDate,
+      LocalDate endDate)
+      throws AxelorException;
+
+  /**
+   * Same as {@link StockHistoryService#computeStockHistoryLineList(List, Long, Long, LocalDate,
+   * LocalDate)} But, this method will save the computed stock history lines
+   */
+  Map<Long, List<StockHistoryLine>> computeAndSaveStockHistoryLineList(
+      List<Long> productIdList,
+      Long companyId,
+      Long stockLocationId,
+      LocalDate beginDate,
+      LocalDate endDate)
+      throws AxelorException;
+
   MetaFile exportStockHistoryLineList(List<StockHistoryLine> stockHistoryLineList, String fileName)
       throws IOException;
 
@@ -20,7 +20,9 @@ package com.axelor.apps.stock.service;
 
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Period;
 import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
 import com.axelor.apps.base.db.repo.CompanyRepository;
 import com.axelor.apps.base.db.repo.ProductRepository;
 import com.axelor.apps.base.db.repo.YearRepository;
@@ -28,11 +30,11 @@ import com.axelor.apps.base.service.PeriodService;
 import com.axelor.apps.base.service.UnitConversionService;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.stock.db.StockHistoryLine;
-import com.axelor.apps.stock.db.StockMoveLine;
 import com.axelor.apps.stock.db.repo.StockHistoryLineManagementRepository;
 import com.axelor.apps.stock.db.repo.StockLocationRepository;
 import com.axelor.apps.stock.db.repo.StockMoveLineRepository;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
+import com.axelor.db.JPA;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.axelor.meta.MetaFiles;
@@ -48,9 +50,14 @@ import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import javax.persistence.Query;
 
 public class StockHistoryServiceImpl implements StockHistoryService {
 
@@ -82,71 +89,128 @@ public class StockHistoryServiceImpl implements StockHistoryService {
             productId, companyId, stockLocationId, beginDate, endDate));
   }
 
+  @Override
+  @Transactional(rollbackOn = Exception.class)
+  public Map<Long, List<StockHistoryLine>> computeAndSaveStockHistoryLineList(
+      List<Long> productIdList,
+      Long companyId,
+      Long stockLocationId,
+      LocalDate beginDate,
+      LocalDate endDate)
+      throws AxelorException {
+    Map<Long, List<StockHistoryLine>> stockHistoryLineMap =
+        computeStockHistoryLineList(productIdList, companyId, stockLocationId, beginDate, endDate);
+    stockHistoryLineMap.values().forEach(stockHistoryLineRepository::save);
+    return stockHistoryLineMap;
+  }
+
   public List<StockHistoryLine> computeStockHistoryLineList(
       Long productId, Long companyId, Long stockLocationId, LocalDate beginDate, LocalDate endDate)
       throws AxelorException {
-    List<StockHistoryLine> stockHistoryLineList = new ArrayList<>();
-    List<Long> stockLocationIdList = new ArrayList<>();
-    if (stockLocationId == null) {
-      stockLocationIdList.addAll(
-          stockLocationRepository.all()
-              .filter(
-                  "self.typeSelect != :typeSelect AND self.company.id = :company "
-                      + "AND self.stockLocationLineList.product = :product")
-              .bind("typeSelect", StockLocationRepository.TYPE_VIRTUAL).bind("company", companyId)
-              .bind("product", productId).select("id").fetch(0, 0).stream()
-              .map(m -> (Long) m.get("id"))
-              .collect(Collectors.toList()));
-    } else {
-      stockLocationIdList.add(stockLocationId);
+    return computeStockHistoryLineList(
+            Collections.singletonList(productId), companyId, stockLocationId, beginDate, endDate)
+        .getOrDefault(productId, new ArrayList<>());
+  }
+
+  @Override
+  public Map<Long, List<StockHistoryLine>> computeStockHistoryLineList(
+      List<Long> productIdList,
+      Long companyId,
+      Long stockLocationId,
+      LocalDate beginDate,
+      LocalDate endDate)
+      throws AxelorException {
+    Map<Long, List<StockHistoryLine>> stockHistoryLineMap = new LinkedHashMap<>();
+    if (productIdList == null || productIdList.isEmpty()) {
+      return stockHistoryLineMap;
     }
 
-    CompanyRepository companyRepo = Beans.get(CompanyRepository.class);
-    ProductRepository productRepo = Beans.get(ProductRepository.class);
+    Company company = Beans.get(CompanyRepository.class).find(companyId);
+    List<Product> productList =
+        Beans.get(ProductRepository.class)
+            .all()
+            .filter("self.id IN (:productIdList)")
+            .bind("productIdList", productIdList)
+            .order("id")
+            .fetch();
 
     // one line per month
+    List<LocalDate> periodBeginDateList = new ArrayList<>();
     for (LocalDate periodBeginDate = beginDate.withDayOfMonth(1);
         periodBeginDate.isBefore(endDate);
         periodBeginDate = periodBeginDate.plusMonths(1)) {
-      LocalDate periodEndDate = periodBeginDate.plusMonths(1);
-      StockHistoryLine stockHistoryLine = new StockHistoryLine();
-      Company company = companyRepo.find(companyId);
-      Product product = productRepo.find(productId);
-      stockHistoryLine.setProduct(product);
-      stockHistoryLine.setCompany(company);
-      stockHistoryLine.setLabel(periodBeginDate.toString());
-      stockHistoryLine.setPeriod(
-          Beans.get(PeriodService.class)
-              .getActivePeriod(periodBeginDate, company, YearRepository.TYPE_CIVIL));
-      if (!stockLocationIdList.isEmpty()) {
-        fetchAndFillResultForStockHistoryQuery(
-            stockHistoryLine,
-            productId,
-            companyId,
-            stockLocationIdList,
-            periodBeginDate,
-            periodEndDate,
-            true);
-        fetchAndFillResultForStockHistoryQuery(
-            stockHistoryLine,
-            productId,
-            companyId,
-            stockLocationIdList,
-            periodBeginDate,
-            periodEndDate,
-            false);
+      periodBeginDateList.add(periodBeginDate);
+    }
+    if (periodBeginDateList.isEmpty()) {
+      return stockHistoryLineMap;
+    }
+    LocalDate queryBeginDate = periodBeginDateList.get(0);
+    LocalDate queryEndDate = periodBeginDateList.get(periodBeginDateList.size() - 1).plusMonths(1);
+
+    PeriodService periodService = Beans.get(PeriodService.class);
+    Map<LocalDate, Period> periodMap = new HashMap<>();
+    for (LocalDate periodBeginDate : periodBeginDateList) {
+      periodMap.put(
+          periodBeginDate,
+          periodService.getActivePeriod(periodBeginDate, company, YearRepository.TYPE_CIVIL));
+    }
+
+    Map<Long, Map<LocalDate, StockHistoryLine>> monthlyLineMap = new HashMap<>();
+    for (Product product : productList) {
+      Map<LocalDate, StockHistoryLine> lineByMonth = new LinkedHashMap<>();
+      for (LocalDate periodBeginDate : periodBeginDateList) {
+        StockHistoryLine stockHistoryLine = new StockHistoryLine();
+        stockHistoryLine.setProduct(product);
+        stockHistoryLine.setCompany(company);
+        stockHistoryLine.setLabel(periodBeginDate.toString());
+        stockHistoryLine.setPeriod(periodMap.get(periodBeginDate));
+        stockHistoryLine.setCountIncMvtStockPeriod(0);
+        stockHistoryLine.setSumIncQtyPeriod(BigDecimal.ZERO);
+        stockHistoryLine.setPriceIncStockMovePeriod(BigDecimal.ZERO);
+        stockHistoryLine.setCountOutMvtStockPeriod(0);
+        stockHistoryLine.setSumOutQtyPeriod(BigDecimal.ZERO);
+        stockHistoryLine.setPriceOutStockMovePeriod(BigDecimal.ZERO);
+        lineByMonth.put(periodBeginDate, stockHistoryLine);
       }
-      stockHistoryLineList.add(stockHistoryLine);
+      monthlyLineMap.put(product.getId(), lineByMonth);
     }
-    StockHistoryLine totalStockHistoryLine = createStockHistoryTotalLine(stockHistoryLineList);
-    StockHistoryLine avgStockHistoryLine =
-        createStockHistoryAvgLine(stockHistoryLineList, totalStockHistoryLine);
-    stockHistoryLineList.add(totalStockHistoryLine);
-    stockHistoryLineList.add(avgStockHistoryLine);
 
-    // result lines
+    List<Long> fetchedProductIdList =
+        productList.stream().map(Product::getId).collect(Collectors.toList());
+    fetchAndFillGroupedResultForStockHistoryQuery(
+        monthlyLineMap,
+        fetchedProductIdList,
+        companyId,
+        stockLocationId,
+        queryBeginDate,
+        queryEndDate,
+        true);
+    // outgoing quantities of the 12 months before the first period are needed for the average
+    Map<Long, Map<LocalDate, BigDecimal>> outQtyMap =
+        fetchAndFillGroupedResultForStockHistoryQuery(
+            monthlyLineMap,
+            fetchedProductIdList,
+            companyId,
+            stockLocationId,
+            queryBeginDate.minusMonths(12),
+            queryEndDate,
+            false);
+
+    for (Product product : productList) {
+      Map<LocalDate, StockHistoryLine> lineByMonth = monthlyLineMap.get(product.getId());
+      computeAvgOutQtyOn12PastMonth(
+          lineByMonth, outQtyMap.getOrDefault(product.getId(), new HashMap<>()));
+
+      List<StockHistoryLine> stockHistoryLineList = new ArrayList<>(lineByMonth.values());
+      StockHistoryLine totalStockHistoryLine = createStockHistoryTotalLine(stockHistoryLineList);
+      StockHistoryLine avgStockHistoryLine =
+          createStockHistoryAvgLine(stockHistoryLineList, totalStockHistoryLine);
+      stockHistoryLineList.add(totalStockHistoryLine);
+      stockHistoryLineList.add(avgStockHistoryLine);
+      stockHistoryLineMap.put(product.getId(), stockHistoryLineList);
+    }
 
-    return stockHistoryLineList;
+    return stockHistoryLineMap;
   }
 
   public String getStockHistoryLineExportName(String productName) {
@@ -199,147 +263,217 @@ public class StockHistoryServiceImpl implements StockHistoryService {
     return metaFile;
   }
 
+  /**
+   * Compute, for each month line, the average outgoing quantity of the 12 months before it.
+   *
+   * @param lineByMonth the month lines of a product, by first day of month
+   * @param outQtyByMonth the outgoing quantity of the product, by first day of month
+   */
   protected void computeAvgOutQtyOn12PastMonth(
-      StockHistoryLine stockHistoryLine,
-      Long productId,
+      Map<LocalDate, StockHistoryLine> lineByMonth, Map<LocalDate, BigDecimal> outQtyByMonth) {
+    int qtyScale = Beans.get(AppBaseService.class).getNbDecimalDigitForQty();
+    for (Map.Entry<LocalDate, StockHistoryLine> entry : lineByMonth.entrySet()) {
+      BigDecimal avgOutQtyOn12PastMonth = BigDecimal.ZERO;
+      for (int i = 1; i <= 12; i++) {
+        avgOutQtyOn12PastMonth =
+            avgOutQtyOn12PastMonth.add(
+                outQtyByMonth.getOrDefault(entry.getKey().minusMonths(i), BigDecimal.ZERO));
+      }
+      entry
+          .getValue()
+          .setAvgOutQtyOn12PastMonth(
+              avgOutQtyOn12PastMonth.divide(new BigDecimal(12), qtyScale, RoundingMode.HALF_EVEN));
+    }
+  }
+
+  /**
+   * Fill incoming or outgoing fields of the month lines of every product with two grouped queries
+   * (one for quantities and amounts, one for the number of moves), instead of loading stock move
+   * lines for each product and each month.
+   *
+   * @param monthlyLineMap month lines by product id then by first day of month
+   * @return the quantity in product unit by product id then by first day of month, including months
+   *     outside of the lines
+   */
+  protected Map<Long, Map<LocalDate, BigDecimal>> fetchAndFillGroupedResultForStockHistoryQuery(
+      Map<Long, Map<LocalDate, StockHistoryLine>> monthlyLineMap,
+      List<Long> productIdList,
       Long companyId,
-      List<Long> stockLocationIdList,
-      LocalDate periodBeginDate)
+      Long stockLocationId,
+      LocalDate beginDate,
+      LocalDate endDate,
+      boolean incoming)
       throws AxelorException {
-    String filter =
-        "self.product.id = :productId "
-            + "AND self.stockMove.statusSelect = :realized "
-            + "AND self.stockMove.company.id = :companyId "
-            + "AND self.stockMove.realDate >= :beginDate "
-            + "AND self.stockMove.realDate < :endDate "
-            + "AND self.fromStockLocation.id IN :stockLocationIdList ";
-
-    List<StockMoveLine> stockMoveLineList =
-        stockMoveLineRepository
-            .all()
-            .filter(filter)
-            .bind("productId", productId)
-            .bind("companyId", companyId)
-            .bind("stockLocationIdList", stockLocationIdList)
-            .bind("realized", StockMoveRepository.STATUS_REALIZED)
-            .bind("beginDate", periodBeginDate.minusMonths(12))
-            .bind("endDate", periodBeginDate)
-            .fetch();
+    Map<Long, Map<LocalDate, BigDecimal>> qtyMap = new HashMap<>();
+    if (productIdList.isEmpty()) {
+      return qtyMap;
+    }
+
+    ProductRepository productRepo = Beans.get(ProductRepository.class);
+    String qtyCategoryExpression = getQtyCategoryExpression(incoming);
+    String groupBy =
+        "self.product.id, YEAR(stockMove.realDate), MONTH(stockMove.realDate), unit.id"
+            + (qtyCategoryExpression != null ? ", " + qtyCategoryExpression : "");
+
+    Query qtyQuery =
+        JPA.em()
+            .createQuery(
+                "SELECT "
+                    + groupBy
+                    + ", SUM(self.realQty), SUM(self.companyUnitPriceUntaxed) "
+                    + "FROM StockMoveLine self "
+                    + "JOIN self.stockMove stockMove "
+                    + "LEFT JOIN self.unit unit "
+                    + getStockHistoryQueryJoins(incoming)
+                    + "WHERE "
+                    + getStockHistoryQueryFilter(stockLocationId, incoming)
+                    + "GROUP BY "
+                    + groupBy);
+    bindStockHistoryQuery(qtyQuery, productIdList, companyId, stockLocationId, beginDate, endDate);
+
+    for (Object[] result : (List<Object[]>) qtyQuery.getResultList()) {
+      Long productId = (Long) result[0];
+      LocalDate monthDate = LocalDate.of((Integer) result[1], (Integer) result[2], 1);
+      Unit unit = result[3] != null ? JPA.find(Unit.class, (Long) result[3]) : null;
+      Object qtyCategory = qtyCategoryExpression != null ? result[4] : null;
+      int sumIndex = qtyCategoryExpression != null ? 5 : 4;
+      BigDecimal qty = result[sumIndex] != null ? (BigDecimal) result[sumIndex] : BigDecimal.ZERO;
+      BigDecimal price =
+          result[sumIndex + 1] != null ? (BigDecimal) result[sumIndex + 1] : BigDecimal.ZERO;
 
-    BigDecimal avgOutQtyOn12PastMonth = BigDecimal.ZERO;
-    for (StockMoveLine stockMoveLine : stockMoveLineList) {
+      Product product = productRepo.find(productId);
       // quantity in product unit
       BigDecimal qtyConverted =
-          unitConversionService.convert(
-              stockMoveLine.getUnit(),
-              stockMoveLine.getProduct().getUnit(),
-              stockMoveLine.getRealQty(),
-              stockMoveLine.getRealQty().scale(),
-              stockMoveLine.getProduct());
-      avgOutQtyOn12PastMonth = avgOutQtyOn12PastMonth.add(qtyConverted);
+          unitConversionService.convert(unit, product.getUnit(), qty, qty.scale(), product);
+      qtyMap
+          .computeIfAbsent(productId, key -> new HashMap<>())
+          .merge(monthDate, qtyConverted, BigDecimal::add);
+
+      StockHistoryLine stockHistoryLine =
+          monthlyLineMap.getOrDefault(productId, Collections.emptyMap()).get(monthDate);
+      if (stockHistoryLine != null) {
+        addQtyToStockHistoryLine(stockHistoryLine, qtyConverted, qtyCategory, incoming);
+        if (incoming) {
+          stockHistoryLine.setPriceIncStockMovePeriod(
+              stockHistoryLine.getPriceIncStockMovePeriod().add(price));
+        } else {
+          stockHistoryLine.setPriceOutStockMovePeriod(
+              stockHistoryLine.getPriceOutStockMovePeriod().add(price));
+        }
+      }
+    }
+
+    Query countQuery =
+        JPA.em()
+            .createQuery(
+                "SELECT self.product.id, YEAR(stockMove.realDate), MONTH(stockMove.realDate), "
+                    + "COUNT(DISTINCT stockMove.id) "
+                    + "FROM StockMoveLine self "
+                    + "JOIN self.stockMove stockMove "
+                    + "WHERE "
+                    + getStockHistoryQueryFilter(stockLocationId, incoming)
+                    + "GROUP BY self.product.id, YEAR(stockMove.realDate), "
+                    + "MONTH(stockMove.realDate)");
+    bindStockHistoryQuery(
+        countQuery, productIdList, companyId, stockLocationId, beginDate, endDate);
+
+    for (Object[] result : (List<Object[]>) countQuery.getResultList()) {
+      LocalDate monthDate = LocalDate.of((Integer) result[1], (Integer) result[2], 1);
+      StockHistoryLine stockHistoryLine =
+          monthlyLineMap.getOrDefault((Long) result[0], Collections.emptyMap()).get(monthDate);
+      if (stockHistoryLine == null) {
+        continue;
+      }
+      int count = Math.toIntExact((Long) result[3]);
+      if (incoming) {
+        stockHistoryLine.setCountIncMvtStockPeriod(count);
+      } else {
+        stockHistoryLine.setCountOutMvtStockPeriod(count);
+      }
     }
-    avgOutQtyOn12PastMonth =
-        avgOutQtyOn12PastMonth.divide(
-            new BigDecimal(12),
-            Beans.get(AppBaseService.class).getNbDecimalDigitForQty(),
-            RoundingMode.HALF_EVEN);
-    stockHistoryLine.setAvgOutQtyOn12PastMonth(avgOutQtyOn12PastMonth);
+
+    return qtyMap;
   }
 
-  protected void fetchAndFillResultForStockHistoryQuery(
-      StockHistoryLine stockHistoryLine,
-      Long productId,
-      Long companyId,
-      List<Long> stockLocationIdList,
-      LocalDate periodBeginDate,
-      LocalDate periodEndDate,
-      boolean incoming)
-      throws AxelorException {
+  /**
+   * Filter on realized stock move lines of the products, moving stock in (or out of) the given
+   * stock location. Without stock location, every non virtual stock location of the company holding
+   * the product is used.
+   */
+  protected String getStockHistoryQueryFilter(Long stockLocationId, boolean incoming) {
+    String stockLocationField = incoming ? "self.toStockLocation" : "self.fromStockLocation";
     String filter =
-        "self.product.id = :productId "
-            + "AND self.stockMove.statusSelect = :realized "
-            + "AND self.stockMove.company.id = :companyId "
-            + "AND self.stockMove.realDate >= :beginDate "
-            + "AND self.stockMove.realDate < :endDate ";
-
-    if (incoming) {
-      filter += "AND self.toStockLocation.id IN :stockLocationIdList ";
+        "self.product.id IN (:productIdList) "
+            + "AND stockMove.statusSelect = :realized "
+            + "AND stockMove.company.id = :companyId "
+            + "AND stockMove.realDate >= :beginDate "
+            + "AND stockMove.realDate < :endDate ";
+
+    if (stockLocationId != null) {
+      filter += "AND " + stockLocationField + ".id = :stockLocationId ";
     } else {
-      filter += "AND self.fromStockLocation.id IN :stockLocationIdList ";
+      filter +=
+          "AND "
+              + stockLocationField
+              + ".typeSelect != :typeSelect "
+              + "AND "
+              + stockLocationField
+              + ".company.id = :companyId "
+              + "AND EXISTS (SELECT 1 FROM StockLocationLine stockLocationLine "
+              + "WHERE stockLocationLine.stockLocation = "
+              + stockLocationField
+              + " AND stockLocationLine.product = self.product) ";
     }
+    return filter;
+  }
 
-    List<StockMoveLine> stockMoveLineList =
-        stockMoveLineRepository
-            .all()
-            .filter(filter)
-            .bind("productId", productId)
-            .bind("companyId", companyId)
-            .bind("stockLocationIdList", stockLocationIdList)
-            .bind("realized", StockMoveRepository.STATUS_REALIZED)
-            .bind("beginDate", periodBeginDate)
-            .bind("endDate", periodEndDate)
-            .fetch();
-    if (incoming) {
-      fillIncomingStockHistoryLineFields(stockHistoryLine, stockMoveLineList);
+  protected void bindStockHistoryQuery(
+      Query query,
+      List<Long> productIdList,
+      Long companyId,
+      Long stockLocationId,
+      LocalDate beginDate,
+      LocalDate endDate) {
+    query.setParameter("productIdList", productIdList);
+    query.setParameter("realized", StockMoveRepository.STATUS_REALIZED);
+    query.setParameter("companyId", companyId);
+    query.setParameter("beginDate", beginDate);
+    query.setParameter("endDate", endDate);
+    if (stockLocationId != null) {
+      query.setParameter("stockLocationId", stockLocationId);
     } else {
-      fillOutgoingStockHistoryLineFields(stockHistoryLine, stockMoveLineList);
-      computeAvgOutQtyOn12PastMonth(
-          stockHistoryLine, productId, companyId, stockLocationIdList, periodBeginDate);
+      query.setParameter("typeSelect", StockLocationRepository.TYPE_VIRTUAL);
     }
   }
 
-  protected void fillIncomingStockHistoryLineFields(
-      StockHistoryLine stockHistoryLine, List<StockMoveLine> stockMoveLineList)
-      throws AxelorException {
-
-    stockHistoryLine.setCountIncMvtStockPeriod(
-        Math.toIntExact(
-            stockMoveLineList.stream().map(StockMoveLine::getStockMove).distinct().count()));
-    BigDecimal sumIncQtyPeriod = BigDecimal.ZERO;
-    for (StockMoveLine stockMoveLine : stockMoveLineList) {
-      // quantity in product unit
-      BigDecimal qtyConverted =
-          unitConversionService.convert(
-              stockMoveLine.getUnit(),
-              stockMoveLine.getProduct().getUnit(),
-              stockMoveLine.getRealQty(),
-              stockMoveLine.getRealQty().scale(),
-              stockMoveLine.getProduct());
-      sumIncQtyPeriod = sumIncQtyPeriod.add(qtyConverted);
-    }
-    stockHistoryLine.setSumIncQtyPeriod(sumIncQtyPeriod);
-    stockHistoryLine.setPriceIncStockMovePeriod(
-        stockMoveLineList.stream()
-            .map(StockMoveLine::getCompanyUnitPriceUntaxed)
-            .reduce(BigDecimal::add)
-            .orElse(BigDecimal.ZERO));
+  /**
+   * Additional joins used by {@link #getQtyCategoryExpression(boolean)}.
+   *
+   * @param incoming
+   * @return the joins, ending with a space, or an empty string.
+   */
+  protected String getStockHistoryQueryJoins(boolean incoming) {
+    return "";
   }
 
-  protected void fillOutgoingStockHistoryLineFields(
-      StockHistoryLine stockHistoryLine, List<StockMoveLine> stockMoveLineList)
-      throws AxelorException {
+  /**
+   * Expression used to split quantities of a month in several categories, passed to {@link
+   * #addQtyToStockHistoryLine(StockHistoryLine, BigDecimal, Object, boolean)}.
+   *
+   * @param incoming
+   * @return the expression, or null to not split quantities.
+   */
+  protected String getQtyCategoryExpression(boolean incoming) {
+    return null;
+  }
 
-    stockHistoryLine.setCountOutMvtStockPeriod(
-        Math.toIntExact(
-            stockMoveLineList.stream().map(StockMoveLine::getStockMove).distinct().count()));
-    BigDecimal sumOutQtyPeriod = BigDecimal.ZERO;
-    for (StockMoveLine stockMoveLine : stockMoveLineList) {
-      // quantity in product unit
-      BigDecimal qtyConverted =
-          unitConversionService.convert(
-              stockMoveLine.getUnit(),
-              stockMoveLine.getProduct().getUnit(),
-              stockMoveLine.getRealQty(),
-              stockMoveLine.getRealQty().scale(),
-              stockMoveLine.getProduct());
-      sumOutQtyPeriod = sumOutQtyPeriod.add(qtyConverted);
+  protected void addQtyToStockHistoryLine(
+      StockHistoryLine stockHistoryLine, BigDecimal qty, Object qtyCategory, boolean incoming) {
+    if (incoming) {
+      stockHistoryLine.setSumIncQtyPeriod(stockHistoryLine.getSumIncQtyPeriod().add(qty));
+    } else {
+      stockHistoryLine.setSumOutQtyPeriod(stockHistoryLine.getSumOutQtyPeriod().add(qty));
     }
-    stockHistoryLine.setSumOutQtyPeriod(sumOutQtyPeriod);
-    stockHistoryLine.setPriceOutStockMovePeriod(
-        stockMoveLineList.stream()
-            .map(StockMoveLine::getCompanyUnitPriceUntaxed)
-            .reduce(BigDecimal::add)
-            .orElse(BigDecimal.ZERO));
   }
 
   /**
@@ -0,0 +1,51 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.stock.db.StockMove;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Short lived, per node cache of the stock indicators of products. It is meant to absorb repeated
+ * polling from mobile clients: entries expire after a few seconds and are evicted once the
+ * planning, realization or cancellation of a stock move of their product is committed on this node.
+ */
+public interface StockIndicatorCacheService {
+
+  /**
+   * Get the stock indicators of the given products, computing only the ones missing in the cache.
+   *
+   * @param productIdList the ids of the products
+   * @param companyId the company id, 0 or null for all companies
+   * @param locationId the stock location id, 0 or null for all non virtual stock locations
+   * @return a map of the indicators by product id
+   * @throws AxelorException
+   */
+  Map<Long, Map<String, Object>> getStockIndicators(
+      List<Long> productIdList, Long companyId, Long locationId) throws AxelorException;
+
+  void invalidate(Collection<Long> productIdList);
+
+  void invalidate(StockMove stockMove);
+
+  void invalidateAll();
+}
@@ -0,0 +1,173 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.app.AppSettings;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.stock.db.StockMove;
+import com.axelor.apps.stock.db.StockMoveLine;
+import com.axelor.db.JPA;
+import com.axelor.inject.Beans;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+
+@Singleton
+public class StockIndicatorCacheServiceImpl implements StockIndicatorCacheService {
+
+  public static final String CACHE_TTL_PROPERTY = "aos.stock.indicators.cache.ttl";
+  public static final int DEFAULT_CACHE_TTL = 5;
+  protected static final int MAXIMUM_CACHE_SIZE = 100000;
+
+  /** Indicators by product id, then by (company id, stock location id). */
+  protected Cache<Long, Map<List<Long>, Map<String, Object>>> cache;
+
+  /**
+   * Incremented on each invalidation, so that indicators computed while a stock move was being
+   * committed are not cached.
+   */
+  protected final AtomicLong invalidationCount = new AtomicLong();
+
+  public StockIndicatorCacheServiceImpl() {
+    this(AppSettings.get().getInt(CACHE_TTL_PROPERTY, DEFAULT_CACHE_TTL));
+  }
+
+  protected StockIndicatorCacheServiceImpl(int cacheTtl) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(cacheTtl, TimeUnit.SECONDS)
+            .maximumSize(MAXIMUM_CACHE_SIZE)
+            .build();
+  }
+
+  @Override
+  public Map<Long, Map<String, Object>> getStockIndicators(
+      List<Long> productIdList, Long companyId, Long locationId) throws AxelorException {
+    Map<Long, Map<String, Object>> indicatorsByProductId = new HashMap<>();
+    List<Long> missingProductIdList = new ArrayList<>();
+    List<Long> key = getKey(companyId, locationId);
+
+    for (Long productId : new HashSet<>(productIdList)) {
+      Map<List<Long>, Map<String, Object>> productIndicators = cache.getIfPresent(productId);
+      Map<String, Object> indicators =
+          productIndicators != null ? productIndicators.get(key) : null;
+      if (indicators != null) {
+        indicatorsByProductId.put(productId, indicators);
+      } else {
+        missingProductIdList.add(productId);
+      }
+    }
+
+    if (!missingProductIdList.isEmpty()) {
+      long count = invalidationCount.get();
+      Map<Long, Map<String, Object>> computedIndicators =
+          computeStockIndicators(missingProductIdList, companyId, locationId);
+      for (Map.Entry<Long, Map<String, Object>> entry : computedIndicators.entrySet()) {
+        Map<String, Object> indicators = Collections.unmodifiableMap(entry.getValue());
+        indicatorsByProductId.put(entry.getKey(), indicators);
+        if (invalidationCount.get() == count) {
+          getProductIndicators(entry.getKey()).put(key, indicators);
+        }
+      }
+    }
+
+    return Collections.unmodifiableMap(indicatorsByProductId);
+  }
+
+  protected Map<Long, Map<String, Object>> computeStockIndicators(
+      List<Long> productIdList, Long companyId, Long locationId) throws AxelorException {
+    return Beans.get(StockLocationService.class)
+        .getStockIndicators(productIdList, companyId, locationId);
+  }
+
+  protected Map<List<Long>, Map<String, Object>> getProductIndicators(Long productId) {
+    try {
+      return cache.get(productId, ConcurrentHashMap::new);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void invalidate(Collection<Long> productIdList) {
+    if (productIdList == null || productIdList.isEmpty()) {
+      return;
+    }
+    invalidationCount.incrementAndGet();
+    cache.invalidateAll(productIdList);
+  }
+
+  /**
+   * Invalidate the indicators of the products of the stock move once the current transaction is
+   * over, as they could be computed again from the data not committed yet before.
+   */
+  @Override
+  public void invalidate(StockMove stockMove) {
+    if (stockMove == null || stockMove.getStockMoveLineList() == null) {
+      return;
+    }
+    Set<Long> productIdSet =
+        stockMove.getStockMoveLineList().stream()
+            .map(StockMoveLine::getProduct)
+            .filter(Objects::nonNull)
+            .map(Product::getId)
+            .collect(Collectors.toSet());
+    if (productIdSet.isEmpty()) {
+      return;
+    }
+
+    invalidate(productIdSet);
+    if (JPA.em().getTransaction().isActive()) {
+      JPA.em()
+          .unwrap(SessionImplementor.class)
+          .getActionQueue()
+          .registerProcess(
+              (AfterTransactionCompletionProcess)
+                  (success, sessionImplementor) -> invalidate(productIdSet));
+    }
+  }
+
+  @Override
+  public void invalidateAll() {
+    invalidationCount.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  protected List<Long> getKey(Long companyId, Long locationId) {
+    return Arrays.asList(companyId == null ? 0L : companyId, locationId == null ? 0L : locationId);
+  }
+}
@@ -43,6 +43,20 @@ public interface StockLocationService {
   public Map<String, Object> getStockIndicators(Long productId, Long companyId, Long locationId)
       throws AxelorException;
 
+  /**
+   * Compute stock indicators of several products at once, using one grouped query on stock location
+   * lines instead of one query per product and per indicator.
+   *
+   * @param productIdList the ids of the products
+   * @param companyId the company id, 0 or null for all companies
+   * @param locationId the stock location id, 0 or null for all non virtual stock locations
+   * @return a map of the indicators (same keys as {@link #getStockIndicators(Long, Long, Long)}) by
+   *     product id
+   * @throws AxelorException
+   */
+  Map<Long, Map<String, Object>> getStockIndicators(
+      List<Long> productIdList, Long companyId, Long locationId) throws AxelorException;
+
   @CallMethod
   public List<Long> getBadStockLocationLineId();
 
@@ -176,6 +176,115 @@ public class StockLocationServiceImpl implements StockLocationService {
     return map;
   }
 
+  @Override
+  public Map<Long, Map<String, Object>> getStockIndicators(
+      List<Long> productIdList, Long companyId, Long locationId) throws AxelorException {
+    Map<Long, Map<String, Object>> indicatorsByProductId = new HashMap<>();
+    if (productIdList == null || productIdList.isEmpty()) {
+      return indicatorsByProductId;
+    }
+
+    UnitConversionService unitConversionService = Beans.get(UnitConversionService.class);
+    int scale = Beans.get(AppBaseService.class).getNbDecimalDigitForQty();
+
+    Map<Long, Product> productMap =
+        productRepo.all().filter("self.id IN (:productIdList)").bind("productIdList", productIdList)
+            .fetch().stream()
+            .collect(Collectors.toMap(Product::getId, product -> product));
+
+    Map<Long, BigDecimal> realQtyMap = new HashMap<>();
+    Map<Long, BigDecimal> futureQtyMap = new HashMap<>();
+
+    for (Object[] result :
+        fetchGroupedStockLocationLineQties(productIdList, companyId, locationId)) {
+      Product product = productMap.get((Long) result[0]);
+      if (product == null) {
+        continue;
+      }
+      Unit stockLocationLineUnit =
+          result[1] != null ? JPA.find(Unit.class, (Long) result[1]) : null;
+      BigDecimal realQty = result[2] != null ? (BigDecimal) result[2] : BigDecimal.ZERO;
+      BigDecimal futureQty = result[3] != null ? (BigDecimal) result[3] : BigDecimal.ZERO;
+
+      Unit productUnit = product.getUnit();
+      if (productUnit != null
+          && stockLocationLineUnit != null
+          && !productUnit.equals(stockLocationLineUnit)) {
+        realQty =
+            unitConversionService.convert(
+                stockLocationLineUnit, productUnit, realQty, realQty.scale(), product);
+        futureQty =
+            unitConversionService.convert(
+                stockLocationLineUnit, productUnit, futureQty, futureQty.scale(), product);
+      }
+
+      realQtyMap.merge(product.getId(), realQty, BigDecimal::add);
+      futureQtyMap.merge(product.getId(), futureQty, BigDecimal::add);
+    }
+
+    for (Long productId : productIdList) {
+      if (!productMap.containsKey(productId)) {
+        continue;
+      }
+      Map<String, Object> map = new HashMap<>();
+      map.put(
+          "$realQty",
+          realQtyMap
+              .getOrDefault(productId, BigDecimal.ZERO)
+              .setScale(scale, RoundingMode.HALF_UP));
+      map.put(
+          "$futureQty",
+          futureQtyMap
+              .getOrDefault(productId, BigDecimal.ZERO)
+              .setScale(scale, RoundingMode.HALF_UP));
+      indicatorsByProductId.put(productId, map);
+    }
+
+    return indicatorsByProductId;
+  }
+
+  /**
+   * Sum current and future quantities of the stock location lines of the given products, grouped by
+   * product and unit. When no stock location is given, the lines of every non virtual stock
+   * location (of the company if given) are used.
+   *
+   * @return rows of [product id, unit id, sum of current qty, sum of future qty]
+   */
+  @SuppressWarnings("unchecked")
+  protected List<Object[]> fetchGroupedStockLocationLineQties(
+      List<Long> productIdList, Long companyId, Long locationId) {
+    StringBuilder queryStr =
+        new StringBuilder(
+            "SELECT self.product.id, unit.id, SUM(self.currentQty), SUM(self.futureQty) "
+                + "FROM StockLocationLine self "
+                + "LEFT JOIN self.unit unit "
+                + "WHERE self.product.id IN (:productIdList)");
+
+    boolean hasLocation = locationId != null && locationId != 0L;
+    boolean hasCompany = companyId != null && companyId != 0L;
+    if (hasLocation) {
+      queryStr.append(" AND self.stockLocation.id = :locationId");
+    } else {
+      queryStr.append(" AND self.stockLocation.typeSelect != :stockLocationTypSelect");
+      if (hasCompany) {
+        queryStr.append(" AND self.stockLocation.company.id = :companyId");
+      }
+    }
+    queryStr.append(" GROUP BY self.product.id, unit.id");
+
+    Query query = JPA.em().createQuery(queryStr.toString());
+    query.setParameter("productIdList", productIdList);
+    if (hasLocation) {
+      query.setParameter("locationId", locationId);
+    } else {
+      query.setParameter("stockLocationTypSelect", StockLocationRepository.TYPE_VIRTUAL);
+      if (hasCompany) {
+        query.setParameter("companyId", companyId);
+      }
+    }
+    return query.getResultList();
+  }
+
   public List<Long> getBadStockLocationLineId() {
 
     List<StockLocationLine> stockLocationLineList =
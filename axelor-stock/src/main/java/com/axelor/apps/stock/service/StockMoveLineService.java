@@ -149,6 +149,30 @@ public interface StockMoveLineService {
       boolean generateOrder)
       throws AxelorException;
 
+  /**
+   * Defer the stock location updates of the stock move lines sent to a virtual stock location
+   * (deliveries, consumptions...) on realization: instead of updating the stock location lines,
+   * their history and the weighted average price line by line, quantities are summed per stock
+   * location, product and tracking number across the stock moves until {@link
+   * #applyDeferredLocationUpdates()} is called. The deferred updates belong to the current thread:
+   * {@link #discardDeferredLocationUpdates()} must be called once they are applied or abandoned.
+   *
+   * @throws IllegalStateException if the updates are already deferred in the current thread.
+   */
+  void deferLocationUpdates();
+
+  /**
+   * Apply the updates deferred since {@link #deferLocationUpdates()}: one update per stock location
+   * line, then one history entry per stock move line with the date and origin of its stock move, in
+   * the realization order, then one weighted average price computation per product.
+   *
+   * @throws AxelorException if a stock location line can not be updated
+   */
+  void applyDeferredLocationUpdates() throws AxelorException;
+
+  /** Stop deferring stock location updates, and forget those which were not applied. */
+  void discardDeferredLocationUpdates();
+
   public void updateAveragePriceAndLocationLineHistory(
       StockLocation stockLocation,
       StockMoveLine stockMoveLine,
@@ -35,6 +35,7 @@ import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.apps.stock.db.CustomsCodeNomenclature;
 import com.axelor.apps.stock.db.LogisticalForm;
 import com.axelor.apps.stock.db.LogisticalFormLine;
+import com.axelor.apps.stock.db.StockConfig;
 import com.axelor.apps.stock.db.StockLocation;
 import com.axelor.apps.stock.db.StockLocationLine;
 import com.axelor.apps.stock.db.StockLocationLineHistory;
@@ -63,12 +64,16 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,6 +95,20 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
   protected ShippingCoefService shippingCoefService;
   protected StockLocationLineHistoryService stockLocationLineHistoryService;
 
+  /**
+   * Maximum number of lines a stock move line can be split into when generating lots, used when the
+   * stock config of the company does not set one.
+   */
+  protected static final int DEFAULT_MAX_TRACKING_NUMBER_SPLIT_COUNT = 100000;
+
+  /**
+   * Stock location updates deferred by {@link #deferLocationUpdates()}. They belong to the thread
+   * realizing the stock moves rather than to the service instance, which may be shared by the whole
+   * request.
+   */
+  protected static final ThreadLocal<DeferredLocationUpdates> DEFERRED_LOCATION_UPDATES =
+      new ThreadLocal<>();
+
   @Inject
   public StockMoveLineServiceImpl(
       TrackingNumberService trackingNumberService,
@@ -298,8 +317,6 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
       BigDecimal qtyByTracking)
       throws AxelorException {
 
-    int generateTrakingNumberCounter = 0;
-
     StockMove stockMove = stockMoveLine.getStockMove();
 
     if (qtyByTracking.compareTo(BigDecimal.ZERO) <= 0) {
@@ -307,38 +324,45 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
           TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
           I18n.get(StockExceptionMessage.STOCK_MOVE_QTY_BY_TRACKING));
     }
-    while (stockMoveLine.getQty().compareTo(qtyByTracking) > 0) {
-
-      BigDecimal minQty = stockMoveLine.getQty().min(qtyByTracking);
-
-      this.splitStockMoveLine(
-          stockMoveLine,
-          minQty,
-          trackingNumberService.getTrackingNumber(
-              product,
-              qtyByTracking,
-              stockMove.getCompany(),
-              stockMove.getEstimatedDate(),
-              stockMove.getOrigin()));
 
-      generateTrakingNumberCounter++;
+    // one new line by lot beyond the first one, the line itself keeps the last lot
+    BigDecimal lotCount = stockMoveLine.getQty().divide(qtyByTracking, 0, RoundingMode.CEILING);
+    int maxSplitCount = getMaxTrackingNumberSplitCount(stockMove.getCompany());
+    if (lotCount.compareTo(BigDecimal.valueOf(maxSplitCount)) > 0) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_INCONSISTENCY,
+          I18n.get(StockExceptionMessage.STOCK_MOVE_TOO_MANY_ITERATION));
+    }
+    int splitCount = Math.max(lotCount.intValue() - 1, 0);
+    int trackingNumberCount = splitCount + (stockMoveLine.getTrackingNumber() == null ? 1 : 0);
+    if (trackingNumberCount == 0) {
+      return;
+    }
 
-      if (generateTrakingNumberCounter == 1000) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_INCONSISTENCY,
-            I18n.get(StockExceptionMessage.STOCK_MOVE_TOO_MANY_ITERATION));
-      }
+    Iterator<TrackingNumber> trackingNumberIt =
+        trackingNumberService
+            .getTrackingNumbers(
+                product,
+                qtyByTracking,
+                stockMove.getCompany(),
+                stockMove.getEstimatedDate(),
+                stockMove.getOrigin(),
+                trackingNumberCount)
+            .iterator();
+    for (int i = 0; i < splitCount; i++) {
+      this.splitStockMoveLine(stockMoveLine, qtyByTracking, trackingNumberIt.next());
     }
     if (stockMoveLine.getTrackingNumber() == null) {
+      stockMoveLine.setTrackingNumber(trackingNumberIt.next());
+    }
+  }
 
-      stockMoveLine.setTrackingNumber(
-          trackingNumberService.getTrackingNumber(
-              product,
-              qtyByTracking,
-              stockMove.getCompany(),
-              stockMove.getEstimatedDate(),
-              stockMove.getOrigin()));
+  protected int getMaxTrackingNumberSplitCount(Company company) {
+    StockConfig stockConfig = company != null ? company.getStockConfig() : null;
+    if (stockConfig == null || stockConfig.getMaxTrackingNumberSplitCount() <= 0) {
+      return DEFAULT_MAX_TRACKING_NUMBER_SPLIT_COUNT;
     }
+    return stockConfig.getMaxTrackingNumberSplitCount();
   }
 
   @Override
@@ -520,6 +544,12 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
           qty = stockMoveLine.getQty();
         }
 
+        if (isLocationUpdateDeferred(stockMoveLine, fromStatus, toStatus)) {
+          deferLocationUpdate(
+              stockMoveLine, qty, fromStatus, toStatus, date, origin, generateOrder);
+          continue;
+        }
+
         this.updateLocations(
             stockMoveLine,
             stockMoveLine.getProduct(),
@@ -558,6 +588,199 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
     }
   }
 
+  @Override
+  public void deferLocationUpdates() {
+    if (DEFERRED_LOCATION_UPDATES.get() != null) {
+      throw new IllegalStateException("Stock location updates are already deferred");
+    }
+    DEFERRED_LOCATION_UPDATES.set(new DeferredLocationUpdates());
+  }
+
+  @Override
+  public void applyDeferredLocationUpdates() throws AxelorException {
+    DeferredLocationUpdates deferred = DEFERRED_LOCATION_UPDATES.get();
+    DEFERRED_LOCATION_UPDATES.remove();
+    if (deferred == null) {
+      return;
+    }
+
+    for (DeferredLocationUpdate update : deferred.updateMap.values()) {
+      boolean current = update.qty.signum() != 0;
+      if (!current && !update.future) {
+        continue;
+      }
+      // the last future stock move date is only set when moves are planned, never deferred
+      stockLocationLineService.updateLocation(
+          update.stockLocation,
+          update.product,
+          update.unit,
+          update.qty.abs(),
+          current,
+          update.future,
+          update.qty.signum() >= 0,
+          null,
+          update.trackingNumber,
+          update.generateOrder);
+    }
+
+    for (DeferredHistoryEntry entry : deferred.historyEntryList) {
+      StockMoveLine stockMoveLine = entry.stockMoveLine;
+      this.updateStockLocationLineHistory(
+          stockMoveLine.getFromStockLocation(),
+          stockMoveLine,
+          entry.date,
+          entry.origin,
+          entry.toStatus);
+    }
+
+    for (Product product : deferred.productSet) {
+      weightedAveragePriceService.computeAvgPriceForProduct(product);
+    }
+  }
+
+  @Override
+  public void discardDeferredLocationUpdates() {
+    DEFERRED_LOCATION_UPDATES.remove();
+  }
+
+  /**
+   * Only the updates done by a realization are deferred, and only when the destination is a virtual
+   * stock location: the average price of the destination is then never computed from the quantities
+   * being deferred.
+   */
+  protected boolean isLocationUpdateDeferred(
+      StockMoveLine stockMoveLine, int fromStatus, int toStatus) {
+    return DEFERRED_LOCATION_UPDATES.get() != null
+        && (toStatus == StockMoveRepository.STATUS_REALIZED
+            || (fromStatus == StockMoveRepository.STATUS_PLANNED
+                && toStatus == StockMoveRepository.STATUS_CANCELED))
+        && stockMoveLine.getFromStockLocation().getTypeSelect()
+            != StockLocationRepository.TYPE_VIRTUAL
+        && stockMoveLine.getToStockLocation().getTypeSelect()
+            == StockLocationRepository.TYPE_VIRTUAL;
+  }
+
+  protected void deferLocationUpdate(
+      StockMoveLine stockMoveLine,
+      BigDecimal qty,
+      int fromStatus,
+      int toStatus,
+      LocalDate date,
+      String origin,
+      boolean generateOrder)
+      throws AxelorException {
+    DeferredLocationUpdates deferredLocationUpdates = DEFERRED_LOCATION_UPDATES.get();
+
+    // the current quantity leaves the source and reaches the destination once realized
+    BigDecimal realizedQty = BigDecimal.ZERO;
+    if (fromStatus == StockMoveRepository.STATUS_REALIZED) {
+      realizedQty = realizedQty.subtract(qty);
+    }
+    if (toStatus == StockMoveRepository.STATUS_REALIZED) {
+      realizedQty = realizedQty.add(qty);
+    }
+    boolean future =
+        fromStatus == StockMoveRepository.STATUS_PLANNED
+            || fromStatus == StockMoveRepository.STATUS_REALIZED
+            || toStatus == StockMoveRepository.STATUS_PLANNED
+            || toStatus == StockMoveRepository.STATUS_REALIZED;
+
+    deferLocationUpdate(
+        deferredLocationUpdates,
+        stockMoveLine,
+        stockMoveLine.getFromStockLocation(),
+        realizedQty.negate(),
+        future,
+        generateOrder);
+    deferLocationUpdate(
+        deferredLocationUpdates,
+        stockMoveLine,
+        stockMoveLine.getToStockLocation(),
+        realizedQty,
+        future,
+        generateOrder);
+
+    if (toStatus == StockMoveRepository.STATUS_REALIZED) {
+      deferredLocationUpdates.historyEntryList.add(
+          new DeferredHistoryEntry(stockMoveLine, toStatus, date, origin));
+      deferredLocationUpdates.productSet.add(stockMoveLine.getProduct());
+    }
+  }
+
+  /**
+   * Add the quantity of a stock move line to the update of a stock location line, which is applied
+   * once for all the stock moves of the realization.
+   */
+  protected void deferLocationUpdate(
+      DeferredLocationUpdates deferredLocationUpdates,
+      StockMoveLine stockMoveLine,
+      StockLocation stockLocation,
+      BigDecimal qty,
+      boolean future,
+      boolean generateOrder)
+      throws AxelorException {
+    Product product = stockMoveLine.getProduct();
+    TrackingNumber trackingNumber = stockMoveLine.getTrackingNumber();
+    DeferredLocationUpdate update =
+        deferredLocationUpdates.updateMap.computeIfAbsent(
+            Arrays.asList(stockLocation, product, trackingNumber),
+            k ->
+                new DeferredLocationUpdate(
+                    stockLocation, product, trackingNumber, stockMoveLine.getUnit()));
+
+    Unit unit = stockMoveLine.getUnit();
+    if (unit != null && update.unit != null && !unit.equals(update.unit)) {
+      qty = unitConversionService.convert(unit, update.unit, qty, qty.scale(), product);
+    }
+    update.qty = update.qty.add(qty);
+    update.future |= future;
+    update.generateOrder |= generateOrder;
+  }
+
+  protected static class DeferredLocationUpdates {
+    /** Updates per stock location, product and tracking number. */
+    protected final Map<List<Object>, DeferredLocationUpdate> updateMap = new LinkedHashMap<>();
+    /** History entries per stock move line, with the date and origin of its stock move. */
+    protected final List<DeferredHistoryEntry> historyEntryList = new ArrayList<>();
+
+    protected final Set<Product> productSet = new LinkedHashSet<>();
+  }
+
+  protected static class DeferredLocationUpdate {
+    protected final StockLocation stockLocation;
+    protected final Product product;
+    protected final TrackingNumber trackingNumber;
+    protected final Unit unit;
+    /** Quantity added to the current quantity, negative when it is removed. */
+    protected BigDecimal qty = BigDecimal.ZERO;
+
+    protected boolean future;
+    protected boolean generateOrder;
+
+    protected DeferredLocationUpdate(
+        StockLocation stockLocation, Product product, TrackingNumber trackingNumber, Unit unit) {
+      this.stockLocation = stockLocation;
+      this.product = product;
+      this.trackingNumber = trackingNumber;
+      this.unit = unit;
+    }
+  }
+
+  protected static class DeferredHistoryEntry {
+    protected final StockMoveLine stockMoveLine;
+    protected final int toStatus;
+    protected final LocalDate date;
+    protected final String origin;
+
+    protected DeferredHistoryEntry(
+        StockMoveLine stockMoveLine, int toStatus, LocalDate date, String origin) {
+      this.stockMoveLine = stockMoveLine;
+      this.toStatus = toStatus;
+      this.date = date;
+      this.origin = origin;
+    }
+  }
+
   @Override
   public void updateAveragePriceAndLocationLineHistory(
       StockLocation stockLocation,
@@ -1279,6 +1502,12 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
     //      draft = false;
     //    }
     BigDecimal totalSplitQty = BigDecimal.ZERO;
+    Map<String, TrackingNumber> trackingNumberMap =
+        trackingNumberService.findTrackingNumbers(
+            stockMoveLine.getProduct(),
+            trackingNumbers.stream()
+                .map(trackingNumberItem -> trackingNumberItem.get("trackingNumberSeq").toString())
+                .collect(Collectors.toList()));
     for (LinkedHashMap<String, Object> trackingNumberItem : trackingNumbers) {
       BigDecimal counter = new BigDecimal(trackingNumberItem.get("counter").toString());
       if (counter.compareTo(BigDecimal.ZERO) == 0) {
@@ -1287,13 +1516,7 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
       totalSplitQty = totalSplitQty.add(counter);
 
       TrackingNumber trackingNumber =
-          trackingNumberRepo
-              .all()
-              .filter(
-                  "self.product.id = ?1 and self.trackingNumberSeq = ?2",
-                  stockMoveLine.getProduct(),
-                  trackingNumberItem.get("trackingNumberSeq").toString())
-              .fetchOne();
+          trackingNumberMap.get(trackingNumberItem.get("trackingNumberSeq").toString());
 
       if (trackingNumber == null) {
         trackingNumber = new TrackingNumber();
@@ -1317,6 +1540,7 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
           trackingNumber.setSerialNumber(trackingNumberItem.get("serialNbr").toString());
         }
         trackingNumber.setProduct(stockMoveLine.getProduct());
+        trackingNumberMap.put(trackingNumber.getTrackingNumberSeq(), trackingNumber);
 
         if (stockMoveLine.getProduct() != null) {
           // In case of barcode generation, retrieve the one set on tracking number configuration
@@ -121,6 +121,18 @@ public interface StockMoveService {
 
   public String realize(StockMove stockMove, boolean check) throws AxelorException;
 
+  /**
+   * Realize the given planned stock moves in a single transaction. Every stock move is checked and
+   * realized as by {@link #realize(StockMove)}, but the stock location updates of lines sent to a
+   * virtual location are grouped per stock location line and the weighted average prices are
+   * computed once per product, after all the stock moves are realized.
+   *
+   * @param stockMoveList the stock moves to realize
+   * @throws AxelorException if one of the stock moves can not be realized, in which case none of
+   *     them is.
+   */
+  void realizeAll(List<StockMove> stockMoveList) throws AxelorException;
+
   public boolean mustBeSplit(List<StockMoveLine> stockMoveLineList);
 
   public Optional<StockMove> copyAndSplitStockMove(StockMove stockMove) throws AxelorException;
@@ -335,6 +335,7 @@ public class StockMoveServiceImpl implements StockMoveService {
   @Override
   public void plan(StockMove stockMove) throws AxelorException {
     planStockMove(stockMove);
+    Beans.get(StockIndicatorCacheService.class).invalidate(stockMove);
     if (stockMove.getTypeSelect() == StockMoveRepository.TYPE_OUTGOING
         && stockMove.getPlannedStockMoveAutomaticMail() != null
         && stockMove.getPlannedStockMoveAutomaticMail()) {
@@ -441,14 +442,41 @@ public class StockMoveServiceImpl implements StockMoveService {
   public String realize(StockMove stockMove, boolean checkOngoingInventoryFlag)
       throws AxelorException {
     String newStockSeq = realizeStockMove(stockMove, checkOngoingInventoryFlag);
+    afterRealization(stockMove);
+
+    return newStockSeq;
+  }
+
+  @Override
+  public void realizeAll(List<StockMove> stockMoveList) throws AxelorException {
+    realizeStockMoves(stockMoveList);
+    for (StockMove stockMove : stockMoveList) {
+      afterRealization(stockMove);
+    }
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected void realizeStockMoves(List<StockMove> stockMoveList) throws AxelorException {
+    stockMoveLineService.deferLocationUpdates();
+    try {
+      for (StockMove stockMove : stockMoveList) {
+        realizeStockMove(stockMove, true);
+      }
+      stockMoveLineService.applyDeferredLocationUpdates();
+    } finally {
+      stockMoveLineService.discardDeferredLocationUpdates();
+    }
+  }
+
+  /** Actions done once the realization of the stock move is committed. */
+  protected void afterRealization(StockMove stockMove) throws AxelorException {
+    Beans.get(StockIndicatorCacheService.class).invalidate(stockMove);
 
     if (stockMove.getTypeSelect() == StockMoveRepository.TYPE_OUTGOING
         && stockMove.getRealStockMoveAutomaticMail() != null
         && stockMove.getRealStockMoveAutomaticMail()) {
       sendMailForStockMove(stockMove, stockMove.getRealStockMoveMessageTemplate());
     }
-
-    return newStockSeq;
   }
 
   @Transactional(rollbackOn = {Exception.class})
@@ -932,6 +960,7 @@ public class StockMoveServiceImpl implements StockMoveService {
         && initialStatus == StockMoveRepository.STATUS_REALIZED) {
       partnerProductQualityRatingService.undoCalculation(stockMove);
     }
+    Beans.get(StockIndicatorCacheService.class).invalidate(stockMove);
   }
 
   /**
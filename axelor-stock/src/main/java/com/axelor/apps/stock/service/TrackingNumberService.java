@@ -24,6 +24,7 @@ import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.Sequence;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.administration.SequenceService;
+import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.stock.db.TrackingNumber;
 import com.axelor.apps.stock.db.TrackingNumberConfiguration;
 import com.axelor.apps.stock.db.repo.TrackingNumberConfigurationRepository;
@@ -33,19 +34,32 @@ import com.axelor.apps.stock.service.app.AppStockService;
 import com.axelor.i18n.I18n;
 import com.axelor.studio.db.AppStock;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class TrackingNumberService {
 
+  /** Maximum number of sequences of a tracking number lookup query. */
+  protected static final int FETCH_LIMIT = 1000;
+
   @Inject private SequenceService sequenceService;
 
   @Inject private TrackingNumberRepository trackingNumberRepo;
 
   @Inject private AppStockService appStockService;
 
+  @Inject private AppBaseService appBaseService;
+
   @Transactional(rollbackOn = {Exception.class})
   public TrackingNumber getTrackingNumber(
       Product product, BigDecimal sizeOfLot, Company company, LocalDate date, String origin)
@@ -89,6 +103,57 @@ public class TrackingNumberService {
 
   public TrackingNumber createTrackingNumber(
       Product product, Company company, LocalDate date, String origin) throws AxelorException {
+    checkTrackingNumberCreation(product, company, date, origin);
+
+    Sequence sequence = product.getTrackingNumberConfiguration().getSequence();
+    String seq;
+    while (true) {
+      seq = sequenceService.getSequenceNumber(sequence, TrackingNumber.class, "trackingNumberSeq");
+      if (trackingNumberRepo
+              .all()
+              .filter("self.product = ?1 AND self.trackingNumberSeq = ?2", product, seq)
+              .count()
+          == 0) {
+        break;
+      }
+    }
+
+    return this.createTrackingNumber(product, date, seq, appStockService.getAppStock());
+  }
+
+  /**
+   * Create the given number of tracking numbers for a product. Their sequences are allocated by
+   * blocks, sequences already used by a tracking number of the product are skipped.
+   */
+  public List<TrackingNumber> createTrackingNumbers(
+      Product product, Company company, LocalDate date, String origin, int count)
+      throws AxelorException {
+    checkTrackingNumberCreation(product, company, date, origin);
+
+    Sequence sequence = product.getTrackingNumberConfiguration().getSequence();
+    LocalDate sequenceDate = appBaseService.getTodayDate(sequence.getCompany());
+    AppStock appStock = appStockService.getAppStock();
+    List<TrackingNumber> trackingNumberList = new ArrayList<>(count);
+    while (trackingNumberList.size() < count) {
+      List<String> seqList =
+          sequenceService.getSequenceNumbers(
+              sequence,
+              sequenceDate,
+              count - trackingNumberList.size(),
+              TrackingNumber.class,
+              "trackingNumberSeq");
+      Set<String> existingSeqSet = findTrackingNumbers(product, seqList).keySet();
+      for (String seq : seqList) {
+        if (!existingSeqSet.contains(seq)) {
+          trackingNumberList.add(this.createTrackingNumber(product, date, seq, appStock));
+        }
+      }
+    }
+    return trackingNumberList;
+  }
+
+  protected void checkTrackingNumberCreation(
+      Product product, Company company, LocalDate date, String origin) throws AxelorException {
     Preconditions.checkNotNull(product, I18n.get("Product cannot be null."));
     Preconditions.checkNotNull(company, I18n.get("Company cannot be null."));
     if (date == null) {
@@ -100,6 +165,18 @@ public class TrackingNumberService {
           origin);
     }
 
+    if (product.getTrackingNumberConfiguration().getSequence() == null) {
+      throw new AxelorException(
+          product,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(StockExceptionMessage.TRACKING_NUMBER_1),
+          company.getName(),
+          product.getCode());
+    }
+  }
+
+  protected TrackingNumber createTrackingNumber(
+      Product product, LocalDate date, String seq, AppStock appStock) {
     TrackingNumber trackingNumber = new TrackingNumber();
 
     if (product.getIsPerishable()) {
@@ -112,35 +189,12 @@ public class TrackingNumberService {
 
     trackingNumber.setProduct(product);
     trackingNumber.setCounter(BigDecimal.ZERO);
+    trackingNumber.setTrackingNumberSeq(seq);
 
     TrackingNumberConfiguration trackingNumberConfiguration =
         product.getTrackingNumberConfiguration();
 
-    if (trackingNumberConfiguration.getSequence() == null) {
-      throw new AxelorException(
-          product,
-          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-          I18n.get(StockExceptionMessage.TRACKING_NUMBER_1),
-          company.getName(),
-          product.getCode());
-    }
-
-    Sequence sequence = trackingNumberConfiguration.getSequence();
-    String seq;
-    while (true) {
-      seq = sequenceService.getSequenceNumber(sequence, TrackingNumber.class, "trackingNumberSeq");
-      if (trackingNumberRepo
-              .all()
-              .filter("self.product = ?1 AND self.trackingNumberSeq = ?2", product, seq)
-              .count()
-          == 0) {
-        break;
-      }
-    }
-    trackingNumber.setTrackingNumberSeq(seq);
-
     // In case of barcode generation, retrieve the one set on tracking number configuration
-    AppStock appStock = appStockService.getAppStock();
     if (appStock != null && appStock.getActivateTrackingNumberBarCodeGeneration()) {
       if (appStock.getEditTrackingNumberBarcodeType()) {
         trackingNumber.setBarcodeTypeConfig(trackingNumberConfiguration.getBarcodeTypeConfig());
@@ -155,6 +209,29 @@ public class TrackingNumberService {
     return trackingNumber;
   }
 
+  /**
+   * Find the tracking numbers of a product by sequence, with one query per chunk of sequences.
+   *
+   * @return the tracking numbers found, by sequence.
+   */
+  public Map<String, TrackingNumber> findTrackingNumbers(
+      Product product, Collection<String> trackingNumberSeqs) {
+    Map<String, TrackingNumber> trackingNumberMap = new HashMap<>();
+    for (List<String> seqList :
+        Iterables.partition(new LinkedHashSet<>(trackingNumberSeqs), FETCH_LIMIT)) {
+      trackingNumberRepo
+          .all()
+          .filter("self.product = :product AND self.trackingNumberSeq IN (:seqList)")
+          .bind("product", product)
+          .bind("seqList", seqList)
+          .fetch()
+          .forEach(
+              trackingNumber ->
+                  trackingNumberMap.put(trackingNumber.getTrackingNumberSeq(), trackingNumber));
+    }
+    return trackingNumberMap;
+  }
+
   @Transactional(rollbackOn = {Exception.class})
   public TrackingNumber generateTrackingNumber(
       Product product, Company company, LocalDate date, String origin, String notes)
@@ -166,4 +243,63 @@ public class TrackingNumberService {
     trackingNumberRepo.save(trackingNumber);
     return trackingNumber;
   }
+
+  /**
+   * Generate the given number of tracking numbers for a product and save them in the same
+   * transaction.
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  public List<TrackingNumber> generateTrackingNumbers(
+      Product product, Company company, LocalDate date, String origin, String notes, int count)
+      throws AxelorException {
+
+    List<TrackingNumber> trackingNumberList =
+        this.createTrackingNumbers(product, company, date, origin, count);
+    for (TrackingNumber trackingNumber : trackingNumberList) {
+      trackingNumber.setOrigin(origin);
+      trackingNumber.setNote(notes);
+      trackingNumberRepo.save(trackingNumber);
+    }
+    return trackingNumberList;
+  }
+
+  /**
+   * Bulk version of {@link #getTrackingNumber(Product, BigDecimal, Company, LocalDate, String)}:
+   * get the given number of tracking numbers of a product with room for a lot, reusing the ones not
+   * full yet before creating new ones.
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  public List<TrackingNumber> getTrackingNumbers(
+      Product product,
+      BigDecimal sizeOfLot,
+      Company company,
+      LocalDate date,
+      String origin,
+      int count)
+      throws AxelorException {
+
+    List<TrackingNumber> trackingNumberList = new ArrayList<>(count);
+    if (count <= 0) {
+      return trackingNumberList;
+    }
+    trackingNumberList.addAll(
+        trackingNumberRepo
+            .all()
+            .filter("self.product = ?1 AND self.counter < ?2", product, sizeOfLot)
+            .order("id")
+            .fetch(count));
+
+    if (trackingNumberList.size() < count) {
+      for (TrackingNumber trackingNumber :
+          this.createTrackingNumbers(
+              product, company, date, origin, count - trackingNumberList.size())) {
+        trackingNumberList.add(trackingNumberRepo.save(trackingNumber));
+      }
+    }
+
+    for (TrackingNumber trackingNumber : trackingNumberList) {
+      trackingNumber.setCounter(trackingNumber.getCounter().add(sizeOfLot));
+    }
+    return trackingNumberList;
+  }
 }
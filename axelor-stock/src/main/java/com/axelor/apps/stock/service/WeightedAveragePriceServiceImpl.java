@@ -26,15 +26,12 @@ import com.axelor.apps.base.db.repo.ProductRepository;
 import com.axelor.apps.base.service.ProductCompanyService;
 import com.axelor.apps.base.service.ProductService;
 import com.axelor.apps.base.service.app.AppBaseService;
-import com.axelor.apps.stock.db.repo.StockLocationRepository;
-import com.axelor.db.JPA;
 import com.axelor.inject.Beans;
 import com.axelor.meta.db.MetaField;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import com.google.inject.servlet.RequestScoped;
 import java.math.BigDecimal;
-import java.util.List;
 import java.util.Set;
 
 @RequestScoped
@@ -43,15 +40,18 @@ public class WeightedAveragePriceServiceImpl implements WeightedAveragePriceServ
   protected ProductRepository productRepo;
   protected AppBaseService appBaseService;
   protected ProductCompanyService productCompanyService;
+  protected ProductStockValueService productStockValueService;
 
   @Inject
   public WeightedAveragePriceServiceImpl(
       ProductRepository productRepo,
       AppBaseService appBaseService,
-      ProductCompanyService productCompanyService) {
+      ProductCompanyService productCompanyService,
+      ProductStockValueService productStockValueService) {
     this.productRepo = productRepo;
     this.appBaseService = appBaseService;
     this.productCompanyService = productCompanyService;
+    this.productStockValueService = productStockValueService;
   }
 
   @Override
@@ -106,35 +106,6 @@ public class WeightedAveragePriceServiceImpl implements WeightedAveragePriceServ
 
   @Override
   public BigDecimal computeAvgPriceForCompany(Product product, Company company) {
-    Long productId = product.getId();
-    String query =
-        "SELECT new list(self.id, self.avgPrice, self.currentQty) FROM StockLocationLine as self "
-            + "WHERE self.product.id = "
-            + productId
-            + " AND self.stockLocation.typeSelect != "
-            + StockLocationRepository.TYPE_VIRTUAL;
-
-    if (company != null) {
-      query += " AND self.stockLocation.company = " + company.getId();
-    }
-
-    int scale = appBaseService.getNbDecimalDigitForUnitPrice();
-    BigDecimal productAvgPrice = BigDecimal.ZERO;
-    BigDecimal qtyTot = BigDecimal.ZERO;
-    List<List<Object>> results = JPA.em().createQuery(query).getResultList();
-    if (results.isEmpty()) {
-      return BigDecimal.ZERO;
-    }
-    for (List<Object> result : results) {
-      BigDecimal avgPrice = (BigDecimal) result.get(1);
-      BigDecimal qty = (BigDecimal) result.get(2);
-      productAvgPrice = productAvgPrice.add(avgPrice.multiply(qty));
-      qtyTot = qtyTot.add(qty);
-    }
-    if (qtyTot.compareTo(BigDecimal.ZERO) == 0) {
-      return BigDecimal.ZERO;
-    }
-    productAvgPrice = productAvgPrice.divide(qtyTot, scale, BigDecimal.ROUND_HALF_UP);
-    return productAvgPrice;
+    return productStockValueService.computeAvgPrice(product, company);
   }
 }
@@ -0,0 +1,152 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service.batch;
+
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.repo.BatchRepository;
+import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
+import com.axelor.apps.base.exceptions.BaseExceptionMessage;
+import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.apps.stock.db.StockBatch;
+import com.axelor.apps.stock.db.StockMove;
+import com.axelor.apps.stock.db.repo.StockMoveRepository;
+import com.axelor.apps.stock.exception.StockExceptionMessage;
+import com.axelor.apps.stock.service.StockMoveService;
+import com.axelor.db.JPA;
+import com.axelor.db.Query;
+import com.axelor.i18n.I18n;
+import com.google.inject.Inject;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Realize the planned deliveries whose estimated date is reached. Stock moves are realized by
+ * chunks with {@link StockMoveService#realizeAll(List)}; when a stock move of a chunk can not be
+ * realized, the chunk is realized again one stock move at a time so only the faulty ones are
+ * reported as anomalies.
+ */
+public class BatchRealizeStockMoves extends AbstractBatch {
+
+  /** Number of stock moves realized in the same transaction. */
+  protected static final int STOCK_MOVE_CHUNK_SIZE = 100;
+
+  protected StockMoveRepository stockMoveRepository;
+  protected StockMoveService stockMoveService;
+
+  @Inject
+  public BatchRealizeStockMoves(
+      StockMoveRepository stockMoveRepository, StockMoveService stockMoveService) {
+    this.stockMoveRepository = stockMoveRepository;
+    this.stockMoveService = stockMoveService;
+  }
+
+  @Override
+  protected void process() {
+    Query<StockMove> stockMoveQuery = getStockMoveQuery(batch.getStockBatch());
+
+    long lastId = 0L;
+    List<Long> stockMoveIdList;
+    while (!(stockMoveIdList = fetchStockMoveIdList(stockMoveQuery, lastId)).isEmpty()) {
+      lastId = stockMoveIdList.get(stockMoveIdList.size() - 1);
+      try {
+        stockMoveService.realizeAll(
+            stockMoveRepository
+                .all()
+                .filter("self.id IN (:stockMoveIds)")
+                .bind("stockMoveIds", stockMoveIdList)
+                .order("id")
+                .fetch());
+        for (int i = 0; i < stockMoveIdList.size(); i++) {
+          incrementDone();
+        }
+      } catch (Exception e) {
+        // the whole chunk was rolled back, realize stock moves one by one to isolate anomalies
+        JPA.clear();
+        for (Long stockMoveId : stockMoveIdList) {
+          realize(stockMoveId);
+        }
+      }
+      JPA.clear();
+    }
+  }
+
+  protected void realize(Long stockMoveId) {
+    try {
+      stockMoveService.realize(stockMoveRepository.find(stockMoveId));
+      incrementDone();
+    } catch (Exception e) {
+      incrementAnomaly();
+      TraceBackService.trace(e, ExceptionOriginRepository.REALIZE_STOCK_MOVES, batch.getId());
+    } finally {
+      JPA.clear();
+    }
+  }
+
+  protected Query<StockMove> getStockMoveQuery(StockBatch stockBatch) {
+    Company company = stockBatch.getCompany();
+    StringBuilder filter =
+        new StringBuilder(
+            "self.statusSelect = :planned "
+                + "AND self.typeSelect = :outgoing "
+                + "AND self.estimatedDate <= :today "
+                + "AND self.id > :lastId");
+    if (company != null) {
+      filter.append(" AND self.company = :company");
+    }
+    Query<StockMove> stockMoveQuery =
+        stockMoveRepository
+            .all()
+            .filter(filter.toString())
+            .bind("planned", StockMoveRepository.STATUS_PLANNED)
+            .bind("outgoing", StockMoveRepository.TYPE_OUTGOING)
+            .bind("today", appBaseService.getTodayDate(company))
+            .order("id");
+    if (company != null) {
+      stockMoveQuery.bind("company", company);
+    }
+    return stockMoveQuery;
+  }
+
+  protected List<Long> fetchStockMoveIdList(Query<StockMove> stockMoveQuery, long lastId) {
+    return stockMoveQuery.bind("lastId", lastId).select("id").fetch(STOCK_MOVE_CHUNK_SIZE, 0)
+        .stream()
+        .map(map -> (Long) map.get("id"))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  protected void stop() {
+    String comment = I18n.get(StockExceptionMessage.BATCH_REALIZE_STOCK_MOVES_1) + " ";
+    comment +=
+        String.format(
+            "\t* %s " + I18n.get(StockExceptionMessage.BATCH_REALIZE_STOCK_MOVES_2) + "\n",
+            batch.getDone());
+    comment +=
+        String.format("\t" + I18n.get(BaseExceptionMessage.BASE_BATCH_3), batch.getAnomaly());
+
+    super.stop();
+    addComment(comment);
+  }
+
+  @Override
+  protected void setBatchTypeSelect() {
+    this.batch.setBatchTypeSelect(BatchRepository.BATCH_TYPE_STOCK_BATCH);
+  }
+}
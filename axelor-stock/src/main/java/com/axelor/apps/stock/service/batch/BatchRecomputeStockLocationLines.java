@@ -28,6 +28,7 @@ import com.axelor.apps.stock.db.StockMoveLine;
 import com.axelor.apps.stock.db.repo.StockLocationRepository;
 import com.axelor.apps.stock.db.repo.StockMoveLineRepository;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
+import com.axelor.apps.stock.service.ProductStockValueService;
 import com.axelor.apps.stock.service.StockMoveLineService;
 import com.axelor.apps.stock.service.StockMoveService;
 import com.axelor.apps.stock.service.batch.model.StockMoveGroup;
@@ -35,6 +36,7 @@ import com.axelor.apps.stock.service.batch.model.StockMoveLineOrigin;
 import com.axelor.apps.stock.service.batch.model.TrackProduct;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
+import com.axelor.inject.Beans;
 import com.google.inject.Inject;
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -120,7 +122,12 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
                     + " current_qty = 0, "
                     + " future_qty = 0 ");
 
-    JPA.runInTransaction(clearWapHistoryLinesQuery::executeUpdate);
+    JPA.runInTransaction(
+        () -> {
+          clearWapHistoryLinesQuery.executeUpdate();
+          // the lines are reset without their listener: aggregates are rebuilt on the next change
+          Beans.get(ProductStockValueService.class).resetAllStockValues();
+        });
   }
 
   protected void updatePlannedQty(StockMoveGroup stockMoveGroup) throws AxelorException {
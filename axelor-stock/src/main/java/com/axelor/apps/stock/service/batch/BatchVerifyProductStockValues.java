@@ -0,0 +1,189 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service.batch;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.repo.BatchRepository;
+import com.axelor.apps.base.db.repo.CompanyRepository;
+import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
+import com.axelor.apps.base.db.repo.ProductRepository;
+import com.axelor.apps.base.db.repo.TraceBackRepository;
+import com.axelor.apps.base.exceptions.BaseExceptionMessage;
+import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.apps.stock.exception.StockExceptionMessage;
+import com.axelor.apps.stock.service.ProductStockValueService;
+import com.axelor.db.JPA;
+import com.axelor.i18n.I18n;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Compare the stock value aggregates used to compute the weighted average price with a full
+ * recomputation from the stock location lines, and correct the aggregates that differ. Products
+ * without any aggregate are skipped, their aggregates are created on their next stock change.
+ */
+public class BatchVerifyProductStockValues extends AbstractBatch {
+
+  /** Number of products verified in the same transaction. */
+  protected static final int PRODUCT_CHUNK_SIZE = 500;
+
+  /** Scale of the stock value comparison, the products qty * price are rounded by the database. */
+  protected static final int STOCK_VALUE_SCALE = 10;
+
+  protected ProductRepository productRepository;
+  protected CompanyRepository companyRepository;
+  protected ProductStockValueService productStockValueService;
+
+  @Inject
+  public BatchVerifyProductStockValues(
+      ProductRepository productRepository,
+      CompanyRepository companyRepository,
+      ProductStockValueService productStockValueService) {
+    this.productRepository = productRepository;
+    this.companyRepository = companyRepository;
+    this.productStockValueService = productStockValueService;
+  }
+
+  @Override
+  protected void process() {
+    long lastId = 0L;
+    List<Long> productIdList;
+    while (!(productIdList = fetchProductIdList(lastId)).isEmpty()) {
+      lastId = productIdList.get(productIdList.size() - 1);
+      try {
+        verify(productIdList);
+      } catch (Exception e) {
+        incrementAnomaly();
+        TraceBackService.trace(e, ExceptionOriginRepository.VERIFY_STOCK_VALUES, batch.getId());
+      }
+      JPA.clear();
+    }
+  }
+
+  protected List<Long> fetchProductIdList(long lastId) {
+    return productRepository.all().filter("self.id > :lastId").bind("lastId", lastId).order("id")
+        .select("id").fetch(PRODUCT_CHUNK_SIZE, 0).stream()
+        .map(map -> (Long) map.get("id"))
+        .collect(Collectors.toList());
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected void verify(List<Long> productIdList) {
+    Map<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> computedStockValueMap =
+        productStockValueService.computeStockValues(productIdList);
+    Map<Pair<Long, Long>, Pair<BigDecimal, BigDecimal>> stockValueMap =
+        productStockValueService.getStockValues(productIdList);
+
+    Set<Pair<Long, Long>> keySet = new HashSet<>(stockValueMap.keySet());
+    keySet.addAll(computedStockValueMap.keySet());
+    Set<Long> verifiedProductIdSet =
+        stockValueMap.keySet().stream().map(Pair::getLeft).collect(Collectors.toSet());
+
+    for (Long productId : productIdList) {
+      if (!verifiedProductIdSet.contains(productId)) {
+        continue;
+      }
+      boolean anomaly = false;
+      for (Pair<Long, Long> key : keySet) {
+        if (key.getLeft().equals(productId)
+            && !verify(key, stockValueMap.get(key), computedStockValueMap.get(key))) {
+          anomaly = true;
+        }
+      }
+      if (anomaly) {
+        incrementAnomaly();
+      } else {
+        incrementDone();
+      }
+    }
+  }
+
+  /**
+   * Correct the aggregate if it differs from the computed stock value.
+   *
+   * @return true if the aggregate was right.
+   */
+  protected boolean verify(
+      Pair<Long, Long> key,
+      Pair<BigDecimal, BigDecimal> stockValue,
+      Pair<BigDecimal, BigDecimal> computedStockValue) {
+    BigDecimal qty = stockValue != null ? stockValue.getLeft() : BigDecimal.ZERO;
+    BigDecimal value = stockValue != null ? stockValue.getRight() : BigDecimal.ZERO;
+    BigDecimal computedQty =
+        computedStockValue != null && computedStockValue.getLeft() != null
+            ? computedStockValue.getLeft()
+            : BigDecimal.ZERO;
+    BigDecimal computedValue =
+        computedStockValue != null && computedStockValue.getRight() != null
+            ? computedStockValue.getRight()
+            : BigDecimal.ZERO;
+
+    if (qty.compareTo(computedQty) == 0
+        && value
+                .setScale(STOCK_VALUE_SCALE, RoundingMode.HALF_UP)
+                .compareTo(computedValue.setScale(STOCK_VALUE_SCALE, RoundingMode.HALF_UP))
+            == 0) {
+      return true;
+    }
+
+    productStockValueService.setStockValue(
+        key.getLeft(), key.getRight(), computedQty, computedValue);
+    TraceBackService.trace(
+        new AxelorException(
+            TraceBackRepository.CATEGORY_INCONSISTENCY,
+            I18n.get(StockExceptionMessage.BATCH_VERIFY_STOCK_VALUES_3),
+            productRepository.find(key.getLeft()).getCode(),
+            companyRepository.find(key.getRight()).getCode(),
+            value,
+            qty,
+            computedValue,
+            computedQty),
+        ExceptionOriginRepository.VERIFY_STOCK_VALUES,
+        batch.getId());
+    return false;
+  }
+
+  @Override
+  protected void stop() {
+    String comment = I18n.get(StockExceptionMessage.BATCH_VERIFY_STOCK_VALUES_1) + " ";
+    comment +=
+        String.format(
+            "\t* %s " + I18n.get(StockExceptionMessage.BATCH_VERIFY_STOCK_VALUES_2) + "\n",
+            batch.getDone());
+    comment +=
+        String.format("\t" + I18n.get(BaseExceptionMessage.BASE_BATCH_3), batch.getAnomaly());
+
+    super.stop();
+    addComment(comment);
+  }
+
+  @Override
+  protected void setBatchTypeSelect() {
+    this.batch.setBatchTypeSelect(BatchRepository.BATCH_TYPE_STOCK_BATCH);
+  }
+}
@@ -46,6 +46,12 @@ public class StockBatchService extends AbstractBatchService {
       case StockBatchRepository.ACTION_RECOMPUTE_STOCK_LOCATION_LINE:
         batch = recomputeStockLocationLines(stockBatch);
         break;
+      case StockBatchRepository.ACTION_REALIZE_STOCK_MOVES:
+        batch = realizeStockMoves(stockBatch);
+        break;
+      case StockBatchRepository.ACTION_VERIFY_STOCK_VALUES:
+        batch = verifyStockValues(stockBatch);
+        break;
       default:
         throw new AxelorException(
             TraceBackRepository.CATEGORY_INCONSISTENCY,
@@ -60,4 +66,14 @@ public class StockBatchService extends AbstractBatchService {
 
     return Beans.get(BatchRecomputeStockLocationLines.class).run(stockBatch);
   }
+
+  protected Batch realizeStockMoves(StockBatch stockBatch) {
+
+    return Beans.get(BatchRealizeStockMoves.class).run(stockBatch);
+  }
+
+  protected Batch verifyStockValues(StockBatch stockBatch) {
+
+    return Beans.get(BatchVerifyProductStockValues.class).run(stockBatch);
+  }
 }
@@ -20,6 +20,7 @@ package com.axelor.apps.stock.web;
 
 import com.axelor.apps.ReportFactory;
 import com.axelor.apps.base.ResponseMessageType;
+import com.axelor.apps.base.callable.ControllerCallableTool;
 import com.axelor.apps.base.service.administration.SequenceService;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.base.service.exception.TraceBackService;
@@ -30,20 +31,25 @@ import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.repo.InventoryRepository;
 import com.axelor.apps.stock.exception.StockExceptionMessage;
 import com.axelor.apps.stock.report.IReport;
+import com.axelor.apps.stock.service.InventoryImportService;
 import com.axelor.apps.stock.service.InventoryProductService;
 import com.axelor.apps.stock.service.InventoryService;
+import com.axelor.apps.stock.service.InventoryValidateCallableService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
+import com.axelor.meta.MetaFiles;
 import com.axelor.meta.db.MetaFile;
 import com.axelor.meta.schema.actions.ActionView;
 import com.axelor.meta.schema.actions.ActionView.ActionViewBuilder;
 import com.axelor.rpc.ActionRequest;
 import com.axelor.rpc.ActionResponse;
+import com.axelor.utils.StringHTMLListBuilder;
 import com.google.inject.Singleton;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import org.eclipse.birt.core.exception.BirtException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,6 +59,8 @@ public class InventoryController {
 
   private final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  protected static final int IMPORT_ERROR_DISPLAY_LIMIT = 15;
+
   /**
    * Fonction appeler par le bouton imprimer
    *
@@ -120,9 +128,32 @@ public class InventoryController {
           Beans.get(InventoryRepository.class)
               .find(request.getContext().asType(Inventory.class).getId());
 
-      Path filePath = Beans.get(InventoryService.class).importFile(inventory);
-      response.setInfo(
-          String.format(I18n.get(StockExceptionMessage.INVENTORY_8), filePath.toString()));
+      Path filePath = MetaFiles.getPath(inventory.getImportFile());
+      Map<Integer, String> errorMap = Beans.get(InventoryImportService.class).importFile(inventory);
+      if (errorMap.isEmpty()) {
+        response.setInfo(
+            String.format(I18n.get(StockExceptionMessage.INVENTORY_8), filePath.toString()));
+      } else {
+        StringHTMLListBuilder errorListBuilder = new StringHTMLListBuilder();
+        errorMap.entrySet().stream()
+            .limit(IMPORT_ERROR_DISPLAY_LIMIT)
+            .forEach(
+                entry ->
+                    errorListBuilder.append(
+                        String.format(
+                            I18n.get(StockExceptionMessage.INVENTORY_IMPORT_ROW_ERROR),
+                            entry.getKey(),
+                            entry.getValue())));
+        if (errorMap.size() > IMPORT_ERROR_DISPLAY_LIMIT) {
+          errorListBuilder.append("...");
+        }
+        response.setAlert(
+            String.format(
+                I18n.get(StockExceptionMessage.INVENTORY_IMPORT_ROW_ERRORS),
+                filePath.toString(),
+                errorMap.size(),
+                errorListBuilder));
+      }
 
       response.setReload(true);
     } catch (Exception e) {
@@ -167,7 +198,11 @@ public class InventoryController {
     try {
       Long id = request.getContext().asType(Inventory.class).getId();
       Inventory inventory = Beans.get(InventoryRepository.class).find(id);
-      Beans.get(InventoryService.class).validateInventory(inventory);
+      InventoryValidateCallableService inventoryValidateCallableService =
+          Beans.get(InventoryValidateCallableService.class);
+      inventoryValidateCallableService.setInventory(inventory);
+      ControllerCallableTool<Inventory> controllerCallableTool = new ControllerCallableTool<>();
+      controllerCallableTool.runInSeparateThread(inventoryValidateCallableService, response);
       response.setReload(true);
     } catch (Exception e) {
       TraceBackService.trace(response, e);
@@ -0,0 +1,122 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestStockIndicatorCacheService {
+
+  private TestCacheService cacheService;
+
+  private static class TestCacheService extends StockIndicatorCacheServiceImpl {
+
+    private final List<List<Long>> computedProductIdLists = new ArrayList<>();
+    private Runnable onCompute;
+
+    TestCacheService() {
+      super(60);
+    }
+
+    @Override
+    protected Map<Long, Map<String, Object>> computeStockIndicators(
+        List<Long> productIdList, Long companyId, Long locationId) {
+      computedProductIdLists.add(new ArrayList<>(productIdList));
+      if (onCompute != null) {
+        onCompute.run();
+      }
+      Map<Long, Map<String, Object>> indicatorsByProductId = new HashMap<>();
+      for (Long productId : productIdList) {
+        Map<String, Object> indicators = new HashMap<>();
+        indicators.put("realQty", BigDecimal.valueOf(productId));
+        indicators.put("companyId", companyId);
+        indicatorsByProductId.put(productId, indicators);
+      }
+      return indicatorsByProductId;
+    }
+  }
+
+  @Before
+  public void prepare() {
+    cacheService = new TestCacheService();
+  }
+
+  @Test
+  public void testOnlyMissingProductsAreComputed() throws Exception {
+    cacheService.getStockIndicators(Arrays.asList(1L, 2L), 1L, 0L);
+    Map<Long, Map<String, Object>> indicators =
+        cacheService.getStockIndicators(Arrays.asList(1L, 2L, 3L), 1L, 0L);
+
+    Assert.assertEquals(3, indicators.size());
+    Assert.assertEquals(2, cacheService.computedProductIdLists.size());
+    Assert.assertEquals(Collections.singletonList(3L), cacheService.computedProductIdLists.get(1));
+  }
+
+  @Test
+  public void testCompaniesAreCachedSeparately() throws Exception {
+    cacheService.getStockIndicators(Collections.singletonList(1L), 1L, 0L);
+    Map<Long, Map<String, Object>> indicators =
+        cacheService.getStockIndicators(Collections.singletonList(1L), 2L, 0L);
+
+    Assert.assertEquals(2, cacheService.computedProductIdLists.size());
+    Assert.assertEquals(2L, indicators.get(1L).get("companyId"));
+  }
+
+  @Test
+  public void testInvalidateOnlyGivenProducts() throws Exception {
+    cacheService.getStockIndicators(Arrays.asList(1L, 2L), 1L, 0L);
+    cacheService.getStockIndicators(Collections.singletonList(1L), 2L, 0L);
+
+    cacheService.invalidate(Collections.singletonList(1L));
+    cacheService.getStockIndicators(Arrays.asList(1L, 2L), 1L, 0L);
+    cacheService.getStockIndicators(Collections.singletonList(1L), 2L, 0L);
+
+    Assert.assertEquals(5, cacheService.computedProductIdLists.size());
+    Assert.assertEquals(Collections.singletonList(1L), cacheService.computedProductIdLists.get(3));
+    Assert.assertEquals(Collections.singletonList(1L), cacheService.computedProductIdLists.get(4));
+  }
+
+  @Test
+  public void testIndicatorsComputedDuringInvalidationAreNotCached() throws Exception {
+    cacheService.onCompute = () -> cacheService.invalidate(Collections.singletonList(1L));
+    cacheService.getStockIndicators(Collections.singletonList(1L), 1L, 0L);
+
+    cacheService.onCompute = null;
+    cacheService.getStockIndicators(Collections.singletonList(1L), 1L, 0L);
+
+    Assert.assertEquals(2, cacheService.computedProductIdLists.size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testCachedIndicatorsAreUnmodifiable() throws Exception {
+    cacheService.getStockIndicators(Collections.singletonList(1L), 1L, 0L);
+    cacheService
+        .getStockIndicators(Collections.singletonList(1L), 1L, 0L)
+        .get(1L)
+        .put("realQty", BigDecimal.ZERO);
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.repo.ProductRepository;
+import com.axelor.apps.stock.db.StockConfig;
+import com.axelor.apps.stock.db.StockMove;
+import com.axelor.apps.stock.db.StockMoveLine;
+import com.axelor.apps.stock.db.TrackingNumber;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+public class TestStockMoveLineService {
+
+  private static final int SERIAL_COUNT = 5000;
+
+  private TrackingNumberService trackingNumberService;
+  private StockMoveLineService stockMoveLineService;
+
+  private Company company;
+  private Product product;
+  private StockMove stockMove;
+  private StockMoveLine stockMoveLine;
+
+  @Before
+  public void prepare() throws AxelorException {
+    trackingNumberService = Mockito.mock(TrackingNumberService.class);
+    stockMoveLineService =
+        new StockMoveLineServiceImpl(
+            trackingNumberService,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null);
+
+    company = new Company();
+    product = new Product();
+    product.setProductTypeSelect(ProductRepository.PRODUCT_TYPE_SERVICE);
+
+    stockMove = new StockMove();
+    stockMove.setCompany(company);
+    stockMove.setEstimatedDate(LocalDate.of(2024, 1, 1));
+    stockMoveLine = new StockMoveLine();
+    stockMoveLine.setProduct(product);
+    stockMoveLine.setQty(BigDecimal.valueOf(SERIAL_COUNT));
+    stockMoveLine.setRealQty(BigDecimal.valueOf(SERIAL_COUNT));
+    stockMove.addStockMoveLineListItem(stockMoveLine);
+
+    List<TrackingNumber> trackingNumberList = new ArrayList<>(SERIAL_COUNT);
+    for (int i = 0; i < SERIAL_COUNT; i++) {
+      TrackingNumber trackingNumber = new TrackingNumber();
+      trackingNumber.setTrackingNumberSeq("SN" + i);
+      trackingNumberList.add(trackingNumber);
+    }
+    Mockito.when(
+            trackingNumberService.getTrackingNumbers(
+                ArgumentMatchers.eq(product),
+                ArgumentMatchers.eq(BigDecimal.ONE),
+                ArgumentMatchers.eq(company),
+                ArgumentMatchers.any(),
+                ArgumentMatchers.any(),
+                ArgumentMatchers.eq(SERIAL_COUNT)))
+        .thenReturn(trackingNumberList);
+  }
+
+  @Test
+  public void testGenerateTrackingNumberSplitsALineOfFiveThousandSerials() throws AxelorException {
+    stockMoveLineService.generateTrackingNumber(stockMoveLine, null, product, BigDecimal.ONE);
+
+    List<StockMoveLine> stockMoveLineList = stockMove.getStockMoveLineList();
+    Assert.assertEquals(SERIAL_COUNT, stockMoveLineList.size());
+    Set<TrackingNumber> trackingNumberSet = new HashSet<>();
+    for (StockMoveLine line : stockMoveLineList) {
+      Assert.assertEquals(0, BigDecimal.ONE.compareTo(line.getQty()));
+      Assert.assertEquals(0, BigDecimal.ONE.compareTo(line.getRealQty()));
+      Assert.assertNotNull(line.getTrackingNumber());
+      trackingNumberSet.add(line.getTrackingNumber());
+    }
+    Assert.assertEquals(SERIAL_COUNT, trackingNumberSet.size());
+    Mockito.verify(trackingNumberService, Mockito.times(1))
+        .getTrackingNumbers(
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any(),
+            ArgumentMatchers.anyInt());
+  }
+
+  @Test
+  public void testGenerateTrackingNumberAboveTheConfiguredSplitCount() {
+    StockConfig stockConfig = new StockConfig();
+    stockConfig.setMaxTrackingNumberSplitCount(SERIAL_COUNT - 1);
+    company.setStockConfig(stockConfig);
+
+    String errorMessage = null;
+    try {
+      stockMoveLineService.generateTrackingNumber(stockMoveLine, null, product, BigDecimal.ONE);
+    } catch (AxelorException e) {
+      errorMessage = e.getMessage();
+    }
+    Assert.assertEquals(
+        "Too many iterations while trying to generate stock move line with tracking numbers.",
+        errorMessage);
+    Assert.assertEquals(1, stockMove.getStockMoveLineList().size());
+  }
+}
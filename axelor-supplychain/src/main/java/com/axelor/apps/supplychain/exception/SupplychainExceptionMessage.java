@@ -374,4 +374,7 @@ public final class SupplychainExceptionMessage {
       "Please select a forecasted invoice supplier account in the accounting batch" /*)*/;
   public static final String STOCK_MOVE_LINES_ASSOCIATED_WITH_INVOICE_LINES_CANNOT_SPLIT = /*$$(*/
       "The following stock move lines are already associated with invoice lines and can not be splitted: %s" /*)*/;
+
+  public static final String STOCK_LOCATION_LINE_LOCK_TIMEOUT = /*$$(*/
+      "The stock quantities of this product are being updated by another process, please try again later." /*)*/;
 }
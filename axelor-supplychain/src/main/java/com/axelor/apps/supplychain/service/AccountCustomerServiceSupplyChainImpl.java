@@ -21,6 +21,7 @@ package com.axelor.apps.supplychain.service;
 import com.axelor.apps.account.db.AccountingSituation;
 import com.axelor.apps.account.db.repo.AccountingSituationRepository;
 import com.axelor.apps.account.service.AccountCustomerServiceImpl;
+import com.axelor.apps.account.service.AccountPartnerBalanceService;
 import com.axelor.apps.account.service.AccountingSituationInitService;
 import com.axelor.apps.account.service.AccountingSituationService;
 import com.axelor.apps.base.AxelorException;
@@ -35,12 +36,14 @@ public class AccountCustomerServiceSupplyChainImpl extends AccountCustomerServic
       AccountingSituationService accountingSituationService,
       AccountingSituationInitService accountingSituationInitService,
       AccountingSituationRepository accSituationRepo,
-      AppBaseService appBaseService) {
+      AppBaseService appBaseService,
+      AccountPartnerBalanceService accountPartnerBalanceService) {
     super(
         accountingSituationService,
         accountingSituationInitService,
         accSituationRepo,
-        appBaseService);
+        appBaseService,
+        accountPartnerBalanceService);
   }
 
   @Override
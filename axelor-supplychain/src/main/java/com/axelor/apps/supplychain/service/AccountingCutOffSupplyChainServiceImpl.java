@@ -342,8 +342,16 @@ public class AccountingCutOffSupplyChainServiceImpl extends AccountingCutOffServ
 
     BankDetails companyBankDetails = null;
     if (company != null) {
+      Partner bankDetailsPartner = partner;
       companyBankDetails =
-          bankDetailsService.getDefaultCompanyBankDetails(company, null, partner, null);
+          this.getCachedRecord(
+              BankDetails.class,
+              () ->
+                  bankDetailsService.getDefaultCompanyBankDetails(
+                      company, null, bankDetailsPartner, null),
+              "companyBankDetails",
+              company,
+              bankDetailsPartner);
     }
 
     Move move =
@@ -479,8 +487,17 @@ public class AccountingCutOffSupplyChainServiceImpl extends AccountingCutOffServ
     }
 
     Account account =
-        accountManagementAccountService.getProductAccount(
-            product, company, fiscalPosition, isPurchase, isFixedAssets);
+        this.getCachedRecord(
+            Account.class,
+            () ->
+                accountManagementAccountService.getProductAccount(
+                    product, company, fiscalPosition, isPurchase, isFixedAssets),
+            "productAccount",
+            product,
+            company,
+            fiscalPosition,
+            isPurchase,
+            isFixedAssets);
 
     boolean isDebit =
         (isPurchase && amountInCurrency.signum() > 0)
@@ -517,8 +534,17 @@ public class AccountingCutOffSupplyChainServiceImpl extends AccountingCutOffServ
     move.addMoveLineListItem(moveLine);
     if (recoveredTax) {
       TaxLine taxLine =
-          accountManagementAccountService.getTaxLine(
-              originDate, product, company, fiscalPosition, isPurchase);
+          this.getCachedRecord(
+              TaxLine.class,
+              () ->
+                  accountManagementAccountService.getTaxLine(
+                      originDate, product, company, fiscalPosition, isPurchase),
+              "taxLine",
+              originDate,
+              product,
+              company,
+              fiscalPosition,
+              isPurchase);
 
       if (taxLine != null) {
         moveLine.setTaxLine(taxLine);
@@ -44,10 +44,15 @@ import com.axelor.inject.Beans;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /** This is the main implementation for {@link ReservedQtyService}. */
@@ -58,6 +63,7 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
   protected UnitConversionService unitConversionService;
   protected SupplyChainConfigService supplychainConfigService;
   protected AppBaseService appBaseService;
+  protected StockLocationLineLockService stockLocationLineLockService;
 
   @Inject
   public ReservedQtyServiceImpl(
@@ -65,16 +71,19 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
       StockMoveLineRepository stockMoveLineRepository,
       UnitConversionService unitConversionService,
       SupplyChainConfigService supplyChainConfigService,
-      AppBaseService appBaseService) {
+      AppBaseService appBaseService,
+      StockLocationLineLockService stockLocationLineLockService) {
     this.stockLocationLineService = stockLocationLineService;
     this.stockMoveLineRepository = stockMoveLineRepository;
     this.unitConversionService = unitConversionService;
     this.supplychainConfigService = supplyChainConfigService;
     this.appBaseService = appBaseService;
+    this.stockLocationLineLockService = stockLocationLineLockService;
   }
 
   @Override
   public void updateReservedQuantity(StockMove stockMove, int status) throws AxelorException {
+    stockLocationLineLockService.lock(stockMove);
     List<StockMoveLine> stockMoveLineList = stockMove.getStockMoveLineList();
     if (stockMoveLineList != null) {
       stockMoveLineList =
@@ -461,7 +470,11 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
                   }
                 }));
     BigDecimal leftQtyToAllocate = qtyToAllocate;
+    Set<SaleOrderLine> saleOrderLineSet = new LinkedHashSet<>();
     for (StockMoveLine stockMoveLine : stockMoveLineListToAllocate) {
+      if (leftQtyToAllocate.signum() == 0) {
+        break;
+      }
       BigDecimal leftQtyToAllocateStockMove =
           convertUnitWithProduct(
               stockLocationLineUnit, stockMoveLine.getUnit(), leftQtyToAllocate, product);
@@ -473,11 +486,15 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
           convertUnitWithProduct(
               stockMoveLine.getUnit(), stockLocationLineUnit, allocatedStockMoveQty, product);
 
-      // update reserved qty in stock move line and sale order line
-      updateReservedQuantityFromStockMoveLine(stockMoveLine, product, allocatedStockMoveQty);
+      // update reserved qty in stock move line, sale order lines are updated all at once below
+      stockMoveLine.setReservedQty(stockMoveLine.getReservedQty().add(allocatedStockMoveQty));
+      if (stockMoveLine.getSaleOrderLine() != null) {
+        saleOrderLineSet.add(stockMoveLine.getSaleOrderLine());
+      }
       // update left qty to allocate
       leftQtyToAllocate = leftQtyToAllocate.subtract(allocatedQty);
     }
+    updateReservedQty(saleOrderLineSet);
 
     return qtyToAllocate.subtract(leftQtyToAllocate);
   }
@@ -636,6 +653,8 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
       checkAvailabilityRequest(stockMoveLine, newReservedQty, false);
     }
 
+    StockLocationLine stockLocationLine = getAndLockStockLocationLine(stockMoveLine);
+
     BigDecimal newRequestedReservedQty = newReservedQty.add(saleOrderLine.getDeliveredQty());
     // update requested reserved qty
     if (newRequestedReservedQty.compareTo(saleOrderLine.getRequestedReservedQty()) > 0
@@ -643,9 +662,6 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
       requestQty(saleOrderLine);
     }
 
-    StockLocationLine stockLocationLine =
-        stockLocationLineService.getOrCreateStockLocationLine(
-            stockMoveLine.getFromStockLocation(), stockMoveLine.getProduct());
     BigDecimal availableQtyToBeReserved =
         stockLocationLine.getCurrentQty().subtract(stockLocationLine.getReservedQty());
     BigDecimal diffReservedQuantity = newReservedQty.subtract(saleOrderLine.getReservedQty());
@@ -689,6 +705,8 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
       checkAvailabilityRequest(stockMoveLine, newReservedQty, true);
     }
 
+    StockLocationLine stockLocationLine = getAndLockStockLocationLine(stockMoveLine);
+
     BigDecimal diffReservedQuantity =
         newReservedQty.subtract(saleOrderLine.getRequestedReservedQty());
 
@@ -697,10 +715,6 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
         updateRequestedReservedQuantityInStockMoveLines(
             saleOrderLine, stockMoveLine.getProduct(), newReservedQty);
 
-    StockLocationLine stockLocationLine =
-        stockLocationLineService.getOrCreateStockLocationLine(
-            stockMoveLine.getFromStockLocation(), stockMoveLine.getProduct());
-
     Product product = stockMoveLine.getProduct();
     // update in stock location line
     BigDecimal diffReservedQuantityLocation =
@@ -719,9 +733,7 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
   @Transactional(rollbackOn = {Exception.class})
   public void updateReservedQty(StockMoveLine stockMoveLine, BigDecimal newReservedQty)
       throws AxelorException {
-    StockLocationLine stockLocationLine =
-        stockLocationLineService.getOrCreateStockLocationLine(
-            stockMoveLine.getFromStockLocation(), stockMoveLine.getProduct());
+    StockLocationLine stockLocationLine = getAndLockStockLocationLine(stockMoveLine);
     updateReservedQty(stockLocationLine, stockMoveLine, newReservedQty);
   }
 
@@ -770,9 +782,7 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
   @Transactional(rollbackOn = {Exception.class})
   public void updateRequestedReservedQty(StockMoveLine stockMoveLine, BigDecimal newReservedQty)
       throws AxelorException {
-    StockLocationLine stockLocationLine =
-        stockLocationLineService.getOrCreateStockLocationLine(
-            stockMoveLine.getFromStockLocation(), stockMoveLine.getProduct());
+    StockLocationLine stockLocationLine = getAndLockStockLocationLine(stockMoveLine);
     updateRequestedReservedQty(stockLocationLine, stockMoveLine, newReservedQty);
   }
 
@@ -870,6 +880,23 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
         .fetchOne();
   }
 
+  /**
+   * Get the stock location line of the product in the source location of the stock move line,
+   * locked before being read, until the end of the transaction, so its quantities can be updated
+   * safely.
+   */
+  protected StockLocationLine getAndLockStockLocationLine(StockMoveLine stockMoveLine)
+      throws AxelorException {
+    StockLocationLine stockLocationLine =
+        stockLocationLineLockService.lockStockLocationLine(
+            stockMoveLine.getFromStockLocation(), stockMoveLine.getProduct());
+    if (stockLocationLine != null) {
+      return stockLocationLine;
+    }
+    return stockLocationLineService.getOrCreateStockLocationLine(
+        stockMoveLine.getFromStockLocation(), stockMoveLine.getProduct());
+  }
+
   /** Convert but with null check. Return start value if one unit is null. */
   protected BigDecimal convertUnitWithProduct(
       Unit startUnit, Unit endUnit, BigDecimal qtyToConvert, Product product)
@@ -927,6 +954,38 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
             .bind("saleOrderLineId", saleOrderLine.getId())
             .bind("planned", StockMoveRepository.STATUS_PLANNED)
             .fetch();
+    updateReservedQty(saleOrderLine, stockMoveLineList);
+  }
+
+  /**
+   * Same as {@link #updateReservedQty(SaleOrderLine)} for several sale order lines, with one query
+   * to fetch the planned stock move lines of all of them.
+   */
+  protected void updateReservedQty(Collection<SaleOrderLine> saleOrderLineList)
+      throws AxelorException {
+    if (saleOrderLineList.isEmpty()) {
+      return;
+    }
+    Map<Long, List<StockMoveLine>> stockMoveLineMap =
+        stockMoveLineRepository.all()
+            .filter(
+                "self.saleOrderLine.id IN (:saleOrderLineIds) "
+                    + "AND self.stockMove.statusSelect = :planned")
+            .bind(
+                "saleOrderLineIds",
+                saleOrderLineList.stream().map(SaleOrderLine::getId).collect(Collectors.toList()))
+            .bind("planned", StockMoveRepository.STATUS_PLANNED).fetch().stream()
+            .collect(
+                Collectors.groupingBy(stockMoveLine -> stockMoveLine.getSaleOrderLine().getId()));
+    for (SaleOrderLine saleOrderLine : saleOrderLineList) {
+      updateReservedQty(
+          saleOrderLine,
+          stockMoveLineMap.getOrDefault(saleOrderLine.getId(), Collections.emptyList()));
+    }
+  }
+
+  protected void updateReservedQty(
+      SaleOrderLine saleOrderLine, List<StockMoveLine> stockMoveLineList) throws AxelorException {
     BigDecimal reservedQty = BigDecimal.ZERO;
     for (StockMoveLine stockMoveLine : stockMoveLineList) {
       reservedQty =
@@ -982,9 +1041,7 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
           I18n.get(SupplychainExceptionMessage.SALE_ORDER_LINE_NO_STOCK_MOVE));
     }
     // search for the maximum quantity that can be allocated.
-    StockLocationLine stockLocationLine =
-        stockLocationLineService.getOrCreateStockLocationLine(
-            stockMoveLine.getFromStockLocation(), stockMoveLine.getProduct());
+    StockLocationLine stockLocationLine = getAndLockStockLocationLine(stockMoveLine);
     BigDecimal availableQtyToBeReserved =
         stockLocationLine.getCurrentQty().subtract(stockLocationLine.getReservedQty());
     Product product = stockMoveLine.getProduct();
@@ -1013,9 +1070,7 @@ public class ReservedQtyServiceImpl implements ReservedQtyService {
       allocateAll(saleOrderLine);
     } else {
       // search for the maximum quantity that can be allocated in the stock move line.
-      StockLocationLine stockLocationLine =
-          stockLocationLineService.getOrCreateStockLocationLine(
-              stockMoveLine.getFromStockLocation(), stockMoveLine.getProduct());
+      StockLocationLine stockLocationLine = getAndLockStockLocationLine(stockMoveLine);
       BigDecimal availableQtyToBeReserved =
           stockLocationLine.getCurrentQty().subtract(stockLocationLine.getReservedQty());
       Product product = stockMoveLine.getProduct();
@@ -18,20 +18,19 @@
  */
 package com.axelor.apps.supplychain.service;
 
-import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.service.UnitConversionService;
 import com.axelor.apps.stock.db.StockHistoryLine;
-import com.axelor.apps.stock.db.StockMoveLine;
 import com.axelor.apps.stock.db.repo.StockHistoryLineManagementRepository;
 import com.axelor.apps.stock.db.repo.StockLocationRepository;
 import com.axelor.apps.stock.db.repo.StockMoveLineRepository;
 import com.axelor.apps.stock.service.StockHistoryServiceImpl;
 import com.google.inject.Inject;
 import java.math.BigDecimal;
-import java.util.List;
 
 public class StockHistoryServiceSupplyChainImpl extends StockHistoryServiceImpl {
 
+  protected static final int QTY_CATEGORY_ONE_OFF_SALE = 1;
+
   @Inject
   public StockHistoryServiceSupplyChainImpl(
       StockMoveLineRepository stockMoveLineRepository,
@@ -45,32 +44,40 @@ public class StockHistoryServiceSupplyChainImpl extends StockHistoryServiceImpl
         stockHistoryLineRepository);
   }
 
+  /*
+   * OVERRIDING
+   * Origin : StockHistoryServiceImpl in axelor-stock module
+   * Add : outgoing quantities of one-off sales are summed separately
+   */
   @Override
-  protected void fillOutgoingStockHistoryLineFields(
-      StockHistoryLine stockHistoryLine, List<StockMoveLine> stockMoveLineList)
-      throws AxelorException {
+  protected String getStockHistoryQueryJoins(boolean incoming) {
+    if (incoming) {
+      return super.getStockHistoryQueryJoins(incoming);
+    }
+    return "LEFT JOIN self.saleOrderLine saleOrderLine "
+        + "LEFT JOIN saleOrderLine.saleOrder saleOrder ";
+  }
 
-    super.fillOutgoingStockHistoryLineFields(stockHistoryLine, stockMoveLineList);
+  @Override
+  protected String getQtyCategoryExpression(boolean incoming) {
+    if (incoming) {
+      return super.getQtyCategoryExpression(incoming);
+    }
+    return "CASE WHEN saleOrder.oneoffSale = true THEN "
+        + QTY_CATEGORY_ONE_OFF_SALE
+        + " ELSE 0 END";
+  }
 
-    BigDecimal sumOutQtyPeriod = BigDecimal.ZERO;
-    BigDecimal sumOneoffSaleOutQtyPeriod = BigDecimal.ZERO;
-    BigDecimal qtyConverted = BigDecimal.ZERO;
-    for (StockMoveLine stockMoveLine : stockMoveLineList) {
-      qtyConverted =
-          unitConversionService.convert(
-              stockMoveLine.getUnit(),
-              stockMoveLine.getProduct().getUnit(),
-              stockMoveLine.getRealQty(),
-              stockMoveLine.getRealQty().scale(),
-              stockMoveLine.getProduct());
-      if (stockMoveLine.getSaleOrderLine() != null
-          && stockMoveLine.getSaleOrderLine().getSaleOrder().getOneoffSale()) {
-        sumOneoffSaleOutQtyPeriod = sumOneoffSaleOutQtyPeriod.add(qtyConverted);
-      } else {
-        sumOutQtyPeriod = sumOutQtyPeriod.add(qtyConverted);
-      }
+  @Override
+  protected void addQtyToStockHistoryLine(
+      StockHistoryLine stockHistoryLine, BigDecimal qty, Object qtyCategory, boolean incoming) {
+    if (!incoming
+        && qtyCategory != null
+        && ((Number) qtyCategory).intValue() == QTY_CATEGORY_ONE_OFF_SALE) {
+      stockHistoryLine.setSumOneoffSaleOutQtyPeriod(
+          stockHistoryLine.getSumOneoffSaleOutQtyPeriod().add(qty));
+    } else {
+      super.addQtyToStockHistoryLine(stockHistoryLine, qty, qtyCategory, incoming);
     }
-    stockHistoryLine.setSumOutQtyPeriod(sumOutQtyPeriod);
-    stockHistoryLine.setSumOneoffSaleOutQtyPeriod(sumOneoffSaleOutQtyPeriod);
   }
 }
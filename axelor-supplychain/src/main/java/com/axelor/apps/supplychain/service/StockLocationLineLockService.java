@@ -0,0 +1,67 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.supplychain.service;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.db.StockLocationLine;
+import com.axelor.apps.stock.db.StockMove;
+import java.util.Collection;
+
+/**
+ * Serializes the updates of the reserved and requested quantities of stock location lines.
+ *
+ * <p>A stock location line is the pair (stock location, product). The lines are locked with a
+ * pessimistic lock on their database row, which also protects against other application nodes,
+ * until the end of the current transaction. Outside of a transaction, nothing is locked.
+ */
+public interface StockLocationLineLockService {
+
+  /**
+   * Lock the given stock location lines until the end of the current transaction. Pending changes
+   * of the lines are kept: lock the lines before reading them, otherwise a line committed by
+   * another transaction in the meantime fails the version check when it is flushed.
+   *
+   * @param stockLocationLineList the lines to lock, non persisted lines are ignored.
+   * @throws AxelorException if a lock could not be acquired.
+   */
+  void lock(Collection<StockLocationLine> stockLocationLineList) throws AxelorException;
+
+  /**
+   * Lock the stock location lines of the stock managed products of the stock move, in the source
+   * and destination stock locations of each line. The lines are read for the first time by the
+   * locking query, so their quantities are up to date.
+   *
+   * @param stockMove a stock move
+   * @throws AxelorException if a lock could not be acquired.
+   */
+  void lock(StockMove stockMove) throws AxelorException;
+
+  /**
+   * Read and lock the stock location line of the product in the stock location.
+   *
+   * @param stockLocation a stock location
+   * @param product a product
+   * @return the locked stock location line, or null if there is none or no active transaction.
+   * @throws AxelorException if the lock could not be acquired.
+   */
+  StockLocationLine lockStockLocationLine(StockLocation stockLocation, Product product)
+      throws AxelorException;
+}
@@ -0,0 +1,164 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.supplychain.service;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.repo.TraceBackRepository;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.db.StockLocationLine;
+import com.axelor.apps.stock.db.StockMove;
+import com.axelor.apps.stock.db.StockMoveLine;
+import com.axelor.apps.stock.db.repo.StockLocationRepository;
+import com.axelor.apps.supplychain.exception.SupplychainExceptionMessage;
+import com.axelor.db.JPA;
+import com.axelor.i18n.I18n;
+import com.google.inject.Singleton;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.LockModeType;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.PessimisticLockException;
+import org.apache.commons.lang3.tuple.Pair;
+
+@Singleton
+public class StockLocationLineLockServiceImpl implements StockLocationLineLockService {
+
+  @Override
+  public void lock(StockMove stockMove) throws AxelorException {
+    if (stockMove.getStockMoveLineList() == null || !isTransactionActive()) {
+      return;
+    }
+    Set<Pair<Long, Long>> stockLocationProductSet = new HashSet<>();
+    for (StockMoveLine stockMoveLine : stockMove.getStockMoveLineList()) {
+      Product product = stockMoveLine.getProduct();
+      if (product == null || !product.getStockManaged()) {
+        continue;
+      }
+      Stream.of(stockMoveLine.getFromStockLocation(), stockMoveLine.getToStockLocation())
+          .filter(Objects::nonNull)
+          .filter(
+              stockLocation ->
+                  stockLocation.getTypeSelect() != StockLocationRepository.TYPE_VIRTUAL)
+          .forEach(
+              stockLocation ->
+                  stockLocationProductSet.add(Pair.of(stockLocation.getId(), product.getId())));
+    }
+    if (stockLocationProductSet.isEmpty()) {
+      return;
+    }
+
+    // Only the ids are read here, so the lines are loaded for the first time by the locking query.
+    List<Long> stockLocationLineIdList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id, self.stockLocation.id, self.product.id FROM StockLocationLine self "
+                    + "WHERE self.stockLocation.id IN (:stockLocationIds) "
+                    + "AND self.product.id IN (:productIds)",
+                Object[].class)
+            .setParameter(
+                "stockLocationIds",
+                stockLocationProductSet.stream().map(Pair::getLeft).collect(Collectors.toSet()))
+            .setParameter(
+                "productIds",
+                stockLocationProductSet.stream().map(Pair::getRight).collect(Collectors.toSet()))
+            .getResultList().stream()
+            .filter(result -> stockLocationProductSet.contains(Pair.of(result[1], result[2])))
+            .map(result -> (Long) result[0])
+            .collect(Collectors.toList());
+    lockRows(stockLocationLineIdList);
+  }
+
+  @Override
+  public void lock(Collection<StockLocationLine> stockLocationLineList) throws AxelorException {
+    if (!isTransactionActive()) {
+      return;
+    }
+    lockRows(
+        stockLocationLineList.stream()
+            .map(StockLocationLine::getId)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList()));
+  }
+
+  @Override
+  public StockLocationLine lockStockLocationLine(StockLocation stockLocation, Product product)
+      throws AxelorException {
+    if (!isTransactionActive()) {
+      return null;
+    }
+    try {
+      return JPA.em()
+          .createQuery(
+              "SELECT self FROM StockLocationLine self "
+                  + "WHERE self.stockLocation.id = :stockLocationId "
+                  + "AND self.product.id = :productId",
+              StockLocationLine.class)
+          .setParameter("stockLocationId", stockLocation.getId())
+          .setParameter("productId", product.getId()).setLockMode(LockModeType.PESSIMISTIC_WRITE)
+          .setMaxResults(1).getResultList().stream()
+          .findFirst()
+          .orElse(null);
+    } catch (PessimisticLockException | LockTimeoutException e) {
+      throw lockException(e);
+    }
+  }
+
+  protected boolean isTransactionActive() {
+    return JPA.em().getTransaction().isActive();
+  }
+
+  /**
+   * Lock the database rows with one {@code SELECT ... FOR UPDATE}, in the id order so that two
+   * transactions locking the same lines cannot dead lock. The lines not loaded yet are read from
+   * the locked rows. The lines already loaded keep their pending changes: if they were committed by
+   * another transaction since they were read, the version check fails when they are flushed instead
+   * of silently overwriting the other update.
+   */
+  protected void lockRows(List<Long> stockLocationLineIdList) throws AxelorException {
+    List<Long> idList =
+        stockLocationLineIdList.stream().distinct().sorted().collect(Collectors.toList());
+    if (idList.isEmpty()) {
+      return;
+    }
+    try {
+      JPA.em()
+          .createQuery(
+              "SELECT self FROM StockLocationLine self WHERE self.id IN (:ids) ORDER BY self.id",
+              StockLocationLine.class)
+          .setParameter("ids", idList)
+          .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+          .getResultList();
+    } catch (PessimisticLockException | LockTimeoutException e) {
+      throw lockException(e);
+    }
+  }
+
+  protected AxelorException lockException(Exception e) {
+    return new AxelorException(
+        e,
+        TraceBackRepository.CATEGORY_INCONSISTENCY,
+        I18n.get(SupplychainExceptionMessage.STOCK_LOCATION_LINE_LOCK_TIMEOUT));
+  }
+}
@@ -27,6 +27,7 @@ import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.inject.Beans;
 import com.google.inject.persist.Transactional;
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.List;
 
 public class StockLocationLineReservationServiceImpl
@@ -35,6 +36,8 @@ public class StockLocationLineReservationServiceImpl
   @Override
   @Transactional(rollbackOn = {Exception.class})
   public void allocateAll(StockLocationLine stockLocationLine) throws AxelorException {
+    Beans.get(StockLocationLineLockService.class)
+        .lock(Collections.singletonList(stockLocationLine));
     // qty to allocate is the minimum value between requested and current qty subtracted by reserved
     // qty
     BigDecimal qtyToAllocate =
@@ -55,6 +58,8 @@ public class StockLocationLineReservationServiceImpl
   @Override
   @Transactional(rollbackOn = {Exception.class})
   public void deallocateAll(StockLocationLine stockLocationLine) throws AxelorException {
+    Beans.get(StockLocationLineLockService.class)
+        .lock(Collections.singletonList(stockLocationLine));
     List<StockMoveLine> stockMoveLineList =
         Beans.get(StockMoveLineRepository.class)
             .all()
@@ -96,6 +96,8 @@ public class StockMoveServiceSupplychainImpl extends StockMoveServiceImpl
 
   @Inject private StockMoveLineServiceSupplychain stockMoveLineServiceSupplychain;
 
+  @Inject protected StockLocationLineLockService stockLocationLineLockService;
+
   @Inject
   public StockMoveServiceSupplychainImpl(
       StockMoveLineService stockMoveLineService,
@@ -158,6 +160,7 @@ public class StockMoveServiceSupplychainImpl extends StockMoveServiceImpl
     }
 
     LOG.debug("Stock move realization: {} ", stockMove.getStockMoveSeq());
+    lockStockLocationLines(stockMove);
     String newStockSeq = super.realizeStockMove(stockMove, check);
     AppSupplychain appSupplychain = appSupplyChainService.getAppSupplychain();
 
@@ -246,6 +249,7 @@ public class StockMoveServiceSupplychainImpl extends StockMoveServiceImpl
           TraceBackRepository.CATEGORY_INCONSISTENCY,
           I18n.get(SupplychainExceptionMessage.STOCK_MOVE_CANCEL_WRONG_STATUS_ERROR));
     }
+    lockStockLocationLines(stockMove);
     if (stockMove.getStatusSelect() == StockMoveRepository.STATUS_REALIZED) {
       if (stockMove.getSaleOrder() != null) {
         updateSaleOrderOnCancel(stockMove);
@@ -263,10 +267,23 @@ public class StockMoveServiceSupplychainImpl extends StockMoveServiceImpl
   @Override
   @Transactional(rollbackOn = {Exception.class})
   public void planStockMove(StockMove stockMove) throws AxelorException {
+    lockStockLocationLines(stockMove);
     super.planStockMove(stockMove);
     updateReservedQuantity(stockMove);
   }
 
+  /**
+   * When stock reservation is managed, lock the stock location lines of the stock move before their
+   * quantities are read, so concurrent plannings, realizations and cancellations of moves on the
+   * same products are serialized.
+   */
+  protected void lockStockLocationLines(StockMove stockMove) throws AxelorException {
+    if (appSupplyChainService.isApp("supplychain")
+        && appSupplyChainService.getAppSupplychain().getManageStockReservation()) {
+      stockLocationLineLockService.lock(stockMove);
+    }
+  }
+
   protected void updateReservedQuantity(StockMove stockMove) throws AxelorException {
     if (appSupplyChainService.isApp("supplychain")
         && appSupplyChainService.getAppSupplychain().getManageStockReservation()) {
@@ -18,7 +18,6 @@
  */
 package com.axelor.apps.supplychain.service.batch;
 
-import com.axelor.apps.account.db.Account;
 import com.axelor.apps.account.db.AccountingBatch;
 import com.axelor.apps.account.db.Journal;
 import com.axelor.apps.account.db.Move;
@@ -30,7 +29,6 @@ import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
-import com.axelor.apps.base.service.administration.AbstractBatch;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.StockMoveLine;
@@ -82,19 +80,26 @@ public class BatchAccountingCutOffSupplyChain extends BatchAccountingCutOff {
     int accountingCutOffTypeSelect = accountingBatch.getAccountingCutOffTypeSelect();
     updateBatch(moveDate, accountingCutOffTypeSelect);
 
-    if (accountingCutOffTypeSelect
-        < AccountingBatchRepository.ACCOUNTING_CUT_OFF_TYPE_PREPAID_EXPENSES) {
-      if (this.recordIdList == null) {
-        this._processStockMovesByQuery(accountingBatch);
-      } else {
-        this._processStockMovesByIds(accountingBatch);
-      }
-    } else {
-      if (this.recordIdList == null) {
-        this._processMovesByQuery(accountingBatch);
+    cutOffService.setBulkMode(true);
+    cutOffSupplyChainService.setBulkMode(true);
+    try {
+      if (accountingCutOffTypeSelect
+          < AccountingBatchRepository.ACCOUNTING_CUT_OFF_TYPE_PREPAID_EXPENSES) {
+        if (this.recordIdList == null) {
+          this._processStockMovesByQuery(accountingBatch);
+        } else {
+          this._processStockMovesByIds(accountingBatch);
+        }
       } else {
-        this._processMovesByIds(accountingBatch);
+        if (this.recordIdList == null) {
+          this._processMovesByQuery(accountingBatch);
+        } else {
+          this._processMovesByIds(accountingBatch);
+        }
       }
+    } finally {
+      cutOffService.setBulkMode(false);
+      cutOffSupplyChainService.setBulkMode(false);
     }
   }
 
@@ -108,26 +113,66 @@ public class BatchAccountingCutOffSupplyChain extends BatchAccountingCutOff {
     Query<StockMove> stockMoveQuery =
         cutOffSupplyChainService.getStockMoves(company, accountingCutOffTypeSelect, moveDate);
 
-    while (!(stockMoveList = stockMoveQuery.fetch(AbstractBatch.FETCH_LIMIT, offset)).isEmpty()) {
+    while (!(stockMoveList = stockMoveQuery.fetch(MOVE_CHUNK_SIZE, offset)).isEmpty()) {
+      offset += stockMoveList.size();
 
       findBatch();
-      accountingBatch = accountingBatchRepository.find(accountingBatch.getId());
-      company = accountingBatch.getCompany();
+      this._processStockMoveChunk(
+          stockMoveList.stream().map(StockMove::getId).collect(Collectors.toList()),
+          accountingBatch.getId());
+
+      JPA.clear();
+    }
+  }
 
-      for (StockMove stockMove : stockMoveList) {
-        ++offset;
+  /**
+   * Generate the cut-off moves of the chunk in a single transaction, or one stock move at a time if
+   * one of them fails.
+   */
+  protected void _processStockMoveChunk(List<Long> stockMoveIdList, Long accountingBatchId) {
+    int generatedCount;
 
-        if (this._processStockMove(
-            stockMoveRepository.find(stockMove.getId()),
-            accountingBatchRepository.find(accountingBatch.getId()))) {
-          break;
-        }
+    try {
+      generatedCount = this._processStockMoves(stockMoveIdList, accountingBatchId);
+    } catch (Exception e) {
+      JPA.clear();
+
+      for (Long stockMoveId : stockMoveIdList) {
+        this._processStockMove(
+            stockMoveRepository.find(stockMoveId),
+            accountingBatchRepository.find(accountingBatchId));
       }
+      return;
+    }
 
-      JPA.clear();
+    for (int i = 0; i < generatedCount; i++) {
+      incrementDone();
     }
   }
 
+  @Transactional(rollbackOn = {Exception.class})
+  protected int _processStockMoves(List<Long> stockMoveIdList, Long accountingBatchId)
+      throws AxelorException {
+    AccountingBatch accountingBatch = accountingBatchRepository.find(accountingBatchId);
+    int generatedCount = 0;
+
+    for (Long stockMoveId : stockMoveIdList) {
+      StockMove stockMove = stockMoveRepository.find(stockMoveId);
+      List<Move> moveList = this.generateCutOffMoves(stockMove, accountingBatch);
+
+      if (moveList != null && !moveList.isEmpty()) {
+        stockMove.addBatchSetItem(batchRepo.find(batch.getId()));
+
+        for (Move move : moveList) {
+          updateAccountMove(move, false);
+        }
+        generatedCount++;
+      }
+    }
+
+    return generatedCount;
+  }
+
   protected void _processStockMovesByIds(AccountingBatch accountingBatch) {
     List<StockMove> stockMoveList =
         recordIdList.stream()
@@ -144,46 +189,37 @@ public class BatchAccountingCutOffSupplyChain extends BatchAccountingCutOff {
     }
   }
 
+  protected List<Move> generateCutOffMoves(StockMove stockMove, AccountingBatch accountingBatch)
+      throws AxelorException {
+    Journal miscOpeJournal = accountingBatch.getMiscOpeJournal();
+    String prefixOrigin =
+        accountingBatch.getPrefixOrigin() != null
+            ? accountingBatch.getPrefixOrigin()
+            : miscOpeJournal.getPrefixOrigin() != null ? miscOpeJournal.getPrefixOrigin() : "";
+
+    return cutOffSupplyChainService.generateCutOffMovesFromStockMove(
+        stockMove,
+        miscOpeJournal,
+        accountingBatch.getMoveDate(),
+        accountingBatch.getReverseMoveDate(),
+        accountingBatch.getMoveDescription(),
+        accountingBatch.getReverseMoveDescription(),
+        accountingBatch.getAccountingCutOffTypeSelect(),
+        accountingBatch.getCutOffMoveStatusSelect(),
+        accountingBatch.getRecoveredTax(),
+        accountingBatch.getAti(),
+        accountingBatch.getIncludeNotStockManagedProduct(),
+        accountingBatch.getAutomaticReverse(),
+        accountingBatch.getAutomaticReconcile(),
+        accountingBatch.getForecastedInvCustAccount(),
+        accountingBatch.getForecastedInvSuppAccount(),
+        prefixOrigin);
+  }
+
   @Transactional
   protected boolean _processStockMove(StockMove stockMove, AccountingBatch accountingBatch) {
     try {
-      Journal miscOpeJournal = accountingBatch.getMiscOpeJournal();
-      LocalDate reverseMoveDate = accountingBatch.getReverseMoveDate();
-      LocalDate moveDate = accountingBatch.getMoveDate();
-      String moveDescription = accountingBatch.getMoveDescription();
-      String reverseMoveDescription = accountingBatch.getReverseMoveDescription();
-      int accountingCutOffTypeSelect = accountingBatch.getAccountingCutOffTypeSelect();
-      int cutOffMoveStatusSelect = accountingBatch.getCutOffMoveStatusSelect();
-      boolean recoveredTax = accountingBatch.getRecoveredTax();
-      boolean ati = accountingBatch.getAti();
-      boolean includeNotStockManagedProduct = accountingBatch.getIncludeNotStockManagedProduct();
-      boolean automaticReverse = accountingBatch.getAutomaticReverse();
-      boolean automaticReconcile = accountingBatch.getAutomaticReconcile();
-      Account forecastedInvCustAccount = accountingBatch.getForecastedInvCustAccount();
-      Account forecastedInvSuppAccount = accountingBatch.getForecastedInvSuppAccount();
-      String prefixOrigin =
-          accountingBatch.getPrefixOrigin() != null
-              ? accountingBatch.getPrefixOrigin()
-              : miscOpeJournal.getPrefixOrigin() != null ? miscOpeJournal.getPrefixOrigin() : "";
-
-      List<Move> moveList =
-          cutOffSupplyChainService.generateCutOffMovesFromStockMove(
-              stockMove,
-              miscOpeJournal,
-              moveDate,
-              reverseMoveDate,
-              moveDescription,
-              reverseMoveDescription,
-              accountingCutOffTypeSelect,
-              cutOffMoveStatusSelect,
-              recoveredTax,
-              ati,
-              includeNotStockManagedProduct,
-              automaticReverse,
-              automaticReconcile,
-              forecastedInvCustAccount,
-              forecastedInvSuppAccount,
-              prefixOrigin);
+      List<Move> moveList = this.generateCutOffMoves(stockMove, accountingBatch);
 
       if (moveList != null && !moveList.isEmpty()) {
         updateStockMove(stockMove);
@@ -27,7 +27,6 @@ import com.axelor.apps.base.db.repo.ProductRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.ProductCategoryService;
 import com.axelor.apps.base.service.exception.TraceBackService;
-import com.axelor.apps.stock.db.StockHistoryLine;
 import com.axelor.apps.stock.service.StockHistoryService;
 import com.axelor.apps.supplychain.db.SupplychainBatch;
 import com.axelor.apps.supplychain.exception.SupplychainExceptionMessage;
@@ -36,12 +35,15 @@ import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.inject.Inject;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class BatchUpdateStockHistory extends BatchStrategy {
 
-  private static final Integer ITERATIONS = 100;
+  /** Number of products whose stock history is computed with the same grouped queries. */
+  protected static final int PRODUCT_CHUNK_SIZE = 500;
 
   protected StockHistoryService stockHistoryService;
   protected ProductCategoryRepository productCategoryRepository;
@@ -59,9 +61,7 @@ public class BatchUpdateStockHistory extends BatchStrategy {
     SupplychainBatch supplychainBatch = batch.getSupplychainBatch();
 
     try {
-      List<Product> productList;
       List<ProductCategory> productCategoryList = getProductCategoryList(supplychainBatch);
-      List<StockHistoryLine> stockHistoryLineList = new ArrayList<>();
       Query<Product> productQuery;
 
       if (supplychainBatch.getProductCategorySet() != null
@@ -70,35 +70,45 @@ public class BatchUpdateStockHistory extends BatchStrategy {
             Beans.get(ProductRepository.class)
                 .all()
                 .filter(
-                    "self.productCategory in (?1) AND self.productTypeSelect = ?2",
-                    productCategoryList,
-                    ProductRepository.PRODUCT_TYPE_STORABLE);
+                    "self.productCategory in (:productCategoryList) "
+                        + "AND self.productTypeSelect = :productTypeSelect "
+                        + "AND self.id > :lastId")
+                .bind("productCategoryList", productCategoryList);
       } else {
         productQuery =
             Beans.get(ProductRepository.class)
                 .all()
-                .filter("self.productTypeSelect = ?1", ProductRepository.PRODUCT_TYPE_STORABLE);
+                .filter("self.productTypeSelect = :productTypeSelect AND self.id > :lastId");
       }
-
-      int offset = 0;
-
-      while (!(productList = productQuery.order("id").fetch(FETCH_LIMIT, offset)).isEmpty()) {
-
-        for (Product product : productList) {
-          ++offset;
-          try {
-            stockHistoryLineList.addAll(
-                stockHistoryService.computeAndSaveStockHistoryLineList(
-                    product.getId(),
-                    supplychainBatch.getCompany().getId(),
-                    null,
-                    supplychainBatch.getPeriod().getFromDate(),
-                    supplychainBatch.getPeriod().getToDate()));
+      productQuery.bind("productTypeSelect", ProductRepository.PRODUCT_TYPE_STORABLE).order("id");
+
+      Long companyId = supplychainBatch.getCompany().getId();
+      LocalDate fromDate = supplychainBatch.getPeriod().getFromDate();
+      LocalDate toDate = supplychainBatch.getPeriod().getToDate();
+
+      long lastId = 0L;
+      List<Long> productIdList;
+      while (!(productIdList = fetchProductIdList(productQuery, lastId)).isEmpty()) {
+        lastId = productIdList.get(productIdList.size() - 1);
+        try {
+          stockHistoryService.computeAndSaveStockHistoryLineList(
+              productIdList, companyId, null, fromDate, toDate);
+          for (int i = 0; i < productIdList.size(); i++) {
             incrementDone();
-          } catch (Exception e) {
-            incrementAnomaly();
-            TraceBackService.trace(
-                e, ExceptionOriginRepository.UPDATE_STOCK_HISTORY, batch.getId());
+          }
+        } catch (Exception e) {
+          // the whole chunk was rolled back, compute products one by one to isolate anomalies
+          JPA.clear();
+          for (Long productId : productIdList) {
+            try {
+              stockHistoryService.computeAndSaveStockHistoryLineList(
+                  productId, companyId, null, fromDate, toDate);
+              incrementDone();
+            } catch (Exception productException) {
+              incrementAnomaly();
+              TraceBackService.trace(
+                  productException, ExceptionOriginRepository.UPDATE_STOCK_HISTORY, batch.getId());
+            }
           }
         }
         JPA.clear();
@@ -131,6 +141,12 @@ public class BatchUpdateStockHistory extends BatchStrategy {
     addComment(comment);
   }
 
+  protected List<Long> fetchProductIdList(Query<Product> productQuery, long lastId) {
+    return productQuery.bind("lastId", lastId).select("id").fetch(PRODUCT_CHUNK_SIZE, 0).stream()
+        .map(map -> (Long) map.get("id"))
+        .collect(Collectors.toList());
+  }
+
   protected List<ProductCategory> getProductCategoryList(SupplychainBatch supplychainBatch)
       throws AxelorException {
 
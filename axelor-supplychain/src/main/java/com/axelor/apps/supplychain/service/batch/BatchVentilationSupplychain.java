@@ -0,0 +1,38 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.supplychain.service.batch;
+
+import com.axelor.apps.account.db.Invoice;
+import com.axelor.apps.account.service.invoice.InvoiceService;
+import com.axelor.apps.account.service.invoice.generator.batch.BatchVentilation;
+import com.google.inject.Inject;
+
+public class BatchVentilationSupplychain extends BatchVentilation {
+
+  @Inject
+  public BatchVentilationSupplychain(InvoiceService invoiceService) {
+    super(invoiceService);
+  }
+
+  /** The PDF of an interco invoice is copied to the generated interco invoice. */
+  @Override
+  protected boolean isPdfRequiredOnVentilation(Invoice invoice) {
+    return super.isPdfRequiredOnVentilation(invoice) || invoice.getInterco();
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2023 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.supplychain.service;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.repo.ProductRepository;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.db.StockLocationLine;
+import com.axelor.apps.stock.db.StockMove;
+import com.axelor.apps.stock.db.StockMoveLine;
+import com.axelor.apps.stock.db.repo.StockLocationLineRepository;
+import com.axelor.apps.stock.db.repo.StockLocationRepository;
+import com.axelor.apps.stock.db.repo.StockMoveLineRepository;
+import com.axelor.apps.stock.db.repo.StockMoveRepository;
+import com.axelor.apps.stock.service.StockLocationLineServiceImpl;
+import com.axelor.apps.supplychain.db.SupplyChainConfig;
+import com.axelor.apps.supplychain.service.config.SupplyChainConfigService;
+import com.axelor.apps.supplychain.test.TestModule;
+import com.axelor.db.JPA;
+import com.google.inject.Guice;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.hibernate.Session;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+/**
+ * Runs the lock service against the test database, with concurrent transactions. It needs the
+ * PostgreSQL database of the test persistence unit: the tests are skipped when it cannot be
+ * reached.
+ */
+public class TestStockLocationLineLockService {
+
+  protected static final int CONFIRMER_COUNT = 32;
+  protected static final int CONFIRMATION_COUNT = 25;
+
+  /** Only half of the confirmations can be reserved, so an over-reservation is detected too. */
+  protected static final BigDecimal AVAILABLE_QTY =
+      BigDecimal.valueOf((long) CONFIRMER_COUNT * CONFIRMATION_COUNT / 2);
+
+  protected final StockLocationLineLockService lockService = new StockLocationLineLockServiceImpl();
+
+  protected ReservedQtyService reservedQtyService;
+
+  protected Long stockLocationId;
+  protected Long virtualStockLocationId;
+  protected Long productId;
+  protected Long stockLocationLineId;
+
+  @BeforeClass
+  public static void startDatabase() {
+    try {
+      Guice.createInjector(new TestModule());
+      JPA.em().unwrap(Session.class).doWork(connection -> connection.isValid(5));
+    } catch (RuntimeException e) {
+      Assume.assumeNoException("The PostgreSQL test database is not available.", e);
+    }
+  }
+
+  @Before
+  public void prepareTest() throws AxelorException {
+    SupplyChainConfigService supplyChainConfigService =
+        Mockito.mock(SupplyChainConfigService.class);
+    Mockito.when(supplyChainConfigService.getSupplyChainConfig(ArgumentMatchers.any()))
+        .thenReturn(new SupplyChainConfig());
+    reservedQtyService =
+        new ReservedQtyServiceImpl(
+            new StockLocationLineServiceImpl(
+                new StockLocationLineRepository(), null, null, null, null, null),
+            new StockMoveLineRepository(),
+            null,
+            supplyChainConfigService,
+            null,
+            lockService);
+
+    String suffix = String.valueOf(System.nanoTime());
+    JPA.runInTransaction(
+        () -> {
+          Company company = new Company();
+          company.setName("Lock test " + suffix);
+          company.setCode("LCK" + suffix);
+          JPA.save(company);
+
+          StockLocation stockLocation = new StockLocation();
+          stockLocation.setName("Lock test " + suffix);
+          stockLocation.setCompany(company);
+          stockLocation.setTypeSelect(StockLocationRepository.TYPE_INTERNAL);
+          stockLocationId = JPA.save(stockLocation).getId();
+
+          StockLocation virtualStockLocation = new StockLocation();
+          virtualStockLocation.setName("Lock test customer " + suffix);
+          virtualStockLocation.setCompany(company);
+          virtualStockLocation.setTypeSelect(StockLocationRepository.TYPE_VIRTUAL);
+          virtualStockLocationId = JPA.save(virtualStockLocation).getId();
+
+          Product product = new Product();
+          product.setName("Lock test " + suffix);
+          product.setCode("LCK" + suffix);
+          product.setProductTypeSelect(ProductRepository.PRODUCT_TYPE_STORABLE);
+          product.setStockManaged(true);
+          productId = JPA.save(product).getId();
+
+          StockLocationLine stockLocationLine = new StockLocationLine();
+          stockLocationLine.setStockLocation(stockLocation);
+          stockLocationLine.setProduct(product);
+          stockLocationLine.setCurrentQty(AVAILABLE_QTY);
+          stockLocationLine.setReservedQty(BigDecimal.ZERO);
+          stockLocationLineId = JPA.save(stockLocationLine).getId();
+        });
+    JPA.clear();
+  }
+
+  @Test(timeout = 300000)
+  public void testNoOverReservationWithConcurrentConfirmations() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(CONFIRMER_COUNT);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futureList = new ArrayList<>();
+    for (int confirmer = 0; confirmer < CONFIRMER_COUNT; confirmer++) {
+      futureList.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = 0; i < CONFIRMATION_COUNT; i++) {
+                  runInTransaction(
+                      () ->
+                          reservedQtyService.updateReservedQuantity(
+                              JPA.save(createStockMove()), StockMoveRepository.STATUS_PLANNED));
+                  JPA.clear();
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> future : futureList) {
+      future.get();
+    }
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    JPA.clear();
+    BigDecimal reservedQtyInStockMoveLines =
+        JPA.em()
+            .createQuery(
+                "SELECT SUM(self.reservedQty) FROM StockMoveLine self "
+                    + "WHERE self.fromStockLocation.id = :stockLocationId",
+                BigDecimal.class)
+            .setParameter("stockLocationId", stockLocationId)
+            .getSingleResult();
+    Assert.assertEquals(0, AVAILABLE_QTY.compareTo(reservedQtyInStockMoveLines));
+    Assert.assertEquals(
+        0,
+        AVAILABLE_QTY.compareTo(
+            JPA.find(StockLocationLine.class, stockLocationLineId).getReservedQty()));
+  }
+
+  @Test(timeout = 60000)
+  public void testStockMoveLockIsHeldUntilCommit() throws Exception {
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch commit = new CountDownLatch(1);
+    AtomicBoolean committed = new AtomicBoolean(false);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Future<?> holder =
+        executor.submit(
+            () -> {
+              runInTransaction(
+                  () -> {
+                    lockService.lock(createStockMove());
+                    locked.countDown();
+                    commit.await();
+                    reserve(JPA.find(StockLocationLine.class, stockLocationLineId));
+                    committed.set(true);
+                  });
+              return null;
+            });
+    locked.await();
+
+    Future<?> waiter =
+        executor.submit(
+            () -> {
+              runInTransaction(
+                  () -> {
+                    StockLocationLine stockLocationLine =
+                        JPA.find(StockLocationLine.class, stockLocationLineId);
+                    lockService.lock(Collections.singletonList(stockLocationLine));
+                    // the lock is only granted once the holder has committed
+                    Assert.assertTrue(committed.get());
+                  });
+              return null;
+            });
+    Thread.sleep(500);
+    Assert.assertFalse(waiter.isDone());
+    commit.countDown();
+    holder.get();
+    waiter.get();
+    executor.shutdown();
+  }
+
+  /** Read-modify-write of the reserved quantity, as done by the reservation services. */
+  protected void reserve(StockLocationLine stockLocationLine) {
+    BigDecimal reservedQty = stockLocationLine.getReservedQty();
+    Thread.yield();
+    stockLocationLine.setReservedQty(reservedQty.add(BigDecimal.ONE));
+  }
+
+  /** A planned delivery of one unit from the stock location, requesting its reservation. */
+  protected StockMove createStockMove() {
+    Product product = JPA.find(Product.class, productId);
+    StockLocation stockLocation = JPA.find(StockLocation.class, stockLocationId);
+    StockLocation virtualStockLocation = JPA.find(StockLocation.class, virtualStockLocationId);
+
+    StockMoveLine stockMoveLine = new StockMoveLine();
+    stockMoveLine.setProduct(product);
+    stockMoveLine.setProductName(product.getName());
+    stockMoveLine.setQty(BigDecimal.ONE);
+    stockMoveLine.setRealQty(BigDecimal.ONE);
+    stockMoveLine.setRequestedReservedQty(BigDecimal.ONE);
+    stockMoveLine.setReservedQty(BigDecimal.ZERO);
+    stockMoveLine.setFromStockLocation(stockLocation);
+    stockMoveLine.setToStockLocation(virtualStockLocation);
+
+    StockMove stockMove = new StockMove();
+    stockMove.setCompany(stockLocation.getCompany());
+    stockMove.setFromStockLocation(stockLocation);
+    stockMove.setToStockLocation(virtualStockLocation);
+    stockMove.setTypeSelect(StockMoveRepository.TYPE_OUTGOING);
+    stockMove.setStatusSelect(StockMoveRepository.STATUS_PLANNED);
+    stockMove.addStockMoveLineListItem(stockMoveLine);
+    return stockMove;
+  }
+
+  protected void runInTransaction(TransactionalWork work) {
+    JPA.runInTransaction(
+        () -> {
+          try {
+            work.run();
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        });
+  }
+
+  @FunctionalInterface
+  protected interface TransactionalWork {
+    void run() throws AxelorException, InterruptedException;
+  }
+}